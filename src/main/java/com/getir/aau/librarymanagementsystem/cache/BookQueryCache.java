@@ -0,0 +1,204 @@
+package com.getir.aau.librarymanagementsystem.cache;
+
+import com.getir.aau.librarymanagementsystem.model.dto.response.BookFacetedPageResponseDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.BookPageResponseDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.BookResponseDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.CacheStatsResponseDto;
+import com.getir.aau.librarymanagementsystem.model.entity.Book;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Bounded cache of the paged book queries, keyed by query type, query argument and pageable.
+ * <p>
+ * Results weigh one plus the number of books they hold and are held by a Caffeine cache evicting by weight once
+ * the total exceeds {@code application.search.result-cache.maximum-weight}. Every write to a book evicts the
+ * results showing that book and the results of the query types whose matches it could join or leave: a new,
+ * updated or deleted book evicts every text and faceted query, whatever their terms, and the queries of its
+ * author, category and availability, a borrow or return only evicts the availability queries and only when the
+ * book runs out or gets a copy back.
+ * Evictions are repeated when the writing transaction completes, as concurrent readers may have cached what they
+ * read before the commit, and a read that started before an eviction is not cached at all.
+ */
+@Component
+public class BookQueryCache {
+
+    /**
+     * The cached queries along with what decides which books they match
+     */
+    public enum QueryType {
+        TITLE(true, false),
+        AUTHOR_ID(false, false),
+        AUTHOR_NAME(true, false),
+        CATEGORY_ID(false, false),
+        GENRE(true, false),
+        AVAILABLE(false, true),
+        UNAVAILABLE(false, true),
+        KEYWORD(true, false),
+        FUZZY(true, false),
+        FACETED(true, true);
+
+        private final boolean textual;
+        private final boolean availabilityDependent;
+
+        QueryType(boolean textual, boolean availabilityDependent) {
+            this.textual = textual;
+            this.availabilityDependent = availabilityDependent;
+        }
+    }
+
+    private record Key(QueryType type, Object argument, Pageable pageable) {
+    }
+
+    private record Result(Object value, Set<Long> bookIds) {
+    }
+
+    private record Invalidation(Predicate<Key> scope, Long bookId) {
+
+        private boolean matches(Key key, Result result) {
+            return scope.test(key) || (bookId != null && result.bookIds().contains(bookId));
+        }
+    }
+
+    private final boolean enabled;
+    private final long maximumWeight;
+    private final Cache<Key, Result> cache;
+
+    private final AtomicLong epoch = new AtomicLong();
+    private final LongAdder invalidations = new LongAdder();
+
+    public BookQueryCache(@Value("${application.search.result-cache.enabled:true}") boolean enabled,
+                          @Value("${application.search.result-cache.maximum-weight:10000}") long maximumWeight) {
+        this.enabled = enabled;
+        this.maximumWeight = maximumWeight;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maximumWeight)
+                .weigher((Key key, Result result) -> 1 + result.bookIds().size())
+                // Evicts on the calling thread so the weight never stays above the maximum
+                .executor(Runnable::run)
+                .recordStats()
+                .build();
+    }
+
+    public BookPageResponseDto getPage(QueryType type, Object argument, Pageable pageable,
+                                       Supplier<BookPageResponseDto> loader) {
+        return load(new Key(type, argument, pageable), loader, page -> idsOf(page.books()));
+    }
+
+    public BookFacetedPageResponseDto getFacets(Object request, Pageable pageable,
+                                                Supplier<BookFacetedPageResponseDto> loader) {
+        return load(new Key(QueryType.FACETED, request, pageable), loader, result -> idsOf(result.page().books()));
+    }
+
+    /**
+     * Evicts the results a created, updated or deleted book could appear in, to be called with the state before
+     * and after an update. Every text and faceted result is evicted, as their terms are not matched against the book
+     */
+    public void evictBook(Book book) {
+        Long authorId = book.getAuthor() == null ? null : book.getAuthor().getId();
+        Long categoryId = book.getCategory() == null ? null : book.getCategory().getId();
+        QueryType availability = book.isAvailable() ? QueryType.AVAILABLE : QueryType.UNAVAILABLE;
+        invalidate(new Invalidation(key -> key.type().textual
+                || key.type() == availability
+                || key.type() == QueryType.FACETED
+                || (key.type() == QueryType.AUTHOR_ID && Objects.equals(key.argument(), authorId))
+                || (key.type() == QueryType.CATEGORY_ID && Objects.equals(key.argument(), categoryId)),
+                book.getId()));
+    }
+
+    /**
+     * Evicts the results showing the copies of a book after a borrow or return, and the availability queries
+     * when the book ran out or got a copy back
+     */
+    public void evictCopies(Long bookId, boolean availabilityChanged) {
+        invalidate(new Invalidation(key -> availabilityChanged && key.type().availabilityDependent, bookId));
+    }
+
+    /**
+     * Evicts every result, for changes such as author or category renames that reach many books at once
+     */
+    public void evictAll() {
+        invalidate(new Invalidation(key -> true, null));
+    }
+
+    public CacheStatsResponseDto stats() {
+        cache.cleanUp();
+        CacheStats stats = cache.stats();
+        return new CacheStatsResponseDto(
+                stats.hitCount(),
+                stats.missCount(),
+                stats.requestCount() == 0 ? 0 : stats.hitRate(),
+                stats.evictionCount(),
+                invalidations.sum(),
+                (int) cache.estimatedSize(),
+                cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L),
+                maximumWeight);
+    }
+
+    private <V> V load(Key key, Supplier<V> loader, Function<V, Set<Long>> bookIds) {
+        if (!enabled) {
+            return loader.get();
+        }
+
+        Result cached = cache.getIfPresent(key);
+        if (cached != null) {
+            @SuppressWarnings("unchecked")
+            V value = (V) cached.value();
+            return value;
+        }
+
+        long startEpoch = epoch.get();
+        V value = loader.get();
+        Result result = new Result(value, bookIds.apply(value));
+        cache.put(key, result);
+        // A write since the load started may not be reflected in the value, its eviction may have run first
+        if (epoch.get() != startEpoch) {
+            cache.asMap().remove(key, result);
+        }
+        return value;
+    }
+
+    private void invalidate(Invalidation invalidation) {
+        if (!enabled) {
+            return;
+        }
+        apply(invalidation);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    apply(invalidation);
+                }
+            });
+        }
+    }
+
+    private void apply(Invalidation invalidation) {
+        epoch.incrementAndGet();
+        cache.asMap().forEach((key, result) -> {
+            if (invalidation.matches(key, result) && cache.asMap().remove(key, result)) {
+                invalidations.increment();
+            }
+        });
+    }
+
+    private static Set<Long> idsOf(List<BookResponseDto> books) {
+        return books.stream().map(BookResponseDto::id).filter(Objects::nonNull).collect(Collectors.toUnmodifiableSet());
+    }
+}
@@ -0,0 +1,140 @@
+package com.getir.aau.librarymanagementsystem.cache;
+
+import com.getir.aau.librarymanagementsystem.repository.ActiveBorrowSummary;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Bounded cache of the unreturned items of each borrower, summarized as their count and earliest due date, so
+ * that borrow eligibility checks need no query for users seen recently.
+ * <p>
+ * Summaries are held by a Caffeine cache bounded to {@code application.borrow.eligibility-cache.maximum-size}
+ * users. A borrow or return removes the summary of its user at once and puts it back adjusted when the writing
+ * transaction commits, or unchanged when it rolls back. A return that may have been of the item due first cannot
+ * be adjusted for, so the summary is then left to be loaded again. While a write of a user is pending, and when one
+ * started during a load, the loaded summary is not cached, as it may or may not count the write. Writes are
+ * tracked per stripe of users rather than per user, so a write only ever costs other users of its stripe a cached
+ * load.
+ */
+@Component
+public class BorrowEligibilityCache {
+
+    private static final int STRIPES = 1024;
+
+    private final boolean enabled;
+    private final Cache<Long, ActiveBorrowSummary> cache;
+
+    private final AtomicLongArray versions = new AtomicLongArray(STRIPES);
+    private final AtomicIntegerArray pending = new AtomicIntegerArray(STRIPES);
+
+    public BorrowEligibilityCache(@Value("${application.borrow.eligibility-cache.enabled:true}") boolean enabled,
+                                  @Value("${application.borrow.eligibility-cache.maximum-size:10000}") long maximumSize) {
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder().maximumSize(maximumSize).build();
+    }
+
+    public ActiveBorrowSummary get(Long userId, Supplier<ActiveBorrowSummary> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+
+        ActiveBorrowSummary cached = cache.getIfPresent(userId);
+        if (cached != null) {
+            return cached;
+        }
+
+        int stripe = stripeOf(userId);
+        long startVersion = versions.get(stripe);
+        ActiveBorrowSummary summary = loader.get();
+        if (pending.get(stripe) == 0) {
+            cache.put(userId, summary);
+            // A write started after the check may have removed the summary before it was put
+            if (versions.get(stripe) != startVersion) {
+                cache.asMap().remove(userId, summary);
+            }
+        }
+        return summary;
+    }
+
+    /**
+     * Counts items borrowed by a user in the current transaction once it commits
+     */
+    public void recordBorrow(Long userId, int count, LocalDate dueDate) {
+        record(userId, summary -> new ActiveBorrowSummary(userId, summary.activeCount() + count,
+                summary.earliestDueDate() == null || dueDate.isBefore(summary.earliestDueDate())
+                        ? dueDate : summary.earliestDueDate()));
+    }
+
+    /**
+     * Drops items returned by a user in the current transaction, given by their due dates, once it commits
+     */
+    public void recordReturn(Long userId, Collection<LocalDate> dueDates) {
+        record(userId, summary -> {
+            long activeCount = summary.activeCount() - dueDates.size();
+            if (activeCount <= 0) {
+                return ActiveBorrowSummary.none(userId);
+            }
+            LocalDate firstReturned = dueDates.stream().min(Comparator.naturalOrder()).orElseThrow();
+            // Another item may share the earliest due date, but which one is due first next is unknown
+            return firstReturned.isAfter(summary.earliestDueDate())
+                    ? new ActiveBorrowSummary(userId, activeCount, summary.earliestDueDate())
+                    : null;
+        });
+    }
+
+    /**
+     * Removes the summary of a user now and puts it back, adjusted if the current transaction commits, unless
+     * another write of the stripe started meanwhile
+     */
+    private void record(Long userId, UnaryOperator<ActiveBorrowSummary> adjustment) {
+        if (!enabled) {
+            return;
+        }
+
+        int stripe = stripeOf(userId);
+        pending.incrementAndGet(stripe);
+        long version = versions.incrementAndGet(stripe);
+        ActiveBorrowSummary before = cache.asMap().remove(userId);
+
+        afterCompletion(committed -> {
+            ActiveBorrowSummary after = before == null ? null : committed ? adjustment.apply(before) : before;
+            pending.decrementAndGet(stripe);
+            if (after != null && versions.get(stripe) == version) {
+                cache.put(userId, after);
+                if (versions.get(stripe) != version) {
+                    cache.asMap().remove(userId, after);
+                }
+            }
+        });
+    }
+
+    private static int stripeOf(Long userId) {
+        return Long.hashCode(userId) & (STRIPES - 1);
+    }
+
+    private static void afterCompletion(Consumer<Boolean> callback) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            callback.accept(true);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                callback.accept(status == STATUS_COMMITTED);
+            }
+        });
+    }
+}
@@ -0,0 +1,123 @@
+package com.getir.aau.librarymanagementsystem.cache;
+
+import com.getir.aau.librarymanagementsystem.model.dto.response.CacheStatsResponseDto;
+import com.getir.aau.librarymanagementsystem.model.entity.User;
+import com.getir.aau.librarymanagementsystem.security.jwt.JwtPrincipal;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache of the users loaded by email to authenticate requests bearing an access token, so that
+ * authenticating a user seen recently needs no query. Password logins always load the user.
+ * <p>
+ * Users are held as an immutable {@link JwtPrincipal} of their ID, email and role, so no entity or password hash is
+ * shared between requests. They are held by a Caffeine cache bounded to
+ * {@code application.security.user-details-cache.maximum-size} users and expire
+ * {@code application.security.user-details-cache.ttl-ms} after being loaded. Users not found are not cached.
+ * Updating, deleting or changing the role or password of a user evicts it, at once and again when the writing
+ * transaction completes, and a load that started before an eviction is not cached.
+ * <p>
+ * Evictions only reach the cache of the instance making them, so with several instances a change made through
+ * another one goes unseen for up to the TTL. Disabled by default for that reason.
+ */
+@Component
+public class UserDetailsCache {
+
+    private final boolean enabled;
+    private final long maximumSize;
+    private final Cache<String, JwtPrincipal> cache;
+
+    private final AtomicLong epoch = new AtomicLong();
+    private final LongAdder invalidations = new LongAdder();
+
+    public UserDetailsCache(@Value("${application.security.user-details-cache.enabled:false}") boolean enabled,
+                            @Value("${application.security.user-details-cache.maximum-size:10000}") long maximumSize,
+                            @Value("${application.security.user-details-cache.ttl-ms:300000}") long ttlMillis) {
+        this.enabled = enabled;
+        this.maximumSize = maximumSize;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMillis))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns the principal of a user, loading the user unless cached. While disabled the loaded user is returned
+     * as is
+     */
+    public Optional<UserDetails> get(String email, Supplier<Optional<User>> loader) {
+        if (!enabled) {
+            return loader.get().map(UserDetails.class::cast);
+        }
+
+        JwtPrincipal cached = cache.getIfPresent(email);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        long startEpoch = epoch.get();
+        Optional<JwtPrincipal> principal = loader.get().map(JwtPrincipal::of);
+        principal.ifPresent(loaded -> {
+            cache.put(email, loaded);
+            // An update since the load started may not be reflected in the user, its eviction may have run first
+            if (epoch.get() != startEpoch) {
+                cache.asMap().remove(email, loaded);
+            }
+        });
+        return principal.map(UserDetails.class::cast);
+    }
+
+    /**
+     * Evicts a user, now and when the current transaction completes
+     */
+    public void evict(String email) {
+        if (!enabled) {
+            return;
+        }
+        apply(email);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    apply(email);
+                }
+            });
+        }
+    }
+
+    public CacheStatsResponseDto stats() {
+        // Runs the pending expirations and evictions so that they are counted
+        cache.cleanUp();
+        CacheStats stats = cache.stats();
+        long entries = cache.estimatedSize();
+        return new CacheStatsResponseDto(
+                stats.hitCount(),
+                stats.missCount(),
+                stats.requestCount() == 0 ? 0 : stats.hitRate(),
+                stats.evictionCount(),
+                invalidations.sum(),
+                (int) entries,
+                entries,
+                maximumSize);
+    }
+
+    private void apply(String email) {
+        epoch.incrementAndGet();
+        if (cache.asMap().remove(email) != null) {
+            invalidations.increment();
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.getir.aau.librarymanagementsystem.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of the access tokens already verified, so that the requests repeating a token skip its signature
+ * check, its parsing and the load of its user.
+ * <p>
+ * Tokens are held by their SHA-256 digest along with their subject, the ID and authorities of the user and the
+ * expiration of the entry, in a Caffeine cache bounded to
+ * {@code application.security.jwt.verified-token-cache.maximum-size} tokens. An entry is dropped once its token
+ * expires or {@code application.security.jwt.verified-token-cache.ttl-ms} after it was verified, whichever comes
+ * first, when the token is revoked on logout and when all tokens of its user are revoked, at once and again when
+ * the revoking transaction completes. A token verified while an eviction happened is not cached, as it may have
+ * been verified against the user before the eviction.
+ * <p>
+ * Evictions only reach the cache of the instance making them. On every other instance a logged out, demoted or
+ * deleted user keeps the authorities of their cached tokens for up to the TTL, which is why the cache is disabled
+ * by default and its TTL kept short.
+ */
+@Component
+public class VerifiedTokenCache {
+
+    /**
+     * Subject, user ID, when known, authorities and expiration of the entry of a verified token
+     */
+    public record VerifiedToken(String subject, Long userId, List<GrantedAuthority> authorities, Instant expiresAt) {
+    }
+
+    private final boolean enabled;
+    private final Duration ttl;
+    private final Cache<String, VerifiedToken> cache;
+    private final AtomicLong generation = new AtomicLong();
+
+    public VerifiedTokenCache(@Value("${application.security.jwt.verified-token-cache.enabled:false}") boolean enabled,
+                              @Value("${application.security.jwt.verified-token-cache.maximum-size:10000}") long maximumSize,
+                              @Value("${application.security.jwt.verified-token-cache.ttl-ms:30000}") long ttlMillis) {
+        this.enabled = enabled;
+        this.ttl = Duration.ofMillis(ttlMillis);
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<String, VerifiedToken>() {
+                    @Override
+                    public long expireAfterCreate(String digest, VerifiedToken verified, long currentTime) {
+                        return Math.max(0, Duration.between(Instant.now(), verified.expiresAt()).toNanos());
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String digest, VerifiedToken verified, long currentTime,
+                                                  long currentDuration) {
+                        return expireAfterCreate(digest, verified, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String digest, VerifiedToken verified, long currentTime,
+                                                long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Returns the verified token, or null when it was not verified before or has expired since
+     */
+    public VerifiedToken get(String token) {
+        if (!enabled) {
+            return null;
+        }
+        return cache.getIfPresent(digest(token));
+    }
+
+    /**
+     * Current generation, to be read before verifying a token and passed back to {@link #put}
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Caches a token verified since the given generation until it expires or for the TTL, whichever is shorter,
+     * unless a token was evicted meanwhile
+     */
+    public void put(String token, String subject, Long userId, Collection<? extends GrantedAuthority> authorities,
+                    Instant expiresAt, long verifiedGeneration) {
+        if (!enabled || expiresAt == null) {
+            return;
+        }
+        Instant ttlExpiry = Instant.now().plus(ttl);
+        VerifiedToken verified = new VerifiedToken(subject, userId, List.copyOf(authorities),
+                expiresAt.isBefore(ttlExpiry) ? expiresAt : ttlExpiry);
+        String digest = digest(token);
+        if (generation.get() != verifiedGeneration) {
+            return;
+        }
+        cache.put(digest, verified);
+        // An eviction started after the check may have run before the put
+        if (generation.get() != verifiedGeneration) {
+            cache.asMap().remove(digest, verified);
+        }
+    }
+
+    /**
+     * Drops a token, now and when the current transaction completes
+     */
+    public void evict(String token) {
+        if (!enabled) {
+            return;
+        }
+        String digest = digest(token);
+        evictNowAndOnCompletion(() -> cache.invalidate(digest));
+    }
+
+    /**
+     * Drops every token of a user, now and when the current transaction completes
+     */
+    public void evictAll(String subject) {
+        if (!enabled) {
+            return;
+        }
+        evictNowAndOnCompletion(() -> cache.asMap().values().removeIf(verified -> verified.subject().equals(subject)));
+    }
+
+    private void evictNowAndOnCompletion(Runnable eviction) {
+        evictNow(eviction);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evictNow(eviction);
+                }
+            });
+        }
+    }
+
+    private void evictNow(Runnable eviction) {
+        generation.incrementAndGet();
+        eviction.run();
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package com.getir.aau.librarymanagementsystem.concurrency;
+
+import com.getir.aau.librarymanagementsystem.exception.ResourceAlreadyExistsException;
+import com.getir.aau.librarymanagementsystem.exception.ResourceNotFoundException;
+import com.getir.aau.librarymanagementsystem.exception.TooManyRequestsException;
+import com.getir.aau.librarymanagementsystem.model.dto.request.BorrowItemRequestDto;
+import com.getir.aau.librarymanagementsystem.model.dto.request.BorrowRecordRequestDto;
+import com.getir.aau.librarymanagementsystem.model.dto.request.BulkBorrowRequestDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.BorrowRecordResponseDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.BorrowTicketResponseDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.BorrowTicketResponseDto.Status;
+import com.getir.aau.librarymanagementsystem.model.dto.response.BulkBorrowResponseDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.BulkBorrowResultDto;
+import com.getir.aau.librarymanagementsystem.security.SecurityUtils;
+import com.getir.aau.librarymanagementsystem.service.BorrowRecordService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Queues borrows for workers that make them in batches, so that a burst of borrows takes a few transactions
+ * instead of one each, and refuses borrows with 429 once the queue is full instead of letting them pile up on
+ * the connection pool and the book row locks.
+ * <p>
+ * Each of the {@code application.borrow.async.workers} workers drains a queue of its own, holding its share of
+ * {@code application.borrow.async.queue-capacity} borrows. A borrow goes to the queue of its smallest book id,
+ * so that the borrows of a book are made by one worker and workers rarely wait on each other's book locks. A
+ * worker takes the borrows queued up to {@code application.borrow.async.batch-size} and makes them as one bulk
+ * checkout, a single transaction in which each borrow gets all of its books or none.
+ * <p>
+ * Only librarians may queue borrows of other users, checked on submission as the workers run without the
+ * security context of the submitter. The workers check the eligibility of each user as a single borrow does.
+ * <p>
+ * Every queued borrow gets a ticket telling whether it is queued, being made, borrowed or rejected, kept for
+ * {@code application.borrow.async.ticket-ttl-ms} once it completes and dropped oldest first beyond
+ * {@code application.borrow.async.max-tickets} completed ones. Tickets are held in memory, so they are only found
+ * on the instance the borrow was sent to. Disabled by default, in which case each borrow is made as a single
+ * borrow as soon as it is submitted and its ticket returned completed without being kept.
+ */
+@Component
+@Slf4j
+public class BorrowPipeline {
+
+    private static final int MAX_BATCH_SIZE = 500;
+    private static final long RETRY_AFTER_SECONDS = 1;
+    private static final String FAILED_MESSAGE = "The borrow could not be processed, please try again";
+    private static final String SHUTDOWN_MESSAGE = "The borrow was not processed before the server shut down";
+
+    private final BorrowRecordService borrowRecordService;
+    private final SecurityUtils securityUtils;
+    private final boolean enabled;
+    private final int batchSize;
+    private final Duration ticketTtl;
+    private final int maxTickets;
+    private final List<BlockingQueue<Ticket>> queues;
+
+    private final ConcurrentMap<String, Ticket> tickets = new ConcurrentHashMap<>();
+    private final Queue<Ticket> completed = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger completedCount = new AtomicInteger();
+    private volatile boolean running;
+    private ExecutorService workers;
+
+    private static final class Ticket {
+
+        private final String id = UUID.randomUUID().toString();
+        private final String principal;
+        private final BorrowRecordRequestDto request;
+        private volatile Status status = Status.QUEUED;
+        private volatile BorrowRecordResponseDto record;
+        private volatile String error;
+        private volatile Instant expiresAt;
+
+        private Ticket(String principal, BorrowRecordRequestDto request) {
+            this.principal = principal;
+            this.request = request;
+        }
+
+        private BorrowTicketResponseDto toDto() {
+            return new BorrowTicketResponseDto(id, status, record, error);
+        }
+    }
+
+    public BorrowPipeline(BorrowRecordService borrowRecordService,
+                          SecurityUtils securityUtils,
+                          @Value("${application.borrow.async.enabled:false}") boolean enabled,
+                          @Value("${application.borrow.async.queue-capacity:1000}") int queueCapacity,
+                          @Value("${application.borrow.async.workers:2}") int workerCount,
+                          @Value("${application.borrow.async.batch-size:50}") int batchSize,
+                          @Value("${application.borrow.async.ticket-ttl-ms:600000}") long ticketTtlMillis,
+                          @Value("${application.borrow.async.max-tickets:10000}") int maxTickets) {
+        this.borrowRecordService = borrowRecordService;
+        this.securityUtils = securityUtils;
+        this.enabled = enabled;
+        this.batchSize = Math.clamp(batchSize, 1, MAX_BATCH_SIZE);
+        this.ticketTtl = Duration.ofMillis(ticketTtlMillis);
+        this.maxTickets = Math.max(0, maxTickets);
+
+        int count = Math.max(1, workerCount);
+        int capacity = Math.max(1, Math.ceilDiv(queueCapacity, count));
+        this.queues = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            queues.add(new ArrayBlockingQueue<>(capacity));
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queues a borrow, returning its ticket. Throws {@link AccessDeniedException} when a user other than a
+     * librarian borrows for someone else, and {@link TooManyRequestsException} when the queue of its books is full
+     */
+    public BorrowTicketResponseDto submit(BorrowRecordRequestDto dto) {
+        securityUtils.checkAccessPermissionForUser(dto.userId());
+
+        Ticket ticket = new Ticket(securityUtils.getCurrentUserEmail(), dto);
+        if (!enabled) {
+            borrowNow(ticket);
+            return ticket.toDto();
+        }
+
+        purgeExpired();
+        tickets.put(ticket.id, ticket);
+        if (!queueOf(dto).offer(ticket)) {
+            tickets.remove(ticket.id);
+            log.warn("Borrow queue full, refusing borrow for user ID: {}", dto.userId());
+            throw new TooManyRequestsException("Too many borrows are waiting to be processed, please try again later",
+                    RETRY_AFTER_SECONDS);
+        }
+        log.debug("Queued borrow ticket {} for user ID: {}", ticket.id, dto.userId());
+        return ticket.toDto();
+    }
+
+    /**
+     * Returns the ticket of a borrow, which only the user who submitted it and librarians can see
+     */
+    public BorrowTicketResponseDto getTicket(String ticketId) {
+        purgeExpired();
+        Ticket ticket = tickets.get(ticketId);
+        if (ticket == null) {
+            throw new ResourceNotFoundException("BorrowTicket", "id", ticketId);
+        }
+        if (!securityUtils.hasRole("LIBRARIAN") && !ticket.principal.equals(securityUtils.getCurrentUserEmail())) {
+            log.warn("Unauthorized access attempt to borrow ticket {}", ticketId);
+            throw new AccessDeniedException("You are not allowed to access this borrow ticket.");
+        }
+        return ticket.toDto();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        AtomicInteger threads = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(queues.size(), runnable -> {
+            Thread thread = new Thread(runnable, "borrow-pipeline-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        running = true;
+        queues.forEach(queue -> workers.execute(() -> drain(queue)));
+        log.info("Started {} borrow pipeline workers", queues.size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+        List<Ticket> pending = new ArrayList<>();
+        queues.forEach(queue -> queue.drainTo(pending));
+        pending.forEach(ticket -> complete(ticket, Status.REJECTED, null, SHUTDOWN_MESSAGE));
+        if (!pending.isEmpty()) {
+            log.warn("Rejected {} queued borrows on shutdown", pending.size());
+        }
+    }
+
+    private void drain(BlockingQueue<Ticket> queue) {
+        List<Ticket> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            queue.drainTo(batch, batchSize - 1);
+            process(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Makes a borrow as a single borrow, completing its ticket with the record or the reason it was rejected
+     */
+    private void borrowNow(Ticket ticket) {
+        try {
+            ticket.record = borrowRecordService.borrowBooks(ticket.request);
+            ticket.status = Status.BORROWED;
+        } catch (ResourceNotFoundException | ResourceAlreadyExistsException | AccessDeniedException
+                 | IllegalStateException e) {
+            ticket.error = e.getMessage();
+            ticket.status = Status.REJECTED;
+        } catch (RuntimeException e) {
+            log.error("Borrow for user ID {} failed", ticket.request.userId(), e);
+            ticket.error = FAILED_MESSAGE;
+            ticket.status = Status.REJECTED;
+        }
+    }
+
+    /**
+     * Makes the borrows of a batch in one bulk checkout, completing each ticket with its result. A checkout that
+     * fails as a whole rejects every borrow of the batch
+     */
+    private void process(List<Ticket> batch) {
+        batch.forEach(ticket -> ticket.status = Status.PROCESSING);
+        try {
+            BulkBorrowResponseDto response = borrowRecordService.borrowBooksInBulk(
+                    new BulkBorrowRequestDto(batch.stream().map(ticket -> ticket.request).toList()));
+            for (int i = 0; i < batch.size(); i++) {
+                BulkBorrowResultDto result = response.results().get(i);
+                if (result.borrowed()) {
+                    complete(batch.get(i), Status.BORROWED, result.record(), null);
+                } else {
+                    complete(batch.get(i), Status.REJECTED, null, result.error());
+                }
+            }
+            log.debug("Processed borrow batch of {}, {} borrowed", batch.size(), response.borrowed());
+        } catch (RuntimeException e) {
+            log.error("Borrow batch of {} failed, rejecting every borrow in it", batch.size(), e);
+            batch.forEach(ticket -> complete(ticket, Status.REJECTED, null, FAILED_MESSAGE));
+        }
+    }
+
+    private void complete(Ticket ticket, Status status, BorrowRecordResponseDto record, String error) {
+        ticket.record = record;
+        ticket.error = error;
+        ticket.expiresAt = Instant.now().plus(ticketTtl);
+        ticket.status = status;
+        completed.add(ticket);
+        completedCount.incrementAndGet();
+        purgeExpired();
+    }
+
+    /**
+     * Forgets the tickets completed longer than the ticket TTL ago, and the oldest beyond the maximum number of
+     * completed tickets, in completion order
+     */
+    private void purgeExpired() {
+        Instant now = Instant.now();
+        Ticket oldest;
+        while ((oldest = completed.peek()) != null
+                && (!oldest.expiresAt.isAfter(now) || completedCount.get() > maxTickets)) {
+            if (completed.remove(oldest)) {
+                completedCount.decrementAndGet();
+                tickets.remove(oldest.id);
+            }
+        }
+    }
+
+    private BlockingQueue<Ticket> queueOf(BorrowRecordRequestDto dto) {
+        long smallestBookId = dto.items().stream()
+                .mapToLong(BorrowItemRequestDto::bookId)
+                .min()
+                .orElse(0);
+        return queues.get(Math.floorMod(smallestBookId, queues.size()));
+    }
+}
@@ -0,0 +1,316 @@
+package com.getir.aau.librarymanagementsystem.concurrency;
+
+import com.getir.aau.librarymanagementsystem.cache.BookQueryCache;
+import com.getir.aau.librarymanagementsystem.model.entity.Book;
+import com.getir.aau.librarymanagementsystem.model.entity.BorrowItem;
+import com.getir.aau.librarymanagementsystem.repository.BookRepository;
+import com.getir.aau.librarymanagementsystem.repository.BorrowItemRepository;
+import com.getir.aau.librarymanagementsystem.search.BookSearchIndex;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * In-memory copy counters of the borrowed books, taking the copies of a borrow without touching the book rows and
+ * writing borrows and returns to them in batches.
+ * <p>
+ * A counter holds the copies of a book once every borrow and return is written to it. It is read on first use
+ * from the book and its unsettled borrow items, those whose borrow or return was taken by the ledger and not
+ * written to the book yet, and changed by compare-and-set, so borrows of a hot book never wait on its row lock.
+ * Copies taken by a transaction that rolls back are given back, copies returned are only handed out again once
+ * the return commits. Every {@code application.borrow.ledger.flush-interval-ms} the unsettled items are locked,
+ * their books adjusted and the items settled in batches of {@code application.borrow.ledger.flush-batch-size},
+ * the same write recovering the books at startup from the items left unsettled by a crash.
+ * <p>
+ * Enabled by {@code application.borrow.ledger.enabled}. The counters are only correct while a single instance
+ * borrows and returns books, and the books show the copies of the last flush in between.
+ */
+@Component
+@Slf4j
+public class InventoryLedger {
+
+    private final BookRepository bookRepository;
+    private final BorrowItemRepository borrowItemRepository;
+    private final BookSearchIndex bookSearchIndex;
+    private final BookQueryCache bookQueryCache;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final long flushIntervalMillis;
+    private final int flushBatchSize;
+
+    private final ConcurrentMap<Long, AtomicInteger> copies = new ConcurrentHashMap<>();
+    private final Lock flushLock = new ReentrantLock();
+    private ScheduledExecutorService flusher;
+
+    private record Settlement(Long bookId, int delta, int copies, boolean available) {
+    }
+
+    private record Batch(int items, List<Settlement> settlements) {
+    }
+
+    public InventoryLedger(BookRepository bookRepository,
+                           BorrowItemRepository borrowItemRepository,
+                           BookSearchIndex bookSearchIndex,
+                           BookQueryCache bookQueryCache,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${application.borrow.ledger.enabled:false}") boolean enabled,
+                           @Value("${application.borrow.ledger.flush-interval-ms:200}") long flushIntervalMillis,
+                           @Value("${application.borrow.ledger.flush-batch-size:500}") int flushBatchSize) {
+        this.bookRepository = bookRepository;
+        this.borrowItemRepository = borrowItemRepository;
+        this.bookSearchIndex = bookSearchIndex;
+        this.bookQueryCache = bookQueryCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.flushBatchSize = Math.max(1, flushBatchSize);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Takes copies of a book if it has enough left, giving them back if the current transaction rolls back.
+     * Returns false when the book has too few copies or does not exist
+     */
+    public boolean tryReserve(Long bookId, int count) {
+        return tryReserveAll(Map.of(bookId, count));
+    }
+
+    /**
+     * Takes the copies of several books if every one has enough left, giving them back if the current
+     * transaction rolls back. Returns false, having taken nothing, when a book has too few copies or does not
+     * exist
+     */
+    public boolean tryReserveAll(Map<Long, Integer> counts) {
+        Map<AtomicInteger, Integer> taken = new IdentityHashMap<>();
+        for (Map.Entry<Long, Integer> entry : counts.entrySet()) {
+            AtomicInteger counter = counterOf(entry.getKey());
+            if (counter == null || !take(counter, entry.getValue())) {
+                taken.forEach(AtomicInteger::addAndGet);
+                return false;
+            }
+            taken.merge(counter, entry.getValue(), Integer::sum);
+        }
+
+        afterCompletion(committed -> {
+            if (!committed) {
+                taken.forEach(AtomicInteger::addAndGet);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Gives copies of a book back once the current transaction commits. A book without a counter yet is left
+     * alone, as reading it counts the committed return
+     */
+    public void release(Long bookId, int count) {
+        AtomicInteger counter = copies.get(bookId);
+        if (counter == null) {
+            return;
+        }
+        afterCompletion(committed -> {
+            if (committed) {
+                counter.addAndGet(count);
+            }
+        });
+    }
+
+    /**
+     * Adds the change of the copies of a book written directly to its counter, keeping the copies taken and given
+     * back meanwhile. Must be called before the book is written, so that a counter read now does not count the
+     * write. Copies removed are taken at once and given back if the current transaction rolls back, copies added
+     * are only handed out once it commits
+     */
+    public void adjust(Long bookId, int delta) {
+        if (!enabled || delta == 0) {
+            return;
+        }
+        AtomicInteger counter = counterOf(bookId);
+        if (counter == null) {
+            return;
+        }
+        if (delta < 0) {
+            counter.addAndGet(delta);
+        }
+        afterCompletion(committed -> {
+            if (committed && delta > 0) {
+                counter.addAndGet(delta);
+            } else if (!committed && delta < 0) {
+                counter.addAndGet(-delta);
+            }
+        });
+    }
+
+    /**
+     * Drops the counter of a book once its deletion commits
+     */
+    public void forget(Long bookId) {
+        afterCompletion(committed -> {
+            if (committed) {
+                copies.remove(bookId);
+            }
+        });
+    }
+
+    /**
+     * The copies a book has in the ledger, read from the database if not in use yet. A book whose copies were
+     * reduced below those borrowed has none
+     */
+    public int available(Long bookId) {
+        AtomicInteger counter = counterOf(bookId);
+        return counter == null ? 0 : Math.max(0, counter.get());
+    }
+
+    /**
+     * The copies of a book as borrowers see them, from the ledger when it is enabled as the book only holds the
+     * copies of the last flush, otherwise as read from the book
+     */
+    public int copiesOf(Book book) {
+        return enabled ? available(book.getId()) : book.getNumberOfCopies();
+    }
+
+    /**
+     * Writes the unsettled borrows and returns to their books until none are left, returning the number of items
+     * settled
+     */
+    public int flush() {
+        flushLock.lock();
+        try {
+            int settled = 0;
+            Batch batch;
+            do {
+                batch = transactionTemplate.execute(status -> settleBatch());
+                settled += batch.items();
+                batch.settlements().forEach(this::publish);
+            } while (batch.items() == flushBatchSize);
+            return settled;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void recover() {
+        int settled = flush();
+        if (settled > 0) {
+            log.info("Inventory ledger wrote {} unsettled borrow items to their books", settled);
+        }
+        if (!enabled) {
+            return;
+        }
+
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "inventory-ledger-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::scheduledFlush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        log.info("Inventory ledger enabled, writing borrows and returns every {} ms", flushIntervalMillis);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (flusher == null) {
+            return;
+        }
+        flusher.shutdown();
+        scheduledFlush();
+    }
+
+    private void scheduledFlush() {
+        try {
+            flush();
+        } catch (DataAccessException e) {
+            log.warn("Inventory ledger could not write borrows and returns, retrying on next flush", e);
+        }
+    }
+
+    /**
+     * Locks a batch of unsettled items so that returns cannot change them meanwhile, adds their borrows and
+     * returns to their books and settles them in one transaction
+     */
+    private Batch settleBatch() {
+        List<BorrowItem> items = borrowItemRepository.findByCopiesSettledFalseOrderById(Limit.of(flushBatchSize));
+        if (items.isEmpty()) {
+            return new Batch(0, List.of());
+        }
+
+        Map<Long, Integer> deltas = new HashMap<>();
+        items.forEach(item -> deltas.merge(item.getBook().getId(), item.isReturned() ? 1 : -1, Integer::sum));
+        deltas.values().removeIf(delta -> delta == 0);
+        deltas.forEach(bookRepository::adjustCopies);
+        borrowItemRepository.markSettled(items.stream().map(BorrowItem::getId).toList());
+
+        List<Settlement> settlements = bookRepository.findAllById(deltas.keySet()).stream()
+                .map(book -> new Settlement(book.getId(), deltas.get(book.getId()), book.getNumberOfCopies(), book.isAvailable()))
+                .toList();
+        log.debug("Inventory ledger settled {} borrow items of {} books", items.size(), settlements.size());
+        return new Batch(items.size(), settlements);
+    }
+
+    private void publish(Settlement settlement) {
+        bookSearchIndex.updateAvailability(settlement.bookId(), settlement.available());
+        boolean wasAvailable = settlement.copies() - settlement.delta() > 0;
+        bookQueryCache.evictCopies(settlement.bookId(), wasAvailable != settlement.available());
+    }
+
+    private static boolean take(AtomicInteger counter, int count) {
+        int current;
+        do {
+            current = counter.get();
+            if (current < count) {
+                return false;
+            }
+        } while (!counter.compareAndSet(current, current - count));
+        return true;
+    }
+
+    private AtomicInteger counterOf(Long bookId) {
+        AtomicInteger counter = copies.get(bookId);
+        if (counter != null) {
+            return counter;
+        }
+        return bookRepository.findCopiesIncludingUnsettled(bookId)
+                .map(current -> copies.computeIfAbsent(bookId, id -> new AtomicInteger(current.intValue())))
+                .orElse(null);
+    }
+
+    private static void afterCompletion(Consumer<Boolean> callback) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            callback.accept(true);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                callback.accept(status == STATUS_COMMITTED);
+            }
+        });
+    }
+}
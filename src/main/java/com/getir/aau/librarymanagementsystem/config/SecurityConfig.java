@@ -59,6 +59,7 @@ public class SecurityConfig {
 
                         // Book Management
                         .requestMatchers(HttpMethod.GET, "/api/books/unavailable").hasRole("LIBRARIAN")
+                        .requestMatchers(HttpMethod.GET, "/api/books/cache/**").hasRole("LIBRARIAN")
                         .requestMatchers(HttpMethod.GET, "/api/books/**").hasAnyRole("USER", "LIBRARIAN")
                         .requestMatchers(HttpMethod.POST, "/api/books/**").hasRole("LIBRARIAN")
                         .requestMatchers(HttpMethod.PUT, "/api/books/**").hasRole("LIBRARIAN")
@@ -77,6 +78,9 @@ public class SecurityConfig {
                         // Borrow Management
                         .requestMatchers(HttpMethod.GET, "/api/borrow-records").hasRole("LIBRARIAN")
                         .requestMatchers(HttpMethod.POST, "/api/borrow-records").hasAnyRole("USER", "LIBRARIAN")
+                        .requestMatchers(HttpMethod.POST, "/api/borrow-records/bulk").hasRole("LIBRARIAN")
+                        .requestMatchers(HttpMethod.POST, "/api/borrow-records/async").hasAnyRole("USER", "LIBRARIAN")
+                        .requestMatchers(HttpMethod.GET, "/api/borrow-records/async/{ticketId}").hasAnyRole("USER", "LIBRARIAN")
                         .requestMatchers(HttpMethod.GET, "/api/borrow-records/filter").hasRole("LIBRARIAN")
                         .requestMatchers(HttpMethod.GET, "/api/borrow-records/check-eligibility/**").hasRole("LIBRARIAN")
                         .requestMatchers(HttpMethod.GET, "/api/borrow-records/book-availability/**").hasRole("LIBRARIAN")
@@ -84,10 +88,12 @@ public class SecurityConfig {
                         .requestMatchers(HttpMethod.GET, "/api/borrow-records/{id}").hasAnyRole("USER", "LIBRARIAN")
                         .requestMatchers(HttpMethod.GET, "/api/borrow-records/user/{userId}").hasAnyRole("USER", "LIBRARIAN")
                         .requestMatchers(HttpMethod.GET, "/api/borrow-records/user/{userId}/active").hasAnyRole("USER", "LIBRARIAN")
+                        .requestMatchers(HttpMethod.GET, "/api/borrow-records/user/{userId}/active/page").hasAnyRole("USER", "LIBRARIAN")
 
 
                         // Borrow Item Management
                         .requestMatchers(HttpMethod.PUT, "/api/borrow-items/{itemId}/return").hasRole("LIBRARIAN")
+                        .requestMatchers(HttpMethod.PUT, "/api/borrow-items/return").hasRole("LIBRARIAN")
                         .requestMatchers(HttpMethod.GET, "/api/borrow-items/user/{userId}").hasAnyRole("USER", "LIBRARIAN")
                         .requestMatchers(HttpMethod.GET, "/api/borrow-items/user/{userId}/count-active").hasAnyRole("USER", "LIBRARIAN")
                         .requestMatchers(HttpMethod.GET, "/api/borrow-items/user/{userId}/exist-overdue").hasAnyRole("USER", "LIBRARIAN")
@@ -1,12 +1,17 @@
 package com.getir.aau.librarymanagementsystem.controller;
 
 import com.getir.aau.librarymanagementsystem.exception.ExceptionResult;
+import com.getir.aau.librarymanagementsystem.model.dto.request.BookFacetRequestDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.BookFacetedPageResponseDto;
 import com.getir.aau.librarymanagementsystem.model.dto.response.BookPageResponseDto;
 import com.getir.aau.librarymanagementsystem.model.dto.request.BookRequestDto;
 import com.getir.aau.librarymanagementsystem.model.dto.response.BookResponseDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.CacheStatsResponseDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.SuggestionResponseDto;
 import com.getir.aau.librarymanagementsystem.service.BookService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -21,12 +26,18 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/books")
 @RequiredArgsConstructor
 @Tag(name = "Book Management", description = "CRUD operations and advanced queries for books")
 public class BookController {
 
+    private static final String CURSOR_DESCRIPTION =
+            "Keyset pagination ordered by title, follow nextCursor until it is absent. No count query is run. "
+                    + "A cursor only continues the endpoint that returned it.";
+
     private final BookService bookService;
 
     @Operation(
@@ -132,7 +143,11 @@ public class BookController {
 
     @Operation(
             summary = "Search books by keyword (title, authorName, genre, isbn, categoryName)",
-            description = "Search across multiple fields with pagination support",
+            description = "Search across multiple fields with pagination support. Every word of the keyword must "
+                    + "start a word of one of the fields, so \"harry pot\" finds \"Harry Potter\" but \"arry\" finds "
+                    + "nothing. Sorting by a field other than id, title, isbn, genre, publicationDate, author.name, "
+                    + "category.name or available matches the keyword as a substring instead. On Postgres results are "
+                    + "ranked by full-text relevance, title matches first, unless a sort is given",
             parameters = {
                     @Parameter(
                             name = "page",
@@ -174,6 +189,93 @@ public class BookController {
         return ResponseEntity.ok(bookService.searchByKeywords(keyword, pageable));
     }
 
+    @Operation(
+            summary = "Typo-tolerant book search",
+            description = "Finds books whose title or author name words are within a few edits of every keyword word, "
+                    + "e.g. \"tolkein\" finds Tolkien. Words shorter than three characters must match exactly, up to "
+                    + "five characters one edit is allowed and two beyond. Closest matches come first unless sorted",
+            parameters = {
+                    @Parameter(name = "keyword", description = "Search keyword, possibly misspelled", required = true, example = "dostoyevsky"),
+                    @Parameter(name = "maxEdits", description = "Upper bound on the edits allowed per word (0-2)", example = "2"),
+                    @Parameter(name = "page", description = "Page number (zero-based)", example = "0", schema = @Schema(type = "integer", defaultValue = "0")),
+                    @Parameter(name = "size", description = "Page size", example = "10", schema = @Schema(type = "integer", defaultValue = "10")),
+                    @Parameter(name = "sort", description = "Sort field and direction (e.g. title,asc)", example = "title,asc", schema = @Schema(type = "string"))
+            },
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Books retrieved successfully",
+                            content = @Content(schema = @Schema(implementation = BookPageResponseDto.class))
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Invalid maxEdits or unsupported sort property",
+                            content = @Content(schema = @Schema(implementation = ExceptionResult.class))
+                    )
+            }
+    )
+    @GetMapping("/search/fuzzy")
+    public ResponseEntity<BookPageResponseDto> fuzzySearch(@RequestParam String keyword,
+                                                           @RequestParam(defaultValue = "2") int maxEdits,
+                                                           @ParameterObject Pageable pageable) {
+        return ResponseEntity.ok(bookService.fuzzySearch(keyword, maxEdits, pageable));
+    }
+
+    @Operation(
+            summary = "Faceted book search",
+            description = "Keyword search narrowed by category, author, genre and availability, returning the page "
+                    + "with the per-category, per-author, per-genre and availability counts of all matches",
+            parameters = {
+                    @Parameter(name = "keyword", description = "Search keyword", example = "harry"),
+                    @Parameter(name = "category", description = "Exact category name", example = "Fantasy"),
+                    @Parameter(name = "author", description = "Exact author name", example = "J.K. Rowling"),
+                    @Parameter(name = "genre", description = "Exact genre", example = "Fantasy"),
+                    @Parameter(name = "available", description = "Availability", example = "true"),
+                    @Parameter(name = "page", description = "Page number (zero-based)", example = "0", schema = @Schema(type = "integer", defaultValue = "0")),
+                    @Parameter(name = "size", description = "Page size", example = "10", schema = @Schema(type = "integer", defaultValue = "10")),
+                    @Parameter(name = "sort", description = "Sort field and direction (e.g. title,asc)", example = "title,asc", schema = @Schema(type = "string"))
+            },
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Books and facet counts retrieved successfully",
+                            content = @Content(schema = @Schema(implementation = BookFacetedPageResponseDto.class))
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Unsupported sort property",
+                            content = @Content(schema = @Schema(implementation = ExceptionResult.class))
+                    )
+            }
+    )
+    @GetMapping("/facets")
+    public ResponseEntity<BookFacetedPageResponseDto> facetedSearch(@ParameterObject BookFacetRequestDto request,
+                                                                    @ParameterObject Pageable pageable) {
+        return ResponseEntity.ok(bookService.facetedSearch(request, pageable));
+    }
+
+    @Operation(
+            summary = "Autocomplete book titles and author names",
+            description = "Returns the most borrowed titles and author names starting with the prefix, "
+                    + "matching from the start of the text or of any later word",
+            parameters = {
+                    @Parameter(name = "prefix", description = "Typed prefix", required = true, example = "harry po"),
+                    @Parameter(name = "limit", description = "Maximum number of suggestions (at most 25)", example = "10")
+            },
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Suggestions retrieved successfully",
+                            content = @Content(array = @ArraySchema(schema = @Schema(implementation = SuggestionResponseDto.class)))
+                    )
+            }
+    )
+    @GetMapping("/autocomplete")
+    public ResponseEntity<List<SuggestionResponseDto>> autocomplete(@RequestParam String prefix,
+                                                                    @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(bookService.autocomplete(prefix, limit));
+    }
+
     @Operation(
             summary = "Get books by category ID",
             parameters = {
@@ -199,6 +301,24 @@ public class BookController {
         return ResponseEntity.ok(bookService.getByCategoryId(categoryId, pageable));
     }
 
+    @Operation(
+            summary = "Scroll books by category ID",
+            description = CURSOR_DESCRIPTION,
+            parameters = {
+                    @Parameter(name = "cursor", description = "Continuation token, empty for the first window"),
+                    @Parameter(name = "size", description = "Window size, 1 to 100", example = "20")
+            },
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Window retrieved successfully",
+                            content = @Content(schema = @Schema(implementation = BookPageResponseDto.class)))
+            }
+    )
+    @GetMapping(value = "/category/{categoryId}", params = "cursor")
+    public ResponseEntity<BookPageResponseDto> scrollByCategoryId(@PathVariable Long categoryId, @RequestParam(defaultValue = "") String cursor,
+                                                                  @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(bookService.scrollByCategoryId(categoryId, cursor, size));
+    }
+
     @Operation(
             summary = "Get books by author ID",
             parameters = {
@@ -224,6 +344,24 @@ public class BookController {
         return ResponseEntity.ok(bookService.getByAuthorId(authorId, pageable));
     }
 
+    @Operation(
+            summary = "Scroll books by author ID",
+            description = CURSOR_DESCRIPTION,
+            parameters = {
+                    @Parameter(name = "cursor", description = "Continuation token, empty for the first window"),
+                    @Parameter(name = "size", description = "Window size, 1 to 100", example = "20")
+            },
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Window retrieved successfully",
+                            content = @Content(schema = @Schema(implementation = BookPageResponseDto.class)))
+            }
+    )
+    @GetMapping(value = "/author/{authorId}", params = "cursor")
+    public ResponseEntity<BookPageResponseDto> scrollByAuthorId(@PathVariable Long authorId, @RequestParam(defaultValue = "") String cursor,
+                                                                @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(bookService.scrollByAuthorId(authorId, cursor, size));
+    }
+
     @Operation(
             summary = "Get available books",
             parameters = {
@@ -244,6 +382,23 @@ public class BookController {
         return ResponseEntity.ok(bookService.getAvailable(pageable));
     }
 
+    @Operation(
+            summary = "Scroll available books",
+            description = CURSOR_DESCRIPTION,
+            parameters = {
+                    @Parameter(name = "cursor", description = "Continuation token, empty for the first window"),
+                    @Parameter(name = "size", description = "Window size, 1 to 100", example = "20")
+            },
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Window retrieved successfully",
+                            content = @Content(schema = @Schema(implementation = BookPageResponseDto.class)))
+            }
+    )
+    @GetMapping(value = "/available", params = "cursor")
+    public ResponseEntity<BookPageResponseDto> scrollAvailable(@RequestParam(defaultValue = "") String cursor, @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(bookService.scrollAvailable(cursor, size));
+    }
+
     @Operation(
             summary = "Get unavailable books",
             parameters = {
@@ -264,6 +419,39 @@ public class BookController {
         return ResponseEntity.ok(bookService.getUnavailable(pageable));
     }
 
+    @Operation(
+            summary = "Scroll unavailable books",
+            description = CURSOR_DESCRIPTION,
+            parameters = {
+                    @Parameter(name = "cursor", description = "Continuation token, empty for the first window"),
+                    @Parameter(name = "size", description = "Window size, 1 to 100", example = "20")
+            },
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Window retrieved successfully",
+                            content = @Content(schema = @Schema(implementation = BookPageResponseDto.class)))
+            }
+    )
+    @GetMapping(value = "/unavailable", params = "cursor")
+    public ResponseEntity<BookPageResponseDto> scrollUnavailable(@RequestParam(defaultValue = "") String cursor, @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(bookService.scrollUnavailable(cursor, size));
+    }
+
+    @Operation(
+            summary = "Get book query cache statistics",
+            description = "Hits, misses, hit rate, evictions and weight of the cache in front of the paged book queries",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Cache statistics retrieved",
+                            content = @Content(schema = @Schema(implementation = CacheStatsResponseDto.class))
+                    )
+            }
+    )
+    @GetMapping("/cache/stats")
+    public ResponseEntity<CacheStatsResponseDto> getCacheStats() {
+        return ResponseEntity.ok(bookService.getCacheStats());
+    }
+
     @Operation(
             summary = "Get books by genre",
             parameters = {
@@ -1,8 +1,11 @@
 package com.getir.aau.librarymanagementsystem.controller;
 
 import com.getir.aau.librarymanagementsystem.exception.ExceptionResult;
+import com.getir.aau.librarymanagementsystem.idempotency.IdempotencyStore;
+import com.getir.aau.librarymanagementsystem.model.dto.request.BulkReturnRequestDto;
 import com.getir.aau.librarymanagementsystem.model.dto.response.BorrowItemPageResponseDto;
 import com.getir.aau.librarymanagementsystem.model.dto.response.BorrowItemResponseDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.BulkReturnResponseDto;
 import com.getir.aau.librarymanagementsystem.service.BorrowItemService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -11,6 +14,7 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springdoc.core.annotations.ParameterObject;
 import org.springframework.data.domain.Pageable;
@@ -27,18 +31,49 @@ import java.util.List;
 @Tag(name = "Borrow Items", description = "API endpoints for managing book borrowing")
 public class BorrowItemController {
 
+    private static final String CURSOR_DESCRIPTION =
+            "Keyset pagination, newest borrow date first, follow nextCursor until it is absent. No count query is run. "
+                    + "A cursor only continues the endpoint that returned it.";
+
+    private static final String IDEMPOTENCY_KEY_DESCRIPTION =
+            "Retries with the same key get the stored response without running the request again, for 24 hours by default";
+
     private final BorrowItemService borrowItemService;
+    private final IdempotencyStore idempotencyStore;
 
     @Operation(summary = "Return a borrowed book")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "204", description = "Book returned successfully"),
             @ApiResponse(responseCode = "400", description = "Invalid item ID or book already returned", content = @Content(schema = @Schema(implementation = ExceptionResult.class))),
-            @ApiResponse(responseCode = "404", description = "Borrow item not found")
+            @ApiResponse(responseCode = "404", description = "Borrow item not found"),
+            @ApiResponse(responseCode = "409", description = "The book kept being updated concurrently, or a request with the same idempotency key is still running, ended without a stored response, or had other parameters", content = @Content(schema = @Schema(implementation = ExceptionResult.class)))
     })
     @PutMapping("/{itemId}/return")
-    public ResponseEntity<Void> returnBook(@PathVariable Long itemId, @RequestParam Long userId) {
-        borrowItemService.returnBook(itemId,userId);
-        return ResponseEntity.noContent().build();
+    public ResponseEntity<Void> returnBook(
+            @Parameter(description = IDEMPOTENCY_KEY_DESCRIPTION) @RequestHeader(name = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+            @PathVariable Long itemId, @RequestParam Long userId) {
+        return idempotencyStore.execute(idempotencyKey, "return", List.of(itemId, userId), Void.class, () -> {
+            borrowItemService.returnBook(itemId, userId);
+            return ResponseEntity.noContent().build();
+        });
+    }
+
+    @Operation(summary = "Return many borrowed books at once",
+            description = "Returns the given items and, for every scanned book ID, its unreturned item due first. "
+                    + "The results report the item returned or the reason nothing was, items first and then books, in request order.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Returns processed",
+                    content = @Content(schema = @Schema(implementation = BulkReturnResponseDto.class))),
+            @ApiResponse(responseCode = "400", description = "No item or book IDs given", content = @Content(schema = @Schema(implementation = ExceptionResult.class))),
+            @ApiResponse(responseCode = "403", description = "Access denied: only librarians can return in bulk", content = @Content(schema = @Schema(implementation = ExceptionResult.class))),
+            @ApiResponse(responseCode = "409", description = "The books kept being updated concurrently, or a request with the same idempotency key is still running, ended without a stored response, or had another body", content = @Content(schema = @Schema(implementation = ExceptionResult.class)))
+    })
+    @PutMapping("/return")
+    public ResponseEntity<BulkReturnResponseDto> returnBooksInBulk(
+            @Parameter(description = IDEMPOTENCY_KEY_DESCRIPTION) @RequestHeader(name = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+            @Valid @RequestBody BulkReturnRequestDto dto) {
+        return idempotencyStore.execute(idempotencyKey, "bulk-return", dto, BulkReturnResponseDto.class,
+                () -> ResponseEntity.ok(borrowItemService.returnBooksInBulk(dto)));
     }
 
 
@@ -61,6 +96,24 @@ public class BorrowItemController {
         return ResponseEntity.ok(borrowItemService.getByUserId(userId, pageable));
     }
 
+    @Operation(
+            summary = "Scroll borrow items by user ID",
+            description = CURSOR_DESCRIPTION,
+            parameters = {
+                    @Parameter(name = "cursor", description = "Continuation token, empty for the first window"),
+                    @Parameter(name = "size", description = "Window size, 1 to 100", example = "20")
+            },
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Window retrieved successfully",
+                            content = @Content(schema = @Schema(implementation = BorrowItemPageResponseDto.class)))
+            }
+    )
+    @GetMapping(value = "/user/{userId}", params = "cursor")
+    public ResponseEntity<BorrowItemPageResponseDto> scrollByUserId(
+            @PathVariable Long userId, @RequestParam(defaultValue = "") String cursor, @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(borrowItemService.scrollByUserId(userId, cursor, size));
+    }
+
     @Operation(
             summary = "Get borrow items by book ID",
             parameters = {
@@ -79,6 +132,24 @@ public class BorrowItemController {
         return ResponseEntity.ok(borrowItemService.getByBookId(bookId, pageable));
     }
 
+    @Operation(
+            summary = "Scroll borrow items by book ID",
+            description = CURSOR_DESCRIPTION,
+            parameters = {
+                    @Parameter(name = "cursor", description = "Continuation token, empty for the first window"),
+                    @Parameter(name = "size", description = "Window size, 1 to 100", example = "20")
+            },
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Window retrieved successfully",
+                            content = @Content(schema = @Schema(implementation = BorrowItemPageResponseDto.class)))
+            }
+    )
+    @GetMapping(value = "/book/{bookId}", params = "cursor")
+    public ResponseEntity<BorrowItemPageResponseDto> scrollByBookId(
+            @PathVariable Long bookId, @RequestParam(defaultValue = "") String cursor, @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(borrowItemService.scrollByBookId(bookId, cursor, size));
+    }
+
     @Operation(
             summary = "Get overdue borrow items",
             parameters = {
@@ -98,6 +169,23 @@ public class BorrowItemController {
         return ResponseEntity.ok(borrowItemService.getOverdueItems(pageable));
     }
 
+    @Operation(
+            summary = "Scroll overdue borrow items",
+            description = CURSOR_DESCRIPTION,
+            parameters = {
+                    @Parameter(name = "cursor", description = "Continuation token, empty for the first window"),
+                    @Parameter(name = "size", description = "Window size, 1 to 100", example = "20")
+            },
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Window retrieved successfully",
+                            content = @Content(schema = @Schema(implementation = BorrowItemPageResponseDto.class)))
+            }
+    )
+    @GetMapping(value = "/overdue", params = "cursor")
+    public ResponseEntity<BorrowItemPageResponseDto> scrollOverdueItems(@RequestParam(defaultValue = "") String cursor, @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(borrowItemService.scrollOverdueItems(cursor, size));
+    }
+
     @Operation(
             summary = "Get borrow items by date range",
             parameters = {
@@ -124,6 +212,28 @@ public class BorrowItemController {
         return ResponseEntity.ok(borrowItemService.getBorrowItemsByDateRange(startDate, endDate, pageable));
     }
 
+    @Operation(
+            summary = "Scroll borrow items by date range",
+            description = CURSOR_DESCRIPTION,
+            parameters = {
+                    @Parameter(name = "startDate", description = "Start date (yyyy-MM-dd)", example = "2024-01-01", schema = @Schema(type = "string")),
+                    @Parameter(name = "endDate", description = "End date (yyyy-MM-dd)", example = "2024-12-31", schema = @Schema(type = "string")),
+                    @Parameter(name = "cursor", description = "Continuation token, empty for the first window"),
+                    @Parameter(name = "size", description = "Window size, 1 to 100", example = "20")
+            },
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Window retrieved successfully",
+                            content = @Content(schema = @Schema(implementation = BorrowItemPageResponseDto.class)))
+            }
+    )
+    @GetMapping(value = "/date-range", params = "cursor")
+    public ResponseEntity<BorrowItemPageResponseDto> scrollByDateRange(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(defaultValue = "") String cursor, @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(borrowItemService.scrollBorrowItemsByDateRange(startDate, endDate, cursor, size));
+    }
+
     @Operation(summary = "Get active borrow items for a user")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully retrieved active borrow items"),
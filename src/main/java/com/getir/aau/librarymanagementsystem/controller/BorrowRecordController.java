@@ -1,9 +1,14 @@
     package com.getir.aau.librarymanagementsystem.controller;
 
+    import com.getir.aau.librarymanagementsystem.concurrency.BorrowPipeline;
     import com.getir.aau.librarymanagementsystem.exception.ExceptionResult;
+    import com.getir.aau.librarymanagementsystem.idempotency.IdempotencyStore;
     import com.getir.aau.librarymanagementsystem.model.dto.request.BorrowRecordRequestDto;
+    import com.getir.aau.librarymanagementsystem.model.dto.request.BulkBorrowRequestDto;
     import com.getir.aau.librarymanagementsystem.model.dto.response.BorrowRecordPageResponseDto;
     import com.getir.aau.librarymanagementsystem.model.dto.response.BorrowRecordResponseDto;
+    import com.getir.aau.librarymanagementsystem.model.dto.response.BorrowTicketResponseDto;
+    import com.getir.aau.librarymanagementsystem.model.dto.response.BulkBorrowResponseDto;
     import com.getir.aau.librarymanagementsystem.service.BorrowRecordService;
     import io.swagger.v3.oas.annotations.Operation;
     import io.swagger.v3.oas.annotations.Parameter;
@@ -15,11 +20,14 @@
     import lombok.RequiredArgsConstructor;
     import org.springdoc.core.annotations.ParameterObject;
     import org.springframework.data.domain.Pageable;
+    import org.springframework.data.domain.Sort;
+    import org.springframework.data.web.PageableDefault;
     import org.springframework.format.annotation.DateTimeFormat;
     import org.springframework.http.HttpStatus;
     import org.springframework.http.ResponseEntity;
     import org.springframework.web.bind.annotation.*;
 
+    import java.net.URI;
     import java.time.LocalDate;
     import java.util.List;
 
@@ -29,7 +37,16 @@
     @Tag(name = "Borrow Records", description = "Manage borrowing records of users")
     public class BorrowRecordController {
 
+        private static final String CURSOR_DESCRIPTION =
+                "Keyset pagination, newest borrow date first, follow nextCursor until it is absent. No count query is run. "
+                        + "A cursor only continues the endpoint that returned it.";
+
+        private static final String IDEMPOTENCY_KEY_DESCRIPTION =
+                "Retries with the same key get the stored response without running the request again, for 24 hours by default";
+
         private final BorrowRecordService borrowRecordService;
+        private final IdempotencyStore idempotencyStore;
+        private final BorrowPipeline borrowPipeline;
 
         @Operation(summary = "Create a new borrow record",
                 responses = {
@@ -38,11 +55,83 @@
                         @ApiResponse(responseCode = "400", description = "Invalid input or unavailable books",
                                 content = @Content(schema = @Schema(implementation = ExceptionResult.class))),
                         @ApiResponse(responseCode = "403", description = "User not eligible to borrow",
+                                content = @Content(schema = @Schema(implementation = ExceptionResult.class))),
+                        @ApiResponse(responseCode = "409", description = "The books kept being borrowed concurrently, or a request with the same idempotency key is still running, ended without a stored response, or had another body",
                                 content = @Content(schema = @Schema(implementation = ExceptionResult.class)))
                 })
         @PostMapping
-        public ResponseEntity<BorrowRecordResponseDto> borrowBooks(@Valid @RequestBody BorrowRecordRequestDto dto) {
-            return new ResponseEntity<>(borrowRecordService.borrowBooks(dto), HttpStatus.CREATED);
+        public ResponseEntity<BorrowRecordResponseDto> borrowBooks(
+                @Parameter(description = IDEMPOTENCY_KEY_DESCRIPTION) @RequestHeader(name = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+                @Valid @RequestBody BorrowRecordRequestDto dto) {
+            return idempotencyStore.execute(idempotencyKey, "borrow", dto, BorrowRecordResponseDto.class,
+                    () -> new ResponseEntity<>(borrowRecordService.borrowBooks(dto), HttpStatus.CREATED));
+        }
+
+        @Operation(summary = "Borrow books for many users at once",
+                description = "Checks every user and reserves every book once for the whole request. Each borrow gets all of its books or none, "
+                        + "the results report the record created or the reason for rejecting each borrow, in request order.",
+                responses = {
+                        @ApiResponse(responseCode = "200", description = "Borrows processed",
+                                content = @Content(schema = @Schema(implementation = BulkBorrowResponseDto.class))),
+                        @ApiResponse(responseCode = "400", description = "Invalid input",
+                                content = @Content(schema = @Schema(implementation = ExceptionResult.class))),
+                        @ApiResponse(responseCode = "403", description = "Access denied: only librarians can borrow in bulk",
+                                content = @Content(schema = @Schema(implementation = ExceptionResult.class))),
+                        @ApiResponse(responseCode = "409", description = "The books kept being borrowed concurrently, or a request with the same idempotency key is still running, ended without a stored response, or had another body",
+                                content = @Content(schema = @Schema(implementation = ExceptionResult.class)))
+                })
+        @PostMapping("/bulk")
+        public ResponseEntity<BulkBorrowResponseDto> borrowBooksInBulk(
+                @Parameter(description = IDEMPOTENCY_KEY_DESCRIPTION) @RequestHeader(name = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+                @Valid @RequestBody BulkBorrowRequestDto dto) {
+            return idempotencyStore.execute(idempotencyKey, "bulk-borrow", dto, BulkBorrowResponseDto.class,
+                    () -> ResponseEntity.ok(borrowRecordService.borrowBooksInBulk(dto)));
+        }
+
+        @Operation(summary = "Queue a borrow to be made asynchronously",
+                description = "Queues the borrow and returns a ticket at once, its Location header pointing to the ticket status. "
+                        + "Queued borrows are made in batches, the ticket reports the record created or the reason the borrow was rejected. "
+                        + "Only librarians may borrow for other users. While the asynchronous pipeline is disabled the borrow is made at once "
+                        + "and its completed ticket returned without a Location header, as it is not kept.",
+                responses = {
+                        @ApiResponse(responseCode = "202", description = "Borrow queued",
+                                content = @Content(schema = @Schema(implementation = BorrowTicketResponseDto.class))),
+                        @ApiResponse(responseCode = "400", description = "Invalid input",
+                                content = @Content(schema = @Schema(implementation = ExceptionResult.class))),
+                        @ApiResponse(responseCode = "403", description = "Access denied: only librarians can borrow for other users",
+                                content = @Content(schema = @Schema(implementation = ExceptionResult.class))),
+                        @ApiResponse(responseCode = "409", description = "A request with the same idempotency key is still running, ended without a stored response, or had another body",
+                                content = @Content(schema = @Schema(implementation = ExceptionResult.class))),
+                        @ApiResponse(responseCode = "429", description = "Too many borrows are queued, retry after the Retry-After header",
+                                content = @Content(schema = @Schema(implementation = ExceptionResult.class)))
+                })
+        @PostMapping("/async")
+        public ResponseEntity<BorrowTicketResponseDto> submitBorrow(
+                @Parameter(description = IDEMPOTENCY_KEY_DESCRIPTION) @RequestHeader(name = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+                @Valid @RequestBody BorrowRecordRequestDto dto) {
+            return idempotencyStore.execute(idempotencyKey, "async-borrow", dto, BorrowTicketResponseDto.class, () -> {
+                BorrowTicketResponseDto ticket = borrowPipeline.submit(dto);
+                if (ticket.status() != BorrowTicketResponseDto.Status.QUEUED) {
+                    return ResponseEntity.accepted().body(ticket);
+                }
+                return ResponseEntity.accepted()
+                        .location(URI.create("/api/borrow-records/async/" + ticket.ticketId()))
+                        .body(ticket);
+            });
+        }
+
+        @Operation(summary = "Get the status of a queued borrow",
+                responses = {
+                        @ApiResponse(responseCode = "200", description = "Borrow ticket found",
+                                content = @Content(schema = @Schema(implementation = BorrowTicketResponseDto.class))),
+                        @ApiResponse(responseCode = "403", description = "Access denied: only the submitter or librarian can view the ticket",
+                                content = @Content(schema = @Schema(implementation = ExceptionResult.class))),
+                        @ApiResponse(responseCode = "404", description = "Ticket not found or expired",
+                                content = @Content(schema = @Schema(implementation = ExceptionResult.class)))
+                })
+        @GetMapping("/async/{ticketId}")
+        public ResponseEntity<BorrowTicketResponseDto> getBorrowTicket(@PathVariable String ticketId) {
+            return ResponseEntity.ok(borrowPipeline.getTicket(ticketId));
         }
 
         @Operation(summary = "Get borrow record by ID",
@@ -74,6 +163,22 @@
             return ResponseEntity.ok(borrowRecordService.getAll(pageable));
         }
 
+        @Operation(summary = "Scroll all borrow records",
+                description = CURSOR_DESCRIPTION,
+                parameters = {
+                        @Parameter(name = "cursor", description = "Continuation token, empty for the first window"),
+                        @Parameter(name = "size", description = "Window size, 1 to 100", example = "20")
+                },
+                responses = {
+                        @ApiResponse(responseCode = "200", description = "Window of borrow records",
+                                content = @Content(schema = @Schema(implementation = BorrowRecordPageResponseDto.class)))
+                })
+        @GetMapping(params = "cursor")
+        public ResponseEntity<BorrowRecordPageResponseDto> scrollAll(@RequestParam(defaultValue = "") String cursor,
+                                                                     @RequestParam(defaultValue = "20") int size) {
+            return ResponseEntity.ok(borrowRecordService.scrollAll(cursor, size));
+        }
+
         @Operation(summary = "Get borrow records by user ID",
                 parameters = {
                         @Parameter(name = "page", description = "Page number (zero-based)", example = "0"),
@@ -93,7 +198,25 @@
             return ResponseEntity.ok(borrowRecordService.getByUser(userId, pageable));
         }
 
+        @Operation(summary = "Scroll borrow records by user ID",
+                description = CURSOR_DESCRIPTION,
+                parameters = {
+                        @Parameter(name = "cursor", description = "Continuation token, empty for the first window"),
+                        @Parameter(name = "size", description = "Window size, 1 to 100", example = "20")
+                },
+                responses = {
+                        @ApiResponse(responseCode = "200", description = "Window of borrow records",
+                                content = @Content(schema = @Schema(implementation = BorrowRecordPageResponseDto.class)))
+                })
+        @GetMapping(value = "/user/{userId}", params = "cursor")
+        public ResponseEntity<BorrowRecordPageResponseDto> scrollByUser(@PathVariable Long userId,
+                                                                        @RequestParam(defaultValue = "") String cursor,
+                                                                        @RequestParam(defaultValue = "20") int size) {
+            return ResponseEntity.ok(borrowRecordService.scrollByUser(userId, cursor, size));
+        }
+
         @Operation(summary = "Get active borrow records by user ID",
+                description = "Records with at least one unreturned item, each listing all of its items. Use /user/{userId}/active/page to page them.",
                 responses = {
                         @ApiResponse(responseCode = "200", description = "Active borrow records found",
                                 content = @Content(schema = @Schema(implementation = BorrowRecordResponseDto.class))),
@@ -107,6 +230,28 @@
             return ResponseEntity.ok(borrowRecordService.getActiveRecordsByUser(userId));
         }
 
+        @Operation(summary = "Get active borrow records by user ID (paginated)",
+                description = "Records with at least one unreturned item, newest borrow date first unless sorted otherwise. Each record lists all of its items.",
+                parameters = {
+                        @Parameter(name = "page", description = "Page number (zero-based)", example = "0"),
+                        @Parameter(name = "size", description = "Page size", example = "10"),
+                        @Parameter(name = "sort", description = "Sort field and direction", example = "borrowDate,desc")
+                },
+                responses = {
+                        @ApiResponse(responseCode = "200", description = "Active borrow records found",
+                                content = @Content(schema = @Schema(implementation = BorrowRecordPageResponseDto.class))),
+                        @ApiResponse(responseCode = "403", description = "Access denied: only the owner or librarian can view the borrow records",
+                                content = @Content(schema = @Schema(implementation = ExceptionResult.class))),
+                        @ApiResponse(responseCode = "404", description = "User not found",
+                                content = @Content(schema = @Schema(implementation = ExceptionResult.class)))
+                })
+        @GetMapping("/user/{userId}/active/page")
+        public ResponseEntity<BorrowRecordPageResponseDto> getActivePageByUser(
+                @PathVariable Long userId,
+                @PageableDefault(sort = "borrowDate", direction = Sort.Direction.DESC) @ParameterObject Pageable pageable) {
+            return ResponseEntity.ok(borrowRecordService.getActiveRecordsByUser(userId, pageable));
+        }
+
         @Operation(summary = "Filter borrow records by email and date range",
                 parameters = {
                         @Parameter(name = "page", description = "Page number (zero-based)", example = "0"),
@@ -126,6 +271,26 @@
             return ResponseEntity.ok(borrowRecordService.filter(email, startDate, endDate, pageable));
         }
 
+        @Operation(summary = "Scroll borrow records filtered by email and date range",
+                description = CURSOR_DESCRIPTION,
+                parameters = {
+                        @Parameter(name = "cursor", description = "Continuation token, empty for the first window"),
+                        @Parameter(name = "size", description = "Window size, 1 to 100", example = "20")
+                },
+                responses = {
+                        @ApiResponse(responseCode = "200", description = "Window of borrow records",
+                                content = @Content(schema = @Schema(implementation = BorrowRecordPageResponseDto.class)))
+                })
+        @GetMapping(value = "/filter", params = "cursor")
+        public ResponseEntity<BorrowRecordPageResponseDto> scrollFiltered(
+                @RequestParam(required = false) String email,
+                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+                @RequestParam(defaultValue = "") String cursor,
+                @RequestParam(defaultValue = "20") int size) {
+            return ResponseEntity.ok(borrowRecordService.scrollFiltered(email, startDate, endDate, cursor, size));
+        }
+
         @Operation(summary = "Check if user is eligible to borrow books",
                 responses = {
                         @ApiResponse(responseCode = "200", description = "User is eligible"),
@@ -1,6 +1,7 @@
 package com.getir.aau.librarymanagementsystem.controller;
 
 import com.getir.aau.librarymanagementsystem.exception.ExceptionResult;
+import com.getir.aau.librarymanagementsystem.model.dto.response.CacheStatsResponseDto;
 import com.getir.aau.librarymanagementsystem.model.dto.response.UserResponseDto;
 import com.getir.aau.librarymanagementsystem.model.dto.request.UserUpdateRequestDto;
 import com.getir.aau.librarymanagementsystem.model.entity.ERole;
@@ -82,6 +83,17 @@ public class UserController {
         return ResponseEntity.ok(userService.getAll());
     }
 
+    @Operation(summary = "Get user details cache statistics",
+            description = "Hits, misses, hit rate, evictions and size of the cache in front of the user lookups made to authenticate",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Cache statistics retrieved",
+                            content = @Content(schema = @Schema(implementation = CacheStatsResponseDto.class)))
+            })
+    @GetMapping("/cache/stats")
+    public ResponseEntity<CacheStatsResponseDto> getUserDetailsCacheStats() {
+        return ResponseEntity.ok(userService.getUserDetailsCacheStats());
+    }
+
     @Operation(summary = "Update a user", responses = {
             @ApiResponse(responseCode = "200", description = "User updated successfully",
                     content = @Content(schema = @Schema(implementation = UserResponseDto.class))),
@@ -1,6 +1,8 @@
 package com.getir.aau.librarymanagementsystem.exception;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
@@ -57,6 +59,45 @@ public class GlobalExceptionHandler {
         );
     }
 
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public ResponseEntity<ExceptionResult> handleOptimisticLockingFailureException(OptimisticLockingFailureException exception) {
+        log.warn("Concurrent update conflict: {}", exception.getMessage());
+        return new ResponseEntity<>(
+                new ExceptionResult(HttpStatus.CONFLICT.value(), "The resource was updated concurrently, please try again"),
+                HttpStatus.CONFLICT
+        );
+    }
+
+    @ExceptionHandler(IdempotencyKeyConflictException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public ResponseEntity<ExceptionResult> handleIdempotencyKeyConflictException(IdempotencyKeyConflictException exception) {
+        log.warn("Idempotency key conflict: {}", exception.getMessage());
+        return new ResponseEntity<>(
+                new ExceptionResult(HttpStatus.CONFLICT.value(), exception.getMessage()),
+                HttpStatus.CONFLICT
+        );
+    }
+
+    @ExceptionHandler(TooManyRequestsException.class)
+    @ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+    public ResponseEntity<ExceptionResult> handleTooManyRequestsException(TooManyRequestsException exception) {
+        log.warn("Request refused under load: {}", exception.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(exception.getRetryAfterSeconds()))
+                .body(new ExceptionResult(HttpStatus.TOO_MANY_REQUESTS.value(), exception.getMessage()));
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ResponseEntity<ExceptionResult> handleIllegalArgumentException(IllegalArgumentException exception) {
+        log.warn("Invalid request: {}", exception.getMessage());
+        return new ResponseEntity<>(
+                new ExceptionResult(HttpStatus.BAD_REQUEST.value(), exception.getMessage()),
+                HttpStatus.BAD_REQUEST
+        );
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public ResponseEntity<ExceptionResult> handleValidationExceptions(MethodArgumentNotValidException exception) {
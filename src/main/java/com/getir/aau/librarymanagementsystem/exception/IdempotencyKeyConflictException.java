@@ -0,0 +1,7 @@
+package com.getir.aau.librarymanagementsystem.exception;
+
+public class IdempotencyKeyConflictException extends RuntimeException {
+    public IdempotencyKeyConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,293 @@
+package com.getir.aau.librarymanagementsystem.idempotency;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.getir.aau.librarymanagementsystem.exception.IdempotencyKeyConflictException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Runs requests sent with an {@code Idempotency-Key} header at most once per key, replaying the stored response
+ * to retries.
+ * <p>
+ * The first request with a key claims it by inserting a row, unique per key, operation and principal, in a
+ * transaction of its own, so that retries reaching any instance see the claim. A retry arriving while the request
+ * still runs is refused with 409, as is a request reusing the key with another body, told apart by a hash of the
+ * request. Once the request completes its status and JSON body are stored with the claim, a request failing
+ * with an exception releases the key so that it can be retried. A claim whose outcome is unknown, left by a crash,
+ * a slow request or a response that could not be stored, is never taken over, as the request may have run: retries
+ * are refused with 409 until the claim expires or an operator deletes its row from {@code idempotent_requests}.
+ * <p>
+ * Responses are kept for {@code application.idempotency.ttl-ms} and purged from the table every
+ * {@code application.idempotency.purge-interval-ms}. The {@code application.idempotency.maximum-size} responses
+ * stored or replayed last are also held in memory, so that most replays need no query.
+ */
+@Component
+@Slf4j
+public class IdempotencyStore {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final int CLAIM_ATTEMPTS = 3;
+
+    private final IdempotentRequestRepository idempotentRequestRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final Duration ttl;
+    private final long purgeIntervalMillis;
+    private final Map<Scope, Completed> recent;
+    private ScheduledExecutorService purger;
+
+    private record Scope(String key, String operation, String principal) {
+    }
+
+    private record Completed(String fingerprint, int statusCode, String body, Instant expiresAt) {
+    }
+
+    public IdempotencyStore(IdempotentRequestRepository idempotentRequestRepository,
+                            PlatformTransactionManager transactionManager,
+                            ObjectMapper objectMapper,
+                            @Value("${application.idempotency.enabled:true}") boolean enabled,
+                            @Value("${application.idempotency.ttl-ms:86400000}") long ttlMillis,
+                            @Value("${application.idempotency.purge-interval-ms:600000}") long purgeIntervalMillis,
+                            @Value("${application.idempotency.maximum-size:10000}") int maximumSize) {
+        this.idempotentRequestRepository = idempotentRequestRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.ttl = Duration.ofMillis(ttlMillis);
+        this.purgeIntervalMillis = purgeIntervalMillis;
+        this.recent = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Scope, Completed> eldest) {
+                return size() > maximumSize;
+            }
+        };
+    }
+
+    /**
+     * Runs the action unless a request with the same key, operation and principal ran before, whose response is
+     * returned instead with the {@code Idempotent-Replayed} header. Without a key the action simply runs
+     */
+    public <T> ResponseEntity<T> execute(String key, String operation, Object request, Class<T> responseType,
+                                         Supplier<ResponseEntity<T>> action) {
+        if (!enabled || key == null) {
+            return action.get();
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException(HEADER + " must be between 1 and " + MAX_KEY_LENGTH + " characters");
+        }
+
+        Scope scope = new Scope(key, operation, currentPrincipal());
+        String fingerprint = fingerprint(request);
+        Completed completed = recent(scope);
+        if (completed == null) {
+            completed = claim(scope, fingerprint);
+        }
+        if (completed != null) {
+            return replay(scope, completed, fingerprint, responseType);
+        }
+
+        ResponseEntity<T> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            release(scope);
+            throw e;
+        }
+        complete(scope, fingerprint, response);
+        return response;
+    }
+
+    /**
+     * Deletes the expired responses and claims, returning how many rows were deleted
+     */
+    public int purge() {
+        Instant now = Instant.now();
+        synchronized (recent) {
+            recent.values().removeIf(completed -> !completed.expiresAt().isAfter(now));
+        }
+        return transactionTemplate.execute(status -> idempotentRequestRepository.deleteExpired(now));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startPurging() {
+        if (!enabled) {
+            return;
+        }
+        purger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "idempotency-purge");
+            thread.setDaemon(true);
+            return thread;
+        });
+        purger.scheduleWithFixedDelay(this::scheduledPurge, purgeIntervalMillis, purgeIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (purger != null) {
+            purger.shutdown();
+        }
+    }
+
+    private void scheduledPurge() {
+        try {
+            int purged = purge();
+            log.debug("Purged {} expired idempotent requests", purged);
+        } catch (DataAccessException e) {
+            log.warn("Could not purge expired idempotent requests, retrying on next purge", e);
+        }
+    }
+
+    /**
+     * Claims the key for this request, returning null once claimed or the response of the request that claimed
+     * it before. Only expired responses and claims are deleted and claimed again
+     */
+    private Completed claim(Scope scope, String fingerprint) {
+        for (int attempt = 0; attempt < CLAIM_ATTEMPTS; attempt++) {
+            Instant now = Instant.now();
+            try {
+                transactionTemplate.executeWithoutResult(status -> idempotentRequestRepository.saveAndFlush(
+                        IdempotentRequest.builder()
+                                .idempotencyKey(scope.key())
+                                .operation(scope.operation())
+                                .principal(scope.principal())
+                                .fingerprint(fingerprint)
+                                .createdAt(now)
+                                .expiresAt(now.plus(ttl))
+                                .build()));
+                return null;
+            } catch (DataIntegrityViolationException e) {
+                // Claimed before, by an earlier attempt of this request or by another request using the key
+            }
+
+            Optional<IdempotentRequest> claimed = transactionTemplate.execute(status -> find(scope));
+            if (claimed.isEmpty()) {
+                continue;
+            }
+            IdempotentRequest existing = claimed.get();
+            if (existing.getExpiresAt().isAfter(now)) {
+                if (!existing.isCompleted()) {
+                    throw new IdempotencyKeyConflictException("A request with this " + HEADER
+                            + " is still being processed or ended without storing its response");
+                }
+                Completed completed = new Completed(existing.getFingerprint(), existing.getStatusCode(),
+                        existing.getResponseBody(), existing.getExpiresAt());
+                remember(scope, completed);
+                return completed;
+            }
+            log.info("Taking over the expired {} of operation {}", HEADER, scope.operation());
+            transactionTemplate.executeWithoutResult(status -> idempotentRequestRepository.deleteById(existing.getId()));
+        }
+        throw new IdempotencyKeyConflictException("A request with this " + HEADER + " is still being processed");
+    }
+
+    private <T> ResponseEntity<T> replay(Scope scope, Completed completed, String fingerprint, Class<T> responseType) {
+        if (!completed.fingerprint().equals(fingerprint)) {
+            throw new IdempotencyKeyConflictException("This " + HEADER + " was already used for a different request");
+        }
+        log.debug("Replaying the response of operation {} for {}", scope.operation(), scope.principal());
+        try {
+            T body = completed.body() == null ? null : objectMapper.readValue(completed.body(), responseType);
+            return ResponseEntity.status(completed.statusCode()).header(REPLAYED_HEADER, "true").body(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not read the stored response of operation " + scope.operation(), e);
+        }
+    }
+
+    /**
+     * Stores the response with the claim. A response that cannot be stored leaves the claim in place until it
+     * expires, so that retries are refused until then rather than run twice
+     */
+    private void complete(Scope scope, String fingerprint, ResponseEntity<?> response) {
+        try {
+            String body = response.getBody() == null ? null : objectMapper.writeValueAsString(response.getBody());
+            int statusCode = response.getStatusCode().value();
+            Instant expiresAt = Instant.now().plus(ttl);
+            transactionTemplate.executeWithoutResult(status -> find(scope).ifPresent(claimed -> {
+                claimed.setStatusCode(statusCode);
+                claimed.setResponseBody(body);
+                claimed.setExpiresAt(expiresAt);
+            }));
+            remember(scope, new Completed(fingerprint, statusCode, body, expiresAt));
+        } catch (JsonProcessingException | DataAccessException e) {
+            log.warn("Could not store the response of operation {} for {}", scope.operation(), scope.principal(), e);
+        }
+    }
+
+    private void release(Scope scope) {
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    find(scope).ifPresent(idempotentRequestRepository::delete));
+        } catch (DataAccessException e) {
+            log.warn("Could not release the {} of operation {}, it is released on timeout", HEADER, scope.operation(), e);
+        }
+    }
+
+    private Optional<IdempotentRequest> find(Scope scope) {
+        return idempotentRequestRepository.findByIdempotencyKeyAndOperationAndPrincipal(
+                scope.key(), scope.operation(), scope.principal());
+    }
+
+    private Completed recent(Scope scope) {
+        synchronized (recent) {
+            Completed completed = recent.get(scope);
+            if (completed != null && !completed.expiresAt().isAfter(Instant.now())) {
+                recent.remove(scope);
+                return null;
+            }
+            return completed;
+        }
+    }
+
+    private void remember(Scope scope, Completed completed) {
+        synchronized (recent) {
+            recent.put(scope, completed);
+        }
+    }
+
+    private String fingerprint(Object request) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256")
+                    .digest(objectMapper.writeValueAsString(request).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Could not fingerprint the request", e);
+        }
+    }
+
+    private static String currentPrincipal() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication == null ? "anonymous" : authentication.getName();
+    }
+}
@@ -0,0 +1,64 @@
+package com.getir.aau.librarymanagementsystem.idempotency;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.Instant;
+
+/**
+ * A request sent with an {@code Idempotency-Key} header, claimed while it runs and holding its response once
+ * it completed
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "idempotent_requests",
+        uniqueConstraints = @UniqueConstraint(name = "uk_idempotent_requests_key",
+                columnNames = {"idempotency_key", "operation", "principal"}),
+        indexes = @Index(name = "idx_idempotent_requests_expires_at", columnList = "expires_at"))
+public class IdempotentRequest {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "idempotency_key", nullable = false)
+    private String idempotencyKey;
+
+    @Column(name = "operation", nullable = false, length = 64)
+    private String operation;
+
+    @Column(name = "principal", nullable = false)
+    private String principal;
+
+    /**
+     * SHA-256 of the request, telling a retry from another request reusing the key
+     */
+    @Column(name = "fingerprint", nullable = false, length = 64)
+    private String fingerprint;
+
+    /**
+     * Null while the request runs
+     */
+    @Column(name = "status_code")
+    private Integer statusCode;
+
+    @JdbcTypeCode(SqlTypes.LONG32VARCHAR)
+    @Column(name = "response_body")
+    private String responseBody;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    public boolean isCompleted() {
+        return statusCode != null;
+    }
+}
@@ -0,0 +1,21 @@
+package com.getir.aau.librarymanagementsystem.idempotency;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Optional;
+
+@Repository
+public interface IdempotentRequestRepository extends JpaRepository<IdempotentRequest, Long> {
+
+    Optional<IdempotentRequest> findByIdempotencyKeyAndOperationAndPrincipal(String idempotencyKey, String operation,
+                                                                            String principal);
+
+    @Modifying
+    @Query("DELETE FROM IdempotentRequest r WHERE r.expiresAt < :now")
+    int deleteExpired(@Param("now") Instant now);
+}
@@ -0,0 +1,56 @@
+package com.getir.aau.librarymanagementsystem.initializer;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Moves the pooled id sequences of borrow records and items past the ids already in their tables.
+ * <p>
+ * Both tables were filled by identity columns before their ids came from sequences, and the sequences Hibernate
+ * creates for an existing table start at one. Each sequence is set so that its next block of fifty ids starts
+ * after the largest id in use, unless it is already further ahead. Only needed on Postgres, other databases in
+ * use are created empty.
+ */
+@Slf4j
+@Order(0)
+@Component
+@RequiredArgsConstructor
+public class SequenceInitializer implements CommandLineRunner {
+
+    private static final String POSTGRES = "PostgreSQL";
+    private static final int ALLOCATION_SIZE = 50;
+    private static final Map<String, String> SEQUENCES = Map.of(
+            "borrow_records_seq", "borrow_records",
+            "borrow_items_seq", "borrow_items");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void run(String... args) {
+        String database = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+        if (!POSTGRES.equals(database)) {
+            return;
+        }
+
+        SEQUENCES.forEach((sequence, table) -> {
+            try {
+                jdbcTemplate.queryForObject(
+                        "SELECT setval('" + sequence + "', GREATEST((SELECT last_value FROM " + sequence + "), " +
+                                "(SELECT COALESCE(MAX(id), 0) FROM " + table + ") + " + ALLOCATION_SIZE + "))",
+                        Long.class);
+                log.info("Sequence {} synchronized with table {}", sequence, table);
+            } catch (DataAccessException e) {
+                log.warn("Could not synchronize sequence {} with table {}: {}", sequence, table, e.getMessage());
+            }
+        });
+    }
+}
@@ -0,0 +1,12 @@
+package com.getir.aau.librarymanagementsystem.model.dto.request;
+
+/**
+ * Represents a faceted catalog query, every given facet value narrows the keyword matches.
+ */
+public record BookFacetRequestDto(
+        String keyword,
+        String category,
+        String author,
+        String genre,
+        Boolean available
+) {}
@@ -0,0 +1,17 @@
+package com.getir.aau.librarymanagementsystem.model.dto.request;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+/**
+ * Represents a request to borrow books for many users at once, such as a class set at a checkout desk
+ */
+public record BulkBorrowRequestDto(
+
+        @NotEmpty(message = "At least one borrow is required")
+        @Size(max = 500, message = "At most 500 borrows can be made at once")
+        List<@Valid BorrowRecordRequestDto> borrows
+) {}
@@ -0,0 +1,28 @@
+package com.getir.aau.librarymanagementsystem.model.dto.request;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+/**
+ * Represents a request to return many borrowed items at once, by item ID or by the ID of the book scanned, which
+ * returns its unreturned item due first. A book scanned several times returns as many items
+ */
+public record BulkReturnRequestDto(
+
+        @Size(max = 5000, message = "At most 5000 items can be returned at once")
+        List<@NotNull Long> itemIds,
+
+        @Size(max = 5000, message = "At most 5000 books can be returned at once")
+        List<@NotNull Long> bookIds
+) {
+
+    public List<Long> itemIds() {
+        return itemIds == null ? List.of() : itemIds;
+    }
+
+    public List<Long> bookIds() {
+        return bookIds == null ? List.of() : bookIds;
+    }
+}
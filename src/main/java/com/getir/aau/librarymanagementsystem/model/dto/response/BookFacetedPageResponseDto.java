@@ -0,0 +1,15 @@
+package com.getir.aau.librarymanagementsystem.model.dto.response;
+
+import java.util.Map;
+
+/**
+ * Represents a page of books together with the facet counts of the whole result, each facet maps its values
+ * to the number of matching books, most frequent first.
+ */
+public record BookFacetedPageResponseDto(
+        BookPageResponseDto page,
+        Map<String, Long> categories,
+        Map<String, Long> authors,
+        Map<String, Long> genres,
+        Map<String, Long> availability
+) {}
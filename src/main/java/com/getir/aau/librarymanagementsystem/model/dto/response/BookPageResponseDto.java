@@ -1,9 +1,25 @@
 package com.getir.aau.librarymanagementsystem.model.dto.response;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import java.util.List;
 
+/**
+ * Represents a page of books. Pages read with a cursor carry the {@code nextCursor} continuing after them
+ * and skip the count query, their {@code totalPages} and {@code totalItems} are {@code -1}.
+ */
 public record BookPageResponseDto(
         List<BookResponseDto> books,
         int totalPages,
-        long totalItems
-) {}
\ No newline at end of file
+        long totalItems,
+        @JsonInclude(JsonInclude.Include.NON_NULL) String nextCursor
+) {
+
+    public BookPageResponseDto(List<BookResponseDto> books, int totalPages, long totalItems) {
+        this(books, totalPages, totalItems, null);
+    }
+
+    public static BookPageResponseDto ofWindow(List<BookResponseDto> books, String nextCursor) {
+        return new BookPageResponseDto(books, -1, -1, nextCursor);
+    }
+}
@@ -1,9 +1,25 @@
 package com.getir.aau.librarymanagementsystem.model.dto.response;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import java.util.List;
 
+/**
+ * Represents a page of borrow items. Pages read with a cursor carry the {@code nextCursor} continuing after them
+ * and skip the count query, their {@code totalPages} and {@code totalItems} are {@code -1}.
+ */
 public record BorrowItemPageResponseDto(
         List<BorrowItemResponseDto> items,
         int totalPages,
-        long totalItems
-) {}
\ No newline at end of file
+        long totalItems,
+        @JsonInclude(JsonInclude.Include.NON_NULL) String nextCursor
+) {
+
+    public BorrowItemPageResponseDto(List<BorrowItemResponseDto> items, int totalPages, long totalItems) {
+        this(items, totalPages, totalItems, null);
+    }
+
+    public static BorrowItemPageResponseDto ofWindow(List<BorrowItemResponseDto> items, String nextCursor) {
+        return new BorrowItemPageResponseDto(items, -1, -1, nextCursor);
+    }
+}
@@ -1,9 +1,25 @@
 package com.getir.aau.librarymanagementsystem.model.dto.response;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import java.util.List;
 
+/**
+ * Represents a page of borrow records. Pages read with a cursor carry the {@code nextCursor} continuing after them
+ * and skip the count query, their {@code totalPages} and {@code totalItems} are {@code -1}.
+ */
 public record BorrowRecordPageResponseDto(
         List<BorrowRecordResponseDto> items,
         int totalPages,
-        long totalItems
-) {}
\ No newline at end of file
+        long totalItems,
+        @JsonInclude(JsonInclude.Include.NON_NULL) String nextCursor
+) {
+
+    public BorrowRecordPageResponseDto(List<BorrowRecordResponseDto> items, int totalPages, long totalItems) {
+        this(items, totalPages, totalItems, null);
+    }
+
+    public static BorrowRecordPageResponseDto ofWindow(List<BorrowRecordResponseDto> items, String nextCursor) {
+        return new BorrowRecordPageResponseDto(items, -1, -1, nextCursor);
+    }
+}
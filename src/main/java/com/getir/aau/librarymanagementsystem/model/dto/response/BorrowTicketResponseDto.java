@@ -0,0 +1,23 @@
+package com.getir.aau.librarymanagementsystem.model.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Represents the state of a borrow queued for asynchronous processing, with the created record once borrowed or
+ * the reason none was created once rejected
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BorrowTicketResponseDto(
+        String ticketId,
+        Status status,
+        BorrowRecordResponseDto record,
+        String error
+) {
+
+    public enum Status {
+        QUEUED,
+        PROCESSING,
+        BORROWED,
+        REJECTED
+    }
+}
@@ -0,0 +1,18 @@
+package com.getir.aau.librarymanagementsystem.model.dto.response;
+
+import java.util.List;
+
+/**
+ * Represents the outcome of a bulk borrow, one result per requested borrow in request order
+ */
+public record BulkBorrowResponseDto(
+        int borrowed,
+        int rejected,
+        List<BulkBorrowResultDto> results
+) {
+
+    public static BulkBorrowResponseDto of(List<BulkBorrowResultDto> results) {
+        int borrowed = (int) results.stream().filter(BulkBorrowResultDto::borrowed).count();
+        return new BulkBorrowResponseDto(borrowed, results.size() - borrowed, results);
+    }
+}
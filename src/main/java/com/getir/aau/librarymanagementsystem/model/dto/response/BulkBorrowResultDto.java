@@ -0,0 +1,22 @@
+package com.getir.aau.librarymanagementsystem.model.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Represents the outcome of one borrow of a bulk request, the created record or the reason none was created
+ */
+public record BulkBorrowResultDto(
+        Long userId,
+        boolean borrowed,
+        @JsonInclude(JsonInclude.Include.NON_NULL) BorrowRecordResponseDto record,
+        @JsonInclude(JsonInclude.Include.NON_NULL) String error
+) {
+
+    public static BulkBorrowResultDto borrowed(BorrowRecordResponseDto record) {
+        return new BulkBorrowResultDto(record.userId(), true, record, null);
+    }
+
+    public static BulkBorrowResultDto rejected(Long userId, String error) {
+        return new BulkBorrowResultDto(userId, false, null, error);
+    }
+}
@@ -0,0 +1,19 @@
+package com.getir.aau.librarymanagementsystem.model.dto.response;
+
+import java.util.List;
+
+/**
+ * Represents the outcome of a bulk return, one result per requested item and then per scanned book, in request
+ * order
+ */
+public record BulkReturnResponseDto(
+        int returned,
+        int rejected,
+        List<BulkReturnResultDto> results
+) {
+
+    public static BulkReturnResponseDto of(List<BulkReturnResultDto> results) {
+        int returned = (int) results.stream().filter(BulkReturnResultDto::returned).count();
+        return new BulkReturnResponseDto(returned, results.size() - returned, results);
+    }
+}
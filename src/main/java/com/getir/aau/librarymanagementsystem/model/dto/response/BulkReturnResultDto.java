@@ -0,0 +1,23 @@
+package com.getir.aau.librarymanagementsystem.model.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Represents the outcome of one item or scanned book of a bulk return, the item returned or the reason none was
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BulkReturnResultDto(
+        Long itemId,
+        Long bookId,
+        boolean returned,
+        String error
+) {
+
+    public static BulkReturnResultDto returned(Long itemId, Long bookId) {
+        return new BulkReturnResultDto(itemId, bookId, true, null);
+    }
+
+    public static BulkReturnResultDto rejected(Long itemId, Long bookId, String error) {
+        return new BulkReturnResultDto(itemId, bookId, false, error);
+    }
+}
@@ -0,0 +1,16 @@
+package com.getir.aau.librarymanagementsystem.model.dto.response;
+
+/**
+ * Represents the counters of a cache since startup. In the book query cache the weight of a cached result is one
+ * plus the number of books it holds, in the user details cache every user weighs one
+ */
+public record CacheStatsResponseDto(
+        long hits,
+        long misses,
+        double hitRate,
+        long evictions,
+        long invalidations,
+        int entries,
+        long weight,
+        long maximumWeight
+) {}
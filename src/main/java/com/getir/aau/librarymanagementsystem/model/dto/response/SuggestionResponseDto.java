@@ -0,0 +1,12 @@
+package com.getir.aau.librarymanagementsystem.model.dto.response;
+
+/**
+ * Represents an autocomplete suggestion, a book title (id of the book) or an author name (id of the author),
+ * with the number of borrows it is ranked by.
+ */
+public record SuggestionResponseDto(
+        String text,
+        String type,
+        Long id,
+        long popularity
+) {}
@@ -2,6 +2,7 @@ package com.getir.aau.librarymanagementsystem.model.entity;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.time.LocalDate;
 
@@ -9,12 +10,16 @@ import java.time.LocalDate;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "borrow_items")
+@Table(name = "borrow_items", indexes = {
+        // Serves the eligibility summary of a user from the index alone, and its prefix the active records of a user
+        @Index(name = "idx_borrow_items_user_returned_due", columnList = "user_id, returned, due_date")
+})
 @Builder
 public class BorrowItem {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "borrow_items_seq")
+    @SequenceGenerator(name = "borrow_items_seq", sequenceName = "borrow_items_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(optional = false, fetch = FetchType.LAZY)
@@ -42,6 +47,15 @@ public class BorrowItem {
     @Column(name = "returned", nullable = false)
     private boolean returned;
 
+    /**
+     * Whether the copies of the book count this item as it stands, false while a borrow or return taken by the
+     * inventory ledger waits to be written to the book
+     */
+    @Builder.Default
+    @ColumnDefault("true")
+    @Column(name = "copies_settled", nullable = false)
+    private boolean copiesSettled = true;
+
     public void markAsReturned() {
         this.returnDate = LocalDate.now();
         this.book.returnBook();
@@ -19,7 +19,8 @@ import java.util.List;
 public class BorrowRecord {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "borrow_records_seq")
+    @SequenceGenerator(name = "borrow_records_seq", sequenceName = "borrow_records_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(optional = false, fetch = FetchType.LAZY)
@@ -14,6 +14,7 @@ import org.springframework.data.domain.Page;
 public interface  BookMapper {
 
     @Mapping(target = "id", ignore = true)
+    @Mapping(target = "version", ignore = true)
     @Mapping(target = "description", source = "dto.description")
     @Mapping(target = "available", expression = "java(dto.numberOfCopies() > 0)")
     Book toEntity(BookRequestDto dto, Author author, Category category);
@@ -25,5 +26,6 @@ public interface  BookMapper {
     @Mapping(target = "books", source = "page.content")
     @Mapping(target = "totalPages", source = "page.totalPages")
     @Mapping(target = "totalItems", source = "page.totalElements")
+    @Mapping(target = "nextCursor", ignore = true)
     BookPageResponseDto toPageDto(Page<BookResponseDto> page);
 }
\ No newline at end of file
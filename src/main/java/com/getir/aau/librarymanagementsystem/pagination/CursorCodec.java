@@ -0,0 +1,124 @@
+package com.getir.aau.librarymanagementsystem.pagination;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Converts keyset scroll positions to and from the opaque continuation tokens handed out to API clients.
+ * <p>
+ * A token is the URL-safe Base64 form of the ordered sort keys of the last element of a window, each key
+ * carrying its type so that it binds to the keyset predicate with the type of the entity attribute.
+ * Every token also carries the scope and sort of the codec issuing it, and is rejected by any other codec, so a
+ * token handed out by one endpoint cannot position a scroll of another. A blank token starts from the beginning.
+ */
+public final class CursorCodec {
+
+    public static final int MAX_SIZE = 100;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final TypeReference<List<List<String>>> ENTRIES = new TypeReference<>() {};
+
+    private final String binding;
+
+    private CursorCodec(String scope, Sort sort) {
+        this.binding = scope + "|" + sort;
+    }
+
+    /**
+     * Codec of the tokens of one scroll endpoint, ordered by the given sort
+     */
+    public static CursorCodec of(String scope, Sort sort) {
+        return new CursorCodec(scope, sort);
+    }
+
+    /**
+     * Limit of a window of the given size, rejecting sizes outside 1 to {@value #MAX_SIZE}
+     */
+    public static Limit limit(int size) {
+        if (size < 1 || size > MAX_SIZE) {
+            throw new IllegalArgumentException("Window size must be between 1 and " + MAX_SIZE);
+        }
+        return Limit.of(size);
+    }
+
+    private enum KeyType {
+        LONG(Long.class, Long::valueOf),
+        INTEGER(Integer.class, Integer::valueOf),
+        STRING(String.class, value -> value),
+        DATE(LocalDate.class, LocalDate::parse);
+
+        private final Class<?> type;
+        private final Function<String, Object> parser;
+
+        KeyType(Class<?> type, Function<String, Object> parser) {
+            this.type = type;
+            this.parser = parser;
+        }
+
+        static KeyType of(Object value) {
+            return Arrays.stream(values())
+                    .filter(keyType -> keyType.type.isInstance(value))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalStateException("Unsupported keyset value type: " + value.getClass()));
+        }
+    }
+
+    public ScrollPosition decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return ScrollPosition.keyset();
+        }
+
+        List<List<String>> entries;
+        try {
+            entries = MAPPER.readValue(Base64.getUrlDecoder().decode(cursor), ENTRIES);
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        if (entries.isEmpty() || entries.getFirst().size() != 1 || !binding.equals(entries.getFirst().getFirst())) {
+            throw new IllegalArgumentException("Cursor was not issued for this endpoint and sort: " + cursor);
+        }
+
+        try {
+            Map<String, Object> keys = new LinkedHashMap<>();
+            for (List<String> entry : entries.subList(1, entries.size())) {
+                keys.put(entry.get(0), KeyType.valueOf(entry.get(1)).parser.apply(entry.get(2)));
+            }
+            return ScrollPosition.forward(keys);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+
+    public String encode(KeysetScrollPosition position) {
+        List<List<String>> entries = new ArrayList<>();
+        entries.add(List.of(binding));
+        position.getKeys().forEach((key, value) ->
+                entries.add(List.of(key, KeyType.of(value).name(), value.toString())));
+
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(MAPPER.writeValueAsBytes(entries));
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not encode cursor", e);
+        }
+    }
+
+    /**
+     * Token continuing after the last element of the window, {@code null} once the window is the last one
+     */
+    public String nextCursor(Window<?> window) {
+        if (window.isEmpty() || !window.hasNext()) {
+            return null;
+        }
+        return encode((KeysetScrollPosition) window.positionAt(window.size() - 1));
+    }
+}
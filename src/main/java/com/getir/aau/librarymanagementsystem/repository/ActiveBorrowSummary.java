@@ -0,0 +1,17 @@
+package com.getir.aau.librarymanagementsystem.repository;
+
+import java.time.LocalDate;
+
+/**
+ * Number of unreturned items of a user and the earliest of their due dates, null when there are none
+ */
+public record ActiveBorrowSummary(Long userId, Long activeCount, LocalDate earliestDueDate) {
+
+    public static ActiveBorrowSummary none(Long userId) {
+        return new ActiveBorrowSummary(userId, 0L, null);
+    }
+
+    public boolean hasOverdue(LocalDate today) {
+        return earliestDueDate != null && earliestDueDate.isBefore(today);
+    }
+}
@@ -0,0 +1,42 @@
+package com.getir.aau.librarymanagementsystem.repository;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.util.Map;
+
+/**
+ * Postgres full-text queries over the {@code search_vector} column maintained by
+ * {@link com.getir.aau.librarymanagementsystem.search.FullTextSearch}
+ */
+public interface BookFullTextRepository {
+
+    /**
+     * Columns of the book properties full-text results can be sorted by. Sort properties are concatenated into
+     * the SQL, so only these mapped columns are accepted
+     */
+    Map<String, String> SORTABLE_COLUMNS = Map.of(
+            "id", "b.id",
+            "title", "b.title",
+            "isbn", "b.isbn",
+            "genre", "b.genre",
+            "description", "b.description",
+            "publicationDate", "b.publication_date",
+            "numberOfCopies", "b.number_of_copies",
+            "available", "b.available"
+    );
+
+    /**
+     * Whether {@link #searchIdsByFullText} can order by the given sort
+     */
+    static boolean supportsSort(Sort sort) {
+        return sort.stream().allMatch(order -> SORTABLE_COLUMNS.containsKey(order.getProperty()));
+    }
+
+    /**
+     * Finds the ids of the books matching the {@code tsquery}, by the requested sort and then by descending
+     * {@code ts_rank}
+     */
+    Page<Long> searchIdsByFullText(String tsQuery, Pageable pageable);
+}
@@ -0,0 +1,49 @@
+package com.getir.aau.librarymanagementsystem.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import java.util.List;
+
+public class BookFullTextRepositoryImpl implements BookFullTextRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Page<Long> searchIdsByFullText(String tsQuery, Pageable pageable) {
+        Query query = entityManager.createNativeQuery(
+                "SELECT b.id FROM books b, to_tsquery('simple', :query) q WHERE b.search_vector @@ q ORDER BY "
+                        + orderBy(pageable.getSort()) + "ts_rank(b.search_vector, q) DESC, b.id")
+                .setParameter("query", tsQuery);
+        if (pageable.isPaged()) {
+            query.setFirstResult((int) pageable.getOffset());
+            query.setMaxResults(pageable.getPageSize());
+        }
+
+        List<Long> ids = ((List<?>) query.getResultList()).stream()
+                .map(id -> ((Number) id).longValue())
+                .toList();
+        return PageableExecutionUtils.getPage(ids, pageable, () -> ((Number) entityManager.createNativeQuery(
+                        "SELECT count(*) FROM books b WHERE b.search_vector @@ to_tsquery('simple', :query)")
+                .setParameter("query", tsQuery)
+                .getSingleResult()).longValue());
+    }
+
+    private static String orderBy(Sort sort) {
+        StringBuilder orderBy = new StringBuilder();
+        for (Sort.Order order : sort) {
+            String column = SORTABLE_COLUMNS.get(order.getProperty());
+            if (column == null) {
+                throw new IllegalArgumentException("Unsupported sort property: " + order.getProperty());
+            }
+            orderBy.append(column).append(order.isDescending() ? " DESC, " : " ASC, ");
+        }
+        return orderBy.toString();
+    }
+}
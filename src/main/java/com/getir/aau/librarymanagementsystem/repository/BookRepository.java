@@ -1,50 +1,170 @@
 package com.getir.aau.librarymanagementsystem.repository;
 
+import com.getir.aau.librarymanagementsystem.model.dto.response.BookResponseDto;
 import com.getir.aau.librarymanagementsystem.model.entity.Book;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import com.getir.aau.librarymanagementsystem.search.BookDocument;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.*;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface BookRepository extends JpaRepository<Book, Long> {
+public interface BookRepository extends JpaRepository<Book, Long>, BookFullTextRepository {
 
     Optional<Book> findByIsbn(String isbn);
     boolean existsByIsbnIgnoreCase(String isbn);
 
-    @Query("SELECT b FROM Book b WHERE LOWER(b.title) LIKE LOWER(CONCAT('%', :title, '%'))")
-    Page<Book> findByTitleContainingIgnoreCase(@Param("title") String title, Pageable pageable);
+    /**
+     * Selects a page of books straight into response DTOs, joining the author and category once instead of
+     * loading them lazily per book
+     */
+    String SELECT_DTO = """
+        SELECT new com.getir.aau.librarymanagementsystem.model.dto.response.BookResponseDto(
+            b.id, b.title, b.isbn, b.description, b.publicationDate, b.genre, b.numberOfCopies, b.available,
+            a.name, c.name)
+        FROM Book b JOIN b.author a JOIN b.category c
+        """;
+    String SELECT_COUNT = "SELECT COUNT(b) FROM Book b JOIN b.author a JOIN b.category c ";
 
-    @Query("SELECT b FROM Book b WHERE b.author.id = :authorId")
-    Page<Book> findByAuthorId(@Param("authorId") Long authorId, Pageable pageable);
+    @Query(value = SELECT_DTO + "WHERE LOWER(b.title) LIKE LOWER(CONCAT('%', :title, '%'))",
+            countQuery = SELECT_COUNT + "WHERE LOWER(b.title) LIKE LOWER(CONCAT('%', :title, '%'))")
+    Page<BookResponseDto> findByTitleContainingIgnoreCase(@Param("title") String title, Pageable pageable);
 
-    @Query("SELECT b FROM Book b JOIN b.author a WHERE LOWER(a.name) LIKE LOWER(CONCAT('%', :authorName, '%'))")
-    Page<Book> findByAuthorNameContainingIgnoreCase(@Param("authorName") String authorName, Pageable pageable);
+    @Query(value = SELECT_DTO + "WHERE a.id = :authorId",
+            countQuery = SELECT_COUNT + "WHERE a.id = :authorId")
+    Page<BookResponseDto> findByAuthorId(@Param("authorId") Long authorId, Pageable pageable);
 
-    @Query("SELECT b FROM Book b WHERE b.category.id = :categoryId")
-    Page<Book> findByCategoryId(@Param("categoryId") Long categoryId, Pageable pageable);
+    @Query(value = SELECT_DTO + "WHERE LOWER(a.name) LIKE LOWER(CONCAT('%', :authorName, '%'))",
+            countQuery = SELECT_COUNT + "WHERE LOWER(a.name) LIKE LOWER(CONCAT('%', :authorName, '%'))")
+    Page<BookResponseDto> findByAuthorNameContainingIgnoreCase(@Param("authorName") String authorName, Pageable pageable);
 
-    @Query("SELECT b FROM Book b WHERE LOWER(b.genre) LIKE LOWER(CONCAT('%', :genre, '%'))")
-    Page<Book> findByGenreContainingIgnoreCase(@Param("genre") String genre, Pageable pageable);
+    @Query(value = SELECT_DTO + "WHERE c.id = :categoryId",
+            countQuery = SELECT_COUNT + "WHERE c.id = :categoryId")
+    Page<BookResponseDto> findByCategoryId(@Param("categoryId") Long categoryId, Pageable pageable);
 
-    @Query("SELECT b FROM Book b WHERE b.available = true")
-    Page<Book> findAvailable(Pageable pageable);
+    @Query(value = SELECT_DTO + "WHERE LOWER(b.genre) LIKE LOWER(CONCAT('%', :genre, '%'))",
+            countQuery = SELECT_COUNT + "WHERE LOWER(b.genre) LIKE LOWER(CONCAT('%', :genre, '%'))")
+    Page<BookResponseDto> findByGenreContainingIgnoreCase(@Param("genre") String genre, Pageable pageable);
 
-    @Query("SELECT b FROM Book b WHERE b.available = true")
-    Page<Book> findUnavailable(Pageable pageable);
+    @Query(value = SELECT_DTO + "WHERE b.available = true",
+            countQuery = SELECT_COUNT + "WHERE b.available = true")
+    Page<BookResponseDto> findAvailable(Pageable pageable);
 
-    @Query("SELECT DISTINCT b FROM Book b LEFT JOIN b.author a LEFT JOIN b.category c WHERE " +
+    @Query(value = SELECT_DTO + "WHERE b.available = false",
+            countQuery = SELECT_COUNT + "WHERE b.available = false")
+    Page<BookResponseDto> findUnavailable(Pageable pageable);
+
+    @Query(SELECT_DTO + "WHERE b.id IN :ids")
+    List<BookResponseDto> findDtosByIdIn(@Param("ids") Collection<Long> ids);
+
+    @EntityGraph(attributePaths = {"author", "category"})
+    Window<Book> findByAuthorId(Long authorId, ScrollPosition position, Limit limit, Sort sort);
+
+    @EntityGraph(attributePaths = {"author", "category"})
+    Window<Book> findByCategoryId(Long categoryId, ScrollPosition position, Limit limit, Sort sort);
+
+    @EntityGraph(attributePaths = {"author", "category"})
+    Window<Book> findByAvailable(boolean available, ScrollPosition position, Limit limit, Sort sort);
+
+    @Query(value = SELECT_DTO, countQuery = SELECT_COUNT)
+    Page<BookResponseDto> findAllDtos(Pageable pageable);
+
+    /**
+     * Keyword search for the sorts neither the search index nor full-text search can apply, matching the term as
+     * a substring of the searched fields
+     */
+    @Query(value = SELECT_DTO + "WHERE " +
+            "LOWER(b.title) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
+            "LOWER(a.name) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
+            "LOWER(b.isbn) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
+            "LOWER(b.genre) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
+            "LOWER(c.name) LIKE LOWER(CONCAT('%', :searchTerm, '%'))",
+            countQuery = SELECT_COUNT + "WHERE " +
             "LOWER(b.title) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
             "LOWER(a.name) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
             "LOWER(b.isbn) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
             "LOWER(b.genre) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
             "LOWER(c.name) LIKE LOWER(CONCAT('%', :searchTerm, '%'))")
-    Page<Book> searchByKeywords(@Param("searchTerm") String searchTerm, Pageable pageable);
+    Page<BookResponseDto> searchByKeywords(@Param("searchTerm") String searchTerm, Pageable pageable);
+
+    /**
+     * Takes copies of a book in one statement if it has enough left, returning the number of rows updated. The
+     * version is bumped so that entity updates based on the old count fail their optimistic check
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+        UPDATE Book b
+        SET b.numberOfCopies = b.numberOfCopies - :count,
+            b.available = CASE WHEN b.numberOfCopies > :count THEN true ELSE false END,
+            b.version = b.version + 1
+        WHERE b.id = :id AND b.numberOfCopies >= :count
+    """)
+    int decrementCopies(@Param("id") Long id, @Param("count") int count);
+
+    /**
+     * Gives copies of a book back in one statement, returning the number of rows updated
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+        UPDATE Book b
+        SET b.numberOfCopies = b.numberOfCopies + :count,
+            b.available = true,
+            b.version = b.version + 1
+        WHERE b.id = :id
+    """)
+    int incrementCopies(@Param("id") Long id, @Param("count") int count);
+
+    /**
+     * Adds a possibly negative number of copies written behind by the inventory ledger, returning the number of
+     * rows updated
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+        UPDATE Book b
+        SET b.numberOfCopies = b.numberOfCopies + :delta,
+            b.available = CASE WHEN b.numberOfCopies + :delta > 0 THEN true ELSE false END,
+            b.version = b.version + 1
+        WHERE b.id = :id
+    """)
+    int adjustCopies(@Param("id") Long id, @Param("delta") int delta);
+
+    /**
+     * Loads and locks books in id order, so that concurrent callers locking overlapping books cannot deadlock
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM Book b WHERE b.id IN :ids ORDER BY b.id")
+    List<Book> findAllForUpdate(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Reads the copies of a book as they stand once the borrows and returns not yet written to it are, in one
+     * statement so that a concurrent write-behind cannot be counted twice
+     */
+    @Query("""
+        SELECT b.numberOfCopies + COALESCE((
+            SELECT SUM(CASE WHEN i.returned = true THEN 1 ELSE -1 END)
+            FROM BorrowItem i
+            WHERE i.book = b AND i.copiesSettled = false), 0)
+        FROM Book b
+        WHERE b.id = :id
+    """)
+    Optional<Long> findCopiesIncludingUnsettled(@Param("id") Long id);
 
     @Query("SELECT COUNT(b) FROM Book b WHERE b.author.id = :authorId")
     Long countBooksByAuthorId(@Param("authorId") Long authorId);
+
+    @Query("""
+        SELECT new com.getir.aau.librarymanagementsystem.search.BookDocument(
+            b.id, b.title, a.name, b.isbn, b.genre, c.name, b.publicationDate, b.available)
+        FROM Book b JOIN b.author a JOIN b.category c
+    """)
+    List<BookDocument> findAllDocuments();
 }
\ No newline at end of file
@@ -1,29 +1,53 @@
 package com.getir.aau.librarymanagementsystem.repository;
 
 import com.getir.aau.librarymanagementsystem.model.entity.BorrowItem;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import com.getir.aau.librarymanagementsystem.search.BorrowCount;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.*;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface BorrowItemRepository extends JpaRepository<BorrowItem, Long> {
 
+    @EntityGraph(attributePaths = {"book", "user"})
     Page<BorrowItem> findByUserId(Long userId, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"book", "user"})
     List<BorrowItem> findByUserIdAndReturnedFalse(Long userId);
+
+    @EntityGraph(attributePaths = {"book", "user"})
     Page<BorrowItem> findByBookId(Long bookId, Pageable pageable);
 
+    @EntityGraph(attributePaths = {"book", "user"})
+    Window<BorrowItem> findByUserId(Long userId, ScrollPosition position, Limit limit, Sort sort);
+
+    @EntityGraph(attributePaths = {"book", "user"})
+    Window<BorrowItem> findByBookId(Long bookId, ScrollPosition position, Limit limit, Sort sort);
+
+    @EntityGraph(attributePaths = {"book", "user"})
+    Window<BorrowItem> findByReturnedFalseAndDueDateBefore(LocalDate date, ScrollPosition position, Limit limit, Sort sort);
+
+    @EntityGraph(attributePaths = {"book", "user"})
+    Window<BorrowItem> findByBorrowDateBetween(LocalDate startDate, LocalDate endDate, ScrollPosition position, Limit limit, Sort sort);
+
+    @EntityGraph(attributePaths = {"book", "user"})
     @Query("""
         SELECT b FROM BorrowItem b
         WHERE b.returned = false AND b.dueDate < CURRENT_DATE
     """)
     Page<BorrowItem> findOverdueItemsPageable(Pageable pageable);
 
+    @EntityGraph(attributePaths = {"book", "user"})
     @Query("""
         SELECT b FROM BorrowItem b
         WHERE b.borrowDate BETWEEN :startDate AND :endDate
@@ -33,10 +57,120 @@ public interface BorrowItemRepository extends JpaRepository<BorrowItem, Long> {
             @Param("endDate") LocalDate endDate,
             Pageable pageable);
 
+    /**
+     * Marks an item returned in one statement unless it already was, returning the number of rows updated
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+        UPDATE BorrowItem b
+        SET b.returned = true, b.returnDate = :returnDate
+        WHERE b.id = :id AND b.returned = false
+    """)
+    int markReturned(@Param("id") Long id, @Param("returnDate") LocalDate returnDate);
+
+    /**
+     * Marks an item returned like {@link #markReturned} while leaving its copy to the inventory ledger, so the
+     * item stops being settled unless its borrow was not written to the book either
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+        UPDATE BorrowItem b
+        SET b.returned = true, b.returnDate = :returnDate,
+            b.copiesSettled = CASE WHEN b.copiesSettled = true THEN false ELSE true END
+        WHERE b.id = :id AND b.returned = false
+    """)
+    int markReturnedUnsettled(@Param("id") Long id, @Param("returnDate") LocalDate returnDate);
+
+    /**
+     * Loads and locks items so that their returned state cannot change until the transaction ends
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM BorrowItem b WHERE b.id IN :ids ORDER BY b.id")
+    List<BorrowItem> findAllForUpdate(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Loads and locks the unreturned items of books, the ones due first first
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("""
+        SELECT b FROM BorrowItem b
+        WHERE b.book.id IN :bookIds AND b.returned = false
+        ORDER BY b.dueDate, b.id
+    """)
+    List<BorrowItem> findUnreturnedForUpdateByBookIds(@Param("bookIds") Collection<Long> bookIds);
+
+    /**
+     * Marks many items returned in one statement, skipping those already returned, and returns the number of
+     * rows updated
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+        UPDATE BorrowItem b
+        SET b.returned = true, b.returnDate = :returnDate
+        WHERE b.id IN :ids AND b.returned = false
+    """)
+    int markAllReturned(@Param("ids") Collection<Long> ids, @Param("returnDate") LocalDate returnDate);
+
+    /**
+     * Marks many items returned like {@link #markAllReturned} while leaving their copies to the inventory ledger
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+        UPDATE BorrowItem b
+        SET b.returned = true, b.returnDate = :returnDate,
+            b.copiesSettled = CASE WHEN b.copiesSettled = true THEN false ELSE true END
+        WHERE b.id IN :ids AND b.returned = false
+    """)
+    int markAllReturnedUnsettled(@Param("ids") Collection<Long> ids, @Param("returnDate") LocalDate returnDate);
+
+    /**
+     * Locks a batch of the items whose borrow or return is not written to their book yet, oldest first
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<BorrowItem> findByCopiesSettledFalseOrderById(Limit limit);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE BorrowItem b SET b.copiesSettled = true WHERE b.id IN :ids")
+    int markSettled(@Param("ids") Collection<Long> ids);
+
     @Query("""
     SELECT COUNT(b) FROM BorrowItem b
     WHERE b.user.id = :userId AND b.returned = false
 """)
     int countActiveByUserId(@Param("userId") Long userId);
 
-}
\ No newline at end of file
+    /**
+     * Summarizes the unreturned items of many users at once, users without any are left out
+     */
+    @Query("""
+        SELECT new com.getir.aau.librarymanagementsystem.repository.ActiveBorrowSummary(
+            b.user.id, COUNT(b), MIN(b.dueDate))
+        FROM BorrowItem b
+        WHERE b.user.id IN :userIds AND b.returned = false
+        GROUP BY b.user.id
+    """)
+    List<ActiveBorrowSummary> summarizeActiveByUserIds(@Param("userIds") Collection<Long> userIds);
+
+    /**
+     * Summarizes the unreturned items of a user with one aggregate query instead of loading them
+     */
+    default ActiveBorrowSummary summarizeActiveByUserId(Long userId) {
+        return summarizeActiveByUserIds(List.of(userId)).stream()
+                .findFirst()
+                .orElseGet(() -> ActiveBorrowSummary.none(userId));
+    }
+
+    @Query("""
+        SELECT new com.getir.aau.librarymanagementsystem.search.BorrowCount(b.book.id, COUNT(b))
+        FROM BorrowItem b
+        GROUP BY b.book.id
+    """)
+    List<BorrowCount> countBorrowsPerBook();
+
+    @Query("""
+        SELECT new com.getir.aau.librarymanagementsystem.search.BorrowCount(a.id, COUNT(b))
+        FROM BorrowItem b JOIN b.book bk JOIN bk.author a
+        GROUP BY a.id
+    """)
+    List<BorrowCount> countBorrowsPerAuthor();
+}
@@ -1,25 +1,37 @@
 package com.getir.aau.librarymanagementsystem.repository;
 
 import com.getir.aau.librarymanagementsystem.model.entity.BorrowRecord;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.*;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
 
 @Repository
-public interface BorrowRecordRepository extends JpaRepository<BorrowRecord, Long> {
+public interface BorrowRecordRepository extends JpaRepository<BorrowRecord, Long>, JpaSpecificationExecutor<BorrowRecord> {
 
+    @EntityGraph(attributePaths = "user")
     Page<BorrowRecord> findByUserId(Long userId, Pageable pageable);
 
+    @EntityGraph(attributePaths = "user")
     @Query("SELECT br FROM BorrowRecord br ORDER BY br.borrowDate DESC")
     Page<BorrowRecord> findAllOrderByBorrowDateDesc(Pageable pageable);
 
-    @Query("""
+    @Query(value = """
         SELECT br FROM BorrowRecord br
+        JOIN FETCH br.user u
+        WHERE (:email IS NULL OR u.email LIKE %:email%)
+        AND (:startDate IS NULL OR br.borrowDate >= :startDate)
+        AND (:endDate IS NULL OR br.borrowDate <= :endDate)
+    """, countQuery = """
+        SELECT COUNT(br) FROM BorrowRecord br
         JOIN br.user u
         WHERE (:email IS NULL OR u.email LIKE %:email%)
         AND (:startDate IS NULL OR br.borrowDate >= :startDate)
@@ -30,4 +42,58 @@ public interface BorrowRecordRepository extends JpaRepository<BorrowRecord, Long
             @Param("startDate") LocalDate startDate,
             @Param("endDate") LocalDate endDate,
             Pageable pageable);
-}
\ No newline at end of file
+
+    /**
+     * Records of a user with at least one unreturned item. The unreturned items of the user are found through the
+     * (user_id, returned) prefix of the borrow item index, so returned history is never read
+     */
+    @EntityGraph(attributePaths = "user")
+    @Query(value = """
+        SELECT br FROM BorrowRecord br
+        WHERE br.user.id = :userId
+        AND EXISTS (SELECT 1 FROM BorrowItem bi
+                    WHERE bi.user.id = :userId AND bi.returned = false AND bi.borrowRecord = br)
+    """, countQuery = """
+        SELECT COUNT(br) FROM BorrowRecord br
+        WHERE br.user.id = :userId
+        AND EXISTS (SELECT 1 FROM BorrowItem bi
+                    WHERE bi.user.id = :userId AND bi.returned = false AND bi.borrowRecord = br)
+    """)
+    Page<BorrowRecord> findActiveByUserId(@Param("userId") Long userId, Pageable pageable);
+
+    /**
+     * Initializes the items of already loaded records along with their books in one statement, which a page
+     * query cannot fetch itself without paging in memory
+     */
+    @Query("SELECT DISTINCT br FROM BorrowRecord br LEFT JOIN FETCH br.items i LEFT JOIN FETCH i.book WHERE br IN :records")
+    List<BorrowRecord> fetchItemsWithBooks(@Param("records") Collection<BorrowRecord> records);
+
+    @EntityGraph(attributePaths = "user")
+    Window<BorrowRecord> findAllBy(ScrollPosition position, Limit limit, Sort sort);
+
+    @EntityGraph(attributePaths = "user")
+    Window<BorrowRecord> findByUserId(Long userId, ScrollPosition position, Limit limit, Sort sort);
+
+    /**
+     * Keyset counterpart of {@link #findBorrowRecordsWithFilters}, null filters are ignored
+     */
+    default Window<BorrowRecord> findBorrowRecordsWithFilters(
+            String email, LocalDate startDate, LocalDate endDate, ScrollPosition position, Limit limit, Sort sort) {
+
+        Specification<BorrowRecord> filters = (root, query, cb) -> {
+            // Scrolling runs no count query, so the user can always be fetched along
+            root.fetch("user");
+            return cb.conjunction();
+        };
+        if (email != null) {
+            filters = filters.and((root, query, cb) -> cb.like(root.join("user").get("email"), "%" + email + "%"));
+        }
+        if (startDate != null) {
+            filters = filters.and((root, query, cb) -> cb.greaterThanOrEqualTo(root.get("borrowDate"), startDate));
+        }
+        if (endDate != null) {
+            filters = filters.and((root, query, cb) -> cb.lessThanOrEqualTo(root.get("borrowDate"), endDate));
+        }
+        return findBy(filters, query -> query.sortBy(sort).limit(limit.max()).scroll(position));
+    }
+}
@@ -0,0 +1,129 @@
+package com.getir.aau.librarymanagementsystem.search;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Burkhard-Keller tree over words under the Levenshtein distance.
+ * <p>
+ * Every child hangs off its parent under its distance to the parent's word, so by the triangle inequality a
+ * lookup within distance {@code n} of a query at distance {@code d} from a node only descends into the children
+ * at distances {@code d - n} to {@code d + n}, which visits a small fraction of the vocabulary for small
+ * {@code n}. Words cannot be removed, {@link FuzzyIndex} keeps removed words as tombstones and rebuilds the tree
+ * once they pile up. Not thread-safe, {@link BookSearchIndex} guards access.
+ */
+final class BkTree {
+
+    private Node root;
+    private int size;
+
+    private static final class Node {
+        private final String word;
+        private Node[] children;
+
+        private Node(String word) {
+            this.word = word;
+        }
+
+        private Node child(int distance) {
+            return children == null || distance >= children.length ? null : children[distance];
+        }
+
+        private void setChild(int distance, Node child) {
+            if (children == null) {
+                children = new Node[Math.max(distance + 1, 4)];
+            } else if (distance >= children.length) {
+                children = Arrays.copyOf(children, Math.max(distance + 1, children.length * 2));
+            }
+            children[distance] = child;
+        }
+    }
+
+    /**
+     * Adds the word unless it is already present
+     */
+    void add(String word) {
+        if (root == null) {
+            root = new Node(word);
+            size++;
+            return;
+        }
+        Node node = root;
+        while (true) {
+            int distance = distance(word, node.word);
+            if (distance == 0) {
+                return;
+            }
+            Node child = node.child(distance);
+            if (child == null) {
+                node.setChild(distance, new Node(word));
+                size++;
+                return;
+            }
+            node = child;
+        }
+    }
+
+    void clear() {
+        root = null;
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Passes every word within {@code maxDistance} edits of the query to the consumer along with its distance
+     */
+    void search(String query, int maxDistance, ObjIntConsumer<String> consumer) {
+        if (root == null) {
+            return;
+        }
+        Deque<Node> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+            int distance = distance(query, node.word);
+            if (distance <= maxDistance) {
+                consumer.accept(node.word, distance);
+            }
+            if (node.children == null) {
+                continue;
+            }
+            int to = Math.min(distance + maxDistance, node.children.length - 1);
+            for (int i = Math.max(distance - maxDistance, 1); i <= to; i++) {
+                if (node.children[i] != null) {
+                    pending.push(node.children[i]);
+                }
+            }
+        }
+    }
+
+    static int distance(String a, String b) {
+        if (a.length() < b.length()) {
+            String shorter = a;
+            a = b;
+            b = shorter;
+        }
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            char c = a.charAt(i - 1);
+            for (int j = 1; j <= b.length(); j++) {
+                int substitution = previous[j - 1] + (c == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+}
@@ -0,0 +1,37 @@
+package com.getir.aau.librarymanagementsystem.search;
+
+import com.getir.aau.librarymanagementsystem.model.entity.Book;
+
+import java.time.LocalDate;
+
+/**
+ * Lightweight, immutable snapshot of the searchable fields of a book kept by {@link BookSearchIndex}
+ */
+public record BookDocument(
+        Long id,
+        String title,
+        String authorName,
+        String isbn,
+        String genre,
+        String categoryName,
+        LocalDate publicationDate,
+        boolean available
+) {
+
+    public static BookDocument from(Book book) {
+        return new BookDocument(
+                book.getId(),
+                book.getTitle(),
+                book.getAuthor().getName(),
+                book.getIsbn(),
+                book.getGenre(),
+                book.getCategory().getName(),
+                book.getPublicationDate(),
+                book.isAvailable()
+        );
+    }
+
+    public BookDocument withAvailable(boolean available) {
+        return new BookDocument(id, title, authorName, isbn, genre, categoryName, publicationDate, available);
+    }
+}
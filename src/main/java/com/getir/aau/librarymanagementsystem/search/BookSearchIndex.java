@@ -0,0 +1,370 @@
+package com.getir.aau.librarymanagementsystem.search;
+
+import com.getir.aau.librarymanagementsystem.model.dto.request.BookFacetRequestDto;
+import com.getir.aau.librarymanagementsystem.repository.BookRepository;
+import com.getir.aau.librarymanagementsystem.search.FacetIndex.Facet;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * In-memory inverted index over the title, author name, ISBN, genre and category name of every book.
+ * <p>
+ * Text is split into lower-cased alphanumeric tokens and every query token is matched as a prefix of the
+ * indexed tokens, all query tokens must match. Title, author name and genre additionally keep a
+ * {@link TrigramIndex} serving the substring finders, title and author name tokens feed a {@link FuzzyIndex}
+ * tolerating typos, and a {@link FacetIndex} counts matches per category, author, genre and availability.
+ * <p>
+ * The index is built from {@link BookRepository} once the application is ready and kept current by
+ * {@code BookServiceImpl} once a create, update or delete commits and by the borrow services when a book runs
+ * out of copies or gets one back.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BookSearchIndex {
+
+    private static final Map<String, Comparator<BookDocument>> SORTABLE_PROPERTIES = Map.of(
+            "id", Comparator.comparing(BookDocument::id),
+            "title", Comparator.comparing(BookDocument::title),
+            "isbn", Comparator.comparing(BookDocument::isbn),
+            "genre", Comparator.comparing(BookDocument::genre),
+            "publicationDate", Comparator.comparing(BookDocument::publicationDate),
+            "author.name", Comparator.comparing(BookDocument::authorName),
+            "category.name", Comparator.comparing(BookDocument::categoryName),
+            "available", Comparator.comparing(BookDocument::available)
+    );
+
+    private final BookRepository bookRepository;
+
+    @Value("${application.search.substring-index.enabled:true}")
+    private boolean substringIndexEnabled = true;
+
+    private final Map<Long, BookDocument> documents = new HashMap<>();
+    private final NavigableMap<String, Set<Long>> postings = new TreeMap<>();
+    private final Map<SubstringField, TrigramIndex> substrings = newSubstringIndexes();
+    private final FacetIndex facets = new FacetIndex();
+    private final FuzzyIndex fuzzy = new FuzzyIndex();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Fields answering the "contains" finders through trigram posting lists
+     */
+    public enum SubstringField {
+        TITLE(BookDocument::title),
+        AUTHOR_NAME(BookDocument::authorName),
+        GENRE(BookDocument::genre);
+
+        private final Function<BookDocument, String> accessor;
+
+        SubstringField(Function<BookDocument, String> accessor) {
+            this.accessor = accessor;
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        List<BookDocument> all = bookRepository.findAllDocuments();
+
+        lock.writeLock().lock();
+        try {
+            documents.clear();
+            postings.clear();
+            substrings.values().forEach(TrigramIndex::clear);
+            facets.clear();
+            fuzzy.clear();
+            all.forEach(this::add);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Book search index built with {} books and {} tokens", all.size(), postings.size());
+    }
+
+    public void index(BookDocument document) {
+        lock.writeLock().lock();
+        try {
+            remove(document.id());
+            add(document);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long bookId) {
+        lock.writeLock().lock();
+        try {
+            BookDocument previous = documents.remove(bookId);
+            if (previous == null) {
+                return;
+            }
+            substrings.values().forEach(trigrams -> trigrams.remove(bookId));
+            facets.remove(previous);
+            fuzzy.remove(bookId, fuzzyTokensOf(previous));
+            for (String token : tokensOf(previous)) {
+                Set<Long> ids = postings.get(token);
+                ids.remove(bookId);
+                if (ids.isEmpty()) {
+                    postings.remove(token);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Records the availability of a book after a borrow or return, its searchable text is unchanged
+     */
+    public void updateAvailability(Long bookId, boolean available) {
+        lock.writeLock().lock();
+        try {
+            BookDocument document = documents.get(bookId);
+            if (document != null && document.available() != available) {
+                documents.put(bookId, document.withAvailable(available));
+                facets.setAvailable(bookId, available);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Whether the index can order results by the given sort, otherwise callers should fall back to the database
+     */
+    public boolean supports(Sort sort) {
+        return sort.stream().allMatch(order -> SORTABLE_PROPERTIES.containsKey(order.getProperty()));
+    }
+
+    /**
+     * Finds the ids of the books matching every token of the search term, a blank term matches all books.
+     */
+    public Page<Long> search(String searchTerm, Pageable pageable) {
+        List<String> queryTokens = tokenize(searchTerm);
+
+        lock.readLock().lock();
+        try {
+            Collection<BookDocument> matches = queryTokens.isEmpty()
+                    ? documents.values()
+                    : match(queryTokens).stream().map(documents::get).toList();
+            return paginate(matches, pageable, BookDocument::id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Whether the search term has no tokens and so matches every book
+     */
+    public static boolean matchesAll(String searchTerm) {
+        return tokenize(searchTerm).isEmpty();
+    }
+
+    /**
+     * Whether the substring finders should be answered by {@link #findContaining}, otherwise callers should
+     * use the database
+     */
+    public boolean supportsSubstringSearch(Sort sort) {
+        return substringIndexEnabled && supports(sort);
+    }
+
+    /**
+     * Finds the ids of the books whose field contains the term ignoring case, the in-memory equivalent of
+     * {@code LOWER(field) LIKE LOWER('%term%')}
+     */
+    public Page<Long> findContaining(SubstringField field, String term, Pageable pageable) {
+        lock.readLock().lock();
+        try {
+            List<BookDocument> matches = substrings.get(field).findContaining(term).stream()
+                    .map(documents::get)
+                    .toList();
+            return paginate(matches, pageable, BookDocument::id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the books matching the keyword and every given facet value, along with the category, author, genre
+     * and availability counts of all of them
+     */
+    public FacetedSearchResult facetedSearch(BookFacetRequestDto request, Pageable pageable) {
+        if (!supports(pageable.getSort())) {
+            throw new IllegalArgumentException("Unsupported sort for faceted search: " + pageable.getSort());
+        }
+        List<String> queryTokens = tokenize(request.keyword());
+
+        lock.readLock().lock();
+        try {
+            BitSet result = queryTokens.isEmpty() ? facets.all() : facets.slotsOf(match(queryTokens));
+            if (request.category() != null) {
+                facets.retain(result, Facet.CATEGORY, request.category());
+            }
+            if (request.author() != null) {
+                facets.retain(result, Facet.AUTHOR, request.author());
+            }
+            if (request.genre() != null) {
+                facets.retain(result, Facet.GENRE, request.genre());
+            }
+            if (request.available() != null) {
+                facets.retainAvailable(result, request.available());
+            }
+
+            List<BookDocument> matches = facets.idsOf(result).stream().map(documents::get).toList();
+            return new FacetedSearchResult(
+                    paginate(matches, pageable, BookDocument::id),
+                    facets.histogram(Facet.CATEGORY, result),
+                    facets.histogram(Facet.AUTHOR, result),
+                    facets.histogram(Facet.GENRE, result),
+                    facets.availabilityHistogram(result)
+            );
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the ids of the books whose title or author name has a token within a few edits of every token of the
+     * term, closest matches first unless the pageable is sorted
+     */
+    public Page<Long> fuzzySearch(String searchTerm, int maxEdits, Pageable pageable) {
+        if (maxEdits < 0 || maxEdits > FuzzyIndex.MAX_EDITS) {
+            throw new IllegalArgumentException("maxEdits must be between 0 and " + FuzzyIndex.MAX_EDITS);
+        }
+        if (!supports(pageable.getSort())) {
+            throw new IllegalArgumentException("Unsupported sort for fuzzy search: " + pageable.getSort());
+        }
+        List<String> queryTokens = tokenize(searchTerm);
+
+        lock.readLock().lock();
+        try {
+            Map<Long, Integer> edits = fuzzy.find(queryTokens, maxEdits);
+            Comparator<BookDocument> comparator = pageable.getSort().isSorted()
+                    ? comparatorFor(pageable.getSort())
+                    : Comparator.<BookDocument>comparingInt(document -> edits.get(document.id()))
+                            .thenComparing(comparatorFor(Sort.unsorted()));
+            List<BookDocument> sorted = edits.keySet().stream().map(documents::get).sorted(comparator).toList();
+            return slice(sorted, pageable, BookDocument::id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    static <T> Page<T> paginate(Collection<BookDocument> matches, Pageable pageable, Function<BookDocument, T> mapper) {
+        Comparator<BookDocument> comparator = comparatorFor(pageable.getSort());
+        return slice(matches.stream().sorted(comparator).toList(), pageable, mapper);
+    }
+
+    private static <T> Page<T> slice(List<BookDocument> sorted, Pageable pageable, Function<BookDocument, T> mapper) {
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(sorted.stream().map(mapper).toList(), pageable, sorted.size());
+        }
+
+        int from = (int) Math.min(pageable.getOffset(), sorted.size());
+        int to = Math.min(from + pageable.getPageSize(), sorted.size());
+        List<T> content = sorted.subList(from, to).stream().map(mapper).toList();
+        return new PageImpl<>(content, pageable, sorted.size());
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        return Arrays.stream(text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+"))
+                .filter(token -> !token.isEmpty())
+                .distinct()
+                .toList();
+    }
+
+    private static Comparator<BookDocument> comparatorFor(Sort sort) {
+        Comparator<BookDocument> comparator = null;
+        for (Sort.Order order : sort) {
+            Comparator<BookDocument> next = SORTABLE_PROPERTIES.get(order.getProperty());
+            if (order.isDescending()) {
+                next = next.reversed();
+            }
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+        }
+        Comparator<BookDocument> byId = SORTABLE_PROPERTIES.get("id");
+        return comparator == null ? byId : comparator.thenComparing(byId);
+    }
+
+    private static Map<SubstringField, TrigramIndex> newSubstringIndexes() {
+        Map<SubstringField, TrigramIndex> indexes = new EnumMap<>(SubstringField.class);
+        for (SubstringField field : SubstringField.values()) {
+            indexes.put(field, new TrigramIndex());
+        }
+        return indexes;
+    }
+
+    private Set<Long> match(List<String> queryTokens) {
+        Set<Long> result = null;
+        for (String queryToken : queryTokens) {
+            Set<Long> ids = new HashSet<>();
+            postings.subMap(queryToken, true, queryToken + Character.MAX_VALUE, true)
+                    .values()
+                    .forEach(ids::addAll);
+
+            if (result == null) {
+                result = ids;
+            } else {
+                result.retainAll(ids);
+            }
+            if (result.isEmpty()) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    private void add(BookDocument document) {
+        documents.put(document.id(), document);
+        facets.add(document);
+        substrings.forEach((field, trigrams) -> trigrams.add(document.id(), field.accessor.apply(document)));
+        fuzzy.add(document.id(), fuzzyTokensOf(document));
+        for (String token : tokensOf(document)) {
+            postings.computeIfAbsent(token, key -> new HashSet<>()).add(document.id());
+        }
+    }
+
+    private static Set<String> fuzzyTokensOf(BookDocument document) {
+        Set<String> tokens = new HashSet<>(tokenize(document.title()));
+        tokens.addAll(tokenize(document.authorName()));
+        return tokens;
+    }
+
+    private static Set<String> tokensOf(BookDocument document) {
+        Set<String> tokens = new HashSet<>();
+        tokens.addAll(tokenize(document.title()));
+        tokens.addAll(tokenize(document.authorName()));
+        tokens.addAll(tokenize(document.isbn()));
+        tokens.addAll(tokenize(document.genre()));
+        tokens.addAll(tokenize(document.categoryName()));
+        if (document.isbn() != null) {
+            // Also index the bare digits so "9780747532699" matches "978-0-7475-3269-9"
+            tokens.add(document.isbn().replaceAll("[^\\p{Alnum}]", "").toLowerCase(Locale.ROOT));
+        }
+        tokens.remove("");
+        return tokens;
+    }
+}
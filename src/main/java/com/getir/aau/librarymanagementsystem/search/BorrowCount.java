@@ -0,0 +1,7 @@
+package com.getir.aau.librarymanagementsystem.search;
+
+/**
+ * Number of times the books of an entity, a book or an author, have been borrowed
+ */
+public record BorrowCount(Long id, Long count) {
+}
@@ -0,0 +1,219 @@
+package com.getir.aau.librarymanagementsystem.search;
+
+import java.util.*;
+import java.util.function.ToLongFunction;
+
+/**
+ * Radix trie answering top-k prefix completions.
+ * <p>
+ * Edges are labelled with whole key fragments, so a chain of single-child nodes collapses into one node and the
+ * trie holds roughly one node per distinct branching point. Every node also records the highest score found in
+ * its subtree, which lets {@link #topK} expand the subtrees best-first and stop after {@code k} values instead of
+ * collecting every completion of the prefix. Not thread-safe, {@link SuggestionIndex} guards access.
+ */
+final class CompletionTrie<T> {
+
+    private final ToLongFunction<T> score;
+    private final Node<T> root = new Node<>("");
+
+    CompletionTrie(ToLongFunction<T> score) {
+        this.score = score;
+    }
+
+    private static final class Node<T> {
+        private String label;
+        private List<Node<T>> children = List.of();
+        private List<T> values = List.of();
+        private long maxScore = Long.MIN_VALUE;
+
+        private Node(String label) {
+            this.label = label;
+        }
+
+        private Node<T> child(char first) {
+            for (Node<T> child : children) {
+                if (child.label.charAt(0) == first) {
+                    return child;
+                }
+            }
+            return null;
+        }
+
+        private void addChild(Node<T> child) {
+            List<Node<T>> grown = new ArrayList<>(children.size() + 1);
+            grown.addAll(children);
+            grown.add(child);
+            grown.sort(Comparator.comparing(node -> node.label.charAt(0)));
+            children = grown;
+        }
+
+        private void replaceChild(Node<T> previous, Node<T> replacement) {
+            children.set(children.indexOf(previous), replacement);
+        }
+
+        private void removeChild(Node<T> child) {
+            List<Node<T>> shrunk = new ArrayList<>(children);
+            shrunk.remove(child);
+            children = shrunk.isEmpty() ? List.of() : shrunk;
+        }
+    }
+
+    private record Candidate<T>(long score, Node<T> node, T value, long sequence) {
+    }
+
+    void insert(String key, T value) {
+        List<Node<T>> path = new ArrayList<>();
+        Node<T> node = root;
+        path.add(node);
+
+        int i = 0;
+        while (i < key.length()) {
+            Node<T> child = node.child(key.charAt(i));
+            if (child == null) {
+                child = new Node<>(key.substring(i));
+                node.addChild(child);
+                i = key.length();
+            } else {
+                int common = commonPrefixLength(child.label, key, i);
+                if (common < child.label.length()) {
+                    child = split(node, child, common);
+                }
+                i += common;
+            }
+            node = child;
+            path.add(node);
+        }
+
+        if (node.values.isEmpty()) {
+            node.values = new ArrayList<>(1);
+        }
+        node.values.add(value);
+        refresh(path);
+    }
+
+    boolean remove(String key, T value) {
+        List<Node<T>> path = new ArrayList<>();
+        Node<T> node = root;
+        path.add(node);
+
+        int i = 0;
+        while (i < key.length()) {
+            node = node.child(key.charAt(i));
+            if (node == null || !key.startsWith(node.label, i)) {
+                return false;
+            }
+            i += node.label.length();
+            path.add(node);
+        }
+
+        if (node.values.isEmpty() || !node.values.remove(value)) {
+            return false;
+        }
+        if (node.values.isEmpty()) {
+            node.values = List.of();
+        }
+        refresh(path);
+        return true;
+    }
+
+    void clear() {
+        root.children = List.of();
+        root.values = List.of();
+        root.maxScore = Long.MIN_VALUE;
+    }
+
+    /**
+     * The {@code k} distinct values with the highest scores among the keys starting with the prefix
+     */
+    List<T> topK(String prefix, int k) {
+        Node<T> node = root;
+        int i = 0;
+        while (i < prefix.length()) {
+            node = node.child(prefix.charAt(i));
+            if (node == null) {
+                return List.of();
+            }
+            int common = commonPrefixLength(node.label, prefix, i);
+            if (i + common < prefix.length() && common < node.label.length()) {
+                return List.of();
+            }
+            i += common;
+        }
+
+        // Values before nodes of the same score, then first come first served
+        PriorityQueue<Candidate<T>> queue = new PriorityQueue<>(Comparator
+                .comparingLong((Candidate<T> candidate) -> candidate.score()).reversed()
+                .thenComparing(candidate -> candidate.node() != null)
+                .thenComparingLong(Candidate::sequence));
+        long sequence = 0;
+        queue.add(new Candidate<>(node.maxScore, node, null, sequence++));
+
+        Set<T> result = new LinkedHashSet<>();
+        while (!queue.isEmpty() && result.size() < k) {
+            Candidate<T> candidate = queue.poll();
+            if (candidate.node() == null) {
+                result.add(candidate.value());
+                continue;
+            }
+            for (T value : candidate.node().values) {
+                queue.add(new Candidate<>(score.applyAsLong(value), null, value, sequence++));
+            }
+            for (Node<T> child : candidate.node().children) {
+                queue.add(new Candidate<>(child.maxScore, child, null, sequence++));
+            }
+        }
+        return List.copyOf(result);
+    }
+
+    private Node<T> split(Node<T> parent, Node<T> child, int at) {
+        Node<T> intermediate = new Node<>(child.label.substring(0, at));
+        child.label = child.label.substring(at);
+        intermediate.children = new ArrayList<>(List.of(child));
+        intermediate.maxScore = child.maxScore;
+        parent.replaceChild(child, intermediate);
+        return intermediate;
+    }
+
+    /**
+     * Prunes emptied nodes, merges single-child chains back into one edge and recomputes the subtree maxima,
+     * walking the path of a modified key from its end up to the root
+     */
+    private void refresh(List<Node<T>> path) {
+        for (int i = path.size() - 1; i > 0; i--) {
+            Node<T> node = path.get(i);
+            Node<T> parent = path.get(i - 1);
+            if (node.values.isEmpty() && node.children.isEmpty()) {
+                parent.removeChild(node);
+                continue;
+            }
+            if (node.values.isEmpty() && node.children.size() == 1) {
+                Node<T> only = node.children.getFirst();
+                node.label = node.label + only.label;
+                node.values = only.values;
+                node.children = only.children;
+            }
+            updateMaxScore(node);
+        }
+        updateMaxScore(root);
+    }
+
+    private void updateMaxScore(Node<T> node) {
+        long max = Long.MIN_VALUE;
+        for (T value : node.values) {
+            max = Math.max(max, score.applyAsLong(value));
+        }
+        for (Node<T> child : node.children) {
+            max = Math.max(max, child.maxScore);
+        }
+        node.maxScore = max;
+    }
+
+    private static int commonPrefixLength(String label, String key, int offset) {
+        int length = Math.min(label.length(), key.length() - offset);
+        int i = 0;
+        while (i < length && label.charAt(i) == key.charAt(offset + i)) {
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,173 @@
+package com.getir.aau.librarymanagementsystem.search;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Per-value bitsets over the category, author, genre and availability of every book.
+ * <p>
+ * Each book owns a dense slot, freed slots are reused, so a bitset has about one bit per book. A result set
+ * is itself a bitset of slots, narrowing it by a facet value is an {@code and} and a facet histogram is the
+ * cardinality of its intersection with every value of the facet. Not thread-safe, {@link BookSearchIndex}
+ * guards access.
+ */
+final class FacetIndex {
+
+    /**
+     * Facets counted by value
+     */
+    enum Facet {
+        CATEGORY(BookDocument::categoryName),
+        AUTHOR(BookDocument::authorName),
+        GENRE(BookDocument::genre);
+
+        private final Function<BookDocument, String> accessor;
+
+        Facet(Function<BookDocument, String> accessor) {
+            this.accessor = accessor;
+        }
+    }
+
+    static final String AVAILABLE = "available";
+    static final String UNAVAILABLE = "unavailable";
+
+    private final Map<Long, Integer> slots = new HashMap<>();
+    private final List<Long> ids = new ArrayList<>();
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private final BitSet live = new BitSet();
+    private final BitSet available = new BitSet();
+    private final Map<Facet, Map<String, BitSet>> values = new EnumMap<>(Facet.class);
+
+    FacetIndex() {
+        for (Facet facet : Facet.values()) {
+            values.put(facet, new HashMap<>());
+        }
+    }
+
+    void add(BookDocument document) {
+        int slot = freeSlots.isEmpty() ? ids.size() : freeSlots.pop();
+        if (slot == ids.size()) {
+            ids.add(document.id());
+        } else {
+            ids.set(slot, document.id());
+        }
+        slots.put(document.id(), slot);
+        live.set(slot);
+        available.set(slot, document.available());
+
+        values.forEach((facet, bitsets) -> {
+            String value = facet.accessor.apply(document);
+            if (value != null) {
+                bitsets.computeIfAbsent(value, key -> new BitSet()).set(slot);
+            }
+        });
+    }
+
+    void remove(BookDocument document) {
+        Integer slot = slots.remove(document.id());
+        if (slot == null) {
+            return;
+        }
+        live.clear(slot);
+        available.clear(slot);
+        ids.set(slot, null);
+        freeSlots.push(slot);
+
+        values.forEach((facet, bitsets) -> {
+            String value = facet.accessor.apply(document);
+            BitSet bits = value == null ? null : bitsets.get(value);
+            if (bits != null) {
+                bits.clear(slot);
+                if (bits.isEmpty()) {
+                    bitsets.remove(value);
+                }
+            }
+        });
+    }
+
+    void setAvailable(Long id, boolean isAvailable) {
+        Integer slot = slots.get(id);
+        if (slot != null) {
+            available.set(slot, isAvailable);
+        }
+    }
+
+    void clear() {
+        slots.clear();
+        ids.clear();
+        freeSlots.clear();
+        live.clear();
+        available.clear();
+        values.values().forEach(Map::clear);
+    }
+
+    BitSet all() {
+        return (BitSet) live.clone();
+    }
+
+    BitSet slotsOf(Collection<Long> bookIds) {
+        BitSet result = new BitSet();
+        for (Long id : bookIds) {
+            Integer slot = slots.get(id);
+            if (slot != null) {
+                result.set(slot);
+            }
+        }
+        return result;
+    }
+
+    void retain(BitSet result, Facet facet, String value) {
+        BitSet bits = values.get(facet).get(value);
+        if (bits == null) {
+            result.clear();
+        } else {
+            result.and(bits);
+        }
+    }
+
+    void retainAvailable(BitSet result, boolean isAvailable) {
+        if (isAvailable) {
+            result.and(available);
+        } else {
+            result.andNot(available);
+        }
+    }
+
+    /**
+     * Counts of every value of the facet within the result, most frequent first, values absent from the
+     * result are left out
+     */
+    Map<String, Long> histogram(Facet facet, BitSet result) {
+        List<Map.Entry<String, Long>> counts = new ArrayList<>();
+        values.get(facet).forEach((value, bits) -> {
+            BitSet intersection = (BitSet) bits.clone();
+            intersection.and(result);
+            long count = intersection.cardinality();
+            if (count > 0) {
+                counts.add(Map.entry(value, count));
+            }
+        });
+        counts.sort(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+
+        Map<String, Long> histogram = new LinkedHashMap<>();
+        counts.forEach(entry -> histogram.put(entry.getKey(), entry.getValue()));
+        return histogram;
+    }
+
+    Map<String, Long> availabilityHistogram(BitSet result) {
+        BitSet availableInResult = (BitSet) result.clone();
+        availableInResult.and(available);
+        long availableCount = availableInResult.cardinality();
+
+        Map<String, Long> histogram = new LinkedHashMap<>();
+        histogram.put(AVAILABLE, availableCount);
+        histogram.put(UNAVAILABLE, result.cardinality() - availableCount);
+        return histogram;
+    }
+
+    List<Long> idsOf(BitSet result) {
+        List<Long> bookIds = new ArrayList<>(result.cardinality());
+        result.stream().forEach(slot -> bookIds.add(ids.get(slot)));
+        return bookIds;
+    }
+}
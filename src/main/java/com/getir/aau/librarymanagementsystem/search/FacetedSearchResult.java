@@ -0,0 +1,16 @@
+package com.getir.aau.librarymanagementsystem.search;
+
+import org.springframework.data.domain.Page;
+
+import java.util.Map;
+
+/**
+ * Page of matching book ids found by {@link BookSearchIndex#facetedSearch} with the facet histograms of all matches
+ */
+public record FacetedSearchResult(
+        Page<Long> ids,
+        Map<String, Long> categories,
+        Map<String, Long> authors,
+        Map<String, Long> genres,
+        Map<String, Long> availability
+) {}
@@ -0,0 +1,144 @@
+package com.getir.aau.librarymanagementsystem.search;
+
+import com.getir.aau.librarymanagementsystem.repository.BookFullTextRepository;
+import com.getir.aau.librarymanagementsystem.repository.BookRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Ranked keyword search on Postgres full-text search.
+ * <p>
+ * Once the application is ready the {@code books.search_vector} column, its GIN index and the triggers keeping
+ * it current are installed idempotently next to the schema Hibernate maintains. The vector weighs the title
+ * highest, then the author name, then the category name, then genre and ISBN, and is recomputed by the database
+ * whenever a book changes or its author or category is renamed. On any other database, or with
+ * {@code application.search.full-text.enabled} off, {@link #supports} answers false and keyword search keeps
+ * using the in-memory {@link BookSearchIndex}, or the {@code LIKE} query of
+ * {@link BookRepository#searchByKeywords} for sorts the index cannot apply.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class FullTextSearch {
+
+    private static final String POSTGRES = "PostgreSQL";
+
+    private static final List<String> SCHEMA = List.of(
+            "ALTER TABLE books ADD COLUMN IF NOT EXISTS search_vector tsvector",
+            """
+            CREATE OR REPLACE FUNCTION books_search_vector(p_title text, p_author_id bigint, p_category_id bigint,
+                                                          p_genre text, p_isbn text) RETURNS tsvector AS $$
+                SELECT setweight(to_tsvector('simple', coalesce(p_title, '')), 'A')
+                    || setweight(to_tsvector('simple', coalesce((SELECT name FROM authors WHERE id = p_author_id), '')), 'B')
+                    || setweight(to_tsvector('simple', coalesce((SELECT name FROM categories WHERE id = p_category_id), '')), 'C')
+                    || setweight(to_tsvector('simple', coalesce(p_genre, '') || ' ' || translate(coalesce(p_isbn, ''), '-', ' ')
+                                             || ' ' || regexp_replace(coalesce(p_isbn, ''), '[^[:alnum:]]', '', 'g')), 'D')
+            $$ LANGUAGE sql STABLE
+            """,
+            """
+            CREATE OR REPLACE FUNCTION books_search_vector_refresh() RETURNS trigger AS $$
+            BEGIN
+                NEW.search_vector := books_search_vector(NEW.title, NEW.author_id, NEW.category_id, NEW.genre, NEW.isbn);
+                RETURN NEW;
+            END
+            $$ LANGUAGE plpgsql
+            """,
+            "DROP TRIGGER IF EXISTS books_search_vector_refresh ON books",
+            """
+            CREATE TRIGGER books_search_vector_refresh BEFORE INSERT OR UPDATE OF title, author_id, category_id, genre, isbn
+            ON books FOR EACH ROW EXECUTE FUNCTION books_search_vector_refresh()
+            """,
+            """
+            CREATE OR REPLACE FUNCTION books_search_vector_cascade() RETURNS trigger AS $$
+            BEGIN
+                UPDATE books SET search_vector = books_search_vector(title, author_id, category_id, genre, isbn)
+                WHERE (TG_TABLE_NAME = 'authors' AND author_id = NEW.id)
+                   OR (TG_TABLE_NAME = 'categories' AND category_id = NEW.id);
+                RETURN NULL;
+            END
+            $$ LANGUAGE plpgsql
+            """,
+            "DROP TRIGGER IF EXISTS authors_search_vector_cascade ON authors",
+            """
+            CREATE TRIGGER authors_search_vector_cascade AFTER UPDATE OF name ON authors FOR EACH ROW
+            WHEN (OLD.name IS DISTINCT FROM NEW.name) EXECUTE FUNCTION books_search_vector_cascade()
+            """,
+            "DROP TRIGGER IF EXISTS categories_search_vector_cascade ON categories",
+            """
+            CREATE TRIGGER categories_search_vector_cascade AFTER UPDATE OF name ON categories FOR EACH ROW
+            WHEN (OLD.name IS DISTINCT FROM NEW.name) EXECUTE FUNCTION books_search_vector_cascade()
+            """,
+            "CREATE INDEX IF NOT EXISTS idx_books_search_vector ON books USING GIN (search_vector)",
+            """
+            UPDATE books SET search_vector = books_search_vector(title, author_id, category_id, genre, isbn)
+            WHERE search_vector IS NULL
+            """
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BookRepository bookRepository;
+
+    @Value("${application.search.full-text.enabled:true}")
+    private boolean enabled = true;
+
+    private volatile boolean available;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void installSchema() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            String database = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                    connection.getMetaData().getDatabaseProductName());
+            if (!POSTGRES.equals(database)) {
+                log.info("Full-text search is not supported on {}, keyword search uses the in-memory index", database);
+                return;
+            }
+            SCHEMA.forEach(jdbcTemplate::execute);
+            available = true;
+            log.info("Full-text search installed on books.search_vector");
+        } catch (DataAccessException e) {
+            log.warn("Could not install full-text search, keyword search uses the in-memory index", e);
+        }
+    }
+
+    /**
+     * Whether the search term should be answered by {@link #search}. A term without tokens lists every book and
+     * a sort on a property without a full-text column, such as {@code author.name}, cannot be ranked in SQL, both
+     * are left to {@link BookSearchIndex}
+     */
+    public boolean supports(String searchTerm, Sort sort) {
+        return available
+                && !BookSearchIndex.tokenize(searchTerm).isEmpty()
+                && BookFullTextRepository.supportsSort(sort);
+    }
+
+    /**
+     * Finds the ids of the books matching every token of the search term as a prefix, most relevant first
+     * unless the pageable is sorted
+     */
+    public Page<Long> search(String searchTerm, Pageable pageable) {
+        return bookRepository.searchIdsByFullText(toTsQuery(BookSearchIndex.tokenize(searchTerm)), pageable);
+    }
+
+    /**
+     * Joins prefix terms with AND, tokens only hold letters and digits so they need no {@code tsquery} escaping
+     */
+    static String toTsQuery(List<String> tokens) {
+        return tokens.stream().map(token -> token + ":*").collect(Collectors.joining(" & "));
+    }
+}
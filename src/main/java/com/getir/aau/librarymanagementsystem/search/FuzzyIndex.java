@@ -0,0 +1,109 @@
+package com.getir.aau.librarymanagementsystem.search;
+
+import java.util.*;
+
+/**
+ * Typo-tolerant lookup over the title and author name vocabulary.
+ * <p>
+ * Every distinct token keeps the ids of the books containing it, and a {@link BkTree} over the tokens finds the
+ * ones within a few edits of a query token. The allowed edits grow with the token length as in common search
+ * engines: none below three characters, one up to five and two from six on, so "tolkein" still finds "tolkien"
+ * while "it" does not match every two-letter word. Removed tokens stay in the tree as tombstones skipped by
+ * lookups until they outnumber the live ones, when the tree is rebuilt. Not thread-safe,
+ * {@link BookSearchIndex} guards access.
+ */
+public final class FuzzyIndex {
+
+    public static final int MAX_EDITS = 2;
+
+    private static final int MIN_TOMBSTONES_BEFORE_REBUILD = 1024;
+
+    private final Map<String, Set<Long>> postings = new HashMap<>();
+    private final BkTree tree = new BkTree();
+
+    public void add(Long id, Collection<String> tokens) {
+        for (String token : tokens) {
+            Set<Long> ids = postings.get(token);
+            if (ids == null) {
+                ids = new HashSet<>(4);
+                postings.put(token, ids);
+                tree.add(token);
+            }
+            ids.add(id);
+        }
+    }
+
+    public void remove(Long id, Collection<String> tokens) {
+        for (String token : tokens) {
+            Set<Long> ids = postings.get(token);
+            if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                postings.remove(token);
+            }
+        }
+        if (tree.size() - postings.size() > Math.max(postings.size(), MIN_TOMBSTONES_BEFORE_REBUILD)) {
+            tree.clear();
+            postings.keySet().forEach(tree::add);
+        }
+    }
+
+    public void clear() {
+        postings.clear();
+        tree.clear();
+    }
+
+    public int vocabularySize() {
+        return postings.size();
+    }
+
+    /**
+     * Finds the ids matching every query token within its allowed edits, capped at {@code maxEdits}, mapped to
+     * the sum of the edits of the closest token matched for each query token
+     */
+    public Map<Long, Integer> find(List<String> queryTokens, int maxEdits) {
+        if (queryTokens.isEmpty()) {
+            return Map.of();
+        }
+        List<Map<Long, Integer>> perToken = new ArrayList<>(queryTokens.size());
+        for (String queryToken : queryTokens) {
+            Map<Long, Integer> matches = matchToken(queryToken, Math.min(allowedEdits(queryToken), maxEdits));
+            if (matches.isEmpty()) {
+                return Map.of();
+            }
+            perToken.add(matches);
+        }
+
+        // Probe the other tokens' matches from the rarest token's matches
+        perToken.sort(Comparator.comparingInt(Map::size));
+        Map<Long, Integer> result = new HashMap<>(perToken.getFirst());
+        for (Map<Long, Integer> matches : perToken.subList(1, perToken.size())) {
+            result.entrySet().removeIf(entry -> !matches.containsKey(entry.getKey()));
+            result.replaceAll((id, edits) -> edits + matches.get(id));
+            if (result.isEmpty()) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    static int allowedEdits(String token) {
+        if (token.length() < 3) {
+            return 0;
+        }
+        return token.length() < 6 ? 1 : MAX_EDITS;
+    }
+
+    private Map<Long, Integer> matchToken(String queryToken, int maxEdits) {
+        Map<Long, Integer> matches = new HashMap<>();
+        if (maxEdits == 0) {
+            postings.getOrDefault(queryToken, Set.of()).forEach(id -> matches.put(id, 0));
+            return matches;
+        }
+        tree.search(queryToken, maxEdits, (word, edits) -> {
+            Set<Long> ids = postings.get(word);
+            if (ids != null) {
+                ids.forEach(id -> matches.merge(id, edits, Math::min));
+            }
+        });
+        return matches;
+    }
+}
@@ -0,0 +1,17 @@
+package com.getir.aau.librarymanagementsystem.search;
+
+/**
+ * A completion offered by {@link SuggestionIndex}, the id is the book id of a title and the author id of an
+ * author name
+ */
+public record Suggestion(Type type, Long id, String text, long popularity) {
+
+    public enum Type {
+        TITLE,
+        AUTHOR
+    }
+
+    Suggestion withPopularity(long popularity) {
+        return new Suggestion(type, id, text, popularity);
+    }
+}
@@ -0,0 +1,172 @@
+package com.getir.aau.librarymanagementsystem.search;
+
+import com.getir.aau.librarymanagementsystem.model.entity.Author;
+import com.getir.aau.librarymanagementsystem.repository.AuthorRepository;
+import com.getir.aau.librarymanagementsystem.repository.BookRepository;
+import com.getir.aau.librarymanagementsystem.repository.BorrowItemRepository;
+import com.getir.aau.librarymanagementsystem.search.Suggestion.Type;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * Type-ahead over book titles and author names ranked by borrow popularity.
+ * <p>
+ * Every title and author name is stored in a {@link CompletionTrie} under its lower-cased text and under the
+ * rest of the text from each later word, so "pot" completes "Harry Potter" as well. A title ranks by the
+ * borrows of its book and an author name by the borrows of all their books. The index is built from the
+ * repositories once the application is ready and kept current by {@code BookServiceImpl} and
+ * {@code AuthorServiceImpl} on every mutation and by {@code BorrowRecordServiceImpl} on every borrow.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SuggestionIndex {
+
+    private final BookRepository bookRepository;
+    private final AuthorRepository authorRepository;
+    private final BorrowItemRepository borrowItemRepository;
+
+    private final CompletionTrie<Suggestion> trie = new CompletionTrie<>(Suggestion::popularity);
+    private final Map<Long, Suggestion> titles = new HashMap<>();
+    private final Map<Long, Suggestion> authors = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        Map<Long, Long> bookBorrows = toMap(borrowItemRepository.countBorrowsPerBook());
+        Map<Long, Long> authorBorrows = toMap(borrowItemRepository.countBorrowsPerAuthor());
+        List<BookDocument> books = bookRepository.findAllDocuments();
+        List<Author> allAuthors = authorRepository.findAll();
+
+        lock.writeLock().lock();
+        try {
+            trie.clear();
+            titles.clear();
+            authors.clear();
+            books.forEach(book -> add(titles, new Suggestion(
+                    Type.TITLE, book.id(), book.title(), bookBorrows.getOrDefault(book.id(), 0L))));
+            allAuthors.forEach(author -> add(authors, new Suggestion(
+                    Type.AUTHOR, author.getId(), author.getName(), authorBorrows.getOrDefault(author.getId(), 0L))));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Suggestion index built with {} titles and {} authors", titles.size(), authors.size());
+    }
+
+    public void indexTitle(Long bookId, String title) {
+        index(titles, Type.TITLE, bookId, title);
+    }
+
+    public void removeTitle(Long bookId) {
+        remove(titles, bookId);
+    }
+
+    public void indexAuthor(Long authorId, String name) {
+        index(authors, Type.AUTHOR, authorId, name);
+    }
+
+    public void removeAuthor(Long authorId) {
+        remove(authors, authorId);
+    }
+
+    /**
+     * Raises the popularity of the borrowed book's title and of its author's name
+     */
+    public void recordBorrow(Long bookId, Long authorId) {
+        lock.writeLock().lock();
+        try {
+            increment(titles, bookId);
+            increment(authors, authorId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The most borrowed titles and authors whose text, or one of its words onwards, starts with the prefix
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        String normalized = normalize(prefix).stripLeading();
+        if (normalized.isEmpty()) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            return trie.topK(normalized, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    static List<String> keysOf(String text) {
+        String normalized = normalize(text);
+        List<String> keys = new ArrayList<>();
+        keys.add(normalized);
+        for (int i = 1; i < normalized.length(); i++) {
+            if (Character.isLetterOrDigit(normalized.charAt(i)) && !Character.isLetterOrDigit(normalized.charAt(i - 1))) {
+                keys.add(normalized.substring(i));
+            }
+        }
+        return keys;
+    }
+
+    private void index(Map<Long, Suggestion> suggestions, Type type, Long id, String text) {
+        lock.writeLock().lock();
+        try {
+            Suggestion previous = suggestions.get(id);
+            if (previous != null && previous.text().equals(text)) {
+                return;
+            }
+            long popularity = previous == null ? 0 : previous.popularity();
+            remove(suggestions, id);
+            add(suggestions, new Suggestion(type, id, text, popularity));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void remove(Map<Long, Suggestion> suggestions, Long id) {
+        lock.writeLock().lock();
+        try {
+            Suggestion previous = suggestions.remove(id);
+            if (previous != null) {
+                keysOf(previous.text()).forEach(key -> trie.remove(key, previous));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void increment(Map<Long, Suggestion> suggestions, Long id) {
+        Suggestion previous = suggestions.get(id);
+        if (previous != null) {
+            remove(suggestions, id);
+            add(suggestions, previous.withPopularity(previous.popularity() + 1));
+        }
+    }
+
+    private void add(Map<Long, Suggestion> suggestions, Suggestion suggestion) {
+        if (suggestion.text() == null) {
+            return;
+        }
+        suggestions.put(suggestion.id(), suggestion);
+        keysOf(suggestion.text()).forEach(key -> trie.insert(key, suggestion));
+    }
+
+    private static Map<Long, Long> toMap(List<BorrowCount> counts) {
+        return counts.stream().collect(Collectors.toMap(BorrowCount::id, BorrowCount::count));
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,91 @@
+package com.getir.aau.librarymanagementsystem.search;
+
+import java.util.*;
+
+/**
+ * Trigram posting lists over a single text field, answering case-insensitive "contains" lookups.
+ * <p>
+ * A term of three or more characters is looked up through the posting list of its rarest trigram and the
+ * candidates are verified against the stored value, so results are exactly those of a
+ * {@code LOWER(field) LIKE '%term%'} query. Shorter terms have no trigram and scan the stored values.
+ * Not thread-safe, {@link BookSearchIndex} guards access.
+ */
+final class TrigramIndex {
+
+    private final Map<Long, String> values = new HashMap<>();
+    private final Map<String, Set<Long>> postings = new HashMap<>();
+
+    void add(Long id, String value) {
+        if (value == null) {
+            return;
+        }
+        String normalized = normalize(value);
+        values.put(id, normalized);
+        for (String trigram : trigrams(normalized)) {
+            postings.computeIfAbsent(trigram, key -> new HashSet<>()).add(id);
+        }
+    }
+
+    void remove(Long id) {
+        String previous = values.remove(id);
+        if (previous == null) {
+            return;
+        }
+        for (String trigram : trigrams(previous)) {
+            Set<Long> ids = postings.get(trigram);
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                postings.remove(trigram);
+            }
+        }
+    }
+
+    void clear() {
+        values.clear();
+        postings.clear();
+    }
+
+    Set<Long> findContaining(String term) {
+        String needle = term == null ? "" : normalize(term);
+
+        Set<Long> result = new HashSet<>();
+        if (needle.length() < 3) {
+            values.forEach((id, value) -> {
+                if (value.contains(needle)) {
+                    result.add(id);
+                }
+            });
+            return result;
+        }
+
+        Set<Long> candidates = null;
+        for (String trigram : trigrams(needle)) {
+            Set<Long> ids = postings.get(trigram);
+            if (ids == null) {
+                return result;
+            }
+            if (candidates == null || ids.size() < candidates.size()) {
+                candidates = ids;
+            }
+        }
+
+        for (Long id : candidates) {
+            if (values.get(id).contains(needle)) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    private static String normalize(String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+
+    private static Set<String> trigrams(String value) {
+        Set<String> trigrams = new HashSet<>();
+        for (int i = 0; i + 3 <= value.length(); i++) {
+            trigrams.add(value.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+}
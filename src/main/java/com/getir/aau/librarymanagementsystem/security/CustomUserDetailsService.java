@@ -1,5 +1,6 @@
 package com.getir.aau.librarymanagementsystem.security;
 
+import com.getir.aau.librarymanagementsystem.cache.UserDetailsCache;
 import com.getir.aau.librarymanagementsystem.service.UserService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -11,10 +12,11 @@ import org.springframework.stereotype.Service;
 @RequiredArgsConstructor
 public class CustomUserDetailsService implements UserDetailsService {
     private final UserService userService;
+    private final UserDetailsCache userDetailsCache;
 
     @Override
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
-        return userService.findByEmail(email)
+        return userDetailsCache.get(email, () -> userService.findByEmail(email))
                 .orElseThrow(() -> new UsernameNotFoundException("User not found with email: " + email));
     }
 }
\ No newline at end of file
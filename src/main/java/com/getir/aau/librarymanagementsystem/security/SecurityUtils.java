@@ -3,6 +3,7 @@ package com.getir.aau.librarymanagementsystem.security;
 import com.getir.aau.librarymanagementsystem.exception.ResourceNotFoundException;
 import com.getir.aau.librarymanagementsystem.model.entity.User;
 import com.getir.aau.librarymanagementsystem.repository.UserRepository;
+import com.getir.aau.librarymanagementsystem.security.jwt.JwtPrincipal;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.access.AccessDeniedException;
@@ -11,12 +12,16 @@ import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class SecurityUtils {
 
+    private static final String CURRENT_USER_ATTRIBUTE = SecurityUtils.class.getName() + ".currentUser";
+
     private final UserRepository userRepository;
 
     /**
@@ -24,12 +29,7 @@ public class SecurityUtils {
      * @return current user email
      */
     public String getCurrentUserEmail() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication == null || !authentication.isAuthenticated()) {
-            throw new IllegalStateException("No authenticated user found");
-        }
-
-        Object principal = authentication.getPrincipal();
+        Object principal = getAuthentication().getPrincipal();
         if (principal instanceof UserDetails) {
             return ((UserDetails) principal).getUsername();
         } else if (principal instanceof String) {
@@ -40,12 +40,38 @@ public class SecurityUtils {
     }
 
     /**
-     * Get the current authenticated User object from the database
+     * Get the ID of the current authenticated user, taken from its principal when it carries it so that
+     * ownership checks need no query
+     */
+    public Long getCurrentUserId() {
+        Object principal = getAuthentication().getPrincipal();
+        if (principal instanceof JwtPrincipal jwtPrincipal) {
+            return jwtPrincipal.id();
+        }
+        if (principal instanceof User user && user.getId() != null) {
+            return user.getId();
+        }
+        return getCurrentUser().getId();
+    }
+
+    /**
+     * Get the current authenticated User object from the database, loaded once per request
      */
     public User getCurrentUser() {
         String email = getCurrentUserEmail();
-        return userRepository.findByEmail(email)
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null
+                && attributes.getAttribute(CURRENT_USER_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) instanceof User user
+                && email.equals(user.getEmail())) {
+            return user;
+        }
+
+        User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new ResourceNotFoundException("User", "email", email));
+        if (attributes != null) {
+            attributes.setAttribute(CURRENT_USER_ATTRIBUTE, user, RequestAttributes.SCOPE_REQUEST);
+        }
+        return user;
     }
 
     /**
@@ -63,12 +89,20 @@ public class SecurityUtils {
     }
 
     public void checkAccessPermissionForUser(Long targetUserId) {
-        User currentUser = getCurrentUser();
+        Long currentUserId = getCurrentUserId();
         boolean isLibrarian = hasRole("LIBRARIAN");
 
-        if (!isLibrarian && !currentUser.getId().equals(targetUserId)) {
-            log.warn("Unauthorized access attempt by user ID: {} to user ID: {}", currentUser.getId(), targetUserId);
+        if (!isLibrarian && !currentUserId.equals(targetUserId)) {
+            log.warn("Unauthorized access attempt by user ID: {} to user ID: {}", currentUserId, targetUserId);
             throw new AccessDeniedException("You are not allowed to access this resource.");
         }
     }
+
+    private Authentication getAuthentication() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()) {
+            throw new IllegalStateException("No authenticated user found");
+        }
+        return authentication;
+    }
 }
\ No newline at end of file
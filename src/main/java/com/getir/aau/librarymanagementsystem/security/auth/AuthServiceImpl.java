@@ -1,5 +1,7 @@
 package com.getir.aau.librarymanagementsystem.security.auth;
 
+import com.getir.aau.librarymanagementsystem.cache.UserDetailsCache;
+import com.getir.aau.librarymanagementsystem.cache.VerifiedTokenCache;
 import com.getir.aau.librarymanagementsystem.exception.ResourceNotFoundException;
 import com.getir.aau.librarymanagementsystem.model.entity.ERole;
 import com.getir.aau.librarymanagementsystem.model.entity.Role;
@@ -31,6 +33,8 @@ public class AuthServiceImpl implements AuthService {
 
     private final JwtService jwtService;
     private final TokenService tokenService;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final UserDetailsCache userDetailsCache;
     private final AuthenticationManager authenticationManager;
 
     private final PasswordEncoder passwordEncoder;
@@ -74,9 +78,10 @@ public class AuthServiceImpl implements AuthService {
         var user = userRepository.findByEmail(request.email())
                 .orElseThrow(() -> new UsernameNotFoundException("User not found"));
 
+        // Revoked before issuing, so that the new token is not issued before the revocation
+        tokenService.revokeAllUserTokens(user);
         var accessToken = jwtService.generateToken(user);
         var refreshToken = jwtService.generateRefreshToken(user);
-        tokenService.revokeAllUserTokens(user);
         tokenService.saveUserToken(user, accessToken);
 
         return new AuthResponseDto(accessToken, refreshToken);
@@ -89,6 +94,7 @@ public class AuthServiceImpl implements AuthService {
             return;
         }
 
+        verifiedTokenCache.evict(token);
         tokenService.findByToken(token).ifPresent(storedToken -> {
             storedToken.setExpired(true);
             storedToken.setRevoked(true);
@@ -113,6 +119,7 @@ public class AuthServiceImpl implements AuthService {
 
         user.setPassword(passwordEncoder.encode(request.newPassword()));
         userRepository.save(user);
+        userDetailsCache.evict(user.getEmail());
 
         log.info("Password successfully reset for user: {}", user.getEmail());
     }
@@ -1,6 +1,10 @@
 package com.getir.aau.librarymanagementsystem.security.jwt;
 
+import com.getir.aau.librarymanagementsystem.cache.VerifiedTokenCache;
+import com.getir.aau.librarymanagementsystem.model.entity.User;
 import com.getir.aau.librarymanagementsystem.security.CustomUserDetailsService;
+import com.getir.aau.librarymanagementsystem.security.token.TokenRevocationRegistry;
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
 import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
@@ -8,8 +12,8 @@ import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.NonNull;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -18,14 +22,40 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.Date;
 
+/**
+ * Authenticates requests bearing an access token, refusing refresh tokens. By default the user of the token is
+ * loaded and checked against it, unless the token was verified before. With
+ * {@code application.security.jwt.stateless-principal.enabled}, the user is instead built from the ID and role
+ * signed into the token, sparing every request a user lookup, only tokens typed as access tokens are accepted, and
+ * tokens stop authenticating once {@link TokenRevocationRegistry} revoked the tokens of their user.
+ * <p>
+ * The registry only holds the revocations made on its own instance, so with several instances a logout, role
+ * change or deletion on one is ignored by the others until the token expires. The stateless principal is disabled
+ * by default and only suits a single instance.
+ */
 @Component
-@RequiredArgsConstructor
 @Slf4j
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
     private final CustomUserDetailsService userDetailsService;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final TokenRevocationRegistry tokenRevocationRegistry;
+    private final boolean statelessPrincipal;
+
+    public JwtAuthenticationFilter(JwtService jwtService,
+                                   CustomUserDetailsService userDetailsService,
+                                   VerifiedTokenCache verifiedTokenCache,
+                                   TokenRevocationRegistry tokenRevocationRegistry,
+                                   @Value("${application.security.jwt.stateless-principal.enabled:false}") boolean statelessPrincipal) {
+        this.jwtService = jwtService;
+        this.userDetailsService = userDetailsService;
+        this.verifiedTokenCache = verifiedTokenCache;
+        this.tokenRevocationRegistry = tokenRevocationRegistry;
+        this.statelessPrincipal = statelessPrincipal;
+    }
 
     @Override
     protected void doFilterInternal(
@@ -41,7 +71,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         final String authHeader = request.getHeader("Authorization");
         final String jwt;
-        String userEmail;
+        final Claims claims;
 
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
             log.debug("Missing or invalid authorization header");
@@ -51,8 +81,26 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         jwt = authHeader.substring(7);
 
+        if (statelessPrincipal) {
+            authenticateFromClaims(request, jwt);
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        VerifiedTokenCache.VerifiedToken verified = verifiedTokenCache.get(jwt);
+        if (verified != null) {
+            // Verified by an earlier request, so neither the signature nor the user need checking again
+            if (SecurityContextHolder.getContext().getAuthentication() == null) {
+                authenticate(request, principalOf(verified));
+            }
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        long generation = verifiedTokenCache.generation();
         try {
-            userEmail = jwtService.extractUsername(jwt);
+            // Verified once, the claims then serve every check of this request
+            claims = jwtService.verify(jwt);
         } catch (ExpiredJwtException e) {
             log.warn("JWT expired: {}", e.getMessage());
             filterChain.doFilter(request, response);
@@ -63,25 +111,96 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             return;
         }
 
+        if (JwtService.isRefreshToken(claims)) {
+            log.warn("Refresh token used as access token for user: {}", claims.getSubject());
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        String userEmail = claims.getSubject();
         if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null) {
             UserDetails userDetails = this.userDetailsService.loadUserByUsername(userEmail);
 
-            if (jwtService.isTokenValid(jwt, userDetails)) {
+            if (jwtService.isTokenValid(claims, userDetails)) {
                 log.debug("Valid JWT token for user: {}", userEmail);
-
-                UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                        userDetails,
-                        null,
-                        userDetails.getAuthorities()
-                );
-                authToken.setDetails(
-                        new WebAuthenticationDetailsSource().buildDetails(request)
-                );
-                SecurityContextHolder.getContext().setAuthentication(authToken);
+                authenticate(request, userDetails);
+                Date expiration = claims.getExpiration();
+                Long userId = userDetails instanceof User user ? user.getId()
+                        : userDetails instanceof JwtPrincipal principal ? principal.id() : null;
+                verifiedTokenCache.put(jwt, userDetails.getUsername(), userId, userDetails.getAuthorities(),
+                        expiration == null ? null : expiration.toInstant(), generation);
             } else {
                 log.warn("Invalid JWT token for user: {}", userEmail);
             }
         }
         filterChain.doFilter(request, response);
     }
-}
\ No newline at end of file
+
+    /**
+     * Authenticates the user signed into an access token, falling back to loading it for tokens issued without its
+     * ID and role
+     */
+    private void authenticateFromClaims(HttpServletRequest request, String jwt) {
+        final Claims claims;
+        try {
+            claims = jwtService.verify(jwt);
+        } catch (ExpiredJwtException e) {
+            log.warn("JWT expired: {}", e.getMessage());
+            return;
+        } catch (JwtException e) {
+            log.warn("JWT error (invalid/malformed): {}", e.getMessage());
+            return;
+        }
+
+        if (!JwtService.isAccessToken(claims)) {
+            log.warn("Token other than an access token refused for user: {}", claims.getSubject());
+            return;
+        }
+
+        String userEmail = claims.getSubject();
+        if (userEmail == null || SecurityContextHolder.getContext().getAuthentication() != null) {
+            return;
+        }
+        if (tokenRevocationRegistry.isRevoked(userEmail, claims.getIssuedAt())) {
+            log.warn("Revoked JWT token for user: {}", userEmail);
+            return;
+        }
+
+        UserDetails principal = JwtPrincipal.from(claims);
+        if (principal == null) {
+            principal = userDetailsService.loadUserByUsername(userEmail);
+        }
+        if (jwtService.isTokenValid(claims, principal)) {
+            log.debug("Valid JWT token for user: {}", userEmail);
+            authenticate(request, principal);
+        } else {
+            log.warn("Invalid JWT token for user: {}", userEmail);
+        }
+    }
+
+    /**
+     * Rebuilds the user of a verified token, carrying its ID when the token was verified against a stored user
+     */
+    private static UserDetails principalOf(VerifiedTokenCache.VerifiedToken verified) {
+        if (verified.userId() != null && verified.authorities().size() == 1) {
+            return new JwtPrincipal(verified.userId(), verified.subject(),
+                    verified.authorities().getFirst().getAuthority());
+        }
+        return org.springframework.security.core.userdetails.User.withUsername(verified.subject())
+                .password("")
+                .authorities(verified.authorities())
+                .build();
+    }
+
+    private void authenticate(HttpServletRequest request, UserDetails userDetails) {
+        UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
+                userDetails,
+                null,
+                userDetails.getAuthorities()
+        );
+        authToken.setDetails(
+                new WebAuthenticationDetailsSource().buildDetails(request)
+        );
+        SecurityContextHolder.getContext().setAuthentication(authToken);
+    }
+}
@@ -0,0 +1,52 @@
+package com.getir.aau.librarymanagementsystem.security.jwt;
+
+import com.getir.aau.librarymanagementsystem.model.entity.User;
+import io.jsonwebtoken.Claims;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Authenticated user known by its ID, email and role only, built from the signed claims of an access token without
+ * loading the user, or from a cached user
+ */
+public record JwtPrincipal(Long id, String email, String role) implements UserDetails {
+
+    /**
+     * Builds the principal of a verified token, or returns null when the token does not carry the user ID and
+     * role, as do the tokens issued before they were added
+     */
+    public static JwtPrincipal from(Claims claims) {
+        Number id = claims.get(JwtService.USER_ID_CLAIM, Number.class);
+        String role = claims.get(JwtService.ROLE_CLAIM, String.class);
+        if (claims.getSubject() == null || id == null || role == null) {
+            return null;
+        }
+        return new JwtPrincipal(id.longValue(), claims.getSubject(), role);
+    }
+
+    /**
+     * Snapshot of a loaded user, holding neither the entity nor its password
+     */
+    public static JwtPrincipal of(User user) {
+        return new JwtPrincipal(user.getId(), user.getEmail(), user.getRole().getName().name());
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return List.of(new SimpleGrantedAuthority(role));
+    }
+
+    @Override
+    public String getPassword() {
+        return null;
+    }
+
+    @Override
+    public String getUsername() {
+        return email;
+    }
+}
@@ -0,0 +1,56 @@
+package com.getir.aau.librarymanagementsystem.security.token;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Remembers when all tokens of a user were last revoked, so that access tokens trusted for their claims alone
+ * stop authenticating once their user signs in again, changes role or email, or is deleted.
+ * <p>
+ * A token issued before the second its user's tokens were revoked is revoked, JWTs carrying their issue time in
+ * whole seconds. A revocation is forgotten once every access token issued before it has expired, which bounds
+ * the registry by the revocations of one token lifetime. Revocations are held in memory, so they only apply on
+ * the instance that made them.
+ */
+@Component
+public class TokenRevocationRegistry {
+
+    private final Duration tokenLifetime;
+    private final ConcurrentMap<String, Instant> revokedBefore = new ConcurrentHashMap<>();
+
+    public TokenRevocationRegistry(@Value("${application.security.jwt.expiration}") long jwtExpiration) {
+        this.tokenLifetime = Duration.ofMillis(jwtExpiration);
+    }
+
+    /**
+     * Revokes every token issued to a user so far
+     */
+    public void revokeAll(String subject) {
+        Instant now = Instant.now();
+        purgeExpired(now);
+        revokedBefore.put(subject, now.truncatedTo(ChronoUnit.SECONDS));
+    }
+
+    /**
+     * Tells whether a token issued to a user at the given time was revoked since
+     */
+    public boolean isRevoked(String subject, Date issuedAt) {
+        Instant revoked = revokedBefore.get(subject);
+        if (revoked == null) {
+            return false;
+        }
+        return issuedAt == null || issuedAt.toInstant().isBefore(revoked);
+    }
+
+    private void purgeExpired(Instant now) {
+        Instant oldest = now.minus(tokenLifetime).minusSeconds(1);
+        revokedBefore.values().removeIf(revoked -> revoked.isBefore(oldest));
+    }
+}
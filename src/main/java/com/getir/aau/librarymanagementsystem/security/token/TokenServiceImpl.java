@@ -1,5 +1,6 @@
 package com.getir.aau.librarymanagementsystem.security.token;
 
+import com.getir.aau.librarymanagementsystem.cache.VerifiedTokenCache;
 import com.getir.aau.librarymanagementsystem.model.entity.User;
 import com.getir.aau.librarymanagementsystem.repository.UserRepository;
 import com.getir.aau.librarymanagementsystem.security.auth.dto.AuthResponseDto;
@@ -18,6 +19,8 @@ public class TokenServiceImpl implements TokenService {
     private final TokenRepository tokenRepository;
     private final JwtService jwtService;
     private final UserRepository userRepository;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final TokenRevocationRegistry tokenRevocationRegistry;
 
     public Optional<Token> findByToken(String token) {
         return tokenRepository.findByToken(token);
@@ -40,6 +43,8 @@ public class TokenServiceImpl implements TokenService {
     }
 
     public void revokeAllUserTokens(User user) {
+        verifiedTokenCache.evictAll(user.getEmail());
+        tokenRevocationRegistry.revokeAll(user.getEmail());
         var validUserTokens = tokenRepository.findAllValidTokenByUser(user.getId());
         if (validUserTokens.isEmpty()) {
             log.info("No valid tokens found to revoke for user: {}", user.getEmail());
@@ -71,8 +76,9 @@ public class TokenServiceImpl implements TokenService {
             throw new RuntimeException("Refresh token is not valid");
         }
 
-        var newAccessToken = jwtService.generateToken(user);
+        // Revoked before issuing, so that the new token is not issued before the revocation
         revokeAllUserTokens(user);
+        var newAccessToken = jwtService.generateToken(user);
         saveUserToken(user, newAccessToken);
 
         log.info("Refresh token used successfully. New access token issued for user: {}", userEmail);
@@ -1,10 +1,16 @@
 package com.getir.aau.librarymanagementsystem.service;
 
+import com.getir.aau.librarymanagementsystem.model.dto.request.BookFacetRequestDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.BookFacetedPageResponseDto;
 import com.getir.aau.librarymanagementsystem.model.dto.response.BookPageResponseDto;
 import com.getir.aau.librarymanagementsystem.model.dto.request.BookRequestDto;
 import com.getir.aau.librarymanagementsystem.model.dto.response.BookResponseDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.CacheStatsResponseDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.SuggestionResponseDto;
 import org.springframework.data.domain.Pageable;
 
+import java.util.List;
+
 public interface BookService {
 
     BookResponseDto create(BookRequestDto bookRequestDto);
@@ -23,6 +29,15 @@ public interface BookService {
     BookPageResponseDto getAvailable(Pageable pageable);
     BookPageResponseDto getUnavailable(Pageable pageable);
     BookPageResponseDto searchByKeywords(String searchTerm, Pageable pageable);
+    BookPageResponseDto fuzzySearch(String searchTerm, int maxEdits, Pageable pageable);
+    BookFacetedPageResponseDto facetedSearch(BookFacetRequestDto request, Pageable pageable);
+    List<SuggestionResponseDto> autocomplete(String prefix, int limit);
+
+    BookPageResponseDto scrollByAuthorId(Long authorId, String cursor, int size);
+    BookPageResponseDto scrollByCategoryId(Long categoryId, String cursor, int size);
+    BookPageResponseDto scrollAvailable(String cursor, int size);
+    BookPageResponseDto scrollUnavailable(String cursor, int size);
 
     Long countBooksByAuthor(Long authorId);
+    CacheStatsResponseDto getCacheStats();
 }
\ No newline at end of file
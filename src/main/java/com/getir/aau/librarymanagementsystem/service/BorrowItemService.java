@@ -1,7 +1,9 @@
 package com.getir.aau.librarymanagementsystem.service;
 
+import com.getir.aau.librarymanagementsystem.model.dto.request.BulkReturnRequestDto;
 import com.getir.aau.librarymanagementsystem.model.dto.response.BorrowItemPageResponseDto;
 import com.getir.aau.librarymanagementsystem.model.dto.response.BorrowItemResponseDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.BulkReturnResponseDto;
 import org.springframework.data.domain.Pageable;
 
 import java.time.LocalDate;
@@ -10,11 +12,17 @@ import java.util.List;
 public interface BorrowItemService {
 
     void returnBook(Long itemId, Long userId);
+    BulkReturnResponseDto returnBooksInBulk(BulkReturnRequestDto dto);
     BorrowItemPageResponseDto getByUserId(Long userId, Pageable pageable);
     BorrowItemPageResponseDto getByBookId(Long bookId, Pageable pageable);
     BorrowItemPageResponseDto getOverdueItems(Pageable pageable);
     BorrowItemPageResponseDto getBorrowItemsByDateRange(LocalDate startDate, LocalDate endDate, Pageable pageable);
 
+    BorrowItemPageResponseDto scrollByUserId(Long userId, String cursor, int size);
+    BorrowItemPageResponseDto scrollByBookId(Long bookId, String cursor, int size);
+    BorrowItemPageResponseDto scrollOverdueItems(String cursor, int size);
+    BorrowItemPageResponseDto scrollBorrowItemsByDateRange(LocalDate startDate, LocalDate endDate, String cursor, int size);
+
 
     List<BorrowItemResponseDto> getActiveItemsByUser(Long userId);
     boolean existsOverdueItemsByUserId(Long userId);
@@ -1,8 +1,10 @@
 package com.getir.aau.librarymanagementsystem.service;
 
 import com.getir.aau.librarymanagementsystem.model.dto.request.BorrowRecordRequestDto;
+import com.getir.aau.librarymanagementsystem.model.dto.request.BulkBorrowRequestDto;
 import com.getir.aau.librarymanagementsystem.model.dto.response.BorrowRecordPageResponseDto;
 import com.getir.aau.librarymanagementsystem.model.dto.response.BorrowRecordResponseDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.BulkBorrowResponseDto;
 import org.springframework.data.domain.Pageable;
 
 import java.time.LocalDate;
@@ -11,13 +13,19 @@ import java.util.List;
 public interface BorrowRecordService {
 
     BorrowRecordResponseDto borrowBooks(BorrowRecordRequestDto dto);
+    BulkBorrowResponseDto borrowBooksInBulk(BulkBorrowRequestDto dto);
     BorrowRecordResponseDto getById(Long id);
 
     BorrowRecordPageResponseDto getByUser(Long userId, Pageable pageable);
     BorrowRecordPageResponseDto getAll(Pageable pageable);
     BorrowRecordPageResponseDto filter(String email, LocalDate startDate, LocalDate endDate, Pageable pageable);
 
+    BorrowRecordPageResponseDto scrollByUser(Long userId, String cursor, int size);
+    BorrowRecordPageResponseDto scrollAll(String cursor, int size);
+    BorrowRecordPageResponseDto scrollFiltered(String email, LocalDate startDate, LocalDate endDate, String cursor, int size);
+
     void checkBorrowEligibility(Long userId);
     boolean isBookAvailableForBorrowing(Long bookId);
     List<BorrowRecordResponseDto> getActiveRecordsByUser(Long userId);
+    BorrowRecordPageResponseDto getActiveRecordsByUser(Long userId, Pageable pageable);
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.getir.aau.librarymanagementsystem.service;
 
+import com.getir.aau.librarymanagementsystem.model.dto.response.CacheStatsResponseDto;
 import com.getir.aau.librarymanagementsystem.model.dto.response.UserResponseDto;
 import com.getir.aau.librarymanagementsystem.model.dto.request.UserUpdateRequestDto;
 import com.getir.aau.librarymanagementsystem.model.entity.ERole;
@@ -26,4 +27,6 @@ public interface UserService {
     void delete(Long id);
 
     Optional<User> findByEmail(String email);
+
+    CacheStatsResponseDto getUserDetailsCacheStats();
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.getir.aau.librarymanagementsystem.service.impl;
 
+import com.getir.aau.librarymanagementsystem.cache.BookQueryCache;
 import com.getir.aau.librarymanagementsystem.exception.ResourceAlreadyExistsException;
 import com.getir.aau.librarymanagementsystem.exception.ResourceNotFoundException;
 import com.getir.aau.librarymanagementsystem.model.dto.request.AuthorRequestDto;
@@ -7,11 +8,15 @@ import com.getir.aau.librarymanagementsystem.model.dto.response.AuthorResponseDt
 import com.getir.aau.librarymanagementsystem.model.entity.Author;
 import com.getir.aau.librarymanagementsystem.model.mapper.AuthorMapper;
 import com.getir.aau.librarymanagementsystem.repository.AuthorRepository;
+import com.getir.aau.librarymanagementsystem.search.BookSearchIndex;
+import com.getir.aau.librarymanagementsystem.search.SuggestionIndex;
 import com.getir.aau.librarymanagementsystem.service.AuthorService;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.List;
 import java.util.stream.Collectors;
@@ -24,6 +29,9 @@ public class AuthorServiceImpl implements AuthorService {
 
     private final AuthorRepository authorRepository;
     private final AuthorMapper authorMapper;
+    private final SuggestionIndex suggestionIndex;
+    private final BookSearchIndex bookSearchIndex;
+    private final BookQueryCache bookQueryCache;
 
     @Override
     public AuthorResponseDto create(AuthorRequestDto dto) {
@@ -33,6 +41,7 @@ public class AuthorServiceImpl implements AuthorService {
         log.info("Creating new author with name: {}", dto.name());
         Author author = authorMapper.toEntity(dto);
         Author saved = authorRepository.save(author);
+        afterCommit(() -> suggestionIndex.indexAuthor(saved.getId(), saved.getName()));
         log.info("Author created with ID: {}", saved.getId());
         return authorMapper.toDto(saved);
     }
@@ -43,6 +52,7 @@ public class AuthorServiceImpl implements AuthorService {
 
         Author author = authorRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Author", "id", id));
+        boolean renamed = !author.getName().equals(dto.name());
 
         Author updated = Author.builder()
                 .id(author.getId())
@@ -52,6 +62,12 @@ public class AuthorServiceImpl implements AuthorService {
                 .build();
 
         Author saved = authorRepository.save(updated);
+        afterCommit(() -> suggestionIndex.indexAuthor(saved.getId(), saved.getName()));
+        if (renamed) {
+            // The author name is searchable and counted as a facet on every book of the author
+            afterCommit(bookSearchIndex::rebuild);
+            bookQueryCache.evictAll();
+        }
         log.info("Author updated successfully with ID: {}", saved.getId());
         return authorMapper.toDto(saved);
     }
@@ -83,6 +99,29 @@ public class AuthorServiceImpl implements AuthorService {
         }
 
         authorRepository.deleteById(id);
+        // Deleting an author cascades to their books
+        afterCommit(() -> {
+            suggestionIndex.rebuild();
+            bookSearchIndex.rebuild();
+        });
+        bookQueryCache.evictAll();
         log.info("Author deleted successfully with ID: {}", id);
     }
-}
\ No newline at end of file
+
+    /**
+     * Applies a change to the in-memory indexes once the current transaction commits, so that a write rolled
+     * back leaves them matching the database
+     */
+    private static void afterCommit(Runnable change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            change.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                change.run();
+            }
+        });
+    }
+}
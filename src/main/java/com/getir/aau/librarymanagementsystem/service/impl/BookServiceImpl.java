@@ -1,25 +1,46 @@
 package com.getir.aau.librarymanagementsystem.service.impl;
 
+import com.getir.aau.librarymanagementsystem.cache.BookQueryCache;
+import com.getir.aau.librarymanagementsystem.cache.BookQueryCache.QueryType;
+import com.getir.aau.librarymanagementsystem.concurrency.InventoryLedger;
 import com.getir.aau.librarymanagementsystem.exception.ResourceAlreadyExistsException;
 import com.getir.aau.librarymanagementsystem.exception.ResourceNotFoundException;
+import com.getir.aau.librarymanagementsystem.model.dto.request.BookFacetRequestDto;
 import com.getir.aau.librarymanagementsystem.model.dto.request.BookRequestDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.BookFacetedPageResponseDto;
 import com.getir.aau.librarymanagementsystem.model.dto.response.BookPageResponseDto;
 import com.getir.aau.librarymanagementsystem.model.dto.response.BookResponseDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.CacheStatsResponseDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.SuggestionResponseDto;
 import com.getir.aau.librarymanagementsystem.model.entity.Author;
 import com.getir.aau.librarymanagementsystem.model.entity.Book;
 import com.getir.aau.librarymanagementsystem.model.entity.Category;
 import com.getir.aau.librarymanagementsystem.model.mapper.BookMapper;
+import com.getir.aau.librarymanagementsystem.pagination.CursorCodec;
 import com.getir.aau.librarymanagementsystem.repository.AuthorRepository;
 import com.getir.aau.librarymanagementsystem.repository.BookRepository;
 import com.getir.aau.librarymanagementsystem.repository.CategoryRepository;
+import com.getir.aau.librarymanagementsystem.search.BookDocument;
+import com.getir.aau.librarymanagementsystem.search.BookSearchIndex;
+import com.getir.aau.librarymanagementsystem.search.BookSearchIndex.SubstringField;
+import com.getir.aau.librarymanagementsystem.search.FacetedSearchResult;
+import com.getir.aau.librarymanagementsystem.search.FullTextSearch;
+import com.getir.aau.librarymanagementsystem.search.SuggestionIndex;
 import com.getir.aau.librarymanagementsystem.service.BookService;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.*;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -31,6 +52,18 @@ public class BookServiceImpl implements BookService {
     private final AuthorRepository authorRepository;
     private final CategoryRepository categoryRepository;
     private final BookMapper bookMapper;
+    private final BookSearchIndex bookSearchIndex;
+    private final SuggestionIndex suggestionIndex;
+    private final FullTextSearch fullTextSearch;
+    private final BookQueryCache bookQueryCache;
+    private final InventoryLedger inventoryLedger;
+
+    private static final Sort KEYSET_SORT = Sort.by("title", "id");
+    private static final CursorCodec BY_AUTHOR_CURSOR = CursorCodec.of("books/author", KEYSET_SORT);
+    private static final CursorCodec BY_CATEGORY_CURSOR = CursorCodec.of("books/category", KEYSET_SORT);
+    private static final CursorCodec AVAILABLE_CURSOR = CursorCodec.of("books/available", KEYSET_SORT);
+    private static final CursorCodec UNAVAILABLE_CURSOR = CursorCodec.of("books/unavailable", KEYSET_SORT);
+    private static final int MAX_SUGGESTIONS = 25;
 
     @Override
     public BookResponseDto create(BookRequestDto dto) {
@@ -55,6 +88,12 @@ public class BookServiceImpl implements BookService {
 
         Book book = bookMapper.toEntity(dto, author, category);
         Book saved = bookRepository.save(book);
+        BookDocument document = BookDocument.from(saved);
+        afterCommit(() -> {
+            bookSearchIndex.index(document);
+            suggestionIndex.indexTitle(document.id(), document.title());
+        });
+        bookQueryCache.evictBook(saved);
 
         log.info("Book created successfully with ID: {}", saved.getId());
         return bookMapper.toDto(saved);
@@ -83,9 +122,20 @@ public class BookServiceImpl implements BookService {
                 .available(dto.numberOfCopies() > 0)
                 .author(author)
                 .category(category)
+                .version(existing.getVersion())
                 .build();
 
+        // The copies are set directly, so the ledger adds their change to the copies borrowed and returned since
+        inventoryLedger.adjust(id, dto.numberOfCopies() - existing.getNumberOfCopies());
+        // Saving merges the new state into the managed instance, so evict the queries of the old state first
+        bookQueryCache.evictBook(existing);
         Book saved = bookRepository.save(updated);
+        BookDocument document = BookDocument.from(saved);
+        afterCommit(() -> {
+            bookSearchIndex.index(document);
+            suggestionIndex.indexTitle(document.id(), document.title());
+        });
+        bookQueryCache.evictBook(saved);
         log.info("Book updated successfully with ID: {}", saved.getId());
         return bookMapper.toDto(saved);
     }
@@ -93,10 +143,15 @@ public class BookServiceImpl implements BookService {
     @Override
     public void delete(Long id) {
         log.warn("Deleting book with ID: {}", id);
-        if (!bookRepository.existsById(id)) {
-            throw new ResourceNotFoundException("Book", "id", id);
-        }
+        Book book = bookRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Book", "id", id));
         bookRepository.deleteById(id);
+        afterCommit(() -> {
+            bookSearchIndex.remove(id);
+            suggestionIndex.removeTitle(id);
+        });
+        bookQueryCache.evictBook(book);
+        inventoryLedger.forget(id);
         log.info("Book deleted with ID: {}", id);
     }
 
@@ -119,65 +174,132 @@ public class BookServiceImpl implements BookService {
     @Override
     public BookPageResponseDto getByTitle(String title, Pageable pageable) {
         log.info("Searching books by title: {}", title);
-        Page<BookResponseDto> page = bookRepository.findByTitleContainingIgnoreCase(title, pageable)
-                .map(bookMapper::toDto);
-        return new BookPageResponseDto(page.getContent(), page.getTotalPages(), page.getTotalElements());
+        return bookQueryCache.getPage(QueryType.TITLE, title, pageable, () -> {
+            if (bookSearchIndex.supportsSubstringSearch(pageable.getSort())) {
+                return loadPage(bookSearchIndex.findContaining(SubstringField.TITLE, title, pageable));
+            }
+            Page<BookResponseDto> page = bookRepository.findByTitleContainingIgnoreCase(title, pageable);
+            return new BookPageResponseDto(page.getContent(), page.getTotalPages(), page.getTotalElements());
+        });
     }
 
     @Override
     public BookPageResponseDto getByAuthorId(Long authorId, Pageable pageable) {
         log.info("Searching books by author ID: {}", authorId);
-        Page<BookResponseDto> page = bookRepository.findByAuthorId(authorId, pageable)
-                .map(bookMapper::toDto);
-        return new BookPageResponseDto(page.getContent(), page.getTotalPages(), page.getTotalElements());
+        return bookQueryCache.getPage(QueryType.AUTHOR_ID, authorId, pageable, () -> {
+            Page<BookResponseDto> page = bookRepository.findByAuthorId(authorId, pageable);
+            return new BookPageResponseDto(page.getContent(), page.getTotalPages(), page.getTotalElements());
+        });
     }
 
     @Override
     public BookPageResponseDto getByAuthorName(String authorName, Pageable pageable) {
         log.info("Searching books by author name: {}", authorName);
-        Page<BookResponseDto> page = bookRepository.findByAuthorNameContainingIgnoreCase(authorName, pageable)
-                .map(bookMapper::toDto);
-        return new BookPageResponseDto(page.getContent(), page.getTotalPages(), page.getTotalElements());
+        return bookQueryCache.getPage(QueryType.AUTHOR_NAME, authorName, pageable, () -> {
+            if (bookSearchIndex.supportsSubstringSearch(pageable.getSort())) {
+                return loadPage(bookSearchIndex.findContaining(SubstringField.AUTHOR_NAME, authorName, pageable));
+            }
+            Page<BookResponseDto> page = bookRepository.findByAuthorNameContainingIgnoreCase(authorName, pageable);
+            return new BookPageResponseDto(page.getContent(), page.getTotalPages(), page.getTotalElements());
+        });
     }
 
     @Override
     public BookPageResponseDto getByCategoryId(Long categoryId, Pageable pageable) {
         log.info("Searching books by category ID: {}", categoryId);
-        Page<BookResponseDto> page = bookRepository.findByCategoryId(categoryId, pageable)
-                .map(bookMapper::toDto);
-        return new BookPageResponseDto(page.getContent(), page.getTotalPages(), page.getTotalElements());
+        return bookQueryCache.getPage(QueryType.CATEGORY_ID, categoryId, pageable, () -> {
+            Page<BookResponseDto> page = bookRepository.findByCategoryId(categoryId, pageable);
+            return new BookPageResponseDto(page.getContent(), page.getTotalPages(), page.getTotalElements());
+        });
     }
 
     @Override
     public BookPageResponseDto getByGenre(String genre, Pageable pageable) {
         log.info("Searching books by genre: {}", genre);
-        Page<BookResponseDto> page = bookRepository.findByGenreContainingIgnoreCase(genre, pageable)
-                .map(bookMapper::toDto);
-        return new BookPageResponseDto(page.getContent(), page.getTotalPages(), page.getTotalElements());
+        return bookQueryCache.getPage(QueryType.GENRE, genre, pageable, () -> {
+            if (bookSearchIndex.supportsSubstringSearch(pageable.getSort())) {
+                return loadPage(bookSearchIndex.findContaining(SubstringField.GENRE, genre, pageable));
+            }
+            Page<BookResponseDto> page = bookRepository.findByGenreContainingIgnoreCase(genre, pageable);
+            return new BookPageResponseDto(page.getContent(), page.getTotalPages(), page.getTotalElements());
+        });
     }
 
     @Override
     public BookPageResponseDto getAvailable(Pageable pageable) {
         log.info("Fetching available books");
-        Page<BookResponseDto> page = bookRepository.findAvailable(pageable)
-                .map(bookMapper::toDto);
-        return new BookPageResponseDto(page.getContent(), page.getTotalPages(), page.getTotalElements());
+        return bookQueryCache.getPage(QueryType.AVAILABLE, null, pageable, () -> {
+            Page<BookResponseDto> page = bookRepository.findAvailable(pageable);
+            return new BookPageResponseDto(page.getContent(), page.getTotalPages(), page.getTotalElements());
+        });
     }
 
     @Override
     public BookPageResponseDto getUnavailable(Pageable pageable) {
         log.info("Fetching unavailable books");
-        Page<BookResponseDto> page = bookRepository.findUnavailable(pageable)
-                .map(bookMapper::toDto);
-        return new BookPageResponseDto(page.getContent(), page.getTotalPages(), page.getTotalElements());
+        return bookQueryCache.getPage(QueryType.UNAVAILABLE, null, pageable, () -> {
+            Page<BookResponseDto> page = bookRepository.findUnavailable(pageable);
+            return new BookPageResponseDto(page.getContent(), page.getTotalPages(), page.getTotalElements());
+        });
     }
 
     @Override
     public BookPageResponseDto searchByKeywords(String searchTerm, Pageable pageable) {
         log.info("Searching books with keyword: {}", searchTerm);
-        Page<BookResponseDto> page = bookRepository.searchByKeywords(searchTerm, pageable)
-                .map(bookMapper::toDto);
-        return new BookPageResponseDto(page.getContent(), page.getTotalPages(), page.getTotalElements());
+        return bookQueryCache.getPage(QueryType.KEYWORD, searchTerm, pageable, () -> {
+            if (fullTextSearch.supports(searchTerm, pageable.getSort())) {
+                return loadPage(fullTextSearch.search(searchTerm, pageable));
+            }
+            if (!bookSearchIndex.supports(pageable.getSort())) {
+                // Matched by the database too, as handing it the ids of a common term would not scale
+                log.debug("Sort {} is not supported by the search index, querying the database", pageable.getSort());
+                Page<BookResponseDto> page = BookSearchIndex.matchesAll(searchTerm)
+                        ? bookRepository.findAllDtos(pageable)
+                        : bookRepository.searchByKeywords(searchTerm.strip(), pageable);
+                return new BookPageResponseDto(page.getContent(), page.getTotalPages(), page.getTotalElements());
+            }
+
+            return loadPage(bookSearchIndex.search(searchTerm, pageable));
+        });
+    }
+
+    @Override
+    public BookPageResponseDto fuzzySearch(String searchTerm, int maxEdits, Pageable pageable) {
+        log.info("Fuzzy searching books with keyword: {} within {} edits", searchTerm, maxEdits);
+        return bookQueryCache.getPage(QueryType.FUZZY, searchTerm + "~" + maxEdits, pageable,
+                () -> loadPage(bookSearchIndex.fuzzySearch(searchTerm, maxEdits, pageable)));
+    }
+
+    @Override
+    public BookFacetedPageResponseDto facetedSearch(BookFacetRequestDto request, Pageable pageable) {
+        log.info("Faceted search with keyword: {}, category: {}, author: {}, genre: {}, available: {}",
+                request.keyword(), request.category(), request.author(), request.genre(), request.available());
+
+        return bookQueryCache.getFacets(request, pageable, () -> {
+            FacetedSearchResult result = bookSearchIndex.facetedSearch(request, pageable);
+            return new BookFacetedPageResponseDto(
+                    loadPage(result.ids()),
+                    result.categories(),
+                    result.authors(),
+                    result.genres(),
+                    result.availability()
+            );
+        });
+    }
+
+    @Override
+    public List<SuggestionResponseDto> autocomplete(String prefix, int limit) {
+        log.debug("Autocompleting prefix: {}", prefix);
+        int boundedLimit = Math.clamp(limit, 1, MAX_SUGGESTIONS);
+        return suggestionIndex.suggest(prefix, boundedLimit).stream()
+                .map(suggestion -> new SuggestionResponseDto(
+                        suggestion.text(), suggestion.type().name(), suggestion.id(), suggestion.popularity()))
+                .toList();
+    }
+
+    @Override
+    public CacheStatsResponseDto getCacheStats() {
+        return bookQueryCache.stats();
     }
 
     @Override
@@ -185,4 +307,71 @@ public class BookServiceImpl implements BookService {
         log.info("Counting books for author ID: {}", authorId);
         return bookRepository.countBooksByAuthorId(authorId);
     }
-}
\ No newline at end of file
+
+    @Override
+    public BookPageResponseDto scrollByAuthorId(Long authorId, String cursor, int size) {
+        log.info("Scrolling books by author ID: {}", authorId);
+        return toWindowDto(bookRepository.findByAuthorId(authorId, BY_AUTHOR_CURSOR.decode(cursor),
+                CursorCodec.limit(size), KEYSET_SORT), BY_AUTHOR_CURSOR);
+    }
+
+    @Override
+    public BookPageResponseDto scrollByCategoryId(Long categoryId, String cursor, int size) {
+        log.info("Scrolling books by category ID: {}", categoryId);
+        return toWindowDto(bookRepository.findByCategoryId(categoryId, BY_CATEGORY_CURSOR.decode(cursor),
+                CursorCodec.limit(size), KEYSET_SORT), BY_CATEGORY_CURSOR);
+    }
+
+    @Override
+    public BookPageResponseDto scrollAvailable(String cursor, int size) {
+        log.info("Scrolling available books");
+        return toWindowDto(bookRepository.findByAvailable(true, AVAILABLE_CURSOR.decode(cursor),
+                CursorCodec.limit(size), KEYSET_SORT), AVAILABLE_CURSOR);
+    }
+
+    @Override
+    public BookPageResponseDto scrollUnavailable(String cursor, int size) {
+        log.info("Scrolling unavailable books");
+        return toWindowDto(bookRepository.findByAvailable(false, UNAVAILABLE_CURSOR.decode(cursor),
+                CursorCodec.limit(size), KEYSET_SORT), UNAVAILABLE_CURSOR);
+    }
+
+    private BookPageResponseDto toWindowDto(Window<Book> window, CursorCodec cursorCodec) {
+        List<BookResponseDto> books = window.getContent().stream().map(bookMapper::toDto).toList();
+        return BookPageResponseDto.ofWindow(books, cursorCodec.nextCursor(window));
+    }
+
+    /**
+     * Applies a change to the in-memory indexes once the current transaction commits, so that a write rolled
+     * back, for instance by a constraint failing at flush, leaves them matching the database
+     */
+    private static void afterCommit(Runnable change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            change.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                change.run();
+            }
+        });
+    }
+
+    /**
+     * Loads the books of an id page found by the search index, preserving the order of the index
+     */
+    private BookPageResponseDto loadPage(Page<Long> ids) {
+        if (ids.isEmpty()) {
+            return new BookPageResponseDto(List.of(), ids.getTotalPages(), ids.getTotalElements());
+        }
+        Map<Long, BookResponseDto> books = bookRepository.findDtosByIdIn(ids.getContent()).stream()
+                .collect(Collectors.toMap(BookResponseDto::id, Function.identity()));
+
+        List<BookResponseDto> content = ids.getContent().stream()
+                .map(books::get)
+                .filter(Objects::nonNull)
+                .toList();
+        return new BookPageResponseDto(content, ids.getTotalPages(), ids.getTotalElements());
+    }
+}
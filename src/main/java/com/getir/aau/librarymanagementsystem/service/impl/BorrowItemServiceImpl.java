@@ -1,27 +1,35 @@
 package com.getir.aau.librarymanagementsystem.service.impl;
 
+import com.getir.aau.librarymanagementsystem.cache.BookQueryCache;
+import com.getir.aau.librarymanagementsystem.cache.BorrowEligibilityCache;
+import com.getir.aau.librarymanagementsystem.concurrency.InventoryLedger;
 import com.getir.aau.librarymanagementsystem.exception.ResourceNotFoundException;
+import com.getir.aau.librarymanagementsystem.model.dto.request.BulkReturnRequestDto;
 import com.getir.aau.librarymanagementsystem.model.dto.response.BorrowItemPageResponseDto;
 import com.getir.aau.librarymanagementsystem.model.dto.response.BorrowItemResponseDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.BulkReturnResponseDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.BulkReturnResultDto;
 import com.getir.aau.librarymanagementsystem.model.entity.Book;
 import com.getir.aau.librarymanagementsystem.model.entity.BorrowItem;
-import com.getir.aau.librarymanagementsystem.model.entity.User;
 import com.getir.aau.librarymanagementsystem.model.mapper.BorrowMapper;
+import com.getir.aau.librarymanagementsystem.pagination.CursorCodec;
 import com.getir.aau.librarymanagementsystem.repository.BookRepository;
 import com.getir.aau.librarymanagementsystem.repository.BorrowItemRepository;
 import com.getir.aau.librarymanagementsystem.repository.UserRepository;
+import com.getir.aau.librarymanagementsystem.search.BookSearchIndex;
 import com.getir.aau.librarymanagementsystem.security.SecurityUtils;
 import com.getir.aau.librarymanagementsystem.service.BorrowItemService;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.*;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
-import java.util.List;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -34,35 +42,161 @@ public class BorrowItemServiceImpl implements BorrowItemService {
     private final UserRepository userRepository;
     private final BorrowMapper borrowMapper;
     private final SecurityUtils securityUtils;
+    private final BookSearchIndex bookSearchIndex;
+    private final BookQueryCache bookQueryCache;
+    private final InventoryLedger inventoryLedger;
+    private final BorrowEligibilityCache borrowEligibilityCache;
+
+    private static final Sort KEYSET_SORT = Sort.by(Sort.Direction.DESC, "borrowDate", "id");
+    private static final CursorCodec BY_USER_CURSOR = CursorCodec.of("borrow-items/user", KEYSET_SORT);
+    private static final CursorCodec BY_BOOK_CURSOR = CursorCodec.of("borrow-items/book", KEYSET_SORT);
+    private static final CursorCodec OVERDUE_CURSOR = CursorCodec.of("borrow-items/overdue", KEYSET_SORT);
+    private static final CursorCodec BY_DATE_RANGE_CURSOR = CursorCodec.of("borrow-items/date-range", KEYSET_SORT);
 
     @Override
     public void returnBook(Long itemId, Long userId) {
+        Book book = markReturned(itemId, userId);
+
+        int copies = inventoryLedger.copiesOf(book);
+        bookSearchIndex.updateAvailability(book.getId(), copies > 0);
+        // A return adds one copy, so the availability changed if the book had run out
+        bookQueryCache.evictCopies(book.getId(), copies == 1);
+
+        log.info("Book with ID {} returned successfully by user ID {}", book.getId(), userId);
+    }
+
+    /**
+     * Marks the item returned and gives its copy back with conditional updates, so concurrent returns of the
+     * same item cannot both count, and returns the book as updated. With the ledger enabled the copy is given
+     * back in memory and written to the book by its next flush
+     */
+    private Book markReturned(Long itemId, Long userId) {
         BorrowItem borrowItem = borrowItemRepository.findById(itemId)
                 .orElseThrow(() -> new ResourceNotFoundException("BorrowItem", "id", itemId));
 
-        User currentUser = securityUtils.getCurrentUser();
+        Long currentUserId = securityUtils.getCurrentUserId();
 
         boolean isLibrarian = securityUtils.hasRole("LIBRARIAN");
         boolean isOwner = borrowItem.getUser().getId().equals(userId);
 
         if (!isLibrarian && !isOwner) {
-            log.warn("Unauthorized return attempt. Item ID: {}, Requested by: {}", itemId, currentUser.getId());
+            log.warn("Unauthorized return attempt. Item ID: {}, Requested by: {}", itemId, currentUserId);
             throw new AccessDeniedException("You are not allowed to return this item");
         }
 
-        if (borrowItem.isReturned()) {
+        Long bookId = borrowItem.getBook().getId();
+        boolean deferred = inventoryLedger.isEnabled();
+        if (borrowItem.isReturned() || (deferred
+                ? borrowItemRepository.markReturnedUnsettled(itemId, LocalDate.now())
+                : borrowItemRepository.markReturned(itemId, LocalDate.now())) == 0) {
             log.warn("Attempted to return already returned book item ID: {}", itemId);
             throw new IllegalStateException("Book already returned");
         }
+        borrowEligibilityCache.recordReturn(borrowItem.getUser().getId(), List.of(borrowItem.getDueDate()));
+        if (deferred) {
+            inventoryLedger.release(bookId, 1);
+        } else {
+            bookRepository.incrementCopies(bookId, 1);
+        }
 
-        borrowItem.markAsReturned();
-        Book book = borrowItem.getBook();
-        bookRepository.save(book);
+        return bookRepository.findById(bookId)
+                .orElseThrow(() -> new ResourceNotFoundException("Book", "id", bookId));
+    }
 
-        borrowItemRepository.save(borrowItem);
+    @Override
+    public BulkReturnResponseDto returnBooksInBulk(BulkReturnRequestDto dto) {
+        if (dto.itemIds().isEmpty() && dto.bookIds().isEmpty()) {
+            throw new IllegalArgumentException("At least one item or book ID is required");
+        }
+        if (!securityUtils.hasRole("LIBRARIAN")) {
+            throw new AccessDeniedException("Only librarians can return books in bulk");
+        }
+
+        BulkCheckIn checkIn = markAllReturned(dto);
+
+        for (Book book : checkIn.books()) {
+            int copies = inventoryLedger.copiesOf(book);
+            bookSearchIndex.updateAvailability(book.getId(), copies > 0);
+            // The availability changed if the book had run out before these copies came back
+            bookQueryCache.evictCopies(book.getId(), copies == checkIn.returnedPerBook().get(book.getId()));
+        }
 
-        log.info("Book with ID {} returned successfully by user ID {}",
-                borrowItem.getBook().getId(), borrowItem.getUser().getId());
+        BulkReturnResponseDto response = BulkReturnResponseDto.of(checkIn.results());
+        log.info("Bulk return returned {} items of {} books and rejected {}",
+                response.returned(), checkIn.returnedPerBook().size(), response.rejected());
+        return response;
+    }
+
+    /**
+     * Results of a bulk return in request order, the number of items returned per book and the books as updated,
+     * left empty when the ledger gives the copies back
+     */
+    private record BulkCheckIn(List<BulkReturnResultDto> results, Map<Long, Integer> returnedPerBook, List<Book> books) {
+    }
+
+    /**
+     * Locks the requested items and the unreturned items of the scanned books, picks the items to return in
+     * memory, marks them returned with one update and gives their copies back with one update per book
+     */
+    private BulkCheckIn markAllReturned(BulkReturnRequestDto dto) {
+        Map<Long, BorrowItem> requested = dto.itemIds().isEmpty() ? Map.of()
+                : borrowItemRepository.findAllForUpdate(new HashSet<>(dto.itemIds())).stream()
+                        .collect(Collectors.toMap(BorrowItem::getId, Function.identity()));
+        Map<Long, Deque<BorrowItem>> unreturnedByBook = new HashMap<>();
+        if (!dto.bookIds().isEmpty()) {
+            borrowItemRepository.findUnreturnedForUpdateByBookIds(new HashSet<>(dto.bookIds())).forEach(item ->
+                    unreturnedByBook.computeIfAbsent(item.getBook().getId(), id -> new ArrayDeque<>()).add(item));
+        }
+
+        List<BulkReturnResultDto> results = new ArrayList<>();
+        Set<Long> returning = new LinkedHashSet<>();
+        Map<Long, List<LocalDate>> dueDatesPerUser = new HashMap<>();
+        Map<Long, Integer> returnedPerBook = new HashMap<>();
+
+        for (Long itemId : dto.itemIds()) {
+            BorrowItem item = requested.get(itemId);
+            if (item == null) {
+                results.add(BulkReturnResultDto.rejected(itemId, null,
+                        new ResourceNotFoundException("BorrowItem", "id", itemId).getMessage()));
+            } else if (item.isReturned() || !returning.add(itemId)) {
+                results.add(BulkReturnResultDto.rejected(itemId, item.getBook().getId(), "Book already returned"));
+            } else {
+                returnedPerBook.merge(item.getBook().getId(), 1, Integer::sum);
+                dueDatesPerUser.computeIfAbsent(item.getUser().getId(), id -> new ArrayList<>()).add(item.getDueDate());
+                results.add(BulkReturnResultDto.returned(itemId, item.getBook().getId()));
+            }
+        }
+        for (Long bookId : dto.bookIds()) {
+            Deque<BorrowItem> unreturned = unreturnedByBook.getOrDefault(bookId, new ArrayDeque<>());
+            // Items returned by ID above are locked and skipped, the next one due is returned instead
+            while (!unreturned.isEmpty() && returning.contains(unreturned.peekFirst().getId())) {
+                unreturned.pollFirst();
+            }
+            BorrowItem item = unreturned.pollFirst();
+            if (item == null) {
+                results.add(BulkReturnResultDto.rejected(null, bookId, "No unreturned item of book with ID " + bookId));
+            } else {
+                returning.add(item.getId());
+                returnedPerBook.merge(bookId, 1, Integer::sum);
+                dueDatesPerUser.computeIfAbsent(item.getUser().getId(), id -> new ArrayList<>()).add(item.getDueDate());
+                results.add(BulkReturnResultDto.returned(item.getId(), bookId));
+            }
+        }
+
+        if (returning.isEmpty()) {
+            return new BulkCheckIn(results, returnedPerBook, List.of());
+        }
+
+        dueDatesPerUser.forEach(borrowEligibilityCache::recordReturn);
+        // The items are locked, so every one of them is updated
+        if (inventoryLedger.isEnabled()) {
+            borrowItemRepository.markAllReturnedUnsettled(returning, LocalDate.now());
+            returnedPerBook.forEach(inventoryLedger::release);
+            return new BulkCheckIn(results, returnedPerBook, List.of());
+        }
+        borrowItemRepository.markAllReturned(returning, LocalDate.now());
+        returnedPerBook.forEach(bookRepository::incrementCopies);
+        return new BulkCheckIn(results, returnedPerBook, bookRepository.findAllById(returnedPerBook.keySet()));
     }
 
     @Override
@@ -122,6 +256,60 @@ public class BorrowItemServiceImpl implements BorrowItemService {
         return new BorrowItemPageResponseDto(page.getContent(), page.getTotalPages(), page.getTotalElements());
     }
 
+    @Override
+    public BorrowItemPageResponseDto scrollByUserId(Long userId, String cursor, int size) {
+        if (!userRepository.existsById(userId)) {
+            log.warn("Attempted to scroll borrow items for non-existent user ID: {}", userId);
+            throw new IllegalArgumentException("User not found with id: " + userId);
+        }
+
+        securityUtils.checkAccessPermissionForUser(userId);
+
+        log.debug("Scrolling borrow items for user ID: {}", userId);
+        return toWindowDto(borrowItemRepository.findByUserId(userId, BY_USER_CURSOR.decode(cursor),
+                CursorCodec.limit(size), KEYSET_SORT), BY_USER_CURSOR);
+    }
+
+    @Override
+    public BorrowItemPageResponseDto scrollByBookId(Long bookId, String cursor, int size) {
+        if (!bookRepository.existsById(bookId)) {
+            log.warn("Attempted to scroll borrow items for non-existent book ID: {}", bookId);
+            throw new IllegalArgumentException("Book not found with id: " + bookId);
+        }
+
+        log.debug("Scrolling borrow items for book ID: {}", bookId);
+        return toWindowDto(borrowItemRepository.findByBookId(bookId, BY_BOOK_CURSOR.decode(cursor),
+                CursorCodec.limit(size), KEYSET_SORT), BY_BOOK_CURSOR);
+    }
+
+    @Override
+    public BorrowItemPageResponseDto scrollOverdueItems(String cursor, int size) {
+        log.info("Scrolling overdue items, size: {}", size);
+        return toWindowDto(borrowItemRepository.findByReturnedFalseAndDueDateBefore(
+                LocalDate.now(), OVERDUE_CURSOR.decode(cursor), CursorCodec.limit(size), KEYSET_SORT), OVERDUE_CURSOR);
+    }
+
+    @Override
+    public BorrowItemPageResponseDto scrollBorrowItemsByDateRange(LocalDate startDate, LocalDate endDate, String cursor, int size) {
+        if (startDate == null) {
+            startDate = LocalDate.now().minusMonths(1);
+        }
+
+        if (endDate == null) {
+            endDate = LocalDate.now();
+        }
+
+        if (startDate.isAfter(endDate)) {
+            log.warn("Invalid date range: startDate {} is after endDate {}", startDate, endDate);
+            throw new IllegalArgumentException("Start date cannot be after end date");
+        }
+
+        log.info("Scrolling borrow items between {} and {}", startDate, endDate);
+        return toWindowDto(borrowItemRepository.findByBorrowDateBetween(
+                startDate, endDate, BY_DATE_RANGE_CURSOR.decode(cursor), CursorCodec.limit(size), KEYSET_SORT),
+                BY_DATE_RANGE_CURSOR);
+    }
+
     @Override
     public List<BorrowItemResponseDto> getActiveItemsByUser(Long userId) {
         if (!userRepository.existsById(userId)) {
@@ -144,11 +332,9 @@ public class BorrowItemServiceImpl implements BorrowItemService {
             throw new IllegalArgumentException("User not found with id: " + userId);
         }
         securityUtils.checkAccessPermissionForUser(userId);
-        List<BorrowItem> activeItems = borrowItemRepository.findByUserIdAndReturnedFalse(userId);
-        LocalDate today = LocalDate.now();
-
-        boolean hasOverdue = activeItems.stream()
-                .anyMatch(item -> item.getDueDate().isBefore(today));
+        boolean hasOverdue = borrowEligibilityCache
+                .get(userId, () -> borrowItemRepository.summarizeActiveByUserId(userId))
+                .hasOverdue(LocalDate.now());
 
         log.debug("User ID: {} has overdue items: {}", userId, hasOverdue);
         return hasOverdue;
@@ -165,4 +351,11 @@ public class BorrowItemServiceImpl implements BorrowItemService {
         log.debug("User ID: {} has {} active borrow items", userId, count);
         return count;
     }
-}
\ No newline at end of file
+
+    private BorrowItemPageResponseDto toWindowDto(Window<BorrowItem> window, CursorCodec cursorCodec) {
+        List<BorrowItemResponseDto> items = window.getContent().stream()
+                .map(borrowMapper::toItemDto)
+                .toList();
+        return BorrowItemPageResponseDto.ofWindow(items, cursorCodec.nextCursor(window));
+    }
+}
@@ -1,29 +1,40 @@
 package com.getir.aau.librarymanagementsystem.service.impl;
 
+import com.getir.aau.librarymanagementsystem.cache.BookQueryCache;
+import com.getir.aau.librarymanagementsystem.cache.BorrowEligibilityCache;
+import com.getir.aau.librarymanagementsystem.concurrency.InventoryLedger;
 import com.getir.aau.librarymanagementsystem.exception.ResourceAlreadyExistsException;
 import com.getir.aau.librarymanagementsystem.exception.ResourceNotFoundException;
 import com.getir.aau.librarymanagementsystem.model.dto.request.BorrowItemRequestDto;
 import com.getir.aau.librarymanagementsystem.model.dto.request.BorrowRecordRequestDto;
+import com.getir.aau.librarymanagementsystem.model.dto.request.BulkBorrowRequestDto;
 import com.getir.aau.librarymanagementsystem.model.dto.response.BorrowRecordPageResponseDto;
 import com.getir.aau.librarymanagementsystem.model.dto.response.BorrowRecordResponseDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.BulkBorrowResponseDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.BulkBorrowResultDto;
 import com.getir.aau.librarymanagementsystem.model.entity.*;
 import com.getir.aau.librarymanagementsystem.model.mapper.BorrowMapper;
+import com.getir.aau.librarymanagementsystem.pagination.CursorCodec;
+import com.getir.aau.librarymanagementsystem.repository.ActiveBorrowSummary;
 import com.getir.aau.librarymanagementsystem.repository.BookRepository;
 import com.getir.aau.librarymanagementsystem.repository.BorrowItemRepository;
 import com.getir.aau.librarymanagementsystem.repository.BorrowRecordRepository;
 import com.getir.aau.librarymanagementsystem.repository.UserRepository;
+import com.getir.aau.librarymanagementsystem.search.BookSearchIndex;
+import com.getir.aau.librarymanagementsystem.search.SuggestionIndex;
 import com.getir.aau.librarymanagementsystem.security.SecurityUtils;
 import com.getir.aau.librarymanagementsystem.service.BorrowRecordService;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.*;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
-import java.util.List;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -37,13 +48,176 @@ public class BorrowRecordServiceImpl implements BorrowRecordService {
     private final BookRepository bookRepository;
     private final BorrowMapper borrowMapper;
     private final SecurityUtils securityUtils;
+    private final BookSearchIndex bookSearchIndex;
+    private final SuggestionIndex suggestionIndex;
+    private final BookQueryCache bookQueryCache;
+    private final InventoryLedger inventoryLedger;
+    private final BorrowEligibilityCache borrowEligibilityCache;
 
     private static final int MAX_BORROW_LIMIT = 5;
     private static final int DEFAULT_LOAN_PERIOD_DAYS = 14;
+    private static final Sort KEYSET_SORT = Sort.by(Sort.Direction.DESC, "borrowDate", "id");
+    private static final CursorCodec BY_USER_CURSOR = CursorCodec.of("borrow-records/user", KEYSET_SORT);
+    private static final CursorCodec ALL_CURSOR = CursorCodec.of("borrow-records/all", KEYSET_SORT);
+    private static final CursorCodec FILTERED_CURSOR = CursorCodec.of("borrow-records/search", KEYSET_SORT);
 
     @Override
     public BorrowRecordResponseDto borrowBooks(BorrowRecordRequestDto dto) {
+        // Copies are taken with conditional updates, so losing the last copy to a concurrent borrow fails as sold out
+        BorrowRecord borrowRecord = createBorrowRecord(dto);
+
+        for (BorrowItem item : borrowRecord.getItems()) {
+            Book book = item.getBook();
+            boolean available = inventoryLedger.copiesOf(book) > 0;
+            bookSearchIndex.updateAvailability(book.getId(), available);
+            suggestionIndex.recordBorrow(book.getId(), book.getAuthor().getId());
+            // Only books with copies left are borrowed, so the availability changed if these were the last ones
+            bookQueryCache.evictCopies(book.getId(), !available);
+        }
+
+        log.info("Successfully created borrow record ID: {} with {} items", borrowRecord.getId(), borrowRecord.getItems().size());
+
+        return borrowMapper.toRecordDto(borrowRecord);
+    }
+
+    @Override
+    public BulkBorrowResponseDto borrowBooksInBulk(BulkBorrowRequestDto dto) {
+        BulkCheckout checkout = createBorrowRecords(dto.borrows());
+
+        checkout.copiesLeft().forEach((bookId, copies) -> {
+            bookSearchIndex.updateAvailability(bookId, copies > 0);
+            bookQueryCache.evictCopies(bookId, copies == 0);
+        });
+
+        List<BulkBorrowResultDto> results = checkout.outcomes().stream()
+                .map(outcome -> {
+                    if (outcome.record() == null) {
+                        return BulkBorrowResultDto.rejected(outcome.userId(), outcome.error());
+                    }
+                    outcome.record().getItems().forEach(item ->
+                            suggestionIndex.recordBorrow(item.getBook().getId(), item.getBook().getAuthor().getId()));
+                    return BulkBorrowResultDto.borrowed(borrowMapper.toRecordDto(outcome.record()));
+                })
+                .toList();
+
+        BulkBorrowResponseDto response = BulkBorrowResponseDto.of(results);
+        log.info("Bulk borrow created {} records and rejected {}", response.borrowed(), response.rejected());
+        return response;
+    }
+
+    /**
+     * Outcome of one borrow of a bulk request, the record created or the reason it was rejected
+     */
+    private record BulkOutcome(Long userId, BorrowRecord record, String error) {
+    }
+
+    /**
+     * Outcomes of a bulk request in request order, along with the copies left of each book copies were taken
+     * from when the books were written directly
+     */
+    private record BulkCheckout(List<BulkOutcome> outcomes, Map<Long, Integer> copiesLeft) {
+    }
+
+    /**
+     * Validates and reserves every borrow of a bulk request against state loaded once for all of them: the
+     * users, their active items summarized by one grouped query and the books, locked in id order unless the
+     * ledger holds their copies. Each borrow gets all of its books or none, the copies taken are written with one
+     * update per book and the records inserted in batches
+     */
+    private BulkCheckout createBorrowRecords(List<BorrowRecordRequestDto> requests) {
+        Set<Long> userIds = requests.stream().map(BorrowRecordRequestDto::userId).collect(Collectors.toSet());
+        Set<Long> bookIds = requests.stream()
+                .flatMap(request -> request.items().stream())
+                .map(BorrowItemRequestDto::bookId)
+                .collect(Collectors.toSet());
+
+        Map<Long, User> users = userRepository.findAllById(userIds).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+        Map<Long, ActiveBorrowSummary> summaries = borrowItemRepository.summarizeActiveByUserIds(userIds).stream()
+                .collect(Collectors.toMap(ActiveBorrowSummary::userId, Function.identity()));
+
+        boolean deferred = inventoryLedger.isEnabled();
+        Map<Long, Book> books = (deferred ? bookRepository.findAllById(bookIds) : bookRepository.findAllForUpdate(bookIds))
+                .stream()
+                .collect(Collectors.toMap(Book::getId, Function.identity()));
+        Map<Long, Integer> copiesLeft = new HashMap<>();
+        if (!deferred) {
+            books.values().forEach(book -> copiesLeft.put(book.getId(), book.getNumberOfCopies()));
+        }
+
+        LocalDate borrowDate = LocalDate.now();
+        LocalDate dueDate = borrowDate.plusDays(DEFAULT_LOAN_PERIOD_DAYS);
+        Map<Long, Integer> borrowedInRequest = new HashMap<>();
+        List<BulkOutcome> outcomes = new ArrayList<>();
+        List<BorrowRecord> records = new ArrayList<>();
+
+        for (BorrowRecordRequestDto request : requests) {
+            Long userId = request.userId();
+            Map<Long, Integer> requested = request.items().stream()
+                    .collect(Collectors.groupingBy(BorrowItemRequestDto::bookId, LinkedHashMap::new,
+                            Collectors.summingInt(item -> 1)));
+            try {
+                User user = users.get(userId);
+                if (user == null) {
+                    throw new ResourceNotFoundException("User", "id", userId);
+                }
+                ActiveBorrowSummary summary = summaries.get(userId);
+                long activeCount = (summary == null ? 0 : summary.activeCount()) + borrowedInRequest.getOrDefault(userId, 0);
+                checkUserEligibility(user, activeCount, summary != null && summary.hasOverdue(borrowDate));
+
+                requested.forEach((bookId, count) -> {
+                    if (!books.containsKey(bookId)) {
+                        throw new ResourceNotFoundException("Book", "id", bookId);
+                    }
+                    if (!deferred && copiesLeft.get(bookId) < count) {
+                        throw new IllegalStateException("Book with ID " + bookId + " is not available for borrowing");
+                    }
+                });
+                if (deferred && !inventoryLedger.tryReserveAll(requested)) {
+                    throw new IllegalStateException("Some of the books are not available for borrowing");
+                }
+                if (!deferred) {
+                    requested.forEach((bookId, count) -> copiesLeft.merge(bookId, -count, Integer::sum));
+                }
+
+                BorrowRecord borrowRecord = BorrowRecord.builder()
+                        .user(user)
+                        .borrowDate(borrowDate)
+                        .dueDate(dueDate)
+                        .build();
+                for (BorrowItemRequestDto itemDto : request.items()) {
+                    borrowRecord.addItem(BorrowItem.builder()
+                            .user(user)
+                            .book(books.get(itemDto.bookId()))
+                            .borrowDate(borrowDate)
+                            .dueDate(dueDate)
+                            .returned(false)
+                            .copiesSettled(!deferred)
+                            .build());
+                }
+                records.add(borrowRecord);
+                borrowedInRequest.merge(userId, request.items().size(), Integer::sum);
+                outcomes.add(new BulkOutcome(userId, borrowRecord, null));
+            } catch (ResourceNotFoundException | AccessDeniedException | IllegalStateException e) {
+                log.warn("Bulk borrow rejected for user ID {}: {}", userId, e.getMessage());
+                outcomes.add(new BulkOutcome(userId, null, e.getMessage()));
+            }
+        }
+
+        if (!deferred) {
+            // The books are locked, so each update takes every copy granted from it
+            Map<Long, Integer> taken = new HashMap<>();
+            records.forEach(record -> record.getItems().forEach(item -> taken.merge(item.getBook().getId(), 1, Integer::sum)));
+            taken.forEach(bookRepository::decrementCopies);
+            copiesLeft.keySet().retainAll(taken.keySet());
+        }
+        borrowRecordRepository.saveAll(records);
+        borrowedInRequest.forEach((userId, count) -> borrowEligibilityCache.recordBorrow(userId, count, dueDate));
+
+        return new BulkCheckout(outcomes, copiesLeft);
+    }
 
+    private BorrowRecord createBorrowRecord(BorrowRecordRequestDto dto) {
         User user = userRepository.findById(dto.userId())
                 .orElseThrow(() -> {
                     log.warn("User not found with id: {}", dto.userId());
@@ -64,19 +238,30 @@ public class BorrowRecordServiceImpl implements BorrowRecordService {
 
         log.info("Creating new borrow record for user ID: {}", user.getId());
 
-        for (BorrowItemRequestDto itemDto : dto.items()) {
-            Book book = bookRepository.findById(itemDto.bookId())
-                    .orElseThrow(() -> {
-                        log.warn("Book not found with id: {}", itemDto.bookId());
-                        return new ResourceNotFoundException("Book", "id", itemDto.bookId());
-                    });
-
-            if (!book.isAvailable()) {
-                log.warn("Book with ID {} is not available for borrowing", book.getId());
-                throw new ResourceAlreadyExistsException("Book", "id", book.getId());
+        // Take the copies with one conditional update per book instead of reading and writing the book rows, or
+        // from the ledger which writes them to the books later
+        boolean deferred = inventoryLedger.isEnabled();
+        Map<Long, Long> requested = dto.items().stream()
+                .collect(Collectors.groupingBy(BorrowItemRequestDto::bookId, LinkedHashMap::new, Collectors.counting()));
+        requested.forEach((bookId, count) -> {
+            boolean taken = deferred
+                    ? inventoryLedger.tryReserve(bookId, count.intValue())
+                    : bookRepository.decrementCopies(bookId, count.intValue()) > 0;
+            if (!taken) {
+                if (!bookRepository.existsById(bookId)) {
+                    log.warn("Book not found with id: {}", bookId);
+                    throw new ResourceNotFoundException("Book", "id", bookId);
+                }
+                log.warn("Book with ID {} is not available for borrowing", bookId);
+                throw new ResourceAlreadyExistsException("Book", "id", bookId);
             }
+        });
+
+        Map<Long, Book> books = bookRepository.findAllById(requested.keySet()).stream()
+                .collect(Collectors.toMap(Book::getId, Function.identity()));
 
-            book.borrow();
+        for (BorrowItemRequestDto itemDto : dto.items()) {
+            Book book = books.get(itemDto.bookId());
 
             BorrowItem borrowItem = BorrowItem.builder()
                     .user(user)
@@ -84,19 +269,18 @@ public class BorrowRecordServiceImpl implements BorrowRecordService {
                     .borrowDate(borrowRecord.getBorrowDate())
                     .dueDate(dueDate)
                     .returned(false)
+                    .copiesSettled(!deferred)
                     .build();
 
             borrowRecord.addItem(borrowItem);
             log.debug("Added book ID: {} to borrow record", book.getId());
         }
 
-        bookRepository.saveAll(borrowRecord.getItems().stream().map(BorrowItem::getBook).toList());
+        // Saving cascades to the items, so the record and item inserts are written in JDBC batches when the
+        // transaction flushes
         borrowRecordRepository.save(borrowRecord);
-        borrowItemRepository.saveAll(borrowRecord.getItems());
-
-        log.info("Successfully created borrow record ID: {} with {} items", borrowRecord.getId(), borrowRecord.getItems().size());
-
-        return borrowMapper.toRecordDto(borrowRecord);
+        borrowEligibilityCache.recordBorrow(user.getId(), dto.items().size(), dueDate);
+        return borrowRecord;
     }
 
     @Override
@@ -107,11 +291,11 @@ public class BorrowRecordServiceImpl implements BorrowRecordService {
                     return new ResourceNotFoundException("BorrowRecord", "id", id);
                 });
 
-        User currentUser = securityUtils.getCurrentUser();
+        Long currentUserId = securityUtils.getCurrentUserId();
 
         if (!securityUtils.hasRole("LIBRARIAN")) {
-            if (!borrowRecord.getUser().getId().equals(currentUser.getId())) {
-                log.warn("Unauthorized access attempt to record ID: {} by user ID: {}", id, currentUser.getId());
+            if (!borrowRecord.getUser().getId().equals(currentUserId)) {
+                log.warn("Unauthorized access attempt to record ID: {} by user ID: {}", id, currentUserId);
                 throw new AccessDeniedException("You are not allowed to access this record.");
             }
         }
@@ -122,9 +306,9 @@ public class BorrowRecordServiceImpl implements BorrowRecordService {
 
     @Override
     public BorrowRecordPageResponseDto getByUser(Long userId, Pageable pageable) {
-        User currentUser = securityUtils.getCurrentUser();
+        Long currentUserId = securityUtils.getCurrentUserId();
 
-        if (!securityUtils.hasRole("LIBRARIAN") && !userId.equals(currentUser.getId())) {
+        if (!securityUtils.hasRole("LIBRARIAN") && !userId.equals(currentUserId)) {
             throw new AccessDeniedException("You cannot view other users' borrow records.");
         }
 
@@ -135,7 +319,7 @@ public class BorrowRecordServiceImpl implements BorrowRecordService {
 
         log.debug("Retrieving borrow records for user ID: {}", userId);
         Page<BorrowRecord> page = borrowRecordRepository.findByUserId(userId, pageable);
-        List<BorrowRecordResponseDto> items = page.getContent().stream()
+        List<BorrowRecordResponseDto> items = withItems(page.getContent()).stream()
                 .map(borrowMapper::toRecordDto)
                 .toList();
 
@@ -148,7 +332,7 @@ public class BorrowRecordServiceImpl implements BorrowRecordService {
                 pageable.getPageNumber(), pageable.getPageSize());
 
         Page<BorrowRecord> page = borrowRecordRepository.findAllOrderByBorrowDateDesc(pageable);
-        List<BorrowRecordResponseDto> items = page.getContent().stream()
+        List<BorrowRecordResponseDto> items = withItems(page.getContent()).stream()
                 .map(borrowMapper::toRecordDto)
                 .toList();
 
@@ -161,13 +345,48 @@ public class BorrowRecordServiceImpl implements BorrowRecordService {
                 email, startDate, endDate);
 
         Page<BorrowRecord> page = borrowRecordRepository.findBorrowRecordsWithFilters(email, startDate, endDate, pageable);
-        List<BorrowRecordResponseDto> items = page.getContent().stream()
+        List<BorrowRecordResponseDto> items = withItems(page.getContent()).stream()
                 .map(borrowMapper::toRecordDto)
                 .toList();
 
         return new BorrowRecordPageResponseDto(items, page.getTotalPages(), page.getTotalElements());
     }
 
+    @Override
+    public BorrowRecordPageResponseDto scrollByUser(Long userId, String cursor, int size) {
+        Long currentUserId = securityUtils.getCurrentUserId();
+
+        if (!securityUtils.hasRole("LIBRARIAN") && !userId.equals(currentUserId)) {
+            throw new AccessDeniedException("You cannot view other users' borrow records.");
+        }
+
+        if (!userRepository.existsById(userId)) {
+            log.warn("User not found while scrolling borrow records, id: {}", userId);
+            throw new ResourceNotFoundException("User", "id", userId);
+        }
+
+        log.debug("Scrolling borrow records for user ID: {}", userId);
+        return toWindowDto(borrowRecordRepository.findByUserId(userId, BY_USER_CURSOR.decode(cursor),
+                CursorCodec.limit(size), KEYSET_SORT), BY_USER_CURSOR);
+    }
+
+    @Override
+    public BorrowRecordPageResponseDto scrollAll(String cursor, int size) {
+        log.debug("Scrolling all borrow records, size: {}", size);
+        return toWindowDto(borrowRecordRepository.findAllBy(ALL_CURSOR.decode(cursor), CursorCodec.limit(size), KEYSET_SORT),
+                ALL_CURSOR);
+    }
+
+    @Override
+    public BorrowRecordPageResponseDto scrollFiltered(String email, LocalDate startDate, LocalDate endDate, String cursor, int size) {
+        log.info("Scrolling borrow records with email: {}, startDate: {}, endDate: {}",
+                email, startDate, endDate);
+
+        return toWindowDto(borrowRecordRepository.findBorrowRecordsWithFilters(
+                email, startDate, endDate, FILTERED_CURSOR.decode(cursor), CursorCodec.limit(size), KEYSET_SORT),
+                FILTERED_CURSOR);
+    }
+
     @Override
     public void checkBorrowEligibility(Long userId) {
         User user = userRepository.findById(userId)
@@ -194,8 +413,13 @@ public class BorrowRecordServiceImpl implements BorrowRecordService {
 
     @Override
     public List<BorrowRecordResponseDto> getActiveRecordsByUser(Long userId) {
-        User currentUser = securityUtils.getCurrentUser();
-        if (!securityUtils.hasRole("LIBRARIAN") && !userId.equals(currentUser.getId())) {
+        return getActiveRecordsByUser(userId, Pageable.unpaged()).items();
+    }
+
+    @Override
+    public BorrowRecordPageResponseDto getActiveRecordsByUser(Long userId, Pageable pageable) {
+        Long currentUserId = securityUtils.getCurrentUserId();
+        if (!securityUtils.hasRole("LIBRARIAN") && !userId.equals(currentUserId)) {
             throw new AccessDeniedException("You cannot view active records of other users.");
         }
 
@@ -204,32 +428,62 @@ public class BorrowRecordServiceImpl implements BorrowRecordService {
             throw new ResourceNotFoundException("User", "id", userId);
         }
 
-        List<BorrowRecord> records = borrowRecordRepository.findByUserId(userId, Pageable.unpaged()).getContent();
+        Page<BorrowRecord> page = borrowRecordRepository.findActiveByUserId(userId, pageable);
+        List<BorrowRecordResponseDto> items = withItems(page.getContent()).stream()
+                .map(borrowMapper::toRecordDto)
+                .toList();
 
-        List<BorrowRecord> activeRecords = records.stream()
-                .filter(record -> record.getItems().stream().anyMatch(item -> !item.isReturned()))
+        log.debug("Found {} active borrow records for user ID: {}", page.getTotalElements(), userId);
+        return new BorrowRecordPageResponseDto(items, page.getTotalPages(), page.getTotalElements());
+    }
+
+    private BorrowRecordPageResponseDto toWindowDto(Window<BorrowRecord> window, CursorCodec cursorCodec) {
+        List<BorrowRecordResponseDto> items = withItems(window.getContent()).stream()
+                .map(borrowMapper::toRecordDto)
                 .toList();
+        return BorrowRecordPageResponseDto.ofWindow(items, cursorCodec.nextCursor(window));
+    }
 
-        log.debug("Found {} active borrow records for user ID: {}", activeRecords.size(), userId);
-        return borrowMapper.toRecordDtoList(activeRecords);
+    /**
+     * Initializes the items and books of the records to be mapped, see {@link BorrowRecordRepository#fetchItemsWithBooks}
+     */
+    private List<BorrowRecord> withItems(List<BorrowRecord> records) {
+        if (!records.isEmpty()) {
+            borrowRecordRepository.fetchItemsWithBooks(records);
+        }
+        return records;
     }
 
+    /**
+     * Checks the user against the count and earliest due date of their unreturned items, summarized by one
+     * aggregate query unless cached
+     */
     private void checkUserEligibility(User user) {
+        checkBorrowerRole(user);
+        ActiveBorrowSummary summary = borrowEligibilityCache.get(user.getId(),
+                () -> borrowItemRepository.summarizeActiveByUserId(user.getId()));
+
+        checkBorrowLimits(user, summary.activeCount(), summary.hasOverdue(LocalDate.now()));
+    }
+
+    private void checkUserEligibility(User user, long activeCount, boolean hasOverdue) {
+        checkBorrowerRole(user);
+        checkBorrowLimits(user, activeCount, hasOverdue);
+    }
+
+    private void checkBorrowerRole(User user) {
         if (!user.getRole().getName().equals(ERole.ROLE_USER)) {
             log.warn("User ID: {} with role {} attempted to borrow books", user.getId(), user.getRole().getName());
             throw new AccessDeniedException("Only regular users can borrow books.");
         }
+    }
 
-        List<BorrowItem> activeItems = borrowItemRepository.findByUserIdAndReturnedFalse(user.getId());
-
-        if (activeItems.size() >= MAX_BORROW_LIMIT) {
+    private void checkBorrowLimits(User user, long activeCount, boolean hasOverdue) {
+        if (activeCount >= MAX_BORROW_LIMIT) {
             log.warn("User ID: {} has reached maximum borrowing limit of {}", user.getId(), MAX_BORROW_LIMIT);
             throw new IllegalStateException("You have reached the maximum borrowing limit.");
         }
 
-        boolean hasOverdue = activeItems.stream()
-                .anyMatch(item -> item.getDueDate().isBefore(LocalDate.now()));
-
         if (hasOverdue) {
             log.warn("User ID: {} has overdue items and cannot borrow new books", user.getId());
             throw new IllegalStateException("You cannot borrow books until overdue items are returned.");
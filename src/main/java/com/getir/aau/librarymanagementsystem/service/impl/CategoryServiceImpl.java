@@ -1,5 +1,6 @@
 package com.getir.aau.librarymanagementsystem.service.impl;
 
+import com.getir.aau.librarymanagementsystem.cache.BookQueryCache;
 import com.getir.aau.librarymanagementsystem.exception.ResourceAlreadyExistsException;
 import com.getir.aau.librarymanagementsystem.exception.ResourceNotFoundException;
 import com.getir.aau.librarymanagementsystem.model.dto.request.CategoryRequestDto;
@@ -7,11 +8,14 @@ import com.getir.aau.librarymanagementsystem.model.dto.response.CategoryResponse
 import com.getir.aau.librarymanagementsystem.model.entity.Category;
 import com.getir.aau.librarymanagementsystem.model.mapper.CategoryMapper;
 import com.getir.aau.librarymanagementsystem.repository.CategoryRepository;
+import com.getir.aau.librarymanagementsystem.search.BookSearchIndex;
 import com.getir.aau.librarymanagementsystem.service.CategoryService;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.List;
 import java.util.stream.Collectors;
@@ -24,6 +28,8 @@ public class CategoryServiceImpl implements CategoryService {
 
     private final CategoryRepository categoryRepository;
     private final CategoryMapper categoryMapper;
+    private final BookSearchIndex bookSearchIndex;
+    private final BookQueryCache bookQueryCache;
 
     @Override
     public CategoryResponseDto create(CategoryRequestDto dto) {
@@ -46,6 +52,7 @@ public class CategoryServiceImpl implements CategoryService {
 
         Category existing = categoryRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Category", "id", id));
+        boolean renamed = !existing.getName().equals(dto.name());
 
         Category updated = Category.builder()
                 .id(existing.getId())
@@ -56,6 +63,12 @@ public class CategoryServiceImpl implements CategoryService {
         Category saved = categoryRepository.save(updated);
         log.info("Category updated with ID: {}", saved.getId());
 
+        if (renamed) {
+            // The category name is searchable and counted as a facet on every book of the category
+            afterCommit(bookSearchIndex::rebuild);
+            bookQueryCache.evictAll();
+        }
+
         return categoryMapper.toDto(saved);
     }
 
@@ -85,6 +98,25 @@ public class CategoryServiceImpl implements CategoryService {
         }
 
         categoryRepository.deleteById(id);
+        // Deleting a category cascades to its books
+        bookQueryCache.evictAll();
         log.info("Category deleted successfully with ID: {}", id);
     }
-}
\ No newline at end of file
+
+    /**
+     * Applies a change to the in-memory indexes once the current transaction commits, so that a write rolled
+     * back leaves them matching the database
+     */
+    private static void afterCommit(Runnable change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            change.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                change.run();
+            }
+        });
+    }
+}
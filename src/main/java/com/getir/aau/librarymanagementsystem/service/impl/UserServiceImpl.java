@@ -1,8 +1,10 @@
 package com.getir.aau.librarymanagementsystem.service.impl;
 
+import com.getir.aau.librarymanagementsystem.cache.UserDetailsCache;
 import com.getir.aau.librarymanagementsystem.exception.ResourceAlreadyExistsException;
 import com.getir.aau.librarymanagementsystem.exception.ResourceNotFoundException;
 import com.getir.aau.librarymanagementsystem.model.dto.request.UserUpdateRequestDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.CacheStatsResponseDto;
 import com.getir.aau.librarymanagementsystem.model.dto.response.UserResponseDto;
 import com.getir.aau.librarymanagementsystem.model.entity.ERole;
 import com.getir.aau.librarymanagementsystem.model.entity.Role;
@@ -11,6 +13,7 @@ import com.getir.aau.librarymanagementsystem.model.mapper.UserMapper;
 import com.getir.aau.librarymanagementsystem.repository.RoleRepository;
 import com.getir.aau.librarymanagementsystem.repository.UserRepository;
 import com.getir.aau.librarymanagementsystem.security.auth.dto.RegisterRequestDto;
+import com.getir.aau.librarymanagementsystem.security.token.TokenService;
 import com.getir.aau.librarymanagementsystem.service.UserService;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
@@ -29,6 +32,8 @@ public class UserServiceImpl implements UserService {
     private final UserRepository userRepository;
     private final RoleRepository roleRepository;
     private final UserMapper userMapper;
+    private final TokenService tokenService;
+    private final UserDetailsCache userDetailsCache;
 
     @Override
     public UserResponseDto create(RegisterRequestDto dto) {
@@ -95,12 +100,17 @@ public class UserServiceImpl implements UserService {
         User user = userRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("User", "id", id));
 
-        if (dto.email() != null && !dto.email().equals(user.getEmail())
-                && userRepository.existsByEmail(dto.email())) {
+        boolean emailChanged = dto.email() != null && !dto.email().equals(user.getEmail());
+        if (emailChanged && userRepository.existsByEmail(dto.email())) {
             log.warn("Email {} already in use", dto.email());
             throw new ResourceAlreadyExistsException("User", "email", dto.email());
         }
 
+        if (emailChanged) {
+            // Tokens name the user by the previous email, which no longer signs anyone in
+            tokenService.revokeAllUserTokens(user);
+        }
+        userDetailsCache.evict(user.getEmail());
         userMapper.updateUserFromDto(dto, user);
 
         log.info("User updated successfully with ID: {}", user.getId());
@@ -119,6 +129,9 @@ public class UserServiceImpl implements UserService {
 
         user.setRole(role);
         User saved = userRepository.save(user);
+        // Tokens carry the previous role, the user signs in again to get one with the new role
+        tokenService.revokeAllUserTokens(saved);
+        userDetailsCache.evict(saved.getEmail());
 
         log.info("User ID {} role changed to {}", userId, newRole);
         return userMapper.toDto(saved);
@@ -128,11 +141,12 @@ public class UserServiceImpl implements UserService {
     public void delete(Long id) {
         log.warn("Deleting user with ID: {}", id);
 
-        if (!userRepository.existsById(id)) {
-            throw new ResourceNotFoundException("User", "id", id);
-        }
+        User user = userRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("User", "id", id));
 
-        userRepository.deleteById(id);
+        tokenService.revokeAllUserTokens(user);
+        userRepository.delete(user);
+        userDetailsCache.evict(user.getEmail());
         log.info("User deleted successfully with ID: {}", id);
     }
 
@@ -141,4 +155,9 @@ public class UserServiceImpl implements UserService {
         log.debug("Finding user by email (Optional): {}", email);
         return userRepository.findByEmail(email);
     }
-}
\ No newline at end of file
+
+    @Override
+    public CacheStatsResponseDto getUserDetailsCacheStats() {
+        return userDetailsCache.stats();
+    }
+}
@@ -0,0 +1,133 @@
+package com.getir.aau.librarymanagementsystem.integration.service;
+
+import com.getir.aau.librarymanagementsystem.model.dto.request.BookRequestDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.BookPageResponseDto;
+import com.getir.aau.librarymanagementsystem.model.entity.Author;
+import com.getir.aau.librarymanagementsystem.model.entity.Category;
+import com.getir.aau.librarymanagementsystem.repository.AuthorRepository;
+import com.getir.aau.librarymanagementsystem.repository.BookRepository;
+import com.getir.aau.librarymanagementsystem.repository.CategoryRepository;
+import com.getir.aau.librarymanagementsystem.search.BookSearchIndex;
+import com.getir.aau.librarymanagementsystem.service.BookService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.transaction.Transactional;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+@ActiveProfiles("test")
+@TestPropertySource(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "application.search.result-cache.enabled=false"
+})
+@DisplayName("Book list query count Integration Tests")
+class BookQueryCountIntegrationTest {
+
+    private static final int BOOKS = 30;
+
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private AuthorRepository authorRepository;
+    @Autowired
+    private CategoryRepository categoryRepository;
+    @Autowired
+    private BookSearchIndex bookSearchIndex;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private Category category;
+
+    @BeforeEach
+    void setup() {
+        bookRepository.deleteAll();
+        categoryRepository.deleteAll();
+        authorRepository.deleteAll();
+
+        // A distinct author per book, so lazily loading them would cost one statement per row
+        List<Category> categories = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            categories.add(categoryRepository.save(Category.builder().name("Category " + i).build()));
+        }
+        category = categories.getFirst();
+        for (int i = 0; i < BOOKS; i++) {
+            Author author = authorRepository.save(Author.builder().name("Author " + i).description("desc").build());
+            bookService.create(new BookRequestDto(
+                    "Counted Book " + i, author.getId(), "isbn-" + i, categories.get(i % 3).getId(),
+                    "desc", LocalDate.now(), "Fiction", i % 2));
+        }
+
+        entityManager.flush();
+        // Drop the books of earlier tests, whose transactions rolled back, from the search index
+        bookSearchIndex.rebuild();
+        entityManager.clear();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @ParameterizedTest(name = "page size {0}")
+    @ValueSource(ints = {2, 5, 9})
+    @DisplayName("Should run one select and one count per database page regardless of its size")
+    void shouldQueryDatabasePagesWithConstantStatements(int size) {
+        Sort byCopies = Sort.by("numberOfCopies");
+
+        assertStatements(2, () -> bookService.getByAuthorName("Author", PageRequest.of(0, size, byCopies)));
+        assertStatements(2, () -> bookService.getByCategoryId(category.getId(), PageRequest.of(0, size)));
+        assertStatements(2, () -> bookService.getAvailable(PageRequest.of(0, size)));
+        assertStatements(2, () -> bookService.getUnavailable(PageRequest.of(0, size)));
+        assertStatements(2, () -> bookService.searchByKeywords("Counted", PageRequest.of(0, size, byCopies)));
+    }
+
+    @ParameterizedTest(name = "page size {0}")
+    @ValueSource(ints = {2, 5, 9})
+    @DisplayName("Should load a page found by the search index with a single statement")
+    void shouldLoadIndexPagesWithOneStatement(int size) {
+        assertStatements(1, () -> bookService.getByTitle("Counted", PageRequest.of(0, size)));
+        assertStatements(1, () -> bookService.fuzzySearch("Countd", 1, PageRequest.of(0, size)));
+    }
+
+    @ParameterizedTest(name = "page size {0}")
+    @ValueSource(ints = {2, 5, 9})
+    @DisplayName("Should fetch the authors and categories of a scrolled window with the window itself")
+    void shouldScrollWithOneStatement(int size) {
+        assertStatements(1, () -> bookService.scrollAvailable(null, size));
+        assertStatements(1, () -> bookService.scrollByCategoryId(category.getId(), null, size));
+    }
+
+    private void assertStatements(long expected, Supplier<BookPageResponseDto> query) {
+        entityManager.clear();
+        statistics.clear();
+
+        BookPageResponseDto result = query.get();
+
+        assertThat(result.books()).isNotEmpty().allSatisfy(book -> {
+            assertThat(book.authorName()).isNotNull();
+            assertThat(book.categoryName()).isNotNull();
+        });
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(expected);
+    }
+}
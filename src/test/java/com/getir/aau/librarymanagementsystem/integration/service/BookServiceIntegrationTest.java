@@ -11,6 +11,7 @@ import com.getir.aau.librarymanagementsystem.model.entity.Category;
 import com.getir.aau.librarymanagementsystem.repository.AuthorRepository;
 import com.getir.aau.librarymanagementsystem.repository.BookRepository;
 import com.getir.aau.librarymanagementsystem.repository.CategoryRepository;
+import com.getir.aau.librarymanagementsystem.search.BookSearchIndex;
 import com.getir.aau.librarymanagementsystem.service.BookService;
 import jakarta.transaction.Transactional;
 import org.junit.jupiter.api.BeforeEach;
@@ -21,9 +22,14 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.ActiveProfiles;
 
+import java.sql.Date;
 import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -42,6 +48,10 @@ class BookServiceIntegrationTest {
     private AuthorRepository authorRepository;
     @Autowired
     private CategoryRepository categoryRepository;
+    @Autowired
+    private BookSearchIndex bookSearchIndex;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
 
     private Author author;
     private Category category;
@@ -175,6 +185,8 @@ class BookServiceIntegrationTest {
         void setupPagination() {
             pageable = PageRequest.of(0, 10);
             bookService.create(requestDto);
+            // The index only takes committed books, the test transaction is never committed
+            bookSearchIndex.rebuild();
         }
 
         @Test
@@ -268,6 +280,69 @@ class BookServiceIntegrationTest {
          */
     }
 
+    @Nested
+    @DisplayName("Large Keyword Search Tests")
+    class LargeKeywordSearchTests {
+
+        // More matches than the 32767 bind parameters a Postgres statement can take
+        private static final int MATCHES = 33_000;
+
+        @BeforeEach
+        void insertBooks() {
+            List<Object[]> rows = IntStream.range(0, MATCHES)
+                    .mapToObj(i -> new Object[]{"The Book " + i, author.getId(), "isbn-" + i, category.getId(),
+                            "desc", Date.valueOf(LocalDate.now()), "Fiction", i % 7, true})
+                    .toList();
+            jdbcTemplate.batchUpdate("INSERT INTO books (title, author_id, isbn, category_id, description, "
+                    + "publication_date, genre, number_of_copies, available, version) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, 0)", rows);
+            bookSearchIndex.rebuild();
+        }
+
+        @Test
+        @DisplayName("Should page a common keyword sorted by author name")
+        void shouldSearchCommonKeywordSortedByAuthorName() {
+            BookPageResponseDto result = bookService.searchByKeywords("the",
+                    PageRequest.of(0, 10, Sort.by("author.name")));
+
+            assertThat(result.totalItems()).isEqualTo(MATCHES);
+            assertThat(result.books()).hasSize(10).allMatch(book -> book.authorName().equals("Author"));
+        }
+
+        @Test
+        @DisplayName("Should page a common keyword sorted by a property the index does not hold")
+        void shouldSearchCommonKeywordSortedByCopies() {
+            BookPageResponseDto result = bookService.searchByKeywords("the",
+                    PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "numberOfCopies")));
+
+            assertThat(result.totalItems()).isEqualTo(MATCHES);
+            assertThat(result.books()).hasSize(10).allMatch(book -> book.numberOfCopies() == 6);
+        }
+    }
+
+    @Nested
+    @DisplayName("Keyset Pagination Tests")
+    class KeysetPaginationTests {
+
+        @Test
+        @DisplayName("Should scroll books by author in title order following the cursor")
+        void shouldScrollByAuthorId() {
+            for (String title : List.of("Gamma", "Alpha", "Beta")) {
+                bookService.create(new BookRequestDto(title, author.getId(), "isbn-" + title, category.getId(),
+                        "desc", LocalDate.now(), "Fiction", 1));
+            }
+
+            BookPageResponseDto first = bookService.scrollByAuthorId(author.getId(), "", 2);
+            assertThat(first.books()).extracting(BookResponseDto::title).containsExactly("Alpha", "Beta");
+            assertThat(first.nextCursor()).isNotBlank();
+            assertThat(first.totalItems()).isEqualTo(-1);
+
+            BookPageResponseDto second = bookService.scrollByAuthorId(author.getId(), first.nextCursor(), 2);
+            assertThat(second.books()).extracting(BookResponseDto::title).containsExactly("Gamma");
+            assertThat(second.nextCursor()).isNull();
+        }
+    }
+
     @Nested
     @DisplayName("Count Method Test")
     class CountTests {
@@ -0,0 +1,139 @@
+package com.getir.aau.librarymanagementsystem.integration.service;
+
+import com.getir.aau.librarymanagementsystem.exception.ResourceAlreadyExistsException;
+import com.getir.aau.librarymanagementsystem.model.dto.request.BorrowItemRequestDto;
+import com.getir.aau.librarymanagementsystem.model.dto.request.BorrowRecordRequestDto;
+import com.getir.aau.librarymanagementsystem.model.entity.*;
+import com.getir.aau.librarymanagementsystem.repository.*;
+import com.getir.aau.librarymanagementsystem.service.BorrowRecordService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Borrows the copies of one book from many threads at once, each borrow committing on its own
+ */
+@Slf4j
+@SpringBootTest
+@ActiveProfiles("test")
+@DisplayName("Borrow concurrency Integration Tests")
+class BorrowConcurrencyIntegrationTest {
+
+    private static final int THREADS = 8;
+    private static final int PATRONS = 40;
+    private static final int COPIES = 20;
+
+    @Autowired private BorrowRecordService borrowRecordService;
+    @Autowired private BorrowRecordRepository borrowRecordRepository;
+    @Autowired private BorrowItemRepository borrowItemRepository;
+    @Autowired private BookRepository bookRepository;
+    @Autowired private AuthorRepository authorRepository;
+    @Autowired private CategoryRepository categoryRepository;
+    @Autowired private UserRepository userRepository;
+    @Autowired private RoleRepository roleRepository;
+
+    private Author author;
+    private Category category;
+    private Book book;
+    private final List<User> patrons = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        Role userRole = roleRepository.findByName(ERole.ROLE_USER).orElseThrow();
+        author = authorRepository.save(Author.builder().name("Stress Author").description("desc").build());
+        category = categoryRepository.save(Category.builder().name("Stress Category").build());
+        book = bookRepository.save(Book.builder()
+                .title("Stress Book").isbn("stress-1").description("desc")
+                .publicationDate(LocalDate.of(2020, 1, 1)).genre("Fiction")
+                .numberOfCopies(COPIES).available(true)
+                .author(author).category(category)
+                .build());
+        for (int i = 0; i < PATRONS; i++) {
+            patrons.add(userRepository.save(User.builder()
+                    .firstName("Stress").lastName("Patron " + i)
+                    .email("stress" + i + "@example.com").password("pw").phoneNumber("444000" + i)
+                    .role(userRole)
+                    .build()));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        List<BorrowItem> items = borrowItemRepository.findAll().stream()
+                .filter(item -> item.getBook().getId().equals(book.getId()))
+                .toList();
+        List<Long> recordIds = items.stream().map(item -> item.getBorrowRecord().getId()).distinct().toList();
+        borrowItemRepository.deleteAll(items);
+        borrowRecordRepository.deleteAllById(recordIds);
+        userRepository.deleteAll(patrons);
+        bookRepository.deleteById(book.getId());
+        categoryRepository.delete(category);
+        authorRepository.delete(author);
+    }
+
+    @Test
+    @DisplayName("Should never lend more copies than the book has while patrons race for them")
+    void shouldNotOversellUnderContention() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger borrowed = new AtomicInteger();
+        AtomicInteger soldOut = new AtomicInteger();
+        AtomicInteger conflicts = new AtomicInteger();
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (User patron : patrons) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                try {
+                    borrowRecordService.borrowBooks(new BorrowRecordRequestDto(
+                            patron.getId(), List.of(new BorrowItemRequestDto(book.getId()))));
+                    borrowed.incrementAndGet();
+                } catch (ResourceAlreadyExistsException e) {
+                    soldOut.incrementAndGet();
+                } catch (OptimisticLockingFailureException e) {
+                    conflicts.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+
+        long startedAt = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        double seconds = (System.nanoTime() - startedAt) / 1e9;
+        executor.shutdown();
+
+        log.info("{} borrow attempts on {} threads in {} ms, {} borrows/s: {} borrowed, {} sold out, {} conflicts",
+                PATRONS, THREADS, Math.round(seconds * 1000), Math.round(PATRONS / seconds),
+                borrowed.get(), soldOut.get(), conflicts.get());
+
+        Book stored = bookRepository.findById(book.getId()).orElseThrow();
+        long lent = borrowItemRepository.findAll().stream()
+                .filter(item -> item.getBook().getId().equals(book.getId()))
+                .count();
+
+        // Every copy is lent exactly once and every other patron is told the book is sold out
+        assertThat(borrowed.get()).isEqualTo(COPIES);
+        assertThat(soldOut.get()).isEqualTo(PATRONS - COPIES);
+        assertThat(conflicts.get()).isZero();
+        assertThat(lent).isEqualTo(COPIES);
+        assertThat(stored.getNumberOfCopies()).isZero();
+        assertThat(stored.isAvailable()).isFalse();
+    }
+}
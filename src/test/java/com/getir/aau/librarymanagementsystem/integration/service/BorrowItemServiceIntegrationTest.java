@@ -1,8 +1,10 @@
 package com.getir.aau.librarymanagementsystem.integration.service;
 
 import com.getir.aau.librarymanagementsystem.exception.ResourceNotFoundException;
+import com.getir.aau.librarymanagementsystem.model.dto.request.BulkReturnRequestDto;
 import com.getir.aau.librarymanagementsystem.model.dto.response.BorrowItemPageResponseDto;
 import com.getir.aau.librarymanagementsystem.model.dto.response.BorrowItemResponseDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.BulkReturnResponseDto;
 import com.getir.aau.librarymanagementsystem.model.entity.*;
 import com.getir.aau.librarymanagementsystem.repository.BookRepository;
 import com.getir.aau.librarymanagementsystem.repository.BorrowItemRepository;
@@ -189,6 +191,48 @@ class BorrowItemServiceIntegrationTest {
 
     }
 
+    @Nested
+    @DisplayName("returnBooksInBulk integration")
+    class ReturnBooksInBulkIntegrationTests {
+
+        @Test
+        @DisplayName("Should return items by ID and by scanned book and give their copies back")
+        void returnBooksInBulk_asLibrarian_success() {
+            SecurityContextHolder.getContext().setAuthentication(
+                    new UsernamePasswordAuthenticationToken(
+                            librarian.getEmail(),
+                            librarian.getPassword(),
+                            List.of(() -> "ROLE_LIBRARIAN")
+                    )
+            );
+            BorrowItem secondItem = borrowItemRepository.save(BorrowItem.builder()
+                    .book(book)
+                    .user(regularUser)
+                    .borrowRecord(borrowItem.getBorrowRecord())
+                    .borrowDate(LocalDate.now().minusDays(2))
+                    .dueDate(LocalDate.now().plusDays(12))
+                    .returned(false)
+                    .build());
+
+            BulkReturnResponseDto response = borrowItemService.returnBooksInBulk(new BulkReturnRequestDto(
+                    List.of(borrowItem.getId(), 999L), List.of(book.getId(), book.getId())));
+
+            assertEquals(2, response.returned());
+            assertEquals(2, response.rejected());
+            assertEquals(secondItem.getId(), response.results().get(2).itemId());
+            assertTrue(borrowItemRepository.findById(borrowItem.getId()).orElseThrow().isReturned());
+            assertTrue(borrowItemRepository.findById(secondItem.getId()).orElseThrow().isReturned());
+            assertEquals(4, bookRepository.findById(book.getId()).orElseThrow().getNumberOfCopies());
+        }
+
+        @Test
+        @DisplayName("Should throw AccessDeniedException when a user who is not librarian returns in bulk")
+        void returnBooksInBulk_asUser_throwsException() {
+            assertThrows(AccessDeniedException.class, () ->
+                    borrowItemService.returnBooksInBulk(new BulkReturnRequestDto(List.of(borrowItem.getId()), List.of())));
+        }
+    }
+
     @Nested
     @DisplayName("getByUserId integration")
     class GetByUserIdIntegrationTests {
@@ -0,0 +1,319 @@
+package com.getir.aau.librarymanagementsystem.integration.service;
+
+import com.getir.aau.librarymanagementsystem.model.dto.request.BorrowItemRequestDto;
+import com.getir.aau.librarymanagementsystem.model.dto.request.BorrowRecordRequestDto;
+import com.getir.aau.librarymanagementsystem.model.dto.request.BulkBorrowRequestDto;
+import com.getir.aau.librarymanagementsystem.model.dto.request.BulkReturnRequestDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.BorrowItemPageResponseDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.BorrowRecordPageResponseDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.BorrowRecordResponseDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.BulkBorrowResponseDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.BulkReturnResponseDto;
+import com.getir.aau.librarymanagementsystem.model.entity.*;
+import com.getir.aau.librarymanagementsystem.repository.*;
+import com.getir.aau.librarymanagementsystem.service.BorrowItemService;
+import com.getir.aau.librarymanagementsystem.service.BorrowRecordService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.transaction.Transactional;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+@ActiveProfiles("test")
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@DisplayName("Borrow query count Integration Tests")
+class BorrowQueryCountIntegrationTest {
+
+    private static final int SMALL_PAGE = 2;
+    private static final int LARGE_PAGE = 12;
+
+    @Autowired private BorrowRecordService borrowRecordService;
+    @Autowired private BorrowItemService borrowItemService;
+    @Autowired private BorrowRecordRepository borrowRecordRepository;
+    @Autowired private BookRepository bookRepository;
+    @Autowired private AuthorRepository authorRepository;
+    @Autowired private CategoryRepository categoryRepository;
+    @Autowired private UserRepository userRepository;
+    @Autowired private RoleRepository roleRepository;
+    @Autowired private EntityManager entityManager;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private Role userRole;
+    private User borrower;
+    private List<Book> books;
+    private Book book;
+
+    @BeforeEach
+    void setUp() {
+        userRole = roleRepository.findByName(ERole.ROLE_USER).orElseThrow();
+        Role librarianRole = roleRepository.findByName(ERole.ROLE_LIBRARIAN).orElseThrow();
+        Author author = authorRepository.save(Author.builder().name("Counted Author").description("desc").build());
+        Category category = categoryRepository.save(Category.builder().name("Counted Category").build());
+
+        // Distinct users and books per record, so lazily loading them would cost statements per row
+        books = new ArrayList<>();
+        for (int i = 0; i < 15; i++) {
+            books.add(bookRepository.save(Book.builder()
+                    .title("Counted Book " + i).isbn("counted-" + i).description("desc")
+                    .publicationDate(LocalDate.of(2020, 1, 1)).genre("Fiction")
+                    .numberOfCopies(5).available(true)
+                    .author(author).category(category)
+                    .build()));
+        }
+        book = books.getFirst();
+
+        for (int u = 0; u < 15; u++) {
+            User user = userRepository.save(User.builder()
+                    .firstName("Counted").lastName("User " + u)
+                    .email("counted" + u + "@example.com").password("pw").phoneNumber("555000" + u)
+                    .role(userRole)
+                    .build());
+            if (u == 0) {
+                borrower = user;
+            }
+            for (int r = 0; r < (u == 0 ? LARGE_PAGE : 2); r++) {
+                LocalDate borrowDate = LocalDate.now().minusDays(20 - r);
+                BorrowRecord record = BorrowRecord.builder()
+                        .user(user).borrowDate(borrowDate).dueDate(borrowDate.plusDays(14))
+                        .build();
+                for (int i = 0; i < 2; i++) {
+                    record.addItem(BorrowItem.builder()
+                            .user(user).book(r == 0 && i == 0 ? book : books.get((u + r + i) % books.size()))
+                            .borrowDate(borrowDate).dueDate(borrowDate.plusDays(14))
+                            .build());
+                }
+                borrowRecordRepository.save(record);
+            }
+        }
+
+        User librarian = userRepository.save(User.builder()
+                .firstName("Counted").lastName("Librarian")
+                .email("counted-librarian@example.com").password("pw").phoneNumber("5559999")
+                .role(librarianRole)
+                .build());
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                librarian.getEmail(), librarian.getPassword(), List.of(() -> "ROLE_LIBRARIAN")));
+
+        entityManager.flush();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Nested
+    @DisplayName("Borrow record pages")
+    class BorrowRecordPageTests {
+
+        @Test
+        @DisplayName("Should not run more statements for larger pages of all records")
+        void getAll() {
+            assertConstantStatements(size -> records(borrowRecordService.getAll(PageRequest.of(0, size))));
+        }
+
+        @Test
+        @DisplayName("Should not run more statements for larger pages of filtered records")
+        void filter() {
+            assertConstantStatements(size -> records(borrowRecordService.filter(
+                    "counted", LocalDate.now().minusDays(30), null, PageRequest.of(0, size))));
+        }
+
+        @Test
+        @DisplayName("Should not run more statements for larger pages of a user's records")
+        void getByUser() {
+            assertConstantStatements(size -> records(borrowRecordService.getByUser(
+                    borrower.getId(), PageRequest.of(0, size))));
+        }
+
+        @Test
+        @DisplayName("Should not run more statements for larger scrolled windows")
+        void scroll() {
+            assertConstantStatements(size -> records(borrowRecordService.scrollAll(null, size)));
+            assertConstantStatements(size -> records(borrowRecordService.scrollFiltered("counted", null, null, null, size)));
+        }
+    }
+
+    @Nested
+    @DisplayName("Borrow item pages")
+    class BorrowItemPageTests {
+
+        @Test
+        @DisplayName("Should not run more statements for larger pages of overdue items")
+        void getOverdueItems() {
+            assertConstantStatements(size -> items(borrowItemService.getOverdueItems(PageRequest.of(0, size))));
+            assertConstantStatements(size -> items(borrowItemService.scrollOverdueItems(null, size)));
+        }
+
+        @Test
+        @DisplayName("Should not run more statements for larger pages of items in a date range")
+        void getByDateRange() {
+            LocalDate start = LocalDate.now().minusDays(30);
+            LocalDate end = LocalDate.now();
+            assertConstantStatements(size -> items(borrowItemService.getBorrowItemsByDateRange(start, end, PageRequest.of(0, size))));
+            assertConstantStatements(size -> items(borrowItemService.scrollBorrowItemsByDateRange(start, end, null, size)));
+        }
+
+        @Test
+        @DisplayName("Should not run more statements for larger pages of a book's items")
+        void getByBookId() {
+            assertConstantStatements(size -> items(borrowItemService.getByBookId(book.getId(), PageRequest.of(0, size))));
+            assertConstantStatements(size -> items(borrowItemService.scrollByBookId(book.getId(), null, size)));
+        }
+    }
+
+    /**
+     * Runs the query with a small and a large page and expects the same statement count, which any lazy
+     * association loaded per row would break. The count includes the current user and existence lookups
+     */
+    @Nested
+    @DisplayName("Borrowing")
+    class BorrowWriteTests {
+
+        @Test
+        @DisplayName("Should take the copies with one update per book and write the borrow rows in batches")
+        void borrowBooks() {
+            User patron = userRepository.save(User.builder()
+                    .firstName("Counted").lastName("Patron")
+                    .email("counted-patron@example.com").password("pw").phoneNumber("5558888")
+                    .role(userRole)
+                    .build());
+            List<BorrowItemRequestDto> items = books.subList(0, 5).stream()
+                    .map(borrowed -> new BorrowItemRequestDto(borrowed.getId()))
+                    .toList();
+            entityManager.flush();
+            entityManager.clear();
+            statistics.clear();
+
+            BorrowRecordResponseDto result = borrowRecordService.borrowBooks(new BorrowRecordRequestDto(patron.getId(), items));
+            entityManager.flush();
+
+            // User, active items, one decrement per book, books, two sequence blocks, then one batch each for the
+            // record and items. The books are never written through their entities
+            assertThat(result.items()).hasSize(5);
+            assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(12);
+            assertThat(statistics.getEntityInsertCount()).isEqualTo(6);
+            assertThat(statistics.getEntityUpdateCount()).isZero();
+            assertThat(bookRepository.findById(book.getId()).orElseThrow().getNumberOfCopies()).isEqualTo(4);
+        }
+
+        @Test
+        @DisplayName("Should check, reserve and write a bulk borrow with statements independent of its size")
+        void borrowBooksInBulk() {
+            List<BorrowRecordRequestDto> borrows = new ArrayList<>();
+            for (int p = 0; p < 12; p++) {
+                User patron = userRepository.save(User.builder()
+                        .firstName("Counted").lastName("Bulk Patron " + p)
+                        .email("counted-bulk" + p + "@example.com").password("pw").phoneNumber("557000" + p)
+                        .role(userRole)
+                        .build());
+                borrows.add(new BorrowRecordRequestDto(patron.getId(), List.of(
+                        new BorrowItemRequestDto(books.get(5 + p % 3).getId()),
+                        new BorrowItemRequestDto(books.get(8 + p % 2).getId()))));
+            }
+            entityManager.flush();
+            entityManager.clear();
+            statistics.clear();
+
+            BulkBorrowResponseDto result = borrowRecordService.borrowBooksInBulk(new BulkBorrowRequestDto(borrows));
+            entityManager.flush();
+
+            // Users, their roles, active items, locked books, one decrement per book, sequence blocks, then one
+            // batch each for the records and items
+            assertThat(result.borrowed()).isEqualTo(10);
+            assertThat(result.rejected()).isEqualTo(2);
+            assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(14);
+            assertThat(statistics.getEntityInsertCount()).isEqualTo(30);
+        }
+    }
+
+    @Nested
+    @DisplayName("Returning")
+    class ReturnWriteTests {
+
+        @Test
+        @DisplayName("Should mark a bulk return with one update and give the copies back with one update per book")
+        void returnBooksInBulk() {
+            List<Long> itemIds = entityManager.createQuery(
+                            "SELECT b.id FROM BorrowItem b WHERE b.user = :user", Long.class)
+                    .setParameter("user", borrower)
+                    .getResultList();
+            List<Long> bookIds = books.subList(5, 8).stream().map(Book::getId).toList();
+            long distinctBooks = entityManager.createQuery(
+                            "SELECT COUNT(DISTINCT b.book) FROM BorrowItem b WHERE b.user = :user OR b.book.id IN :bookIds", Long.class)
+                    .setParameter("user", borrower)
+                    .setParameter("bookIds", bookIds)
+                    .getSingleResult();
+            entityManager.clear();
+            statistics.clear();
+
+            BulkReturnResponseDto result = borrowItemService.returnBooksInBulk(new BulkReturnRequestDto(itemIds, bookIds));
+            entityManager.flush();
+
+            // Locked items, locked items of the scanned books, one update marking every item returned, one
+            // increment per book and the books for the index
+            assertThat(result.returned()).isEqualTo(itemIds.size() + bookIds.size());
+            assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(4 + distinctBooks);
+            assertThat(statistics.getEntityUpdateCount()).isZero();
+        }
+    }
+
+    private void assertConstantStatements(IntFunction<Integer> query) {
+        long small = statementsFor(query, SMALL_PAGE);
+        long large = statementsFor(query, LARGE_PAGE);
+
+        assertThat(large).isEqualTo(small).isLessThanOrEqualTo(6);
+    }
+
+    private long statementsFor(IntFunction<Integer> query, int size) {
+        entityManager.clear();
+        // Each page is served by a request of its own, which looks up the current user again
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        statistics.clear();
+
+        assertThat(query.apply(size)).isEqualTo(size);
+        return statistics.getPrepareStatementCount();
+    }
+
+    private static int records(BorrowRecordPageResponseDto page) {
+        page.items().forEach(record -> {
+            assertThat(record.userFullName()).startsWith("Counted");
+            assertThat(record.items()).hasSize(2).allSatisfy(item -> assertThat(item.bookTitle()).isNotNull());
+        });
+        return page.items().size();
+    }
+
+    private static int items(BorrowItemPageResponseDto page) {
+        page.items().forEach(item -> {
+            assertThat(item.bookTitle()).isNotNull();
+            assertThat(item.userEmail()).isNotNull();
+        });
+        return page.items().size();
+    }
+}
@@ -4,8 +4,11 @@ import com.getir.aau.librarymanagementsystem.exception.ResourceAlreadyExistsExce
 import com.getir.aau.librarymanagementsystem.exception.ResourceNotFoundException;
 import com.getir.aau.librarymanagementsystem.model.dto.request.BorrowItemRequestDto;
 import com.getir.aau.librarymanagementsystem.model.dto.request.BorrowRecordRequestDto;
+import com.getir.aau.librarymanagementsystem.model.dto.request.BulkBorrowRequestDto;
 import com.getir.aau.librarymanagementsystem.model.dto.response.BorrowRecordPageResponseDto;
 import com.getir.aau.librarymanagementsystem.model.dto.response.BorrowRecordResponseDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.BulkBorrowResponseDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.BulkBorrowResultDto;
 import com.getir.aau.librarymanagementsystem.model.entity.*;
 import com.getir.aau.librarymanagementsystem.repository.*;
 import com.getir.aau.librarymanagementsystem.service.BorrowRecordService;
@@ -17,6 +20,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
@@ -141,6 +145,62 @@ public class BorrowRecordServiceIntegrationTest {
         SecurityContextHolder.getContext().setAuthentication(auth);
     }
 
+    private BorrowRecord activeRecord(LocalDate borrowDate) {
+        BorrowRecord record = BorrowRecord.builder()
+                .user(regularUser)
+                .borrowDate(borrowDate)
+                .dueDate(borrowDate.plusDays(14))
+                .build();
+        record.addItem(BorrowItem.builder()
+                .user(regularUser)
+                .book(book1)
+                .borrowDate(borrowDate)
+                .dueDate(borrowDate.plusDays(14))
+                .returned(false)
+                .build());
+        return record;
+    }
+
+    @Nested
+    @DisplayName("BulkBorrow Scenarios")
+    class BulkBorrowTests {
+
+        @Test
+        @DisplayName("Borrows for eligible users and reports why the others were rejected")
+        void bulkBorrowReportsPerUser() {
+            User classmate = userRepository.save(User.builder()
+                    .email("classmate@domain.com").firstName("Class").lastName("Mate")
+                    .password("pw").phoneNumber("1234567891")
+                    .role(regularUser.getRole())
+                    .build());
+
+            BulkBorrowResponseDto response = service.borrowBooksInBulk(new BulkBorrowRequestDto(List.of(
+                    new BorrowRecordRequestDto(regularUser.getId(),
+                            List.of(new BorrowItemRequestDto(book1.getId()), new BorrowItemRequestDto(book2.getId()))),
+                    new BorrowRecordRequestDto(classmate.getId(),
+                            List.of(new BorrowItemRequestDto(book1.getId()), new BorrowItemRequestDto(book2.getId()))),
+                    new BorrowRecordRequestDto(librarian.getId(), List.of(new BorrowItemRequestDto(book1.getId()))),
+                    new BorrowRecordRequestDto(999L, List.of(new BorrowItemRequestDto(book1.getId()))),
+                    new BorrowRecordRequestDto(classmate.getId(), List.of(new BorrowItemRequestDto(book1.getId())))
+            )));
+
+            assertThat(response.borrowed()).isEqualTo(2);
+            assertThat(response.rejected()).isEqualTo(3);
+            assertThat(response.results()).extracting(BulkBorrowResultDto::borrowed)
+                    .containsExactly(true, false, false, false, true);
+            assertThat(response.results().get(0).record().items()).hasSize(2);
+            assertThat(response.results().get(1).error()).contains("not available");
+            assertThat(response.results().get(2).error()).contains("Only regular users");
+            assertThat(response.results().get(3).error()).contains("User not found");
+
+            // Every copy of both books went to the first and last borrows, the rejected classmate's took none
+            assertThat(bookRepository.findById(book1.getId()).orElseThrow().getNumberOfCopies()).isZero();
+            Book updatedBook2 = bookRepository.findById(book2.getId()).orElseThrow();
+            assertThat(updatedBook2.getNumberOfCopies()).isZero();
+            assertThat(updatedBook2.isAvailable()).isFalse();
+        }
+    }
+
     @Nested
     @DisplayName("BorrowBooks Scenarios")
     class BorrowBooksTests {
@@ -359,6 +419,34 @@ public class BorrowRecordServiceIntegrationTest {
             assertThat(all.items()).isNotEmpty();
         }
 
+        @Test
+        @DisplayName("Scrolling by user follows the cursor from the newest record")
+        void scrollByUser() {
+            setUpAuthentication(librarian, "ROLE_LIBRARIAN");
+
+            for (int daysAgo = 1; daysAgo <= 3; daysAgo++) {
+                recordRepository.save(BorrowRecord.builder()
+                        .user(regularUser)
+                        .borrowDate(LocalDate.now().minusDays(daysAgo))
+                        .dueDate(LocalDate.now().plusDays(14))
+                        .build());
+            }
+
+            BorrowRecordPageResponseDto first = service.scrollByUser(regularUser.getId(), "", 2);
+            assertThat(first.items()).extracting(BorrowRecordResponseDto::borrowDate)
+                    .containsExactly(LocalDate.now().minusDays(1), LocalDate.now().minusDays(2));
+            assertThat(first.nextCursor()).isNotBlank();
+
+            BorrowRecordPageResponseDto second = service.scrollByUser(regularUser.getId(), first.nextCursor(), 2);
+            assertThat(second.items()).extracting(BorrowRecordResponseDto::borrowDate)
+                    .containsExactly(LocalDate.now().minusDays(3));
+            assertThat(second.nextCursor()).isNull();
+
+            BorrowRecordPageResponseDto filtered = service.scrollFiltered(
+                    regularUser.getEmail(), LocalDate.now().minusDays(2), null, "", 5);
+            assertThat(filtered.items()).hasSize(2);
+        }
+
         @Test
         @DisplayName("getById for existing record as librarian")
         void getByIdExists() {
@@ -406,8 +494,33 @@ public class BorrowRecordServiceIntegrationTest {
 
             recordRepository.save(r);
 
-            List<BorrowRecordResponseDto> act = service.getActiveRecordsByUser(regularUser.getId());
-            assertThat(act).allMatch(rr -> rr.items().stream().anyMatch(i -> !i.returned()));
+            BorrowRecordPageResponseDto act = service.getActiveRecordsByUser(regularUser.getId(), PageRequest.of(0, 10));
+            assertThat(act.items()).allMatch(rr -> rr.items().stream().anyMatch(i -> !i.returned()));
+        }
+
+        @Test
+        @DisplayName("Active records leave out fully returned records and page the rest")
+        void activeRecordsArePaged() {
+            setUpAuthentication(librarian, "ROLE_LIBRARIAN");
+
+            BorrowRecord returned = activeRecord(LocalDate.now().minusDays(30));
+            returned.getItems().getFirst().markAsReturned();
+            recordRepository.save(returned);
+            BorrowRecord older = recordRepository.save(activeRecord(LocalDate.now().minusDays(10)));
+            BorrowRecord newer = recordRepository.save(activeRecord(LocalDate.now()));
+
+            BorrowRecordPageResponseDto first = service.getActiveRecordsByUser(regularUser.getId(),
+                    PageRequest.of(0, 1, Sort.by("borrowDate").descending()));
+            BorrowRecordPageResponseDto second = service.getActiveRecordsByUser(regularUser.getId(),
+                    PageRequest.of(1, 1, Sort.by("borrowDate").descending()));
+
+            assertThat(first.totalItems()).isEqualTo(2);
+            assertThat(first.totalPages()).isEqualTo(2);
+            assertThat(first.items()).extracting(BorrowRecordResponseDto::id).containsExactly(newer.getId());
+            assertThat(second.items()).extracting(BorrowRecordResponseDto::id).containsExactly(older.getId());
+            assertThat(first.items().getFirst().items()).hasSize(1);
+            assertThat(service.getActiveRecordsByUser(regularUser.getId()))
+                    .extracting(BorrowRecordResponseDto::id).containsExactlyInAnyOrder(older.getId(), newer.getId());
         }
 
         @Test
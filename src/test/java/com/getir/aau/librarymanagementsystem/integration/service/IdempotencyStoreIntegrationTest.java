@@ -0,0 +1,194 @@
+package com.getir.aau.librarymanagementsystem.integration.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.getir.aau.librarymanagementsystem.exception.IdempotencyKeyConflictException;
+import com.getir.aau.librarymanagementsystem.exception.ResourceNotFoundException;
+import com.getir.aau.librarymanagementsystem.idempotency.IdempotencyStore;
+import com.getir.aau.librarymanagementsystem.idempotency.IdempotentRequest;
+import com.getir.aau.librarymanagementsystem.idempotency.IdempotentRequestRepository;
+import com.getir.aau.librarymanagementsystem.model.dto.request.BorrowItemRequestDto;
+import com.getir.aau.librarymanagementsystem.model.dto.request.BorrowRecordRequestDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.BorrowItemResponseDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.BorrowRecordResponseDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Claims are written in transactions of their own, so these tests run without one and delete their rows after
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@DisplayName("IdempotencyStore Integration Tests")
+class IdempotencyStoreIntegrationTest {
+
+    @Autowired private IdempotencyStore idempotencyStore;
+    @Autowired private IdempotentRequestRepository idempotentRequestRepository;
+    @Autowired private PlatformTransactionManager transactionManager;
+    @Autowired private ObjectMapper objectMapper;
+
+    private final AtomicInteger runs = new AtomicInteger();
+    private final BorrowRecordRequestDto request = new BorrowRecordRequestDto(1L, List.of(new BorrowItemRequestDto(2L)));
+    private String key;
+
+    @BeforeEach
+    void setUp() {
+        key = UUID.randomUUID().toString();
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                "kiosk@example.com", null, List.of(() -> "ROLE_LIBRARIAN")));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        idempotentRequestRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Should replay the stored response to a retry without running it again")
+    void shouldReplayRetry() {
+        ResponseEntity<BorrowRecordResponseDto> first = borrow(request);
+        ResponseEntity<BorrowRecordResponseDto> retry = borrow(request);
+
+        assertThat(runs).hasValue(1);
+        assertThat(retry.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(retry.getBody()).isEqualTo(first.getBody());
+        assertThat(retry.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER)).isEqualTo("true");
+        assertThat(first.getHeaders().containsKey(IdempotencyStore.REPLAYED_HEADER)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should replay from the table on an instance that has not seen the response")
+    void shouldReplayFromTable() {
+        borrow(request);
+        IdempotentRequest stored = idempotentRequestRepository.findAll().getFirst();
+        assertThat(stored.getStatusCode()).isEqualTo(201);
+        assertThat(stored.getResponseBody()).contains("\"userFullName\":\"Kiosk Patron\"");
+
+        IdempotencyStore otherInstance = new IdempotencyStore(idempotentRequestRepository, transactionManager,
+                objectMapper, true, 86400000, 600000, 100);
+        ResponseEntity<BorrowRecordResponseDto> retry = otherInstance.execute(key, "borrow", request,
+                BorrowRecordResponseDto.class, () -> {
+                    runs.incrementAndGet();
+                    return ResponseEntity.status(HttpStatus.CREATED).build();
+                });
+
+        assertThat(runs).hasValue(1);
+        assertThat(retry.getBody().items()).extracting(BorrowItemResponseDto::bookId).containsExactly(2L);
+    }
+
+    @Test
+    @DisplayName("Should scope keys to the principal")
+    void shouldScopeKeysToPrincipal() {
+        borrow(request);
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                "other@example.com", null, List.of(() -> "ROLE_LIBRARIAN")));
+        borrow(request);
+
+        assertThat(runs).hasValue(2);
+    }
+
+    @Test
+    @DisplayName("Should refuse a key reused for a different request")
+    void shouldRefuseKeyReusedWithOtherBody() {
+        borrow(request);
+
+        assertThatThrownBy(() -> borrow(new BorrowRecordRequestDto(1L, List.of(new BorrowItemRequestDto(3L)))))
+                .isInstanceOf(IdempotencyKeyConflictException.class)
+                .hasMessageContaining("different request");
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("Should refuse retries of a claim without a response until it expires")
+    void shouldRefuseRetryWhileRunning() {
+        IdempotentRequest claim = idempotentRequestRepository.save(IdempotentRequest.builder()
+                .idempotencyKey(key).operation("borrow").principal("kiosk@example.com").fingerprint("running")
+                .createdAt(Instant.now()).expiresAt(Instant.now().plus(Duration.ofDays(1)))
+                .build());
+
+        assertThatThrownBy(() -> borrow(request))
+                .isInstanceOf(IdempotencyKeyConflictException.class)
+                .hasMessageContaining("still being processed");
+
+        // However long ago it was claimed, the request may have run
+        claim.setCreatedAt(Instant.now().minus(Duration.ofHours(1)));
+        idempotentRequestRepository.save(claim);
+        assertThatThrownBy(() -> borrow(request)).isInstanceOf(IdempotencyKeyConflictException.class);
+        assertThat(runs).hasValue(0);
+
+        claim.setExpiresAt(Instant.now().minusSeconds(1));
+        idempotentRequestRepository.save(claim);
+        borrow(request);
+
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("Should release the key of a failed request so that it can be retried")
+    void shouldReleaseKeyOnFailure() {
+        assertThatThrownBy(() -> idempotencyStore.execute(key, "borrow", request, BorrowRecordResponseDto.class, () -> {
+            throw new ResourceNotFoundException("User", "id", 1L);
+        })).isInstanceOf(ResourceNotFoundException.class);
+        assertThat(idempotentRequestRepository.count()).isZero();
+
+        borrow(request);
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("Should run every request sent without a key")
+    void shouldRunRequestsWithoutKey() {
+        key = null;
+        borrow(request);
+        borrow(request);
+
+        assertThat(runs).hasValue(2);
+        assertThat(idempotentRequestRepository.count()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should purge expired responses")
+    void shouldPurgeExpiredResponses() {
+        idempotentRequestRepository.save(IdempotentRequest.builder()
+                .idempotencyKey(key).operation("borrow").principal("kiosk@example.com").fingerprint("expired")
+                .statusCode(201).responseBody("{}")
+                .createdAt(Instant.now().minus(Duration.ofDays(2))).expiresAt(Instant.now().minus(Duration.ofDays(1)))
+                .build());
+
+        assertThat(idempotencyStore.purge()).isEqualTo(1);
+        assertThat(idempotentRequestRepository.count()).isZero();
+    }
+
+    private ResponseEntity<BorrowRecordResponseDto> borrow(BorrowRecordRequestDto dto) {
+        return idempotencyStore.execute(key, "borrow", dto, BorrowRecordResponseDto.class, () -> {
+            runs.incrementAndGet();
+            LocalDate today = LocalDate.now();
+            List<BorrowItemResponseDto> items = dto.items().stream()
+                    .map(item -> new BorrowItemResponseDto(10L, item.bookId(), "Book", dto.userId(), "kiosk@example.com",
+                            today, today.plusDays(14), null, false))
+                    .toList();
+            return new ResponseEntity<>(new BorrowRecordResponseDto(5L, dto.userId(), "Kiosk Patron", today,
+                    today.plusDays(14), items), HttpStatus.CREATED);
+        });
+    }
+}
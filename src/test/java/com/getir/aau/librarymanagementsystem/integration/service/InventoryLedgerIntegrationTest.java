@@ -0,0 +1,235 @@
+package com.getir.aau.librarymanagementsystem.integration.service;
+
+import com.getir.aau.librarymanagementsystem.concurrency.InventoryLedger;
+import com.getir.aau.librarymanagementsystem.exception.ResourceAlreadyExistsException;
+import com.getir.aau.librarymanagementsystem.model.dto.request.BookRequestDto;
+import com.getir.aau.librarymanagementsystem.model.dto.request.BorrowItemRequestDto;
+import com.getir.aau.librarymanagementsystem.model.dto.request.BorrowRecordRequestDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.BorrowRecordResponseDto;
+import com.getir.aau.librarymanagementsystem.model.entity.*;
+import com.getir.aau.librarymanagementsystem.repository.*;
+import com.getir.aau.librarymanagementsystem.service.BookService;
+import com.getir.aau.librarymanagementsystem.service.BorrowItemService;
+import com.getir.aau.librarymanagementsystem.service.BorrowRecordService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Borrows and returns through the inventory ledger, flushing it by hand instead of on its schedule
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = {
+        "application.borrow.ledger.enabled=true",
+        "application.borrow.ledger.flush-interval-ms=3600000",
+        "application.borrow.ledger.flush-batch-size=7"
+})
+@DisplayName("Inventory ledger Integration Tests")
+class InventoryLedgerIntegrationTest {
+
+    private static final int THREADS = 8;
+    private static final int PATRONS = 30;
+    private static final int COPIES = 12;
+
+    @Autowired private InventoryLedger inventoryLedger;
+    @Autowired private BorrowRecordService borrowRecordService;
+    @Autowired private BorrowItemService borrowItemService;
+    @Autowired private BookService bookService;
+    @Autowired private BorrowRecordRepository borrowRecordRepository;
+    @Autowired private BorrowItemRepository borrowItemRepository;
+    @Autowired private BookRepository bookRepository;
+    @Autowired private AuthorRepository authorRepository;
+    @Autowired private CategoryRepository categoryRepository;
+    @Autowired private UserRepository userRepository;
+    @Autowired private RoleRepository roleRepository;
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    private Author author;
+    private Category category;
+    private Book book;
+    private final List<User> patrons = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        Role userRole = roleRepository.findByName(ERole.ROLE_USER).orElseThrow();
+        author = authorRepository.save(Author.builder().name("Ledger Author").description("desc").build());
+        category = categoryRepository.save(Category.builder().name("Ledger Category").build());
+        book = bookRepository.save(Book.builder()
+                .title("Ledger Book").isbn("ledger-1").description("desc")
+                .publicationDate(LocalDate.of(2020, 1, 1)).genre("Fiction")
+                .numberOfCopies(COPIES).available(true)
+                .author(author).category(category)
+                .build());
+        for (int i = 0; i < PATRONS; i++) {
+            patrons.add(userRepository.save(User.builder()
+                    .firstName("Ledger").lastName("Patron " + i)
+                    .email("ledger" + i + "@example.com").password("pw").phoneNumber("333000" + i)
+                    .role(userRole)
+                    .build()));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        List<BorrowItem> items = itemsOfBook();
+        List<Long> recordIds = items.stream().map(item -> item.getBorrowRecord().getId()).distinct().toList();
+        borrowItemRepository.deleteAll(items);
+        borrowRecordRepository.deleteAllById(recordIds);
+        userRepository.deleteAll(patrons);
+        bookRepository.deleteById(book.getId());
+        categoryRepository.delete(category);
+        authorRepository.delete(author);
+    }
+
+    @Test
+    @DisplayName("Should never lend more copies than the book has and write the borrows to it on flush")
+    void shouldNotOversellAndWriteBehind() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger borrowed = new AtomicInteger();
+        AtomicInteger soldOut = new AtomicInteger();
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (User patron : patrons) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                try {
+                    borrow(patron);
+                    borrowed.incrementAndGet();
+                } catch (ResourceAlreadyExistsException e) {
+                    soldOut.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(borrowed.get()).isEqualTo(COPIES);
+        assertThat(soldOut.get()).isEqualTo(PATRONS - COPIES);
+        assertThat(inventoryLedger.available(book.getId())).isZero();
+        assertThat(bookRepository.findById(book.getId()).orElseThrow().getNumberOfCopies()).isEqualTo(COPIES);
+
+        assertThat(inventoryLedger.flush()).isEqualTo(COPIES);
+
+        Book stored = bookRepository.findById(book.getId()).orElseThrow();
+        assertThat(stored.getNumberOfCopies()).isZero();
+        assertThat(stored.isAvailable()).isFalse();
+        assertThat(itemsOfBook()).hasSize(COPIES).allMatch(BorrowItem::isCopiesSettled);
+    }
+
+    @Test
+    @DisplayName("Should hand a returned copy out again at once and write the return to the book on flush")
+    void shouldReturnThroughLedger() {
+        BorrowRecordResponseDto record = borrow(patrons.getFirst());
+        inventoryLedger.flush();
+        Long itemId = record.items().getFirst().id();
+
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                patrons.getFirst().getEmail(), null, List.of(() -> "ROLE_USER")));
+        borrowItemService.returnBook(itemId, patrons.getFirst().getId());
+
+        assertThat(inventoryLedger.available(book.getId())).isEqualTo(COPIES);
+        assertThat(bookRepository.findById(book.getId()).orElseThrow().getNumberOfCopies()).isEqualTo(COPIES - 1);
+        assertThat(borrowItemRepository.findById(itemId).orElseThrow().isCopiesSettled()).isFalse();
+
+        assertThat(inventoryLedger.flush()).isEqualTo(1);
+        assertThat(bookRepository.findById(book.getId()).orElseThrow().getNumberOfCopies()).isEqualTo(COPIES);
+    }
+
+    @Test
+    @DisplayName("Should give the copies of a rolled back borrow back")
+    void shouldReleaseCopiesOnRollback() {
+        int before = inventoryLedger.available(book.getId());
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            assertThat(inventoryLedger.tryReserve(book.getId(), 3)).isTrue();
+            assertThat(inventoryLedger.available(book.getId())).isEqualTo(before - 3);
+            status.setRollbackOnly();
+        });
+
+        assertThat(inventoryLedger.available(book.getId())).isEqualTo(before);
+    }
+
+    @Test
+    @DisplayName("Should keep the copies borrowed and being borrowed when the copies of a book are updated")
+    void shouldAdjustCopiesOnBookUpdate() throws Exception {
+        borrow(patrons.getFirst());
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            assertThat(inventoryLedger.tryReserve(book.getId(), 2)).isTrue();
+            // A librarian adds three copies while this borrow has not committed yet
+            try {
+                executor.submit(() -> bookService.update(book.getId(), new BookRequestDto(
+                        book.getTitle(), author.getId(), book.getIsbn(), category.getId(), book.getDescription(),
+                        book.getPublicationDate(), book.getGenre(), COPIES + 3))).get(60, TimeUnit.SECONDS);
+            } catch (InterruptedException | ExecutionException | TimeoutException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        executor.shutdown();
+
+        assertThat(inventoryLedger.available(book.getId())).isEqualTo(COPIES + 3 - 1 - 2);
+        assertThat(inventoryLedger.flush()).isEqualTo(1);
+        assertThat(bookRepository.findById(book.getId()).orElseThrow().getNumberOfCopies()).isEqualTo(COPIES + 3 - 1);
+    }
+
+    @Test
+    @DisplayName("Should recover the copies of a book from the borrows and returns left unsettled by a crash")
+    void shouldRecoverUnsettledItems() {
+        // Eight borrows whose copies were never taken from the book and two returns whose copies, taken before,
+        // were never given back
+        LocalDate today = LocalDate.now();
+        BorrowRecord record = BorrowRecord.builder().user(patrons.getFirst()).borrowDate(today).dueDate(today.plusDays(14)).build();
+        for (int i = 0; i < 10; i++) {
+            record.addItem(BorrowItem.builder()
+                    .user(patrons.getFirst()).book(book)
+                    .borrowDate(today).dueDate(today.plusDays(14))
+                    .returned(i < 2).returnDate(i < 2 ? today : null)
+                    .copiesSettled(false)
+                    .build());
+        }
+        borrowRecordRepository.save(record);
+
+        assertThat(inventoryLedger.flush()).isEqualTo(10);
+
+        Book stored = bookRepository.findById(book.getId()).orElseThrow();
+        assertThat(stored.getNumberOfCopies()).isEqualTo(COPIES - 8 + 2);
+        assertThat(inventoryLedger.available(book.getId())).isEqualTo(COPIES - 8 + 2);
+        assertThat(inventoryLedger.flush()).isZero();
+    }
+
+    private BorrowRecordResponseDto borrow(User patron) {
+        return borrowRecordService.borrowBooks(new BorrowRecordRequestDto(
+                patron.getId(), List.of(new BorrowItemRequestDto(book.getId()))));
+    }
+
+    private List<BorrowItem> itemsOfBook() {
+        return borrowItemRepository.findAll().stream()
+                .filter(item -> item.getBook().getId().equals(book.getId()))
+                .toList();
+    }
+}
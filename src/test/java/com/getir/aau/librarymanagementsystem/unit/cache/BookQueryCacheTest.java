@@ -0,0 +1,201 @@
+package com.getir.aau.librarymanagementsystem.unit.cache;
+
+import com.getir.aau.librarymanagementsystem.cache.BookQueryCache;
+import com.getir.aau.librarymanagementsystem.cache.BookQueryCache.QueryType;
+import com.getir.aau.librarymanagementsystem.model.dto.response.BookPageResponseDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.BookResponseDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.CacheStatsResponseDto;
+import com.getir.aau.librarymanagementsystem.model.entity.Author;
+import com.getir.aau.librarymanagementsystem.model.entity.Book;
+import com.getir.aau.librarymanagementsystem.model.entity.Category;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("BookQueryCache Unit Tests")
+class BookQueryCacheTest {
+
+    private final Pageable pageable = PageRequest.of(0, 10);
+    private final BookQueryCache cache = new BookQueryCache(true, 1000);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Nested
+    @DisplayName("Lookup Tests")
+    class LookupTests {
+
+        @Test
+        @DisplayName("Should serve a repeated query from the cache and count hits and misses")
+        void shouldCacheRepeatedQuery() {
+            BookPageResponseDto first = get(QueryType.KEYWORD, "orwell", 1L, 2L);
+            BookPageResponseDto second = get(QueryType.KEYWORD, "orwell", 1L, 2L);
+
+            assertThat(second).isSameAs(first);
+            assertThat(loads).hasValue(1);
+            CacheStatsResponseDto stats = cache.stats();
+            assertThat(stats.hits()).isEqualTo(1);
+            assertThat(stats.misses()).isEqualTo(1);
+            assertThat(stats.hitRate()).isEqualTo(0.5);
+            assertThat(stats.weight()).isEqualTo(3);
+        }
+
+        @Test
+        @DisplayName("Should key results by query type, argument and pageable")
+        void shouldKeyByTypeArgumentAndPageable() {
+            get(QueryType.KEYWORD, "orwell", 1L);
+            get(QueryType.TITLE, "orwell", 1L);
+            get(QueryType.KEYWORD, "animal", 1L);
+            cache.getPage(QueryType.KEYWORD, "orwell", PageRequest.of(1, 10), () -> load(1L));
+
+            assertThat(loads).hasValue(4);
+        }
+
+        @Test
+        @DisplayName("Should pass every query through when disabled")
+        void shouldPassThroughWhenDisabled() {
+            BookQueryCache disabled = new BookQueryCache(false, 1000);
+
+            disabled.getPage(QueryType.AVAILABLE, null, pageable, () -> load(1L));
+            disabled.getPage(QueryType.AVAILABLE, null, pageable, () -> load(1L));
+
+            assertThat(loads).hasValue(2);
+            assertThat(disabled.stats().entries()).isZero();
+        }
+
+        @Test
+        @DisplayName("Should stay within its weight and keep popular results through a scan of one-off queries")
+        void shouldKeepPopularResultsWithinWeight() {
+            BookQueryCache small = new BookQueryCache(true, 20);
+            // Frequencies are only tracked once the cache is half full
+            for (int i = 0; i < 10; i++) {
+                small.getPage(QueryType.KEYWORD, "warm-up " + i, pageable, () -> load(2L));
+            }
+            for (int i = 0; i < 5; i++) {
+                small.getPage(QueryType.KEYWORD, "harry potter", pageable, () -> load(1L));
+            }
+            for (int i = 0; i < 50; i++) {
+                small.getPage(QueryType.KEYWORD, "one-off " + i, pageable, () -> load(2L));
+            }
+            int before = loads.get();
+
+            small.getPage(QueryType.KEYWORD, "harry potter", pageable, () -> load(1L));
+
+            assertThat(loads).hasValue(before);
+            assertThat(small.stats().weight()).isLessThanOrEqualTo(20);
+            assertThat(small.stats().evictions()).isPositive();
+        }
+    }
+
+    @Nested
+    @DisplayName("Invalidation Tests")
+    class InvalidationTests {
+
+        @Test
+        @DisplayName("Should evict only the results showing a borrowed book when its availability is unchanged")
+        void shouldEvictResultsShowingBook() {
+            get(QueryType.AVAILABLE, null, 1L);
+            get(QueryType.KEYWORD, "orwell", 2L);
+
+            cache.evictCopies(1L, false);
+
+            get(QueryType.AVAILABLE, null, 1L);
+            get(QueryType.KEYWORD, "orwell", 2L);
+            assertThat(loads).hasValue(3);
+        }
+
+        @Test
+        @DisplayName("Should evict the availability queries when a book runs out or gets a copy back")
+        void shouldEvictAvailabilityQueries() {
+            get(QueryType.AVAILABLE, null, 2L);
+            get(QueryType.UNAVAILABLE, null, 3L);
+            get(QueryType.KEYWORD, "orwell", 2L);
+
+            cache.evictCopies(1L, true);
+
+            get(QueryType.AVAILABLE, null, 2L);
+            get(QueryType.UNAVAILABLE, null, 3L);
+            get(QueryType.KEYWORD, "orwell", 2L);
+            assertThat(loads).hasValue(5);
+        }
+
+        @Test
+        @DisplayName("Should evict the text queries and the queries of the written book's author and category")
+        void shouldEvictQueriesOfWrittenBook() {
+            get(QueryType.AUTHOR_ID, 1L, 2L);
+            get(QueryType.AUTHOR_ID, 9L, 3L);
+            get(QueryType.CATEGORY_ID, 9L, 3L);
+            get(QueryType.UNAVAILABLE, null, 3L);
+            get(QueryType.KEYWORD, "orwell", 2L);
+
+            cache.evictBook(book(5L, 1L, 1L, true));
+
+            get(QueryType.AUTHOR_ID, 1L, 2L);
+            get(QueryType.AUTHOR_ID, 9L, 3L);
+            get(QueryType.CATEGORY_ID, 9L, 3L);
+            get(QueryType.UNAVAILABLE, null, 3L);
+            get(QueryType.KEYWORD, "orwell", 2L);
+            assertThat(loads).hasValue(7);
+        }
+
+        @Test
+        @DisplayName("Should not cache a result loaded while a write evicted the cache")
+        void shouldNotCacheResultLoadedAcrossWrite() {
+            cache.getPage(QueryType.AVAILABLE, null, pageable, () -> {
+                cache.evictCopies(1L, true);
+                return load(1L);
+            });
+
+            get(QueryType.AVAILABLE, null, 1L);
+            assertThat(loads).hasValue(2);
+        }
+
+        @Test
+        @DisplayName("Should evict again when the writing transaction completes")
+        void shouldEvictAgainAfterCompletion() {
+            TransactionSynchronizationManager.initSynchronization();
+            try {
+                cache.evictCopies(1L, true);
+                // A concurrent reader caches what it read before the commit
+                get(QueryType.AVAILABLE, null, 2L);
+
+                TransactionSynchronizationManager.getSynchronizations()
+                        .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+            } finally {
+                TransactionSynchronizationManager.clearSynchronization();
+            }
+
+            get(QueryType.AVAILABLE, null, 2L);
+            assertThat(loads).hasValue(2);
+        }
+    }
+
+    private BookPageResponseDto get(QueryType type, Object argument, Long... bookIds) {
+        return cache.getPage(type, argument, pageable, () -> load(bookIds));
+    }
+
+    private BookPageResponseDto load(Long... bookIds) {
+        loads.incrementAndGet();
+        return new BookPageResponseDto(Arrays.stream(bookIds).map(BookQueryCacheTest::dto).toList(), 1, bookIds.length);
+    }
+
+    private static BookResponseDto dto(Long id) {
+        return new BookResponseDto(id, "Title " + id, "isbn-" + id, "Description", null, "Genre", 1, true, "Author", "Category");
+    }
+
+    private static Book book(Long id, Long authorId, Long categoryId, boolean available) {
+        return Book.builder()
+                .id(id)
+                .author(Author.builder().id(authorId).build())
+                .category(Category.builder().id(categoryId).build())
+                .available(available)
+                .build();
+    }
+}
@@ -0,0 +1,156 @@
+package com.getir.aau.librarymanagementsystem.unit.cache;
+
+import com.getir.aau.librarymanagementsystem.cache.BorrowEligibilityCache;
+import com.getir.aau.librarymanagementsystem.repository.ActiveBorrowSummary;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("BorrowEligibilityCache Unit Tests")
+class BorrowEligibilityCacheTest {
+
+    private static final LocalDate TODAY = LocalDate.now();
+
+    private final BorrowEligibilityCache cache = new BorrowEligibilityCache(true, 1000);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Nested
+    @DisplayName("Lookup Tests")
+    class LookupTests {
+
+        @Test
+        @DisplayName("Should load the summary of a user once")
+        void shouldCacheSummary() {
+            ActiveBorrowSummary first = get(1L, 2, TODAY.plusDays(3));
+            ActiveBorrowSummary second = get(1L, 2, TODAY.plusDays(3));
+
+            assertThat(second).isSameAs(first);
+            assertThat(loads).hasValue(1);
+        }
+
+        @Test
+        @DisplayName("Should pass every lookup through when disabled")
+        void shouldPassThroughWhenDisabled() {
+            BorrowEligibilityCache disabled = new BorrowEligibilityCache(false, 1000);
+
+            disabled.get(1L, () -> load(1L, 0, null));
+            disabled.get(1L, () -> load(1L, 0, null));
+
+            assertThat(loads).hasValue(2);
+        }
+
+        @Test
+        @DisplayName("Should tell overdue items from the earliest due date")
+        void shouldTellOverdueItems() {
+            assertThat(new ActiveBorrowSummary(1L, 1L, TODAY.minusDays(1)).hasOverdue(TODAY)).isTrue();
+            assertThat(new ActiveBorrowSummary(1L, 1L, TODAY).hasOverdue(TODAY)).isFalse();
+            assertThat(ActiveBorrowSummary.none(1L).hasOverdue(TODAY)).isFalse();
+        }
+    }
+
+    @Nested
+    @DisplayName("Write Tests")
+    class WriteTests {
+
+        @Test
+        @DisplayName("Should count a borrow in the cached summary once it commits")
+        void shouldCountBorrow() {
+            get(1L, 2, TODAY.plusDays(3));
+
+            cache.recordBorrow(1L, 2, TODAY.plusDays(1));
+
+            ActiveBorrowSummary summary = get(1L, 0, null);
+            assertThat(loads).hasValue(1);
+            assertThat(summary.activeCount()).isEqualTo(4);
+            assertThat(summary.earliestDueDate()).isEqualTo(TODAY.plusDays(1));
+        }
+
+        @Test
+        @DisplayName("Should drop a return due after the earliest item from the cached summary")
+        void shouldDropLaterReturn() {
+            get(1L, 3, TODAY.minusDays(1));
+
+            cache.recordReturn(1L, List.of(TODAY.plusDays(5)));
+
+            ActiveBorrowSummary summary = get(1L, 0, null);
+            assertThat(loads).hasValue(1);
+            assertThat(summary.activeCount()).isEqualTo(2);
+            assertThat(summary.earliestDueDate()).isEqualTo(TODAY.minusDays(1));
+        }
+
+        @Test
+        @DisplayName("Should load the summary again after a return of the item due first")
+        void shouldReloadAfterEarliestReturn() {
+            get(1L, 3, TODAY.minusDays(1));
+
+            cache.recordReturn(1L, List.of(TODAY.minusDays(1)));
+
+            get(1L, 2, TODAY.plusDays(5));
+            assertThat(loads).hasValue(2);
+        }
+
+        @Test
+        @DisplayName("Should know a user returning every item has none left")
+        void shouldEmptyOnLastReturn() {
+            get(1L, 1, TODAY.minusDays(1));
+
+            cache.recordReturn(1L, List.of(TODAY.minusDays(1)));
+
+            ActiveBorrowSummary summary = get(1L, 0, null);
+            assertThat(loads).hasValue(1);
+            assertThat(summary.activeCount()).isZero();
+            assertThat(summary.hasOverdue(TODAY)).isFalse();
+        }
+
+        @Test
+        @DisplayName("Should keep the summary unchanged when the borrow rolls back")
+        void shouldRestoreOnRollback() {
+            get(1L, 2, TODAY.plusDays(3));
+
+            inTransaction(TransactionSynchronization.STATUS_ROLLED_BACK, () -> cache.recordBorrow(1L, 2, TODAY.plusDays(1)));
+
+            assertThat(get(1L, 0, null).activeCount()).isEqualTo(2);
+            assertThat(loads).hasValue(1);
+        }
+
+        @Test
+        @DisplayName("Should not cache a summary loaded while a write of the user is pending")
+        void shouldNotCacheDuringPendingWrite() {
+            inTransaction(TransactionSynchronization.STATUS_COMMITTED, () -> {
+                cache.recordBorrow(1L, 1, TODAY.plusDays(14));
+                // A concurrent reader loads before the borrow commits
+                get(1L, 0, null);
+            });
+
+            get(1L, 1, TODAY.plusDays(14));
+            assertThat(loads).hasValue(2);
+        }
+    }
+
+    private void inTransaction(int status, Runnable work) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            work.run();
+            TransactionSynchronizationManager.getSynchronizations().forEach(sync -> sync.afterCompletion(status));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private ActiveBorrowSummary get(Long userId, long activeCount, LocalDate earliestDueDate) {
+        return cache.get(userId, () -> load(userId, activeCount, earliestDueDate));
+    }
+
+    private ActiveBorrowSummary load(Long userId, long activeCount, LocalDate earliestDueDate) {
+        loads.incrementAndGet();
+        return new ActiveBorrowSummary(userId, activeCount, earliestDueDate);
+    }
+}
@@ -0,0 +1,263 @@
+package com.getir.aau.librarymanagementsystem.unit.concurrency;
+
+import com.getir.aau.librarymanagementsystem.concurrency.BorrowPipeline;
+import com.getir.aau.librarymanagementsystem.exception.ResourceAlreadyExistsException;
+import com.getir.aau.librarymanagementsystem.exception.ResourceNotFoundException;
+import com.getir.aau.librarymanagementsystem.exception.TooManyRequestsException;
+import com.getir.aau.librarymanagementsystem.model.dto.request.BorrowItemRequestDto;
+import com.getir.aau.librarymanagementsystem.model.dto.request.BorrowRecordRequestDto;
+import com.getir.aau.librarymanagementsystem.model.dto.request.BulkBorrowRequestDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.BorrowRecordResponseDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.BorrowTicketResponseDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.BorrowTicketResponseDto.Status;
+import com.getir.aau.librarymanagementsystem.model.dto.response.BulkBorrowResponseDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.BulkBorrowResultDto;
+import com.getir.aau.librarymanagementsystem.security.SecurityUtils;
+import com.getir.aau.librarymanagementsystem.service.BorrowRecordService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.security.access.AccessDeniedException;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("BorrowPipeline Unit Tests")
+class BorrowPipelineTest {
+
+    private static final long AWAIT_MILLIS = 5000;
+
+    @Mock
+    private BorrowRecordService borrowRecordService;
+
+    @Mock
+    private SecurityUtils securityUtils;
+
+    private BorrowPipeline pipeline;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(securityUtils.getCurrentUserEmail()).thenReturn("user@example.com");
+        lenient().when(borrowRecordService.borrowBooks(any())).thenAnswer(invocation ->
+                record(invocation.<BorrowRecordRequestDto>getArgument(0).userId()));
+        // Answers every borrow of a batch, rejecting those of user 99
+        lenient().when(borrowRecordService.borrowBooksInBulk(any())).thenAnswer(invocation -> {
+            BulkBorrowRequestDto dto = invocation.getArgument(0);
+            return BulkBorrowResponseDto.of(dto.borrows().stream()
+                    .map(borrow -> borrow.userId() == 99L
+                            ? BulkBorrowResultDto.rejected(99L, "You have reached the maximum borrowing limit.")
+                            : BulkBorrowResultDto.borrowed(record(borrow.userId())))
+                    .toList());
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (pipeline != null) {
+            pipeline.shutdown();
+        }
+    }
+
+    @Nested
+    @DisplayName("Disabled Tests")
+    class DisabledTests {
+
+        @Test
+        @DisplayName("Should make a single borrow at once and return a completed ticket without keeping it")
+        void shouldBorrowInline() {
+            pipeline = pipeline(false, 10, 1);
+
+            BorrowTicketResponseDto ticket = pipeline.submit(borrow(1L, 5L));
+
+            assertThat(ticket.status()).isEqualTo(Status.BORROWED);
+            assertThat(ticket.record().userId()).isEqualTo(1L);
+            verify(borrowRecordService).borrowBooks(borrow(1L, 5L));
+            verify(borrowRecordService, never()).borrowBooksInBulk(any());
+            assertThatThrownBy(() -> pipeline.getTicket(ticket.ticketId())).isInstanceOf(ResourceNotFoundException.class);
+        }
+
+        @Test
+        @DisplayName("Should report the reason a borrow was rejected")
+        void shouldReportRejection() {
+            doThrow(new ResourceAlreadyExistsException("Book", "id", 5L)).when(borrowRecordService).borrowBooks(any());
+            pipeline = pipeline(false, 10, 1);
+
+            BorrowTicketResponseDto ticket = pipeline.submit(borrow(1L, 5L));
+
+            assertThat(ticket.status()).isEqualTo(Status.REJECTED);
+            assertThat(ticket.record()).isNull();
+            assertThat(ticket.error()).isEqualTo("Book already exists with id: 5");
+        }
+    }
+
+    @Nested
+    @DisplayName("Submission Tests")
+    class SubmissionTests {
+
+        @Test
+        @DisplayName("Should refuse a borrow for another user before queueing it")
+        void shouldRefuseBorrowForOtherUser() {
+            doThrow(new AccessDeniedException("You are not allowed to access this resource."))
+                    .when(securityUtils).checkAccessPermissionForUser(2L);
+            pipeline = pipeline(true, 10, 1);
+
+            assertThatThrownBy(() -> pipeline.submit(borrow(2L, 5L))).isInstanceOf(AccessDeniedException.class);
+            assertThat(pipeline.submit(borrow(1L, 5L)).status()).isEqualTo(Status.QUEUED);
+
+            pipeline.start();
+            verify(borrowRecordService, timeout(AWAIT_MILLIS)).borrowBooksInBulk(
+                    new BulkBorrowRequestDto(List.of(borrow(1L, 5L))));
+        }
+    }
+
+    @Nested
+    @DisplayName("Queue Tests")
+    class QueueTests {
+
+        @Test
+        @DisplayName("Should make the queued borrows as one batch in submission order")
+        void shouldBorrowQueuedInOneBatch() throws InterruptedException {
+            pipeline = pipeline(true, 10, 1);
+            BorrowTicketResponseDto first = pipeline.submit(borrow(1L, 5L));
+            BorrowTicketResponseDto second = pipeline.submit(borrow(99L, 6L));
+            BorrowTicketResponseDto third = pipeline.submit(borrow(3L, 7L));
+            assertThat(first.status()).isEqualTo(Status.QUEUED);
+
+            pipeline.start();
+
+            assertThat(await(third.ticketId()).status()).isEqualTo(Status.BORROWED);
+            assertThat(await(first.ticketId()).record().userId()).isEqualTo(1L);
+            assertThat(await(second.ticketId()).status()).isEqualTo(Status.REJECTED);
+            ArgumentCaptor<BulkBorrowRequestDto> batch = ArgumentCaptor.forClass(BulkBorrowRequestDto.class);
+            verify(borrowRecordService).borrowBooksInBulk(batch.capture());
+            assertThat(batch.getValue().borrows()).extracting(BorrowRecordRequestDto::userId).containsExactly(1L, 99L, 3L);
+        }
+
+        @Test
+        @DisplayName("Should refuse borrows once the queue of their books is full")
+        void shouldRefuseWhenQueueFull() {
+            pipeline = pipeline(true, 2, 2);
+            pipeline.submit(borrow(1L, 4L));
+
+            assertThatThrownBy(() -> pipeline.submit(borrow(2L, 6L, 8L)))
+                    .isInstanceOf(TooManyRequestsException.class)
+                    .extracting("retryAfterSeconds").isEqualTo(1L);
+            // Book 3 maps to the other worker, whose queue still has room
+            assertThat(pipeline.submit(borrow(2L, 3L)).status()).isEqualTo(Status.QUEUED);
+        }
+
+        @Test
+        @DisplayName("Should reject every borrow of a batch that fails as a whole")
+        void shouldRejectFailedBatch() throws InterruptedException {
+            doThrow(new OptimisticLockingFailureException("Book was updated concurrently"))
+                    .when(borrowRecordService).borrowBooksInBulk(any());
+            pipeline = pipeline(true, 10, 1);
+            BorrowTicketResponseDto ticket = pipeline.submit(borrow(1L, 5L));
+
+            pipeline.start();
+
+            BorrowTicketResponseDto completed = await(ticket.ticketId());
+            assertThat(completed.status()).isEqualTo(Status.REJECTED);
+            assertThat(completed.error()).isEqualTo("The borrow could not be processed, please try again");
+        }
+
+        @Test
+        @DisplayName("Should reject the borrows still queued on shutdown")
+        void shouldRejectQueuedOnShutdown() {
+            pipeline = pipeline(true, 10, 1);
+            BorrowTicketResponseDto ticket = pipeline.submit(borrow(1L, 5L));
+
+            pipeline.shutdown();
+
+            assertThat(pipeline.getTicket(ticket.ticketId()).status()).isEqualTo(Status.REJECTED);
+            verifyNoInteractions(borrowRecordService);
+        }
+    }
+
+    @Nested
+    @DisplayName("Ticket Tests")
+    class TicketTests {
+
+        @Test
+        @DisplayName("Should throw exception when the ticket does not exist")
+        void shouldThrowWhenTicketNotFound() {
+            pipeline = pipeline(false, 10, 1);
+
+            assertThatThrownBy(() -> pipeline.getTicket("missing")).isInstanceOf(ResourceNotFoundException.class);
+        }
+
+        @Test
+        @DisplayName("Should only show a ticket to its submitter and librarians")
+        void shouldRestrictTicketToSubmitter() {
+            pipeline = pipeline(true, 10, 1);
+            String ticketId = pipeline.submit(borrow(1L, 5L)).ticketId();
+
+            when(securityUtils.getCurrentUserEmail()).thenReturn("other@example.com");
+            assertThatThrownBy(() -> pipeline.getTicket(ticketId)).isInstanceOf(AccessDeniedException.class);
+
+            when(securityUtils.hasRole("LIBRARIAN")).thenReturn(true);
+            assertThat(pipeline.getTicket(ticketId).status()).isEqualTo(Status.QUEUED);
+        }
+
+        @Test
+        @DisplayName("Should forget completed tickets once they expire")
+        void shouldForgetExpiredTickets() {
+            pipeline = new BorrowPipeline(borrowRecordService, securityUtils, true, 10, 1, 10, 0, 10);
+            String ticketId = pipeline.submit(borrow(1L, 5L)).ticketId();
+
+            pipeline.shutdown();
+
+            assertThatThrownBy(() -> pipeline.getTicket(ticketId)).isInstanceOf(ResourceNotFoundException.class);
+        }
+
+        @Test
+        @DisplayName("Should forget the oldest completed tickets beyond the maximum")
+        void shouldForgetTicketsBeyondMaximum() {
+            pipeline = new BorrowPipeline(borrowRecordService, securityUtils, true, 10, 1, 10, 600000, 1);
+            String first = pipeline.submit(borrow(1L, 5L)).ticketId();
+            String second = pipeline.submit(borrow(2L, 6L)).ticketId();
+
+            pipeline.shutdown();
+
+            assertThatThrownBy(() -> pipeline.getTicket(first)).isInstanceOf(ResourceNotFoundException.class);
+            assertThat(pipeline.getTicket(second).status()).isEqualTo(Status.REJECTED);
+        }
+    }
+
+    private BorrowPipeline pipeline(boolean enabled, int queueCapacity, int workers) {
+        return new BorrowPipeline(borrowRecordService, securityUtils, enabled, queueCapacity, workers, 10, 600000, 100);
+    }
+
+    private BorrowTicketResponseDto await(String ticketId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + AWAIT_MILLIS;
+        BorrowTicketResponseDto ticket = pipeline.getTicket(ticketId);
+        while ((ticket.status() == Status.QUEUED || ticket.status() == Status.PROCESSING)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            ticket = pipeline.getTicket(ticketId);
+        }
+        return ticket;
+    }
+
+    private static BorrowRecordRequestDto borrow(Long userId, Long... bookIds) {
+        return new BorrowRecordRequestDto(userId, List.of(bookIds).stream().map(BorrowItemRequestDto::new).toList());
+    }
+
+    private static BorrowRecordResponseDto record(Long userId) {
+        LocalDate today = LocalDate.now();
+        return new BorrowRecordResponseDto(userId * 10, userId, "User " + userId, today, today.plusDays(14), List.of());
+    }
+}
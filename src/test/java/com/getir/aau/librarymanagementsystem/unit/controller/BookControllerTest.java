@@ -277,6 +277,24 @@ public class BookControllerTest {
         }
     }
 
+    @Nested
+    @DisplayName("GET /api/books/available?cursor=")
+    class ScrollAvailableTests {
+
+        @Test
+        @DisplayName("Should return a window of available books")
+        void shouldScrollAvailableBooks() {
+            BookPageResponseDto window = BookPageResponseDto.ofWindow(List.of(bookResponseDto), "next");
+            when(bookService.scrollAvailable("", 20)).thenReturn(window);
+
+            ResponseEntity<BookPageResponseDto> response = bookController.scrollAvailable("", 20);
+
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+            assertThat(response.getBody().nextCursor()).isEqualTo("next");
+            verify(bookService).scrollAvailable("", 20);
+        }
+    }
+
     @Nested
     @DisplayName("GET /api/books/available")
     class GetAvailableTests {
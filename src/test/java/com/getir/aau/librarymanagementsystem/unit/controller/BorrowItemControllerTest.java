@@ -2,8 +2,12 @@ package com.getir.aau.librarymanagementsystem.unit.controller;
 
 import com.getir.aau.librarymanagementsystem.controller.BorrowItemController;
 import com.getir.aau.librarymanagementsystem.exception.ResourceNotFoundException;
+import com.getir.aau.librarymanagementsystem.idempotency.IdempotencyStore;
+import com.getir.aau.librarymanagementsystem.model.dto.request.BulkReturnRequestDto;
 import com.getir.aau.librarymanagementsystem.model.dto.response.BorrowItemPageResponseDto;
 import com.getir.aau.librarymanagementsystem.model.dto.response.BorrowItemResponseDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.BulkReturnResponseDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.BulkReturnResultDto;
 import com.getir.aau.librarymanagementsystem.service.BorrowItemService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -22,6 +26,7 @@ import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Supplier;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -35,6 +40,9 @@ public class BorrowItemControllerTest {
     @Mock
     private BorrowItemService borrowItemService;
 
+    @Mock
+    private IdempotencyStore idempotencyStore;
+
     @InjectMocks
     private BorrowItemController borrowItemController;
 
@@ -44,6 +52,8 @@ public class BorrowItemControllerTest {
 
     @BeforeEach
     void setUp() {
+        lenient().when(idempotencyStore.execute(any(), any(), any(), any(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(4).get());
         pageable = PageRequest.of(0, 10);
         BorrowItemResponseDto itemResponseDto = new BorrowItemResponseDto(
                 1L, 1L, "Book Name", 1L, "user@example.com", LocalDate.now(),
@@ -64,7 +74,7 @@ public class BorrowItemControllerTest {
         void shouldReturn204NoContentWhenBookIsReturnedSuccessfully() {
             doNothing().when(borrowItemService).returnBook(anyLong(), anyLong());
 
-            ResponseEntity<Void> response = borrowItemController.returnBook(1L, 1L);
+            ResponseEntity<Void> response = borrowItemController.returnBook(null, 1L, 1L);
 
             assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
             verify(borrowItemService).returnBook(1L, 1L);
@@ -75,7 +85,7 @@ public class BorrowItemControllerTest {
         void shouldThrowExceptionWhenBookIsAlreadyReturned() {
             doThrow(new IllegalStateException("The book is already returned")).when(borrowItemService).returnBook(anyLong(), anyLong());
 
-            assertThrows(IllegalStateException.class, () -> borrowItemController.returnBook(1L, 1L));
+            assertThrows(IllegalStateException.class, () -> borrowItemController.returnBook(null, 1L, 1L));
             verify(borrowItemService).returnBook(1L, 1L);
         }
 
@@ -84,11 +94,33 @@ public class BorrowItemControllerTest {
         void shouldThrowExceptionWhenBorrowItemNotFound() {
             doThrow(new ResourceNotFoundException("BorrowItem", "id", 999L)).when(borrowItemService).returnBook(eq(999L), anyLong());
 
-            assertThrows(ResourceNotFoundException.class, () -> borrowItemController.returnBook(999L, 1L));
+            assertThrows(ResourceNotFoundException.class, () -> borrowItemController.returnBook(null, 999L, 1L));
             verify(borrowItemService).returnBook(999L, 1L);
         }
     }
 
+    @Nested
+    @DisplayName("PUT /api/borrow-items/return")
+    class ReturnBooksInBulkTests {
+
+        @Test
+        @DisplayName("should return 200 OK with the result of every return")
+        void shouldReturn200OkWithResults() {
+            BulkReturnRequestDto request = new BulkReturnRequestDto(List.of(1L), List.of(2L));
+            BulkReturnResponseDto expected = BulkReturnResponseDto.of(List.of(
+                    BulkReturnResultDto.returned(1L, 5L),
+                    BulkReturnResultDto.rejected(null, 2L, "No unreturned item of book with ID 2")));
+            when(borrowItemService.returnBooksInBulk(request)).thenReturn(expected);
+
+            ResponseEntity<BulkReturnResponseDto> response = borrowItemController.returnBooksInBulk(null, request);
+
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+            assertThat(response.getBody()).isEqualTo(expected);
+            assertThat(response.getBody().returned()).isEqualTo(1);
+            assertThat(response.getBody().rejected()).isEqualTo(1);
+        }
+    }
+
     @Nested
     @DisplayName("GET /api/borrow-items/user/{userId}")
     class GetByUserIdTests {
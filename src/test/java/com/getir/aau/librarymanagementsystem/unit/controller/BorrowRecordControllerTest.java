@@ -1,12 +1,19 @@
 package com.getir.aau.librarymanagementsystem.unit.controller;
 
+import com.getir.aau.librarymanagementsystem.concurrency.BorrowPipeline;
 import com.getir.aau.librarymanagementsystem.controller.BorrowRecordController;
 import com.getir.aau.librarymanagementsystem.exception.ResourceNotFoundException;
+import com.getir.aau.librarymanagementsystem.exception.TooManyRequestsException;
+import com.getir.aau.librarymanagementsystem.idempotency.IdempotencyStore;
 import com.getir.aau.librarymanagementsystem.model.dto.request.BorrowItemRequestDto;
 import com.getir.aau.librarymanagementsystem.model.dto.request.BorrowRecordRequestDto;
+import com.getir.aau.librarymanagementsystem.model.dto.request.BulkBorrowRequestDto;
 import com.getir.aau.librarymanagementsystem.model.dto.response.BorrowItemResponseDto;
 import com.getir.aau.librarymanagementsystem.model.dto.response.BorrowRecordPageResponseDto;
 import com.getir.aau.librarymanagementsystem.model.dto.response.BorrowRecordResponseDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.BorrowTicketResponseDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.BulkBorrowResponseDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.BulkBorrowResultDto;
 import com.getir.aau.librarymanagementsystem.service.BorrowRecordService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -25,6 +32,7 @@ import org.springframework.web.server.ResponseStatusException;
 import java.time.LocalDate;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Supplier;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -38,6 +46,12 @@ public class BorrowRecordControllerTest {
     @Mock
     private BorrowRecordService borrowRecordService;
 
+    @Mock
+    private IdempotencyStore idempotencyStore;
+
+    @Mock
+    private BorrowPipeline borrowPipeline;
+
     @InjectMocks
     private BorrowRecordController borrowRecordController;
 
@@ -47,6 +61,8 @@ public class BorrowRecordControllerTest {
 
     @BeforeEach
     void setUp() {
+        lenient().when(idempotencyStore.execute(any(), any(), any(), any(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(4).get());
         List<BorrowItemRequestDto> itemRequestList = List.of(new BorrowItemRequestDto(1L), new BorrowItemRequestDto(2L));
         requestDto = new BorrowRecordRequestDto(1L, itemRequestList);
 
@@ -66,7 +82,7 @@ public class BorrowRecordControllerTest {
         void shouldReturnCreatedStatusWhenBooksAreBorrowedSuccessfully() {
             when(borrowRecordService.borrowBooks(any(BorrowRecordRequestDto.class))).thenReturn(responseDto);
 
-            ResponseEntity<BorrowRecordResponseDto> response = borrowRecordController.borrowBooks(requestDto);
+            ResponseEntity<BorrowRecordResponseDto> response = borrowRecordController.borrowBooks(null, requestDto);
 
             assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
             assertThat(response.getBody()).isNotNull();
@@ -80,7 +96,7 @@ public class BorrowRecordControllerTest {
             when(borrowRecordService.borrowBooks(any(BorrowRecordRequestDto.class)))
                     .thenThrow(new IllegalArgumentException("Invalid borrow record data"));
 
-            assertThrows(IllegalArgumentException.class, () -> borrowRecordController.borrowBooks(requestDto));
+            assertThrows(IllegalArgumentException.class, () -> borrowRecordController.borrowBooks(null, requestDto));
             verify(borrowRecordService).borrowBooks(requestDto);
         }
 
@@ -90,11 +106,112 @@ public class BorrowRecordControllerTest {
             when(borrowRecordService.borrowBooks(any(BorrowRecordRequestDto.class)))
                     .thenThrow(new ResponseStatusException(HttpStatus.FORBIDDEN, ("User has reached maximum allowed borrowing limit")));
 
-            assertThrows(ResponseStatusException.class, () -> borrowRecordController.borrowBooks(requestDto));
+            assertThrows(ResponseStatusException.class, () -> borrowRecordController.borrowBooks(null, requestDto));
+            verify(borrowRecordService).borrowBooks(requestDto);
+        }
+
+        @Test
+        @DisplayName("should run the borrow through the idempotency store under the given key")
+        void shouldRunBorrowUnderIdempotencyKey() {
+            when(borrowRecordService.borrowBooks(requestDto)).thenReturn(responseDto);
+
+            borrowRecordController.borrowBooks("kiosk-7-0001", requestDto);
+
+            verify(idempotencyStore).execute(eq("kiosk-7-0001"), eq("borrow"), eq(requestDto),
+                    eq(BorrowRecordResponseDto.class), any());
             verify(borrowRecordService).borrowBooks(requestDto);
         }
     }
 
+    @Nested
+    @DisplayName("POST /api/borrow-records/bulk")
+    class BorrowBooksInBulkTests {
+
+        @Test
+        @DisplayName("should return 200 OK with a result per borrow")
+        void shouldReturnResultPerBorrow() {
+            BulkBorrowRequestDto bulkRequest = new BulkBorrowRequestDto(List.of(requestDto, new BorrowRecordRequestDto(2L, List.of(new BorrowItemRequestDto(1L)))));
+            BulkBorrowResponseDto bulkResponse = BulkBorrowResponseDto.of(List.of(
+                    BulkBorrowResultDto.borrowed(responseDto),
+                    BulkBorrowResultDto.rejected(2L, "You have reached the maximum borrowing limit.")));
+            when(borrowRecordService.borrowBooksInBulk(bulkRequest)).thenReturn(bulkResponse);
+
+            ResponseEntity<BulkBorrowResponseDto> response = borrowRecordController.borrowBooksInBulk(null, bulkRequest);
+
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+            assertThat(response.getBody()).isNotNull();
+            assertThat(response.getBody().borrowed()).isEqualTo(1);
+            assertThat(response.getBody().rejected()).isEqualTo(1);
+            assertThat(response.getBody().results()).extracting(BulkBorrowResultDto::userId).containsExactly(1L, 2L);
+        }
+    }
+
+    @Nested
+    @DisplayName("POST /api/borrow-records/async")
+    class SubmitBorrowTests {
+
+        @Test
+        @DisplayName("should return 202 ACCEPTED with the ticket and its location")
+        void shouldReturnAcceptedWithTicket() {
+            when(borrowPipeline.submit(requestDto))
+                    .thenReturn(new BorrowTicketResponseDto("ticket-1", BorrowTicketResponseDto.Status.QUEUED, null, null));
+
+            ResponseEntity<BorrowTicketResponseDto> response = borrowRecordController.submitBorrow(null, requestDto);
+
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
+            assertThat(response.getHeaders().getLocation()).hasToString("/api/borrow-records/async/ticket-1");
+            assertThat(response.getBody().status()).isEqualTo(BorrowTicketResponseDto.Status.QUEUED);
+            verify(idempotencyStore).execute(isNull(), eq("async-borrow"), eq(requestDto),
+                    eq(BorrowTicketResponseDto.class), any());
+        }
+
+        @Test
+        @DisplayName("should return a completed ticket without a location, as it is not kept")
+        void shouldReturnCompletedTicketWithoutLocation() {
+            when(borrowPipeline.submit(requestDto))
+                    .thenReturn(new BorrowTicketResponseDto("ticket-1", BorrowTicketResponseDto.Status.BORROWED, responseDto, null));
+
+            ResponseEntity<BorrowTicketResponseDto> response = borrowRecordController.submitBorrow(null, requestDto);
+
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
+            assertThat(response.getHeaders().getLocation()).isNull();
+            assertThat(response.getBody().record()).isEqualTo(responseDto);
+        }
+
+        @Test
+        @DisplayName("should propagate the refusal of a full queue")
+        void shouldPropagateFullQueue() {
+            when(borrowPipeline.submit(requestDto)).thenThrow(new TooManyRequestsException("Too many borrows", 1));
+
+            assertThrows(TooManyRequestsException.class, () -> borrowRecordController.submitBorrow(null, requestDto));
+        }
+    }
+
+    @Nested
+    @DisplayName("GET /api/borrow-records/async/{ticketId}")
+    class GetBorrowTicketTests {
+
+        @Test
+        @DisplayName("should return 200 OK with the ticket status")
+        void shouldReturnTicket() {
+            when(borrowPipeline.getTicket("ticket-1"))
+                    .thenReturn(new BorrowTicketResponseDto("ticket-1", BorrowTicketResponseDto.Status.BORROWED, responseDto, null));
+
+            ResponseEntity<BorrowTicketResponseDto> response = borrowRecordController.getBorrowTicket("ticket-1");
+
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+            assertThat(response.getBody().record()).isEqualTo(responseDto);
+        }
+
+        @Test
+        @DisplayName("should throw exception when the ticket does not exist")
+        void shouldThrowWhenTicketNotFound() {
+            when(borrowPipeline.getTicket("missing")).thenThrow(new ResourceNotFoundException("BorrowTicket", "id", "missing"));
+
+            assertThrows(ResourceNotFoundException.class, () -> borrowRecordController.getBorrowTicket("missing"));
+        }
+    }
+
     @Nested
     @DisplayName("GET /api/borrow-records/{id}")
     class GetByIdTests {
@@ -196,38 +313,65 @@ public class BorrowRecordControllerTest {
         @Test
         @DisplayName("should return 200 OK with list of user's active borrow records")
         void shouldReturnOkStatusWithListOfUserActiveBorrowRecords() {
-            List<BorrowRecordResponseDto> records = List.of(responseDto);
-            when(borrowRecordService.getActiveRecordsByUser(anyLong())).thenReturn(records);
+            when(borrowRecordService.getActiveRecordsByUser(1L)).thenReturn(List.of(responseDto));
 
             ResponseEntity<List<BorrowRecordResponseDto>> response = borrowRecordController.getActiveByUser(1L);
 
             assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
-            assertThat(response.getBody()).isNotNull();
-            assertThat(response.getBody()).hasSize(1);
+            assertThat(response.getBody()).containsExactly(responseDto);
             verify(borrowRecordService).getActiveRecordsByUser(1L);
         }
 
         @Test
-        @DisplayName("should return 200 OK with empty list when user has no active borrow records")
+        @DisplayName("should throw exception when user does not exist")
+        void shouldThrowExceptionWhenUserDoesNotExist() {
+            when(borrowRecordService.getActiveRecordsByUser(999L))
+                    .thenThrow(new ResourceNotFoundException("User", "id", 999L));
+
+            assertThrows(ResourceNotFoundException.class, () -> borrowRecordController.getActiveByUser(999L));
+        }
+    }
+
+    @Nested
+    @DisplayName("GET /api/borrow-records/user/{userId}/active/page")
+    class GetActivePageByUserTests {
+
+        @Test
+        @DisplayName("should return 200 OK with page of user's active borrow records")
+        void shouldReturnOkStatusWithListOfUserActiveBorrowRecords() {
+            BorrowRecordPageResponseDto page = new BorrowRecordPageResponseDto(List.of(responseDto), 1, 1);
+            when(borrowRecordService.getActiveRecordsByUser(1L, pageable)).thenReturn(page);
+
+            ResponseEntity<BorrowRecordPageResponseDto> response = borrowRecordController.getActivePageByUser(1L, pageable);
+
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+            assertThat(response.getBody()).isNotNull();
+            assertThat(response.getBody().items()).hasSize(1);
+            verify(borrowRecordService).getActiveRecordsByUser(1L, pageable);
+        }
+
+        @Test
+        @DisplayName("should return 200 OK with empty page when user has no active borrow records")
         void shouldReturnOkStatusWithEmptyListWhenUserHasNoActiveBorrowRecords() {
-            when(borrowRecordService.getActiveRecordsByUser(anyLong())).thenReturn(Collections.emptyList());
+            when(borrowRecordService.getActiveRecordsByUser(1L, pageable))
+                    .thenReturn(new BorrowRecordPageResponseDto(Collections.emptyList(), 0, 0));
 
-            ResponseEntity<List<BorrowRecordResponseDto>> response = borrowRecordController.getActiveByUser(1L);
+            ResponseEntity<BorrowRecordPageResponseDto> response = borrowRecordController.getActivePageByUser(1L, pageable);
 
             assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
             assertThat(response.getBody()).isNotNull();
-            assertThat(response.getBody()).isEmpty();
-            verify(borrowRecordService).getActiveRecordsByUser(1L);
+            assertThat(response.getBody().items()).isEmpty();
+            verify(borrowRecordService).getActiveRecordsByUser(1L, pageable);
         }
 
         @Test
         @DisplayName("should throw exception when user does not exist")
         void shouldThrowExceptionWhenUserDoesNotExist() {
-            when(borrowRecordService.getActiveRecordsByUser(999L))
+            when(borrowRecordService.getActiveRecordsByUser(999L, pageable))
                     .thenThrow(new ResourceNotFoundException("User", "id", 999L));
 
-            assertThrows(ResourceNotFoundException.class, () -> borrowRecordController.getActiveByUser(999L));
-            verify(borrowRecordService).getActiveRecordsByUser(999L);
+            assertThrows(ResourceNotFoundException.class, () -> borrowRecordController.getActivePageByUser(999L, pageable));
+            verify(borrowRecordService).getActiveRecordsByUser(999L, pageable);
         }
     }
 
@@ -3,6 +3,7 @@ package com.getir.aau.librarymanagementsystem.unit.controller;
 import com.getir.aau.librarymanagementsystem.controller.UserController;
 import com.getir.aau.librarymanagementsystem.exception.ResourceNotFoundException;
 import com.getir.aau.librarymanagementsystem.model.dto.request.UserUpdateRequestDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.CacheStatsResponseDto;
 import com.getir.aau.librarymanagementsystem.model.dto.response.UserResponseDto;
 import com.getir.aau.librarymanagementsystem.model.entity.ERole;
 import com.getir.aau.librarymanagementsystem.security.auth.dto.RegisterRequestDto;
@@ -216,6 +217,23 @@ class UserControllerTest {
         }
     }
 
+    @Nested
+    @DisplayName("GET /api/users/cache/stats")
+    class CacheStatsTests {
+
+        @Test
+        @DisplayName("Should return the user details cache statistics")
+        void shouldReturnCacheStats() {
+            CacheStatsResponseDto stats = new CacheStatsResponseDto(9, 1, 0.9, 0, 2, 5, 5, 10000);
+            when(userService.getUserDetailsCacheStats()).thenReturn(stats);
+
+            ResponseEntity<CacheStatsResponseDto> response = userController.getUserDetailsCacheStats();
+
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+            assertThat(response.getBody()).isEqualTo(stats);
+        }
+    }
+
     @Nested
     @DisplayName("PUT /api/users/{id}")
     class UpdateTests {
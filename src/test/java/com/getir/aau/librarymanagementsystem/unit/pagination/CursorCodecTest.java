@@ -0,0 +1,84 @@
+package com.getir.aau.librarymanagementsystem.unit.pagination;
+
+import com.getir.aau.librarymanagementsystem.pagination.CursorCodec;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DisplayName("CursorCodec Unit Tests")
+class CursorCodecTest {
+
+    private static final Sort SORT = Sort.by("title", "id");
+    private final CursorCodec cursorCodec = CursorCodec.of("books/author", SORT);
+
+    @Test
+    @DisplayName("Should round-trip keyset values with their types and order")
+    void shouldRoundTripKeys() {
+        Map<String, Object> keys = new LinkedHashMap<>();
+        keys.put("borrowDate", LocalDate.of(2024, 5, 17));
+        keys.put("title", "Nineteen Eighty-Four");
+        keys.put("id", 42L);
+
+        String cursor = cursorCodec.encode(ScrollPosition.forward(keys));
+        KeysetScrollPosition decoded = (KeysetScrollPosition) cursorCodec.decode(cursor);
+
+        assertThat(decoded.getKeys()).containsExactlyEntriesOf(keys);
+        assertThat(decoded.scrollsForward()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should start from the beginning for a blank cursor")
+    void shouldStartFromBeginning() {
+        assertThat(cursorCodec.decode("")).isEqualTo(ScrollPosition.keyset());
+        assertThat(cursorCodec.decode(null)).isEqualTo(ScrollPosition.keyset());
+    }
+
+    @Test
+    @DisplayName("Should reject a tampered cursor")
+    void shouldRejectInvalidCursor() {
+        assertThrows(IllegalArgumentException.class, () -> cursorCodec.decode("not-a-cursor"));
+    }
+
+    @Test
+    @DisplayName("Should reject a cursor issued for another endpoint or sort")
+    void shouldRejectCursorOfAnotherScope() {
+        String cursor = cursorCodec.encode(ScrollPosition.forward(Map.of("id", 42L)));
+
+        assertThrows(IllegalArgumentException.class, () -> CursorCodec.of("books/category", SORT).decode(cursor));
+        assertThrows(IllegalArgumentException.class,
+                () -> CursorCodec.of("books/author", Sort.by(Sort.Direction.DESC, "title", "id")).decode(cursor));
+    }
+
+    @Test
+    @DisplayName("Should only accept window sizes from 1 to the maximum")
+    void shouldBoundWindowSize() {
+        assertThat(CursorCodec.limit(1)).isEqualTo(Limit.of(1));
+        assertThat(CursorCodec.limit(CursorCodec.MAX_SIZE)).isEqualTo(Limit.of(CursorCodec.MAX_SIZE));
+        assertThrows(IllegalArgumentException.class, () -> CursorCodec.limit(0));
+        assertThrows(IllegalArgumentException.class, () -> CursorCodec.limit(-5));
+        assertThrows(IllegalArgumentException.class, () -> CursorCodec.limit(CursorCodec.MAX_SIZE + 1));
+    }
+
+    @Test
+    @DisplayName("Should continue after the last element only while there is a next window")
+    void shouldComputeNextCursor() {
+        Window<String> last = Window.from(List.of("a"), index -> ScrollPosition.forward(Map.of("id", 1L)), false);
+        Window<String> more = Window.from(List.of("a", "b"), index -> ScrollPosition.forward(Map.of("id", index + 1L)), true);
+
+        assertThat(cursorCodec.nextCursor(last)).isNull();
+        assertThat(((KeysetScrollPosition) cursorCodec.decode(cursorCodec.nextCursor(more))).getKeys())
+                .containsEntry("id", 2L);
+    }
+}
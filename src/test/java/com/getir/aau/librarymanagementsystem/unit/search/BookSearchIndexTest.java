@@ -0,0 +1,307 @@
+package com.getir.aau.librarymanagementsystem.unit.search;
+
+import com.getir.aau.librarymanagementsystem.model.dto.request.BookFacetRequestDto;
+import com.getir.aau.librarymanagementsystem.repository.BookRepository;
+import com.getir.aau.librarymanagementsystem.search.BookDocument;
+import com.getir.aau.librarymanagementsystem.search.BookSearchIndex;
+import com.getir.aau.librarymanagementsystem.search.BookSearchIndex.SubstringField;
+import com.getir.aau.librarymanagementsystem.search.FacetedSearchResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.BDDMockito.given;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("BookSearchIndex Unit Tests")
+class BookSearchIndexTest {
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @InjectMocks
+    private BookSearchIndex bookSearchIndex;
+
+    private final Pageable pageable = PageRequest.of(0, 10);
+
+    @BeforeEach
+    void setUp() {
+        given(bookRepository.findAllDocuments()).willReturn(List.of(
+                document(1L, "Harry Potter and the Philosopher's Stone", "J.K. Rowling", "978-0-7475-3269-9", "Fantasy", "Fantasy"),
+                document(2L, "Nineteen Eighty-Four", "George Orwell", "978-0-452-28423-4", "Dystopian", "Science Fiction"),
+                document(3L, "Animal Farm", "George Orwell", "978-0-452-28424-1", "Satire", "Philosophy")
+        ));
+        bookSearchIndex.rebuild();
+    }
+
+    @Nested
+    @DisplayName("Search Tests")
+    class SearchTests {
+
+        @Test
+        @DisplayName("Should match tokens across all indexed fields")
+        void shouldMatchAcrossFields() {
+            assertThat(bookSearchIndex.search("orwell", pageable).getContent()).containsExactly(2L, 3L);
+            assertThat(bookSearchIndex.search("philosophy", pageable).getContent()).containsExactly(3L);
+            assertThat(bookSearchIndex.search("fantasy", pageable).getContent()).containsExactly(1L);
+        }
+
+        @Test
+        @DisplayName("Should match query tokens as prefixes and require all of them")
+        void shouldMatchPrefixesOfAllTokens() {
+            assertThat(bookSearchIndex.search("Harry Pot", pageable).getContent()).containsExactly(1L);
+            assertThat(bookSearchIndex.search("george farm", pageable).getContent()).containsExactly(3L);
+            assertThat(bookSearchIndex.search("george potter", pageable).getContent()).isEmpty();
+        }
+
+        @Test
+        @DisplayName("Should match ISBNs with or without separators")
+        void shouldMatchIsbn() {
+            assertThat(bookSearchIndex.search("9780747532699", pageable).getContent()).containsExactly(1L);
+            assertThat(bookSearchIndex.search("978-0-452", pageable).getContent()).containsExactly(2L, 3L);
+        }
+
+        @Test
+        @DisplayName("Should not match text inside a word")
+        void shouldNotMatchInsideWords() {
+            assertThat(bookSearchIndex.search("arry", pageable).getContent()).isEmpty();
+        }
+
+        @Test
+        @DisplayName("Should tell the terms matching every book")
+        void shouldTellTermsMatchingAll() {
+            assertThat(BookSearchIndex.matchesAll(" - ")).isTrue();
+            assertThat(BookSearchIndex.matchesAll("orwell")).isFalse();
+        }
+
+        @Test
+        @DisplayName("Should return every book for a blank term")
+        void shouldReturnAllForBlankTerm() {
+            assertThat(bookSearchIndex.search("", pageable).getTotalElements()).isEqualTo(3);
+        }
+
+        @Test
+        @DisplayName("Should page and sort the matching ids")
+        void shouldPageAndSort() {
+            Page<Long> page = bookSearchIndex.search("", PageRequest.of(1, 2, Sort.by("title")));
+
+            assertThat(page.getContent()).containsExactly(2L);
+            assertThat(page.getTotalElements()).isEqualTo(3);
+            assertThat(page.getTotalPages()).isEqualTo(2);
+        }
+
+        @Test
+        @DisplayName("Should only support sorting by indexed properties")
+        void shouldReportSupportedSorts() {
+            assertThat(bookSearchIndex.supports(Sort.by("title").descending())).isTrue();
+            assertThat(bookSearchIndex.supports(Sort.unsorted())).isTrue();
+            assertThat(bookSearchIndex.supports(Sort.by("author.name", "category.name", "available"))).isTrue();
+            assertThat(bookSearchIndex.supports(Sort.by("numberOfCopies"))).isFalse();
+        }
+    }
+
+    @Nested
+    @DisplayName("Substring Search Tests")
+    class SubstringSearchTests {
+
+        @Test
+        @DisplayName("Should find substrings anywhere in the field ignoring case")
+        void shouldFindSubstrings() {
+            assertThat(bookSearchIndex.findContaining(SubstringField.TITLE, "OSOPHER", pageable).getContent())
+                    .containsExactly(1L);
+            assertThat(bookSearchIndex.findContaining(SubstringField.AUTHOR_NAME, "ge orw", pageable).getContent())
+                    .containsExactly(2L, 3L);
+            assertThat(bookSearchIndex.findContaining(SubstringField.GENRE, "topi", pageable).getContent())
+                    .containsExactly(2L);
+        }
+
+        @Test
+        @DisplayName("Should not return books sharing trigrams but not the whole term")
+        void shouldVerifyCandidates() {
+            assertThat(bookSearchIndex.findContaining(SubstringField.TITLE, "farm animal", pageable).getContent())
+                    .isEmpty();
+        }
+
+        @Test
+        @DisplayName("Should scan values for terms shorter than a trigram")
+        void shouldHandleShortTerms() {
+            assertThat(bookSearchIndex.findContaining(SubstringField.TITLE, "fa", pageable).getContent())
+                    .containsExactly(3L);
+            assertThat(bookSearchIndex.findContaining(SubstringField.GENRE, "", pageable).getTotalElements())
+                    .isEqualTo(3);
+        }
+
+        @Test
+        @DisplayName("Should reflect re-indexed and removed books")
+        void shouldFollowIndexChanges() {
+            bookSearchIndex.index(document(3L, "Homage to Catalonia", "George Orwell", "978-0-15-642117-8", "Memoir", "History"));
+            bookSearchIndex.remove(2L);
+
+            assertThat(bookSearchIndex.findContaining(SubstringField.TITLE, "farm", pageable).getContent()).isEmpty();
+            assertThat(bookSearchIndex.findContaining(SubstringField.AUTHOR_NAME, "orwell", pageable).getContent())
+                    .containsExactly(3L);
+        }
+
+        @Test
+        @DisplayName("Should be served by the index only for supported sorts")
+        void shouldReportSubstringSupport() {
+            assertThat(bookSearchIndex.supportsSubstringSearch(Sort.by("publicationDate"))).isTrue();
+            assertThat(bookSearchIndex.supportsSubstringSearch(Sort.by("numberOfCopies"))).isFalse();
+        }
+    }
+
+    @Nested
+    @DisplayName("Faceted Search Tests")
+    class FacetedSearchTests {
+
+        @Test
+        @DisplayName("Should count every facet over all matches")
+        void shouldCountFacets() {
+            FacetedSearchResult result = bookSearchIndex.facetedSearch(facets("", null, null, null, null), pageable);
+
+            assertThat(result.ids().getTotalElements()).isEqualTo(3);
+            assertThat(result.authors()).containsExactly(Map.entry("George Orwell", 2L), Map.entry("J.K. Rowling", 1L));
+            assertThat(result.categories()).containsOnlyKeys("Fantasy", "Science Fiction", "Philosophy");
+            assertThat(result.availability()).containsEntry("available", 3L).containsEntry("unavailable", 0L);
+        }
+
+        @Test
+        @DisplayName("Should narrow the keyword matches by the selected facet values")
+        void shouldNarrowByFacets() {
+            FacetedSearchResult result = bookSearchIndex.facetedSearch(facets("orwell", null, null, "Satire", null), pageable);
+
+            assertThat(result.ids().getContent()).containsExactly(3L);
+            assertThat(result.categories()).containsExactly(Map.entry("Philosophy", 1L));
+            assertThat(result.genres()).containsExactly(Map.entry("Satire", 1L));
+        }
+
+        @Test
+        @DisplayName("Should follow availability changes from borrows and returns")
+        void shouldFollowAvailability() {
+            bookSearchIndex.updateAvailability(2L, false);
+
+            FacetedSearchResult unavailable = bookSearchIndex.facetedSearch(facets(null, null, "George Orwell", null, false), pageable);
+            assertThat(unavailable.ids().getContent()).containsExactly(2L);
+
+            bookSearchIndex.updateAvailability(2L, true);
+            FacetedSearchResult all = bookSearchIndex.facetedSearch(facets(null, null, null, null, null), pageable);
+            assertThat(all.availability()).containsEntry("unavailable", 0L);
+        }
+
+        @Test
+        @DisplayName("Should drop the facet counts of removed books and reuse their slots")
+        void shouldFollowRemovals() {
+            bookSearchIndex.remove(1L);
+            bookSearchIndex.index(document(4L, "Brave New World", "Aldous Huxley", "978-0-06-085052-4", "Dystopian", "Science Fiction"));
+
+            FacetedSearchResult result = bookSearchIndex.facetedSearch(facets(null, null, null, null, null), pageable);
+
+            assertThat(result.ids().getContent()).containsExactly(2L, 3L, 4L);
+            assertThat(result.authors()).doesNotContainKey("J.K. Rowling");
+            assertThat(result.genres()).containsEntry("Dystopian", 2L);
+        }
+
+        @Test
+        @DisplayName("Should reject sorts the index cannot apply")
+        void shouldRejectUnsupportedSort() {
+            assertThrows(IllegalArgumentException.class, () -> bookSearchIndex.facetedSearch(
+                    facets(null, null, null, null, null), PageRequest.of(0, 10, Sort.by("numberOfCopies"))));
+        }
+
+        private static BookFacetRequestDto facets(String keyword, String category, String author, String genre, Boolean available) {
+            return new BookFacetRequestDto(keyword, category, author, genre, available);
+        }
+    }
+
+    @Nested
+    @DisplayName("Fuzzy Search Tests")
+    class FuzzySearchTests {
+
+        @Test
+        @DisplayName("Should match misspelled title and author name words")
+        void shouldMatchMisspellings() {
+            assertThat(bookSearchIndex.fuzzySearch("Orwel", 2, pageable).getContent()).containsExactly(2L, 3L);
+            assertThat(bookSearchIndex.fuzzySearch("Rowlnig", 2, pageable).getContent()).containsExactly(1L);
+            assertThat(bookSearchIndex.fuzzySearch("animl frm", 2, pageable).getContent()).containsExactly(3L);
+            assertThat(bookSearchIndex.fuzzySearch("animl potter", 2, pageable).getContent()).isEmpty();
+        }
+
+        @Test
+        @DisplayName("Should bound the edits by the word length and the requested maximum")
+        void shouldBoundEdits() {
+            assertThat(bookSearchIndex.fuzzySearch("xe", 2, pageable).getContent()).isEmpty();
+            assertThat(bookSearchIndex.fuzzySearch("farn", 2, pageable).getContent()).containsExactly(3L);
+            assertThat(bookSearchIndex.fuzzySearch("fxrn", 2, pageable).getContent()).isEmpty();
+            assertThat(bookSearchIndex.fuzzySearch("orwel", 0, pageable).getContent()).isEmpty();
+            assertThat(bookSearchIndex.fuzzySearch("orwell", 0, pageable).getContent()).containsExactly(2L, 3L);
+        }
+
+        @Test
+        @DisplayName("Should rank closer matches first unless sorted")
+        void shouldRankByEdits() {
+            bookSearchIndex.index(document(4L, "Animals in Translation", "Temple Grandin", "978-0-7432-4769-6", "Science", "Science"));
+
+            assertThat(bookSearchIndex.fuzzySearch("animals", 2, pageable).getContent()).containsExactly(4L, 3L);
+            assertThat(bookSearchIndex.fuzzySearch("animals", 2, PageRequest.of(0, 10, Sort.by("title"))).getContent())
+                    .containsExactly(3L, 4L);
+        }
+
+        @Test
+        @DisplayName("Should forget the words of re-indexed books")
+        void shouldForgetReplacedWords() {
+            bookSearchIndex.index(document(3L, "Homage to Catalonia", "George Orwell", "978-0-15-642117-8", "Memoir", "History"));
+
+            assertThat(bookSearchIndex.fuzzySearch("animl", 2, pageable).getContent()).isEmpty();
+            assertThat(bookSearchIndex.fuzzySearch("catalona", 2, pageable).getContent()).containsExactly(3L);
+        }
+
+        @Test
+        @DisplayName("Should reject an edit bound above two")
+        void shouldRejectTooManyEdits() {
+            assertThrows(IllegalArgumentException.class, () -> bookSearchIndex.fuzzySearch("orwell", 3, pageable));
+        }
+    }
+
+    @Nested
+    @DisplayName("Maintenance Tests")
+    class MaintenanceTests {
+
+        @Test
+        @DisplayName("Should replace the tokens of a re-indexed book")
+        void shouldReindexBook() {
+            bookSearchIndex.index(document(3L, "Homage to Catalonia", "George Orwell", "978-0-15-642117-8", "Memoir", "History"));
+
+            assertThat(bookSearchIndex.search("farm", pageable).getContent()).isEmpty();
+            assertThat(bookSearchIndex.search("catalonia", pageable).getContent()).containsExactly(3L);
+            assertThat(bookSearchIndex.size()).isEqualTo(3);
+        }
+
+        @Test
+        @DisplayName("Should drop a removed book")
+        void shouldRemoveBook() {
+            bookSearchIndex.remove(2L);
+
+            assertThat(bookSearchIndex.search("orwell", pageable).getContent()).containsExactly(3L);
+            assertThat(bookSearchIndex.size()).isEqualTo(2);
+        }
+    }
+
+    private static BookDocument document(Long id, String title, String author, String isbn, String genre, String category) {
+        return new BookDocument(id, title, author, isbn, genre, category, LocalDate.of(2000, 1, id.intValue()), true);
+    }
+}
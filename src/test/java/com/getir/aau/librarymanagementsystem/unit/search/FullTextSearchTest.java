@@ -0,0 +1,98 @@
+package com.getir.aau.librarymanagementsystem.unit.search;
+
+import com.getir.aau.librarymanagementsystem.repository.BookRepository;
+import com.getir.aau.librarymanagementsystem.search.FullTextSearch;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("FullTextSearch Unit Tests")
+class FullTextSearchTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @InjectMocks
+    private FullTextSearch fullTextSearch;
+
+    private final Pageable pageable = PageRequest.of(0, 10);
+
+    @Test
+    @DisplayName("Should install the search vector and its GIN index on Postgres")
+    void shouldInstallOnPostgres() {
+        given(jdbcTemplate.execute(any(ConnectionCallback.class))).willReturn("PostgreSQL");
+
+        fullTextSearch.installSchema();
+
+        verify(jdbcTemplate).execute("ALTER TABLE books ADD COLUMN IF NOT EXISTS search_vector tsvector");
+        verify(jdbcTemplate).execute("CREATE INDEX IF NOT EXISTS idx_books_search_vector ON books USING GIN (search_vector)");
+        assertThat(fullTextSearch.supports("harry", Sort.unsorted())).isTrue();
+        assertThat(fullTextSearch.supports(" - ", Sort.unsorted())).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should leave sorts without a full-text column to the search index")
+    void shouldLeaveUnsupportedSortsToIndex() {
+        given(jdbcTemplate.execute(any(ConnectionCallback.class))).willReturn("PostgreSQL");
+
+        fullTextSearch.installSchema();
+
+        assertThat(fullTextSearch.supports("harry", Sort.by("numberOfCopies", "id"))).isTrue();
+        assertThat(fullTextSearch.supports("harry", Sort.by("author.name"))).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should stay unavailable on other databases")
+    void shouldStayUnavailableOnOtherDatabases() {
+        given(jdbcTemplate.execute(any(ConnectionCallback.class))).willReturn("H2");
+
+        fullTextSearch.installSchema();
+
+        verify(jdbcTemplate, never()).execute(anyString());
+        assertThat(fullTextSearch.supports("harry", Sort.unsorted())).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should stay unavailable when the schema cannot be installed")
+    void shouldStayUnavailableWhenInstallFails() {
+        given(jdbcTemplate.execute(any(ConnectionCallback.class))).willReturn("PostgreSQL");
+        willThrow(new DataAccessResourceFailureException("permission denied")).given(jdbcTemplate).execute(anyString());
+
+        fullTextSearch.installSchema();
+
+        assertThat(fullTextSearch.supports("harry", Sort.unsorted())).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should query every token of the term as a prefix")
+    void shouldQueryTokensAsPrefixes() {
+        given(bookRepository.searchIdsByFullText("harry:* & pot:* & 978:*", pageable))
+                .willReturn(new PageImpl<>(List.of(1L), pageable, 1));
+
+        assertThat(fullTextSearch.search("Harry Pot, 978-", pageable).getContent()).containsExactly(1L);
+    }
+}
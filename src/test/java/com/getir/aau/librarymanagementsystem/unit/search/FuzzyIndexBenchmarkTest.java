@@ -0,0 +1,105 @@
+package com.getir.aau.librarymanagementsystem.unit.search;
+
+import com.getir.aau.librarymanagementsystem.search.FuzzyIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Latency budget of fuzzy lookups on a synthetic catalog of one million titles. Building the catalog takes a few
+ * hundred megabytes of heap and several seconds, so it only runs on request:
+ * {@code mvn test -Dtest=FuzzyIndexBenchmarkTest -Dbenchmark=true}
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@DisplayName("FuzzyIndex Benchmark")
+class FuzzyIndexBenchmarkTest {
+
+    private static final int TITLES = 1_000_000;
+    private static final int TITLE_WORDS = 60_000;
+    private static final int AUTHORS = 50_000;
+    private static final int QUERIES = 2_000;
+    private static final long P99_BUDGET_MILLIS = 50;
+
+    private static final String CONSONANTS = "bcdfghjklmnprstvz";
+    private static final String VOWELS = "aeiou";
+
+    @Test
+    @DisplayName("Should answer misspelled two-word queries within the latency budget")
+    void shouldStayWithinLatencyBudget() {
+        Random random = new Random(42);
+        String[] words = syntheticWords(random, TITLE_WORDS);
+        String[][] authors = new String[AUTHORS][];
+        for (int i = 0; i < AUTHORS; i++) {
+            authors[i] = new String[]{words[random.nextInt(words.length)], words[random.nextInt(words.length)]};
+        }
+
+        FuzzyIndex index = new FuzzyIndex();
+        for (long id = 1; id <= TITLES; id++) {
+            Set<String> tokens = new HashSet<>();
+            int titleLength = 2 + random.nextInt(4);
+            for (int i = 0; i < titleLength; i++) {
+                tokens.add(words[random.nextInt(words.length)]);
+            }
+            tokens.addAll(List.of(authors[random.nextInt(AUTHORS)]));
+            index.add(id, tokens);
+        }
+
+        long[] nanos = new long[QUERIES];
+        int matched = 0;
+        for (int i = 0; i < QUERIES; i++) {
+            String[] author = authors[random.nextInt(AUTHORS)];
+            List<String> query = List.of(misspell(random, author[0]), misspell(random, author[1]));
+
+            long start = System.nanoTime();
+            Map<Long, Integer> result = index.find(query, FuzzyIndex.MAX_EDITS);
+            nanos[i] = System.nanoTime() - start;
+            matched += result.isEmpty() ? 0 : 1;
+        }
+
+        Arrays.sort(nanos);
+        long p50 = nanos[QUERIES / 2] / 1_000_000;
+        long p99 = nanos[QUERIES * 99 / 100] / 1_000_000;
+        log.info("Fuzzy lookups over {} titles and {} words: p50 {} ms, p99 {} ms",
+                TITLES, index.vocabularySize(), p50, p99);
+
+        assertThat(matched).isGreaterThan(QUERIES * 9 / 10);
+        assertThat(p99).isLessThanOrEqualTo(P99_BUDGET_MILLIS);
+    }
+
+    private static String[] syntheticWords(Random random, int count) {
+        Set<String> words = new LinkedHashSet<>();
+        while (words.size() < count) {
+            StringBuilder word = new StringBuilder();
+            int syllables = 2 + random.nextInt(3);
+            for (int i = 0; i < syllables; i++) {
+                word.append(CONSONANTS.charAt(random.nextInt(CONSONANTS.length())));
+                word.append(VOWELS.charAt(random.nextInt(VOWELS.length())));
+            }
+            words.add(word.toString());
+        }
+        return words.toArray(String[]::new);
+    }
+
+    /**
+     * Swaps two adjacent letters of words long enough to allow the two edits this costs, as in "tolkein", and
+     * replaces one letter of shorter words
+     */
+    private static String misspell(Random random, String word) {
+        char[] letters = word.toCharArray();
+        int at = random.nextInt(letters.length - 1);
+        if (letters.length >= 6) {
+            char swapped = letters[at];
+            letters[at] = letters[at + 1];
+            letters[at + 1] = swapped;
+        } else {
+            letters[at] = letters[at] == 'x' ? 'y' : 'x';
+        }
+        return new String(letters);
+    }
+}
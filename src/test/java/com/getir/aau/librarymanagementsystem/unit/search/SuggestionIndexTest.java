@@ -0,0 +1,141 @@
+package com.getir.aau.librarymanagementsystem.unit.search;
+
+import com.getir.aau.librarymanagementsystem.model.entity.Author;
+import com.getir.aau.librarymanagementsystem.repository.AuthorRepository;
+import com.getir.aau.librarymanagementsystem.repository.BookRepository;
+import com.getir.aau.librarymanagementsystem.repository.BorrowItemRepository;
+import com.getir.aau.librarymanagementsystem.search.BookDocument;
+import com.getir.aau.librarymanagementsystem.search.BorrowCount;
+import com.getir.aau.librarymanagementsystem.search.Suggestion;
+import com.getir.aau.librarymanagementsystem.search.SuggestionIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.BDDMockito.given;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("SuggestionIndex Unit Tests")
+class SuggestionIndexTest {
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @Mock
+    private AuthorRepository authorRepository;
+
+    @Mock
+    private BorrowItemRepository borrowItemRepository;
+
+    @InjectMocks
+    private SuggestionIndex suggestionIndex;
+
+    @BeforeEach
+    void setUp() {
+        given(bookRepository.findAllDocuments()).willReturn(List.of(
+                document(1L, "Harry Potter and the Philosopher's Stone"),
+                document(2L, "Harry Potter and the Chamber of Secrets"),
+                document(3L, "Hard Times")
+        ));
+        given(authorRepository.findAll()).willReturn(List.of(
+                Author.builder().id(10L).name("J.K. Rowling").build(),
+                Author.builder().id(11L).name("Charles Dickens").build()
+        ));
+        given(borrowItemRepository.countBorrowsPerBook()).willReturn(List.of(
+                new BorrowCount(1L, 5L), new BorrowCount(2L, 9L), new BorrowCount(3L, 1L)));
+        given(borrowItemRepository.countBorrowsPerAuthor()).willReturn(List.of(
+                new BorrowCount(10L, 14L), new BorrowCount(11L, 1L)));
+        suggestionIndex.rebuild();
+    }
+
+    @Nested
+    @DisplayName("Suggest Tests")
+    class SuggestTests {
+
+        @Test
+        @DisplayName("Should rank prefix matches by borrow popularity")
+        void shouldRankByPopularity() {
+            assertThat(texts("har")).containsExactly(
+                    "Harry Potter and the Chamber of Secrets",
+                    "Harry Potter and the Philosopher's Stone",
+                    "Hard Times");
+        }
+
+        @Test
+        @DisplayName("Should match from the start of any word, ignoring case")
+        void shouldMatchWordStarts() {
+            assertThat(texts("ROWL")).containsExactly("J.K. Rowling");
+            assertThat(texts("chamber of")).containsExactly("Harry Potter and the Chamber of Secrets");
+            assertThat(texts("dick")).containsExactly("Charles Dickens");
+        }
+
+        @Test
+        @DisplayName("Should return each suggestion once and honour the limit")
+        void shouldDeduplicateAndLimit() {
+            assertThat(texts("the")).containsExactly(
+                    "Harry Potter and the Chamber of Secrets",
+                    "Harry Potter and the Philosopher's Stone");
+            assertThat(suggestionIndex.suggest("h", 1))
+                    .extracting(Suggestion::text)
+                    .containsExactly("Harry Potter and the Chamber of Secrets");
+        }
+
+        @Test
+        @DisplayName("Should return nothing for unknown or blank prefixes")
+        void shouldHandleMisses() {
+            assertThat(texts("harz")).isEmpty();
+            assertThat(texts("  ")).isEmpty();
+        }
+    }
+
+    @Nested
+    @DisplayName("Maintenance Tests")
+    class MaintenanceTests {
+
+        @Test
+        @DisplayName("Should re-rank after borrows")
+        void shouldFollowBorrows() {
+            for (int i = 0; i < 5; i++) {
+                suggestionIndex.recordBorrow(1L, 10L);
+            }
+
+            assertThat(suggestionIndex.suggest("harry", 2))
+                    .extracting(Suggestion::id, Suggestion::popularity)
+                    .first()
+                    .isEqualTo(tuple(1L, 10L));
+        }
+
+        @Test
+        @DisplayName("Should follow renamed and removed titles and authors")
+        void shouldFollowMutations() {
+            suggestionIndex.indexTitle(3L, "Great Expectations");
+            suggestionIndex.removeTitle(2L);
+            suggestionIndex.indexAuthor(12L, "Harper Lee");
+            suggestionIndex.removeAuthor(10L);
+
+            assertThat(texts("har")).containsExactly("Harry Potter and the Philosopher's Stone", "Harper Lee");
+            assertThat(suggestionIndex.suggest("great", 5))
+                    .extracting(Suggestion::popularity)
+                    .containsExactly(1L);
+            assertThat(texts("rowling")).isEmpty();
+        }
+    }
+
+    private List<String> texts(String prefix) {
+        return suggestionIndex.suggest(prefix, 10).stream().map(Suggestion::text).toList();
+    }
+
+    private static BookDocument document(Long id, String title) {
+        return new BookDocument(id, title, "Author", "isbn-" + id, "Genre", "Category", LocalDate.of(2000, 1, 1), true);
+    }
+}
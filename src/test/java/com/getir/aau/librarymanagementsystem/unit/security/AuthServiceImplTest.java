@@ -1,5 +1,7 @@
 package com.getir.aau.librarymanagementsystem.unit.security;
 
+import com.getir.aau.librarymanagementsystem.cache.UserDetailsCache;
+import com.getir.aau.librarymanagementsystem.cache.VerifiedTokenCache;
 import com.getir.aau.librarymanagementsystem.exception.ResourceNotFoundException;
 import com.getir.aau.librarymanagementsystem.model.entity.ERole;
 import com.getir.aau.librarymanagementsystem.model.entity.Role;
@@ -48,6 +50,10 @@ class AuthServiceImplTest {
     @Mock
     private TokenService tokenService;
     @Mock
+    private VerifiedTokenCache verifiedTokenCache;
+    @Mock
+    private UserDetailsCache userDetailsCache;
+    @Mock
     private AuthenticationManager authenticationManager;
     @Mock
     private PasswordEncoder passwordEncoder;
@@ -218,6 +224,7 @@ class AuthServiceImplTest {
             Token savedToken = tokenCaptor.getValue();
             assertTrue(savedToken.isExpired());
             assertTrue(savedToken.isRevoked());
+            verify(verifiedTokenCache).evict(ACCESS_TOKEN);
         }
 
         @Test
@@ -227,6 +234,7 @@ class AuthServiceImplTest {
             authService.logout(null);
 
             // Then
+            verifyNoInteractions(verifiedTokenCache);
             verify(tokenService, never()).findByToken(anyString());
             verify(tokenService, never()).save(any(Token.class));
         }
@@ -253,6 +261,7 @@ class AuthServiceImplTest {
 
             // Then
             verify(tokenService, never()).save(any(Token.class));
+            verify(verifiedTokenCache).evict(ACCESS_TOKEN);
         }
     }
 
@@ -278,6 +287,7 @@ class AuthServiceImplTest {
 
             assertEquals(ENCODED_PASSWORD, user.getPassword());
             verify(userRepository).save(user);
+            verify(userDetailsCache).evict(EMAIL);
         }
 
         @Test
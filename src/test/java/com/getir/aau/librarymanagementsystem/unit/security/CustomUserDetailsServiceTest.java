@@ -1,7 +1,12 @@
 package com.getir.aau.librarymanagementsystem.unit.security;
 
+import com.getir.aau.librarymanagementsystem.cache.UserDetailsCache;
+import com.getir.aau.librarymanagementsystem.model.dto.response.CacheStatsResponseDto;
+import com.getir.aau.librarymanagementsystem.model.entity.ERole;
+import com.getir.aau.librarymanagementsystem.model.entity.Role;
 import com.getir.aau.librarymanagementsystem.model.entity.User;
 import com.getir.aau.librarymanagementsystem.security.CustomUserDetailsService;
+import com.getir.aau.librarymanagementsystem.security.jwt.JwtPrincipal;
 import com.getir.aau.librarymanagementsystem.service.UserService;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -9,6 +14,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
@@ -17,6 +23,8 @@ import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -25,6 +33,9 @@ class CustomUserDetailsServiceTest {
     @Mock
     private UserService userService;
 
+    @Spy
+    private UserDetailsCache userDetailsCache = new UserDetailsCache(true, 100, 60000);
+
     @InjectMocks
     private CustomUserDetailsService customUserDetailsService;
 
@@ -37,7 +48,7 @@ class CustomUserDetailsServiceTest {
         @Test
         void shouldReturnUserDetails_WhenUserExists() {
             // Arrange
-            User user = User.builder().email(TEST_EMAIL).password("password").build();
+            User user = user();
             when(userService.findByEmail(TEST_EMAIL)).thenReturn(Optional.of(user));
 
             // Act
@@ -59,4 +70,103 @@ class CustomUserDetailsServiceTest {
                     .hasMessageContaining(TEST_EMAIL);
         }
     }
+
+    @Nested
+    @DisplayName("User details cache tests")
+    class CacheTests {
+
+        @Test
+        @DisplayName("Should load a user once until it is evicted")
+        void shouldLoadUserOnceUntilEvicted() {
+            User user = user();
+            when(userService.findByEmail(TEST_EMAIL)).thenReturn(Optional.of(user));
+
+            customUserDetailsService.loadUserByUsername(TEST_EMAIL);
+            assertThat(customUserDetailsService.loadUserByUsername(TEST_EMAIL)).isEqualTo(JwtPrincipal.of(user));
+            verify(userService, times(1)).findByEmail(TEST_EMAIL);
+
+            userDetailsCache.evict(TEST_EMAIL);
+            customUserDetailsService.loadUserByUsername(TEST_EMAIL);
+            verify(userService, times(2)).findByEmail(TEST_EMAIL);
+
+            CacheStatsResponseDto stats = userDetailsCache.stats();
+            assertThat(stats.hits()).isEqualTo(1);
+            assertThat(stats.misses()).isEqualTo(2);
+            assertThat(stats.invalidations()).isEqualTo(1);
+            assertThat(stats.entries()).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("Should hand out a snapshot of the user without the entity or its password")
+        void shouldReturnSnapshotOfUser() {
+            when(userService.findByEmail(TEST_EMAIL)).thenReturn(Optional.of(user()));
+
+            UserDetails loaded = customUserDetailsService.loadUserByUsername(TEST_EMAIL);
+            UserDetails cached = customUserDetailsService.loadUserByUsername(TEST_EMAIL);
+
+            assertThat(loaded).isEqualTo(new JwtPrincipal(7L, TEST_EMAIL, "ROLE_USER")).isEqualTo(cached);
+            assertThat(cached.getPassword()).isNull();
+        }
+
+        @Test
+        @DisplayName("Should return the loaded user as is while disabled")
+        void shouldReturnLoadedUserWhileDisabled() {
+            UserDetailsCache disabled = new UserDetailsCache(false, 100, 60000);
+            User user = user();
+
+            assertThat(disabled.get(TEST_EMAIL, () -> Optional.of(user))).containsSame(user);
+            assertThat(disabled.stats().entries()).isZero();
+        }
+
+        @Test
+        @DisplayName("Should not cache a user that does not exist")
+        void shouldNotCacheMissingUser() {
+            when(userService.findByEmail(TEST_EMAIL)).thenReturn(Optional.empty());
+
+            assertThatThrownBy(() -> customUserDetailsService.loadUserByUsername(TEST_EMAIL))
+                    .isInstanceOf(UsernameNotFoundException.class);
+            assertThatThrownBy(() -> customUserDetailsService.loadUserByUsername(TEST_EMAIL))
+                    .isInstanceOf(UsernameNotFoundException.class);
+
+            verify(userService, times(2)).findByEmail(TEST_EMAIL);
+        }
+
+        @Test
+        @DisplayName("Should load a user again once its entry expires")
+        void shouldLoadExpiredUserAgain() {
+            UserDetailsCache expiring = new UserDetailsCache(true, 100, 0);
+            User user = user();
+
+            expiring.get(TEST_EMAIL, () -> Optional.of(user));
+            Optional<UserDetails> reloaded = expiring.get(TEST_EMAIL, Optional::empty);
+
+            assertThat(reloaded).isEmpty();
+            assertThat(expiring.stats().evictions()).isEqualTo(1);
+            assertThat(expiring.stats().hits()).isZero();
+        }
+
+        @Test
+        @DisplayName("Should not cache a user loaded while it was evicted")
+        void shouldNotCacheUserLoadedDuringEviction() {
+            User user = user();
+            when(userService.findByEmail(TEST_EMAIL)).thenAnswer(invocation -> {
+                // The user is updated while this lookup reads it
+                userDetailsCache.evict(TEST_EMAIL);
+                return Optional.of(user);
+            });
+
+            customUserDetailsService.loadUserByUsername(TEST_EMAIL);
+
+            assertThat(userDetailsCache.stats().entries()).isZero();
+        }
+    }
+
+    private User user() {
+        return User.builder()
+                .id(7L)
+                .email(TEST_EMAIL)
+                .password("password")
+                .role(Role.builder().name(ERole.ROLE_USER).build())
+                .build();
+    }
 }
\ No newline at end of file
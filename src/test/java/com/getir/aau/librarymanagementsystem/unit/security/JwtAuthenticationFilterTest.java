@@ -1,10 +1,17 @@
 package com.getir.aau.librarymanagementsystem.unit.security;
 
+import com.getir.aau.librarymanagementsystem.cache.VerifiedTokenCache;
+import com.getir.aau.librarymanagementsystem.model.entity.ERole;
+import com.getir.aau.librarymanagementsystem.model.entity.Role;
 import com.getir.aau.librarymanagementsystem.security.CustomUserDetailsService;
 import com.getir.aau.librarymanagementsystem.security.jwt.JwtAuthenticationFilter;
+import com.getir.aau.librarymanagementsystem.security.jwt.JwtPrincipal;
 import com.getir.aau.librarymanagementsystem.security.jwt.JwtService;
+import com.getir.aau.librarymanagementsystem.security.token.TokenRevocationRegistry;
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -26,17 +33,25 @@ import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import java.io.IOException;
+import java.time.Instant;
+import java.util.Date;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 
 @ExtendWith(MockitoExtension.class)
 public class JwtAuthenticationFilterTest {
     private static class TestableJwtAuthenticationFilter extends JwtAuthenticationFilter {
-        public TestableJwtAuthenticationFilter(JwtService jwtService, CustomUserDetailsService userDetailsService) {
-            super(jwtService, userDetailsService);
+        public TestableJwtAuthenticationFilter(JwtService jwtService, CustomUserDetailsService userDetailsService,
+                                               VerifiedTokenCache verifiedTokenCache,
+                                               TokenRevocationRegistry tokenRevocationRegistry,
+                                               boolean statelessPrincipal) {
+            super(jwtService, userDetailsService, verifiedTokenCache, tokenRevocationRegistry, statelessPrincipal);
         }
 
         @Override
@@ -52,6 +67,8 @@ public class JwtAuthenticationFilterTest {
     @Mock private JwtService jwtService;
     @Mock private CustomUserDetailsService userDetailsService;
 
+    private final VerifiedTokenCache verifiedTokenCache = new VerifiedTokenCache(true, 100, 60_000);
+    private final TokenRevocationRegistry tokenRevocationRegistry = new TokenRevocationRegistry(86400000L);
     private TestableJwtAuthenticationFilter filter;
 
     private MockHttpServletRequest request;
@@ -60,7 +77,8 @@ public class JwtAuthenticationFilterTest {
 
     @BeforeEach
     void init() {
-        filter = new TestableJwtAuthenticationFilter(jwtService, userDetailsService);
+        filter = new TestableJwtAuthenticationFilter(jwtService, userDetailsService, verifiedTokenCache,
+                tokenRevocationRegistry, false);
         request = new MockHttpServletRequest();
         response = new MockHttpServletResponse();
         chain = new MockFilterChain();
@@ -92,7 +110,7 @@ public class JwtAuthenticationFilterTest {
         @DisplayName("Should skip authentication if extracted username is null")
         void shouldSkipWhenExtractedUsernameIsNull() throws Exception {
             request.addHeader("Authorization", "Bearer fakeToken");
-            given(jwtService.extractUsername("fakeToken")).willReturn(null);
+            given(jwtService.verify("fakeToken")).willReturn(Jwts.claims().build());
 
             filter.doFilterInternal(request, response, chain);
 
@@ -103,7 +121,7 @@ public class JwtAuthenticationFilterTest {
         @DisplayName("Should skip authentication if context is already authenticated")
         void shouldSkipWhenAlreadyAuthenticated() throws Exception {
             request.addHeader("Authorization", "Bearer token");
-            given(jwtService.extractUsername("token")).willReturn("user@mail.com");
+            given(jwtService.verify("token")).willReturn(claimsOf("user@mail.com"));
 
             SecurityContextHolder.getContext().setAuthentication(
                     new UsernamePasswordAuthenticationToken("user@mail.com", null, List.of())
@@ -125,9 +143,10 @@ public class JwtAuthenticationFilterTest {
             request.addHeader("Authorization", "Bearer " + jwt);
             UserDetails details = User.withUsername("user@mail.com").password("pw").roles("USER").build();
 
-            given(jwtService.extractUsername(jwt)).willReturn("user@mail.com");
+            Claims claims = claimsOf("user@mail.com");
+            given(jwtService.verify(jwt)).willReturn(claims);
             given(userDetailsService.loadUserByUsername("user@mail.com")).willReturn(details);
-            given(jwtService.isTokenValid(jwt, details)).willReturn(true);
+            given(jwtService.isTokenValid(claims, details)).willReturn(true);
 
             filter.doFilterInternal(request, response, chain);
 
@@ -147,9 +166,10 @@ public class JwtAuthenticationFilterTest {
                     .roles("USER", "ADMIN")
                     .build();
 
-            given(jwtService.extractUsername(jwt)).willReturn("user@mail.com");
+            Claims claims = claimsOf("user@mail.com");
+            given(jwtService.verify(jwt)).willReturn(claims);
             given(userDetailsService.loadUserByUsername("user@mail.com")).willReturn(details);
-            given(jwtService.isTokenValid(jwt, details)).willReturn(true);
+            given(jwtService.isTokenValid(claims, details)).willReturn(true);
 
             // When
             filter.doFilterInternal(request, response, chain);
@@ -167,6 +187,226 @@ public class JwtAuthenticationFilterTest {
         }
     }
 
+    @Nested
+    @DisplayName("Single verification")
+    class SingleVerificationTests {
+        @Test
+        @DisplayName("Should verify the token once and check the user against its claims")
+        void shouldVerifyTokenOnce() throws Exception {
+            request.addHeader("Authorization", "Bearer token");
+            UserDetails details = User.withUsername("user@mail.com").password("pw").roles("USER").build();
+            Claims claims = claimsOf("user@mail.com");
+            given(jwtService.verify("token")).willReturn(claims);
+            given(userDetailsService.loadUserByUsername("user@mail.com")).willReturn(details);
+            given(jwtService.isTokenValid(claims, details)).willReturn(true);
+
+            filter.doFilterInternal(request, response, chain);
+
+            then(jwtService).should(times(1)).verify("token");
+            then(jwtService).should(never()).extractUsername(anyString());
+            then(jwtService).should(never()).isTokenValid(anyString(), any());
+        }
+    }
+
+    @Nested
+    @DisplayName("Verified token cache")
+    class VerifiedTokenCacheTests {
+        @Test
+        @DisplayName("Should authenticate a repeated token without verifying it or loading the user again")
+        void shouldSkipVerificationOfRepeatedToken() throws Exception {
+            UserDetails details = User.withUsername("user@mail.com").password("pw").roles("USER").build();
+            Claims claims = validClaimsOf("user@mail.com");
+            given(jwtService.verify("token")).willReturn(claims);
+            given(userDetailsService.loadUserByUsername("user@mail.com")).willReturn(details);
+            given(jwtService.isTokenValid(claims, details)).willReturn(true);
+            authenticateWith("token");
+
+            SecurityContextHolder.clearContext();
+            authenticateWith("token");
+
+            var auth = SecurityContextHolder.getContext().getAuthentication();
+            assertThat(auth.getName()).isEqualTo("user@mail.com");
+            assertThat(auth.getAuthorities()).extracting("authority").containsExactly("ROLE_USER");
+            then(jwtService).should(times(1)).verify("token");
+            then(userDetailsService).should(times(1)).loadUserByUsername("user@mail.com");
+        }
+
+        @Test
+        @DisplayName("Should keep the ID of a stored user in the principal of a repeated token")
+        void shouldKeepUserIdOfRepeatedToken() throws Exception {
+            var user = com.getir.aau.librarymanagementsystem.model.entity.User.builder()
+                    .id(7L)
+                    .email("user@mail.com")
+                    .role(Role.builder().name(ERole.ROLE_USER).build())
+                    .build();
+            Claims claims = validClaimsOf("user@mail.com");
+            given(jwtService.verify("token")).willReturn(claims);
+            given(userDetailsService.loadUserByUsername("user@mail.com")).willReturn(user);
+            given(jwtService.isTokenValid(claims, user)).willReturn(true);
+            authenticateWith("token");
+
+            SecurityContextHolder.clearContext();
+            authenticateWith("token");
+
+            assertThat(SecurityContextHolder.getContext().getAuthentication().getPrincipal())
+                    .isEqualTo(new JwtPrincipal(7L, "user@mail.com", "ROLE_USER"));
+        }
+
+        @Test
+        @DisplayName("Should verify a token again once it is evicted")
+        void shouldVerifyEvictedTokenAgain() throws Exception {
+            UserDetails details = User.withUsername("user@mail.com").password("pw").roles("USER").build();
+            Claims claims = validClaimsOf("user@mail.com");
+            given(jwtService.verify("token")).willReturn(claims);
+            given(userDetailsService.loadUserByUsername("user@mail.com")).willReturn(details);
+            given(jwtService.isTokenValid(claims, details)).willReturn(true);
+            authenticateWith("token");
+
+            verifiedTokenCache.evictAll("user@mail.com");
+            SecurityContextHolder.clearContext();
+            authenticateWith("token");
+
+            then(jwtService).should(times(2)).verify("token");
+        }
+
+        @Test
+        @DisplayName("Should not cache a token verified while tokens were evicted")
+        void shouldNotCacheTokenVerifiedDuringEviction() throws Exception {
+            UserDetails details = User.withUsername("user@mail.com").password("pw").roles("USER").build();
+            Claims claims = validClaimsOf("user@mail.com");
+            given(jwtService.verify("token")).willAnswer(invocation -> {
+                // The user logs out while this request verifies the token
+                verifiedTokenCache.evict("token");
+                return claims;
+            });
+            given(userDetailsService.loadUserByUsername("user@mail.com")).willReturn(details);
+            given(jwtService.isTokenValid(claims, details)).willReturn(true);
+
+            authenticateWith("token");
+
+            assertThat(verifiedTokenCache.get("token")).isNull();
+        }
+
+        @Test
+        @DisplayName("Should verify a cached token again once it expires")
+        void shouldDropExpiredToken() {
+            verifiedTokenCache.put("token", "user@mail.com", null, List.of(), Instant.now().minusSeconds(1),
+                    verifiedTokenCache.generation());
+
+            assertThat(verifiedTokenCache.get("token")).isNull();
+        }
+
+        @Test
+        @DisplayName("Should verify a cached token again once the TTL elapses before it expires")
+        void shouldDropTokenAfterTtl() {
+            VerifiedTokenCache shortLived = new VerifiedTokenCache(true, 100, 0);
+            shortLived.put("token", "user@mail.com", null, List.of(), Instant.now().plusSeconds(60),
+                    shortLived.generation());
+
+            assertThat(shortLived.get("token")).isNull();
+        }
+
+        private void authenticateWith(String jwt) throws Exception {
+            MockHttpServletRequest repeated = new MockHttpServletRequest();
+            repeated.addHeader("Authorization", "Bearer " + jwt);
+            filter.doFilterInternal(repeated, new MockHttpServletResponse(), new MockFilterChain());
+        }
+    }
+
+    @Nested
+    @DisplayName("Stateless principal")
+    class StatelessPrincipalTests {
+
+        @BeforeEach
+        void init() {
+            filter = new TestableJwtAuthenticationFilter(jwtService, userDetailsService, verifiedTokenCache,
+                    tokenRevocationRegistry, true);
+        }
+
+        @Test
+        @DisplayName("Should build the user from the signed claims without loading it")
+        void shouldAuthenticateFromClaims() throws Exception {
+            Claims claims = principalClaimsOf("user@mail.com", new Date());
+            given(jwtService.verify("token")).willReturn(claims);
+            given(jwtService.isTokenValid(eq(claims), any(UserDetails.class))).willReturn(true);
+
+            authenticateWith("token");
+
+            var auth = SecurityContextHolder.getContext().getAuthentication();
+            assertThat(auth.getPrincipal()).isEqualTo(new JwtPrincipal(7L, "user@mail.com", "ROLE_LIBRARIAN"));
+            assertThat(auth.getAuthorities()).extracting("authority").containsExactly("ROLE_LIBRARIAN");
+            then(userDetailsService).shouldHaveNoInteractions();
+        }
+
+        @Test
+        @DisplayName("Should load the user of a token issued without its ID and role")
+        void shouldLoadUserOfTokenWithoutClaims() throws Exception {
+            UserDetails details = User.withUsername("user@mail.com").password("pw").roles("USER").build();
+            Claims claims = Jwts.claims()
+                    .subject("user@mail.com")
+                    .expiration(new Date(System.currentTimeMillis() + 60_000))
+                    .add(JwtService.TOKEN_TYPE_CLAIM, JwtService.ACCESS_TOKEN_TYPE)
+                    .build();
+            given(jwtService.verify("token")).willReturn(claims);
+            given(userDetailsService.loadUserByUsername("user@mail.com")).willReturn(details);
+            given(jwtService.isTokenValid(claims, details)).willReturn(true);
+
+            authenticateWith("token");
+
+            assertThat(SecurityContextHolder.getContext().getAuthentication().getPrincipal()).isEqualTo(details);
+        }
+
+        @Test
+        @DisplayName("Should refuse refresh tokens and tokens issued without a type")
+        void shouldRefuseTokensOtherThanAccessTokens() throws Exception {
+            given(jwtService.verify("refresh")).willReturn(Jwts.claims()
+                    .subject("user@mail.com")
+                    .expiration(new Date(System.currentTimeMillis() + 60_000))
+                    .add(JwtService.USER_ID_CLAIM, 7)
+                    .add(JwtService.ROLE_CLAIM, "ROLE_LIBRARIAN")
+                    .add(JwtService.TOKEN_TYPE_CLAIM, JwtService.REFRESH_TOKEN_TYPE)
+                    .build());
+            given(jwtService.verify("untyped")).willReturn(validClaimsOf("user@mail.com"));
+
+            authenticateWith("refresh");
+            authenticateWith("untyped");
+
+            assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+            then(userDetailsService).shouldHaveNoInteractions();
+            then(jwtService).should(never()).isTokenValid(any(Claims.class), any(UserDetails.class));
+        }
+
+        @Test
+        @DisplayName("Should reject a token issued before the tokens of its user were revoked")
+        void shouldRejectRevokedToken() throws Exception {
+            Claims claims = principalClaimsOf("user@mail.com", new Date(System.currentTimeMillis() - 60_000));
+            given(jwtService.verify("token")).willReturn(claims);
+            tokenRevocationRegistry.revokeAll("user@mail.com");
+
+            authenticateWith("token");
+
+            assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+            then(jwtService).should(never()).isTokenValid(any(Claims.class), any(UserDetails.class));
+        }
+
+        private Claims principalClaimsOf(String subject, Date issuedAt) {
+            return Jwts.claims()
+                    .subject(subject)
+                    .issuedAt(issuedAt)
+                    .expiration(new Date(System.currentTimeMillis() + 60_000))
+                    .add(JwtService.USER_ID_CLAIM, 7)
+                    .add(JwtService.ROLE_CLAIM, "ROLE_LIBRARIAN")
+                    .add(JwtService.TOKEN_TYPE_CLAIM, JwtService.ACCESS_TOKEN_TYPE)
+                    .build();
+        }
+
+        private void authenticateWith(String jwt) throws Exception {
+            MockHttpServletRequest bearer = new MockHttpServletRequest();
+            bearer.addHeader("Authorization", "Bearer " + jwt);
+            filter.doFilterInternal(bearer, new MockHttpServletResponse(), new MockFilterChain());
+        }
+    }
+
     @Nested
     @DisplayName("JWT Exception handling")
     class JwtExceptionTests {
@@ -175,7 +415,7 @@ public class JwtAuthenticationFilterTest {
         void shouldSkipWhenTokenIsExpired() throws Exception {
             // Given
             request.addHeader("Authorization", "Bearer expiredToken");
-            given(jwtService.extractUsername("expiredToken"))
+            given(jwtService.verify("expiredToken"))
                     .willThrow(new ExpiredJwtException(null, null, "JWT expired"));
 
             // When
@@ -190,7 +430,7 @@ public class JwtAuthenticationFilterTest {
         void shouldSkipWhenTokenIsMalformed() throws Exception {
             // Given
             request.addHeader("Authorization", "Bearer badToken");
-            given(jwtService.extractUsername("badToken"))
+            given(jwtService.verify("badToken"))
                     .willThrow(new JwtException("Invalid token"));
 
             // When
@@ -211,16 +451,40 @@ public class JwtAuthenticationFilterTest {
             assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
         }
 
+        @Test
+        @DisplayName("Should refuse a refresh token without loading its user")
+        void shouldRefuseRefreshToken() throws Exception {
+            request.addHeader("Authorization", "Bearer refresh");
+            given(jwtService.verify("refresh")).willReturn(Jwts.claims()
+                    .subject("user@mail.com")
+                    .expiration(new Date(System.currentTimeMillis() + 60_000))
+                    .add(JwtService.TOKEN_TYPE_CLAIM, JwtService.REFRESH_TOKEN_TYPE)
+                    .build());
+
+            filter.doFilterInternal(request, response, chain);
+
+            assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+            then(userDetailsService).shouldHaveNoInteractions();
+        }
+
         @Test
         @DisplayName("Should continue when token invalid")
         void shouldContinueWhenTokenInvalid() throws Exception {
             request.addHeader("Authorization", "Bearer bad");
-            given(jwtService.extractUsername("bad")).willReturn("user@mail.com");
+            given(jwtService.verify("bad")).willReturn(claimsOf("user@mail.com"));
             given(userDetailsService.loadUserByUsername(anyString())).willReturn(User.withUsername("user@mail.com").password("pw").roles("USER").build());
-            given(jwtService.isTokenValid(eq("bad"), any())).willReturn(false);
+            given(jwtService.isTokenValid(any(Claims.class), any())).willReturn(false);
 
             filter.doFilterInternal(request, response, chain);
             assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
         }
     }
-}
\ No newline at end of file
+
+    private static Claims claimsOf(String subject) {
+        return Jwts.claims().subject(subject).build();
+    }
+
+    private static Claims validClaimsOf(String subject) {
+        return Jwts.claims().subject(subject).expiration(new Date(System.currentTimeMillis() + 60_000)).build();
+    }
+}
@@ -1,6 +1,9 @@
 package com.getir.aau.librarymanagementsystem.unit.security;
 
+import com.getir.aau.librarymanagementsystem.model.entity.ERole;
+import com.getir.aau.librarymanagementsystem.model.entity.Role;
 import com.getir.aau.librarymanagementsystem.model.entity.User;
+import com.getir.aau.librarymanagementsystem.security.jwt.JwtPrincipal;
 import com.getir.aau.librarymanagementsystem.security.jwt.JwtService;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.MalformedJwtException;
@@ -81,6 +84,33 @@ public class JwtServiceTest {
             assertEquals(TEST_USER_EMAIL, jwtService.extractUsername(token));
         }
 
+        @Test
+        @DisplayName("Should sign the ID and role of a user into its access token")
+        void shouldSignUserIdAndRole() {
+            User user = User.builder()
+                    .id(7L)
+                    .email(TEST_USER_EMAIL)
+                    .role(Role.builder().name(ERole.ROLE_LIBRARIAN).build())
+                    .build();
+
+            Claims claims = jwtService.verify(jwtService.generateToken(user));
+
+            assertThat(JwtPrincipal.from(claims)).isEqualTo(new JwtPrincipal(7L, TEST_USER_EMAIL, "ROLE_LIBRARIAN"));
+            assertThat(JwtPrincipal.from(jwtService.verify(jwtService.generateToken(userDetails)))).isNull();
+        }
+
+        @Test
+        @DisplayName("Should type access and refresh tokens")
+        void shouldTypeTokens() {
+            Claims access = jwtService.verify(jwtService.generateToken(Map.of("custom", "value"), userDetails));
+            Claims refresh = jwtService.verify(jwtService.generateRefreshToken(userDetails));
+
+            assertTrue(JwtService.isAccessToken(access));
+            assertFalse(JwtService.isRefreshToken(access));
+            assertTrue(JwtService.isRefreshToken(refresh));
+            assertFalse(JwtService.isAccessToken(refresh));
+        }
+
         @Test
         void shouldGenerateRefreshToken() {
             String refreshToken = jwtService.generateRefreshToken(userDetails);
@@ -174,6 +204,61 @@ public class JwtServiceTest {
         }
     }
 
+    @Nested
+    @DisplayName("Verified Claims")
+    class VerifiedClaimsTests {
+
+        @Test
+        void shouldVerifyTokenIntoClaims() {
+            String token = jwtService.generateToken(userDetails);
+
+            Claims claims = jwtService.verify(token);
+
+            assertEquals(TEST_USER_EMAIL, claims.getSubject());
+            assertTrue(jwtService.isTokenValid(claims, userDetails));
+        }
+
+        @Test
+        void shouldRejectClaimsOfAnotherUser() {
+            Claims claims = jwtService.verify(jwtService.generateToken(userDetails));
+
+            UserDetails differentUser = org.springframework.security.core.userdetails.User
+                    .withUsername("wrong@example.com")
+                    .password("pw")
+                    .roles("USER")
+                    .build();
+
+            assertFalse(jwtService.isTokenValid(claims, differentUser));
+        }
+
+        @Test
+        void shouldThrowWhenVerifyingExpiredToken() {
+            String expiredToken = jwtService.generateExpiredToken(testUser);
+
+            assertThrows(io.jsonwebtoken.ExpiredJwtException.class, () -> jwtService.verify(expiredToken));
+        }
+
+        @Test
+        void shouldThrowWhenVerifyingTamperedToken() {
+            String token = jwtService.generateToken(userDetails);
+            String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+
+            assertThrows(io.jsonwebtoken.JwtException.class, () -> jwtService.verify(tampered));
+        }
+
+        @Test
+        void shouldReuseKeyAndParserAcrossTokens() {
+            jwtService.verify(jwtService.generateToken(userDetails));
+            Object parser = ReflectionTestUtils.getField(jwtService, "parser");
+            Object key = ReflectionTestUtils.getField(jwtService, "signInKey");
+
+            jwtService.verify(jwtService.generateRefreshToken(userDetails));
+
+            assertSame(parser, ReflectionTestUtils.getField(jwtService, "parser"));
+            assertSame(key, ReflectionTestUtils.getField(jwtService, "signInKey"));
+        }
+    }
+
     @Nested
     @DisplayName("Key Handling")
     class KeyTests {
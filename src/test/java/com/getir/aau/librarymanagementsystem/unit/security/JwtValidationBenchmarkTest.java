@@ -0,0 +1,84 @@
+package com.getir.aau.librarymanagementsystem.unit.security;
+
+import com.getir.aau.librarymanagementsystem.security.jwt.JwtService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * CPU spent authenticating one request, comparing the former filter path, which decoded the key, built a parser
+ * and verified the token three times, to the single verification. Timing loops are noisy on shared machines, so
+ * it only runs on request: {@code mvn test -Dtest=JwtValidationBenchmarkTest -Dbenchmark=true}
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@DisplayName("JWT Validation Benchmark")
+class JwtValidationBenchmarkTest {
+
+    private static final String SECRET_KEY = "404E635266556A586E3272357538782F413F4428472B4B6250645367566B5970";
+    private static final int WARMUP_REQUESTS = 20_000;
+    private static final int MEASURED_REQUESTS = 100_000;
+
+    private final UserDetails user = User.withUsername("test@example.com").password("pw").roles("USER").build();
+
+    @Test
+    @DisplayName("Should authenticate a request in less than half the CPU time of the former path")
+    void shouldHalveAuthenticationCost() {
+        JwtService jwtService = new JwtService();
+        ReflectionTestUtils.setField(jwtService, "secretKey", SECRET_KEY);
+        ReflectionTestUtils.setField(jwtService, "jwtExpiration", 86400000L);
+        String token = jwtService.generateToken(user);
+
+        Predicate<String> former = jwt -> {
+            String username = parse(jwt).getSubject();
+            return username.equals(user.getUsername())
+                    && parse(jwt).getSubject().equals(user.getUsername())
+                    && !parse(jwt).getExpiration().before(new Date());
+        };
+        Predicate<String> single = jwt -> {
+            Claims claims = jwtService.verify(jwt);
+            return jwtService.isTokenValid(claims, user);
+        };
+
+        long formerNanos = measure(former, token);
+        long singleNanos = measure(single, token);
+        log.info("JWT authentication per request: former {} ns, single verification {} ns ({}x)",
+                formerNanos, singleNanos, String.format("%.1f", (double) formerNanos / singleNanos));
+
+        assertThat(singleNanos * 2).isLessThan(formerNanos);
+    }
+
+    private static long measure(Predicate<String> authenticate, String token) {
+        for (int i = 0; i < WARMUP_REQUESTS; i++) {
+            assertThat(authenticate.test(token)).isTrue();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_REQUESTS; i++) {
+            if (!authenticate.test(token)) {
+                throw new AssertionError("Token rejected");
+            }
+        }
+        return (System.nanoTime() - start) / MEASURED_REQUESTS;
+    }
+
+    private static Claims parse(String token) {
+        return Jwts.parser()
+                .verifyWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET_KEY)))
+                .build()
+                .parseSignedClaims(token)
+                .getPayload();
+    }
+}
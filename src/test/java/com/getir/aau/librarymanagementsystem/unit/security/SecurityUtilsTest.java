@@ -4,6 +4,7 @@ import com.getir.aau.librarymanagementsystem.exception.ResourceNotFoundException
 import com.getir.aau.librarymanagementsystem.model.entity.User;
 import com.getir.aau.librarymanagementsystem.repository.UserRepository;
 import com.getir.aau.librarymanagementsystem.security.SecurityUtils;
+import com.getir.aau.librarymanagementsystem.security.jwt.JwtPrincipal;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -12,12 +13,15 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 
 import java.util.Collections;
 import java.util.List;
@@ -39,6 +43,7 @@ class SecurityUtilsTest {
     @AfterEach
     void tearDown() {
         SecurityContextHolder.clearContext();
+        RequestContextHolder.resetRequestAttributes();
     }
 
     @Nested
@@ -154,6 +159,49 @@ class SecurityUtilsTest {
         }
     }
 
+    @Nested
+    @DisplayName("getCurrentUserId Method Tests")
+    class GetCurrentUserIdTests {
+
+        @Test
+        @DisplayName("Should take the ID of a principal built from token claims without a query")
+        void shouldTakeIdOfJwtPrincipal() {
+            Authentication auth = new UsernamePasswordAuthenticationToken(
+                    new JwtPrincipal(7L, "test@example.com", "ROLE_USER"), null, Collections.emptyList());
+            SecurityContextHolder.getContext().setAuthentication(auth);
+
+            assertEquals(7L, securityUtils.getCurrentUserId());
+            verifyNoInteractions(userRepository);
+        }
+
+        @Test
+        @DisplayName("Should take the ID of a loaded user principal without a query")
+        void shouldTakeIdOfUserPrincipal() {
+            User user = User.builder().id(3L).email("test@example.com").build();
+            Authentication auth = new UsernamePasswordAuthenticationToken(user, null, Collections.emptyList());
+            SecurityContextHolder.getContext().setAuthentication(auth);
+
+            assertEquals(3L, securityUtils.getCurrentUserId());
+            verifyNoInteractions(userRepository);
+        }
+
+        @Test
+        @DisplayName("Should load the user once per request when the principal carries no ID")
+        void shouldLoadUserOncePerRequest() {
+            String email = "test@example.com";
+            Authentication auth = new UsernamePasswordAuthenticationToken(email, null, Collections.emptyList());
+            SecurityContextHolder.getContext().setAuthentication(auth);
+            RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+            when(userRepository.findByEmail(email)).thenReturn(Optional.of(User.builder().id(5L).email(email).build()));
+
+            assertEquals(5L, securityUtils.getCurrentUserId());
+            assertEquals(5L, securityUtils.getCurrentUserId());
+            assertEquals(5L, securityUtils.getCurrentUser().getId());
+
+            verify(userRepository, times(1)).findByEmail(email);
+        }
+    }
+
     @Nested
     @DisplayName("hasRole Method Tests")
     class HasRoleTests {
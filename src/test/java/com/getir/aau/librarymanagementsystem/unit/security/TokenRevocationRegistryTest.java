@@ -0,0 +1,49 @@
+package com.getir.aau.librarymanagementsystem.unit.security;
+
+import com.getir.aau.librarymanagementsystem.security.token.TokenRevocationRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("TokenRevocationRegistry Unit Tests")
+class TokenRevocationRegistryTest {
+
+    private final TokenRevocationRegistry registry = new TokenRevocationRegistry(86400000L);
+
+    @Test
+    @DisplayName("Should only revoke the tokens issued to the user before the revocation")
+    void shouldRevokeTokensIssuedBefore() {
+        Date before = new Date(System.currentTimeMillis() - 5000);
+
+        registry.revokeAll("user@example.com");
+
+        assertThat(registry.isRevoked("user@example.com", before)).isTrue();
+        assertThat(registry.isRevoked("user@example.com", new Date())).isFalse();
+        assertThat(registry.isRevoked("other@example.com", before)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should treat a token without issue time as revoked once its user's tokens are")
+    void shouldRevokeTokenWithoutIssueTime() {
+        assertThat(registry.isRevoked("user@example.com", null)).isFalse();
+
+        registry.revokeAll("user@example.com");
+
+        assertThat(registry.isRevoked("user@example.com", null)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should forget revocations older than the lifetime of access tokens")
+    void shouldForgetExpiredRevocations() throws InterruptedException {
+        TokenRevocationRegistry shortLived = new TokenRevocationRegistry(0);
+        shortLived.revokeAll("user@example.com");
+        Thread.sleep(2100);
+
+        shortLived.revokeAll("other@example.com");
+
+        assertThat(shortLived.isRevoked("user@example.com", new Date(0))).isFalse();
+    }
+}
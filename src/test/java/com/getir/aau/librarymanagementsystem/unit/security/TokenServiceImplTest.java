@@ -1,11 +1,13 @@
 package com.getir.aau.librarymanagementsystem.unit.security;
 
+import com.getir.aau.librarymanagementsystem.cache.VerifiedTokenCache;
 import com.getir.aau.librarymanagementsystem.model.entity.User;
 import com.getir.aau.librarymanagementsystem.repository.UserRepository;
 import com.getir.aau.librarymanagementsystem.security.auth.dto.AuthResponseDto;
 import com.getir.aau.librarymanagementsystem.security.jwt.JwtService;
 import com.getir.aau.librarymanagementsystem.security.token.Token;
 import com.getir.aau.librarymanagementsystem.security.token.TokenRepository;
+import com.getir.aau.librarymanagementsystem.security.token.TokenRevocationRegistry;
 import com.getir.aau.librarymanagementsystem.security.token.TokenServiceImpl;
 import com.getir.aau.librarymanagementsystem.security.token.TokenType;
 import org.junit.jupiter.api.BeforeEach;
@@ -44,6 +46,12 @@ class TokenServiceImplTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private VerifiedTokenCache verifiedTokenCache;
+
+    @Mock
+    private TokenRevocationRegistry tokenRevocationRegistry;
+
     @InjectMocks
     private TokenServiceImpl tokenService;
 
@@ -187,6 +195,8 @@ class TokenServiceImplTest {
             assertThat(savedTokens).hasSize(2);
             assertThat(savedTokens).allMatch(Token::isExpired);
             assertThat(savedTokens).allMatch(Token::isRevoked);
+            verify(verifiedTokenCache).evictAll(user.getEmail());
+            verify(tokenRevocationRegistry).revokeAll(user.getEmail());
         }
 
         @Test
@@ -201,6 +211,8 @@ class TokenServiceImplTest {
             // Then
             verify(tokenRepository).findAllValidTokenByUser(user.getId());
             verify(tokenRepository, never()).saveAll(anyList());
+            verify(verifiedTokenCache).evictAll(user.getEmail());
+            verify(tokenRevocationRegistry).revokeAll(user.getEmail());
         }
     }
 
@@ -1,5 +1,6 @@
 package com.getir.aau.librarymanagementsystem.unit.service;
 
+import com.getir.aau.librarymanagementsystem.cache.BookQueryCache;
 import com.getir.aau.librarymanagementsystem.exception.ResourceAlreadyExistsException;
 import com.getir.aau.librarymanagementsystem.exception.ResourceNotFoundException;
 import com.getir.aau.librarymanagementsystem.model.dto.request.AuthorRequestDto;
@@ -7,6 +8,8 @@ import com.getir.aau.librarymanagementsystem.model.dto.response.AuthorResponseDt
 import com.getir.aau.librarymanagementsystem.model.entity.Author;
 import com.getir.aau.librarymanagementsystem.model.mapper.AuthorMapper;
 import com.getir.aau.librarymanagementsystem.repository.AuthorRepository;
+import com.getir.aau.librarymanagementsystem.search.BookSearchIndex;
+import com.getir.aau.librarymanagementsystem.search.SuggestionIndex;
 import com.getir.aau.librarymanagementsystem.service.impl.AuthorServiceImpl;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.DisplayName;
@@ -37,6 +40,15 @@ public class AuthorServiceImplTest {
     @Mock
     private AuthorMapper authorMapper;
 
+    @Mock
+    private SuggestionIndex suggestionIndex;
+
+    @Mock
+    private BookSearchIndex bookSearchIndex;
+
+    @Mock
+    private BookQueryCache bookQueryCache;
+
     @InjectMocks
     private AuthorServiceImpl authorService;
 
@@ -108,6 +120,8 @@ public class AuthorServiceImplTest {
 
             assertThat(result).isNotNull();
             assertThat(result.name()).isEqualTo("Updated Author");
+            verify(suggestionIndex).indexAuthor(1L, "Updated Author");
+            verify(bookSearchIndex).rebuild();
         }
 
         @Test
@@ -185,6 +199,7 @@ public class AuthorServiceImplTest {
             authorService.delete(1L);
 
             verify(authorRepository).deleteById(1L);
+            verify(suggestionIndex).rebuild();
         }
 
         @Test
@@ -1,8 +1,13 @@
 package com.getir.aau.librarymanagementsystem.unit.service;
 
+import com.getir.aau.librarymanagementsystem.cache.BookQueryCache;
+import com.getir.aau.librarymanagementsystem.concurrency.InventoryLedger;
 import com.getir.aau.librarymanagementsystem.exception.ResourceAlreadyExistsException;
 import com.getir.aau.librarymanagementsystem.exception.ResourceNotFoundException;
+import com.getir.aau.librarymanagementsystem.model.dto.request.BookFacetRequestDto;
 import com.getir.aau.librarymanagementsystem.model.dto.request.BookRequestDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.BookFacetedPageResponseDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.SuggestionResponseDto;
 import com.getir.aau.librarymanagementsystem.model.dto.response.BookPageResponseDto;
 import com.getir.aau.librarymanagementsystem.model.dto.response.BookResponseDto;
 import com.getir.aau.librarymanagementsystem.model.entity.Author;
@@ -12,6 +17,13 @@ import com.getir.aau.librarymanagementsystem.model.mapper.BookMapper;
 import com.getir.aau.librarymanagementsystem.repository.AuthorRepository;
 import com.getir.aau.librarymanagementsystem.repository.BookRepository;
 import com.getir.aau.librarymanagementsystem.repository.CategoryRepository;
+import com.getir.aau.librarymanagementsystem.search.BookDocument;
+import com.getir.aau.librarymanagementsystem.search.BookSearchIndex;
+import com.getir.aau.librarymanagementsystem.search.BookSearchIndex.SubstringField;
+import com.getir.aau.librarymanagementsystem.search.FacetedSearchResult;
+import com.getir.aau.librarymanagementsystem.search.FullTextSearch;
+import com.getir.aau.librarymanagementsystem.search.Suggestion;
+import com.getir.aau.librarymanagementsystem.search.SuggestionIndex;
 import com.getir.aau.librarymanagementsystem.service.impl.BookServiceImpl;
 import jakarta.persistence.EntityNotFoundException;
 import org.junit.jupiter.api.BeforeEach;
@@ -21,14 +33,19 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.mockito.Mockito.verify;
@@ -37,6 +54,7 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 
 @ExtendWith(MockitoExtension.class)
@@ -46,6 +64,11 @@ class BookServiceImplTest {
     @Mock private AuthorRepository authorRepository;
     @Mock private CategoryRepository categoryRepository;
     @Mock private BookMapper bookMapper;
+    @Mock private BookSearchIndex bookSearchIndex;
+    @Mock private SuggestionIndex suggestionIndex;
+    @Mock private FullTextSearch fullTextSearch;
+    @Spy private BookQueryCache bookQueryCache = new BookQueryCache(false, 100);
+    @Mock private InventoryLedger inventoryLedger;
 
     @InjectMocks
     private BookServiceImpl bookService;
@@ -94,6 +117,8 @@ class BookServiceImplTest {
 
             assertThat(result).isNotNull();
             assertThat(result.title()).isEqualTo("Book Title");
+            verify(bookSearchIndex).index(BookDocument.from(book));
+            verify(suggestionIndex).indexTitle(book.getId(), book.getTitle());
         }
 
         @Test
@@ -141,6 +166,8 @@ class BookServiceImplTest {
 
             assertThat(result).isNotNull();
             assertThat(result.title()).isEqualTo("Book Title");
+            verify(bookSearchIndex).index(BookDocument.from(book));
+            verify(suggestionIndex).indexTitle(book.getId(), book.getTitle());
         }
 
         @Test
@@ -227,18 +254,41 @@ class BookServiceImplTest {
         @Test
         @DisplayName("Should delete book when found")
         void shouldDeleteBook() {
-            given(bookRepository.existsById(1L)).willReturn(true);
+            given(bookRepository.findById(1L)).willReturn(Optional.of(book));
             doNothing().when(bookRepository).deleteById(1L);
 
             bookService.delete(1L);
 
             verify(bookRepository, times(1)).deleteById(1L);
+            verify(bookSearchIndex).remove(1L);
+            verify(suggestionIndex).removeTitle(1L);
+            verify(bookQueryCache).evictBook(book);
+        }
+
+        @Test
+        @DisplayName("Should keep a deleted book searchable until the deletion commits")
+        void shouldRemoveBookFromIndexesAfterCommit() {
+            given(bookRepository.findById(1L)).willReturn(Optional.of(book));
+
+            TransactionSynchronizationManager.initSynchronization();
+            try {
+                bookService.delete(1L);
+                verify(bookSearchIndex, never()).remove(any());
+                verify(suggestionIndex, never()).removeTitle(any());
+
+                TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            } finally {
+                TransactionSynchronizationManager.clearSynchronization();
+            }
+
+            verify(bookSearchIndex).remove(1L);
+            verify(suggestionIndex).removeTitle(1L);
         }
 
         @Test
         @DisplayName("Should throw exception when book not found on delete")
         void shouldThrowWhenBookNotFoundOnDelete() {
-            given(bookRepository.existsById(1L)).willReturn(false);
+            given(bookRepository.findById(1L)).willReturn(Optional.empty());
 
             assertThrows(ResourceNotFoundException.class, () -> bookService.delete(1L));
         }
@@ -251,10 +301,9 @@ class BookServiceImplTest {
         @Test
         @DisplayName("Should return paginated books by title")
         void shouldReturnBooksByTitle() {
-            Page<Book> bookPage = new PageImpl<>(List.of(book));
+            Page<BookResponseDto> bookPage = new PageImpl<>(List.of(responseDto));
             given(bookRepository.findByTitleContainingIgnoreCase(eq("Book"), any()))
                     .willReturn(bookPage);
-            given(bookMapper.toDto(book)).willReturn(responseDto);
 
             Pageable pageable = PageRequest.of(0, 10);
             BookPageResponseDto result = bookService.getByTitle("Book", pageable);
@@ -263,20 +312,34 @@ class BookServiceImplTest {
             assertThat(result.books()).hasSize(1);
             assertThat(result.books().getFirst().title()).isEqualTo("Book Title");
         }
+
+        @Test
+        @DisplayName("Should return books by title from the trigram index when enabled")
+        void shouldReturnBooksByTitleFromIndex() {
+            Pageable pageable = PageRequest.of(0, 10);
+            given(bookSearchIndex.supportsSubstringSearch(pageable.getSort())).willReturn(true);
+            given(bookSearchIndex.findContaining(SubstringField.TITLE, "Book", pageable))
+                    .willReturn(new PageImpl<>(List.of(1L), pageable, 1));
+            given(bookRepository.findDtosByIdIn(List.of(1L))).willReturn(List.of(responseDto));
+
+            BookPageResponseDto result = bookService.getByTitle("Book", pageable);
+
+            assertThat(result.books()).hasSize(1);
+            verify(bookRepository, never()).findByTitleContainingIgnoreCase(anyString(), any());
+        }
     }
 
     @Nested
     @DisplayName("Search & Filter Method Tests")
     class SearchAndFilterTests {
 
-        private Page<Book> bookPage;
+        private Page<BookResponseDto> bookPage;
         private Pageable pageable;
 
         @BeforeEach
         void setupPagination() {
-            bookPage = new PageImpl<>(List.of(book));
+            bookPage = new PageImpl<>(List.of(responseDto));
             pageable = PageRequest.of(0, 10);
-            given(bookMapper.toDto(book)).willReturn(responseDto);
         }
 
         @Test
@@ -301,6 +364,34 @@ class BookServiceImplTest {
             assertThat(result.books().getFirst().authorName()).isEqualTo("Author");
         }
 
+        @Test
+        @DisplayName("Should return books by author name from the trigram index when enabled")
+        void shouldReturnBooksByAuthorNameFromIndex() {
+            given(bookSearchIndex.supportsSubstringSearch(pageable.getSort())).willReturn(true);
+            given(bookSearchIndex.findContaining(SubstringField.AUTHOR_NAME, "auth", pageable))
+                    .willReturn(new PageImpl<>(List.of(1L), pageable, 1));
+            given(bookRepository.findDtosByIdIn(List.of(1L))).willReturn(List.of(responseDto));
+
+            BookPageResponseDto result = bookService.getByAuthorName("auth", pageable);
+
+            assertThat(result.books()).hasSize(1);
+            verify(bookRepository, never()).findByAuthorNameContainingIgnoreCase(anyString(), any());
+        }
+
+        @Test
+        @DisplayName("Should return books by genre from the trigram index when enabled")
+        void shouldReturnBooksByGenreFromIndex() {
+            given(bookSearchIndex.supportsSubstringSearch(pageable.getSort())).willReturn(true);
+            given(bookSearchIndex.findContaining(SubstringField.GENRE, "fic", pageable))
+                    .willReturn(new PageImpl<>(List.of(1L), pageable, 1));
+            given(bookRepository.findDtosByIdIn(List.of(1L))).willReturn(List.of(responseDto));
+
+            BookPageResponseDto result = bookService.getByGenre("fic", pageable);
+
+            assertThat(result.books()).hasSize(1);
+            verify(bookRepository, never()).findByGenreContainingIgnoreCase(anyString(), any());
+        }
+
         @Test
         @DisplayName("Should return books by category ID")
         void shouldReturnBooksByCategoryId() {
@@ -345,13 +436,102 @@ class BookServiceImplTest {
         }
 
         @Test
-        @DisplayName("Should search books by keyword")
+        @DisplayName("Should search books by keyword using the search index")
         void shouldSearchBooksByKeywords() {
-            given(bookRepository.searchByKeywords("search", pageable)).willReturn(bookPage);
+            given(bookSearchIndex.supports(pageable.getSort())).willReturn(true);
+            given(bookSearchIndex.search("search", pageable)).willReturn(new PageImpl<>(List.of(1L), pageable, 1));
+            given(bookRepository.findDtosByIdIn(List.of(1L))).willReturn(List.of(responseDto));
+
+            BookPageResponseDto result = bookService.searchByKeywords("search", pageable);
+
+            assertThat(result.books()).hasSize(1);
+            assertThat(result.totalItems()).isEqualTo(1);
+            verify(bookRepository, never()).searchByKeywords(anyString(), any());
+        }
+
+        @Test
+        @DisplayName("Should rank keyword search with full-text search when available")
+        void shouldSearchBooksWithFullTextSearch() {
+            given(fullTextSearch.supports("search", pageable.getSort())).willReturn(true);
+            given(fullTextSearch.search("search", pageable)).willReturn(new PageImpl<>(List.of(1L), pageable, 1));
+            given(bookRepository.findDtosByIdIn(List.of(1L))).willReturn(List.of(responseDto));
 
             BookPageResponseDto result = bookService.searchByKeywords("search", pageable);
 
+            assertThat(result.books()).containsExactly(responseDto);
+            verify(bookSearchIndex, never()).search(anyString(), any());
+            verify(bookRepository, never()).searchByKeywords(anyString(), any());
+        }
+
+        @Test
+        @DisplayName("Should search in the database when the index cannot apply the sort")
+        void shouldSearchInDatabaseForUnsupportedSort() {
+            Pageable sorted = PageRequest.of(0, 10, Sort.by("numberOfCopies"));
+            given(bookSearchIndex.supports(sorted.getSort())).willReturn(false);
+            given(bookRepository.searchByKeywords("search", sorted)).willReturn(bookPage);
+
+            BookPageResponseDto result = bookService.searchByKeywords(" search ", sorted);
+
+            assertThat(result.books()).hasSize(1);
+            verify(bookSearchIndex, never()).search(anyString(), any());
+        }
+
+        @Test
+        @DisplayName("Should list every book from the database for a blank keyword the index cannot sort")
+        void shouldListAllBooksForBlankKeywordWithUnsupportedSort() {
+            Pageable sorted = PageRequest.of(0, 10, Sort.by("numberOfCopies"));
+            given(bookSearchIndex.supports(sorted.getSort())).willReturn(false);
+            given(bookRepository.findAllDtos(sorted)).willReturn(bookPage);
+
+            BookPageResponseDto result = bookService.searchByKeywords(" ", sorted);
+
             assertThat(result.books()).hasSize(1);
+            verify(bookRepository, never()).searchByKeywords(anyString(), any());
+        }
+
+        @Test
+        @DisplayName("Should load the books of a fuzzy search in index order")
+        void shouldFuzzySearchBooks() {
+            given(bookSearchIndex.fuzzySearch("tolkein", 2, pageable)).willReturn(new PageImpl<>(List.of(1L), pageable, 1));
+            given(bookRepository.findDtosByIdIn(List.of(1L))).willReturn(List.of(responseDto));
+
+            BookPageResponseDto result = bookService.fuzzySearch("tolkein", 2, pageable);
+
+            assertThat(result.books()).containsExactly(responseDto);
+            assertThat(result.totalItems()).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("Should return the page with the facet counts of the search index")
+        void shouldReturnFacetedPage() {
+            BookFacetRequestDto request = new BookFacetRequestDto("search", null, null, "Fiction", true);
+            given(bookSearchIndex.facetedSearch(request, pageable)).willReturn(new FacetedSearchResult(
+                    new PageImpl<>(List.of(1L), pageable, 1),
+                    Map.of("Category", 1L), Map.of("Author", 1L), Map.of("Fiction", 1L),
+                    Map.of("available", 1L, "unavailable", 0L)));
+            given(bookRepository.findDtosByIdIn(List.of(1L))).willReturn(List.of(responseDto));
+
+            BookFacetedPageResponseDto result = bookService.facetedSearch(request, pageable);
+
+            assertThat(result.page().books()).hasSize(1);
+            assertThat(result.genres()).containsEntry("Fiction", 1L);
+            assertThat(result.availability()).containsEntry("available", 1L);
+        }
+    }
+
+    @Nested
+    @DisplayName("Autocomplete Method Tests")
+    class AutocompleteTests {
+
+        @Test
+        @DisplayName("Should map suggestions and bound the requested limit")
+        void shouldAutocomplete() {
+            given(suggestionIndex.suggest("har", 25)).willReturn(List.of(
+                    new Suggestion(Suggestion.Type.TITLE, 1L, "Harry Potter", 7)));
+
+            List<SuggestionResponseDto> result = bookService.autocomplete("har", 1000);
+
+            assertThat(result).containsExactly(new SuggestionResponseDto("Harry Potter", "TITLE", 1L, 7));
         }
     }
 
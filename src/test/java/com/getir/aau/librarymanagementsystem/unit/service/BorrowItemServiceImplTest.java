@@ -1,13 +1,21 @@
 package com.getir.aau.librarymanagementsystem.unit.service;
 
+import com.getir.aau.librarymanagementsystem.cache.BookQueryCache;
+import com.getir.aau.librarymanagementsystem.cache.BorrowEligibilityCache;
+import com.getir.aau.librarymanagementsystem.concurrency.InventoryLedger;
 import com.getir.aau.librarymanagementsystem.exception.ResourceNotFoundException;
+import com.getir.aau.librarymanagementsystem.model.dto.request.BulkReturnRequestDto;
 import com.getir.aau.librarymanagementsystem.model.dto.response.BorrowItemPageResponseDto;
 import com.getir.aau.librarymanagementsystem.model.dto.response.BorrowItemResponseDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.BulkReturnResponseDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.BulkReturnResultDto;
 import com.getir.aau.librarymanagementsystem.model.entity.*;
 import com.getir.aau.librarymanagementsystem.model.mapper.BorrowMapper;
+import com.getir.aau.librarymanagementsystem.repository.ActiveBorrowSummary;
 import com.getir.aau.librarymanagementsystem.repository.BookRepository;
 import com.getir.aau.librarymanagementsystem.repository.BorrowItemRepository;
 import com.getir.aau.librarymanagementsystem.repository.UserRepository;
+import com.getir.aau.librarymanagementsystem.search.BookSearchIndex;
 import com.getir.aau.librarymanagementsystem.security.SecurityUtils;
 import com.getir.aau.librarymanagementsystem.service.impl.BorrowItemServiceImpl;
 import org.junit.jupiter.api.BeforeEach;
@@ -17,16 +25,16 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.*;
 import org.springframework.security.access.AccessDeniedException;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -39,6 +47,10 @@ class BorrowItemServiceImplTest {
     @Mock private UserRepository userRepository;
     @Mock private BorrowMapper borrowMapper;
     @Mock private SecurityUtils securityUtils;
+    @Mock private BookSearchIndex bookSearchIndex;
+    @Mock private BookQueryCache bookQueryCache;
+    @Mock private InventoryLedger inventoryLedger;
+    @Spy private BorrowEligibilityCache borrowEligibilityCache = new BorrowEligibilityCache(false, 100);
 
     @InjectMocks private BorrowItemServiceImpl borrowItemService;
 
@@ -101,30 +113,54 @@ class BorrowItemServiceImplTest {
         void returnBookByLibrarian() {
             // Arrange
             when(borrowItemRepository.findById(10L)).thenReturn(Optional.of(borrowItem));
-            when(securityUtils.getCurrentUser()).thenReturn(librarian);
+            when(securityUtils.getCurrentUserId()).thenReturn(librarian.getId());
             when(securityUtils.hasRole("LIBRARIAN")).thenReturn(true);
+            when(borrowItemRepository.markReturned(eq(10L), any(LocalDate.class))).thenReturn(1);
+            when(bookRepository.findById(book.getId())).thenReturn(Optional.of(book));
+            when(inventoryLedger.copiesOf(book)).thenReturn(book.getNumberOfCopies());
 
             // Act
             borrowItemService.returnBook(10L, regularUser.getId());
 
             // Assert
-            assertTrue(borrowItem.isReturned());
-            verify(bookRepository).save(book);
-            verify(borrowItemRepository).save(borrowItem);
+            verify(borrowItemRepository).markReturned(10L, LocalDate.now());
+            verify(bookRepository).incrementCopies(book.getId(), 1);
+            verify(bookRepository, never()).save(any());
+            verify(borrowItemRepository, never()).save(any());
+            verify(bookSearchIndex).updateAvailability(book.getId(), true);
+            verify(borrowEligibilityCache).recordReturn(regularUser.getId(), List.of(borrowItem.getDueDate()));
         }
 
         @Test
         @DisplayName("Should return book successfully if user is owner")
         void returnBookByOwner() {
             when(borrowItemRepository.findById(10L)).thenReturn(Optional.of(borrowItem));
-            when(securityUtils.getCurrentUser()).thenReturn(regularUser);
+            when(securityUtils.getCurrentUserId()).thenReturn(regularUser.getId());
+            when(securityUtils.hasRole("LIBRARIAN")).thenReturn(false);
+            when(borrowItemRepository.markReturned(eq(10L), any(LocalDate.class))).thenReturn(1);
+            when(bookRepository.findById(book.getId())).thenReturn(Optional.of(book));
+
+            borrowItemService.returnBook(10L, regularUser.getId());
+
+            verify(borrowItemRepository).markReturned(10L, LocalDate.now());
+            verify(bookRepository).incrementCopies(book.getId(), 1);
+        }
+
+        @Test
+        @DisplayName("Should give the copy back through the ledger when it is enabled")
+        void returnBookThroughLedger() {
+            when(borrowItemRepository.findById(10L)).thenReturn(Optional.of(borrowItem));
+            when(securityUtils.getCurrentUserId()).thenReturn(regularUser.getId());
             when(securityUtils.hasRole("LIBRARIAN")).thenReturn(false);
+            when(inventoryLedger.isEnabled()).thenReturn(true);
+            when(borrowItemRepository.markReturnedUnsettled(eq(10L), any(LocalDate.class))).thenReturn(1);
+            when(bookRepository.findById(book.getId())).thenReturn(Optional.of(book));
 
             borrowItemService.returnBook(10L, regularUser.getId());
 
-            assertTrue(borrowItem.isReturned());
-            verify(bookRepository).save(book);
-            verify(borrowItemRepository).save(borrowItem);
+            verify(inventoryLedger).release(book.getId(), 1);
+            verify(borrowItemRepository, never()).markReturned(any(), any());
+            verify(bookRepository, never()).incrementCopies(any(), anyInt());
         }
 
         @Test
@@ -132,14 +168,14 @@ class BorrowItemServiceImplTest {
         void returnBookUnauthorizedUser() {
             User stranger = User.builder().id(999L).build();
             when(borrowItemRepository.findById(10L)).thenReturn(Optional.of(borrowItem));
-            when(securityUtils.getCurrentUser()).thenReturn(stranger);
+            when(securityUtils.getCurrentUserId()).thenReturn(stranger.getId());
             when(securityUtils.hasRole("LIBRARIAN")).thenReturn(false);
 
             assertThrows(AccessDeniedException.class, () ->
                     borrowItemService.returnBook(10L, stranger.getId()));
 
-            verify(bookRepository, never()).save(any());
-            verify(borrowItemRepository, never()).save(any());
+            verify(borrowItemRepository, never()).markReturned(any(), any());
+            verify(bookRepository, never()).incrementCopies(any(), anyInt());
         }
 
         @Test
@@ -148,13 +184,27 @@ class BorrowItemServiceImplTest {
             borrowItem.markAsReturned();
 
             when(borrowItemRepository.findById(10L)).thenReturn(Optional.of(borrowItem));
-            when(securityUtils.getCurrentUser()).thenReturn(regularUser);
+            when(securityUtils.getCurrentUserId()).thenReturn(regularUser.getId());
             when(securityUtils.hasRole("LIBRARIAN")).thenReturn(true);
 
             assertThrows(IllegalStateException.class, () ->
                     borrowItemService.returnBook(10L, regularUser.getId()));
         }
 
+        @Test
+        @DisplayName("Should throw IllegalStateException if a concurrent return marked the item first")
+        void returnBookReturnedConcurrently() {
+            when(borrowItemRepository.findById(10L)).thenReturn(Optional.of(borrowItem));
+            when(securityUtils.getCurrentUserId()).thenReturn(regularUser.getId());
+            when(securityUtils.hasRole("LIBRARIAN")).thenReturn(false);
+            when(borrowItemRepository.markReturned(eq(10L), any(LocalDate.class))).thenReturn(0);
+
+            assertThrows(IllegalStateException.class, () ->
+                    borrowItemService.returnBook(10L, regularUser.getId()));
+
+            verify(bookRepository, never()).incrementCopies(any(), anyInt());
+        }
+
         @Test
         @DisplayName("Should throw ResourceNotFoundException if item not found")
         void returnBookNotFound() {
@@ -163,6 +213,93 @@ class BorrowItemServiceImplTest {
             assertThrows(ResourceNotFoundException.class, () -> borrowItemService.returnBook(10L, regularUser.getId()));
         }
     }
+
+    @Nested
+    @DisplayName("returnBooksInBulk")
+    class ReturnBooksInBulkTests {
+
+        private BorrowItem unreturnedItem(Long id, LocalDate dueDate) {
+            return BorrowItem.builder()
+                    .id(id).user(regularUser).book(book)
+                    .borrowDate(dueDate.minusDays(14)).dueDate(dueDate)
+                    .returned(false)
+                    .build();
+        }
+
+        @Test
+        @DisplayName("Should return items by ID and the item due first of a scanned book with one update")
+        void returnByItemAndBookIds() {
+            BorrowItem dueLater = unreturnedItem(11L, LocalDate.now().plusDays(3));
+            BorrowItem dueFirst = unreturnedItem(12L, LocalDate.now().minusDays(1));
+            when(securityUtils.hasRole("LIBRARIAN")).thenReturn(true);
+            when(borrowItemRepository.findAllForUpdate(Set.of(10L, 404L))).thenReturn(List.of(borrowItem));
+            when(borrowItemRepository.findUnreturnedForUpdateByBookIds(Set.of(book.getId())))
+                    .thenReturn(List.of(dueFirst, borrowItem, dueLater));
+            when(bookRepository.findAllById(Set.of(book.getId()))).thenReturn(List.of(book));
+            when(inventoryLedger.copiesOf(book)).thenReturn(book.getNumberOfCopies());
+
+            BulkReturnResponseDto response = borrowItemService.returnBooksInBulk(new BulkReturnRequestDto(
+                    List.of(10L, 404L, 10L), List.of(book.getId(), book.getId(), book.getId())));
+
+            assertEquals(3, response.returned());
+            assertEquals(3, response.rejected());
+            assertEquals(List.of(10L, 404L, 10L, 12L, 11L), response.results().stream().limit(5).map(BulkReturnResultDto::itemId).toList());
+            assertEquals("Book already returned", response.results().get(2).error());
+            assertFalse(response.results().get(5).returned());
+            assertNull(response.results().get(5).itemId());
+            verify(borrowItemRepository).markAllReturned(Set.of(10L, 12L, 11L), LocalDate.now());
+            verify(bookRepository).incrementCopies(book.getId(), 3);
+            verify(bookSearchIndex).updateAvailability(book.getId(), true);
+        }
+
+        @Test
+        @DisplayName("Should give the copies back through the ledger when it is enabled")
+        void returnThroughLedger() {
+            when(securityUtils.hasRole("LIBRARIAN")).thenReturn(true);
+            when(inventoryLedger.isEnabled()).thenReturn(true);
+            when(borrowItemRepository.findAllForUpdate(Set.of(10L))).thenReturn(List.of(borrowItem));
+
+            BulkReturnResponseDto response = borrowItemService.returnBooksInBulk(new BulkReturnRequestDto(List.of(10L), null));
+
+            assertEquals(1, response.returned());
+            verify(borrowItemRepository).markAllReturnedUnsettled(Set.of(10L), LocalDate.now());
+            verify(inventoryLedger).release(book.getId(), 1);
+            verify(bookRepository, never()).incrementCopies(any(), anyInt());
+            verifyNoInteractions(bookSearchIndex);
+        }
+
+        @Test
+        @DisplayName("Should write nothing when every return is rejected")
+        void rejectAll() {
+            borrowItem.markAsReturned();
+            when(securityUtils.hasRole("LIBRARIAN")).thenReturn(true);
+            when(borrowItemRepository.findAllForUpdate(Set.of(10L))).thenReturn(List.of(borrowItem));
+
+            BulkReturnResponseDto response = borrowItemService.returnBooksInBulk(new BulkReturnRequestDto(List.of(10L), List.of()));
+
+            assertEquals(0, response.returned());
+            assertEquals(1, response.rejected());
+            verify(borrowItemRepository, never()).markAllReturned(any(), any());
+            verify(bookRepository, never()).incrementCopies(any(), anyInt());
+        }
+
+        @Test
+        @DisplayName("Should throw AccessDeniedException if user is not librarian")
+        void rejectNonLibrarian() {
+            when(securityUtils.hasRole("LIBRARIAN")).thenReturn(false);
+
+            assertThrows(AccessDeniedException.class, () ->
+                    borrowItemService.returnBooksInBulk(new BulkReturnRequestDto(List.of(10L), List.of())));
+            verifyNoInteractions(borrowItemRepository);
+        }
+
+        @Test
+        @DisplayName("Should throw IllegalArgumentException if no IDs are given")
+        void rejectEmptyRequest() {
+            assertThrows(IllegalArgumentException.class, () ->
+                    borrowItemService.returnBooksInBulk(new BulkReturnRequestDto(null, null)));
+        }
+    }
     @Nested
     @DisplayName("getByUserId")
     class GetByUserIdTests {
@@ -267,6 +404,32 @@ class BorrowItemServiceImplTest {
         }
     }
 
+    @Nested
+    @DisplayName("scrollOverdueItems")
+    class ScrollOverdueItemsTests {
+
+        @Test
+        @DisplayName("should return a window of overdue items with a continuation cursor")
+        void scrollOverdueItems_success() {
+            Window<BorrowItem> window = Window.from(List.of(borrowItem),
+                    index -> ScrollPosition.forward(Map.of("borrowDate", borrowItem.getBorrowDate(), "id", 10L)), true);
+            BorrowItemResponseDto responseDto = new BorrowItemResponseDto(
+                    10L, 100L, "Test Book", 2L, "user@example.com",
+                    LocalDate.now().minusDays(10), LocalDate.now().minusDays(1), null, false
+            );
+
+            when(borrowItemRepository.findByReturnedFalseAndDueDateBefore(
+                    eq(LocalDate.now()), eq(ScrollPosition.keyset()), eq(Limit.of(10)), any(Sort.class))).thenReturn(window);
+            when(borrowMapper.toItemDto(borrowItem)).thenReturn(responseDto);
+
+            BorrowItemPageResponseDto result = borrowItemService.scrollOverdueItems("", 10);
+
+            assertEquals(1, result.items().size());
+            assertEquals(-1, result.totalItems());
+            assertNotNull(result.nextCursor());
+        }
+    }
+
     @Nested
     @DisplayName("getActiveItemsByUser")
     class GetActiveItemsByUserTests {
@@ -375,19 +538,10 @@ class BorrowItemServiceImplTest {
         @Test
         @DisplayName("should return true if there is at least one overdue item")
         void existsOverdueItems_true() {
-            BorrowItem overdueItem = BorrowItem.builder()
-                    .id(11L)
-                    .user(regularUser)
-                    .book(book)
-                    .borrowDate(LocalDate.now().minusDays(10))
-                    .dueDate(LocalDate.now().minusDays(1)) // overdue
-                    .returned(false)
-                    .build();
-
             when(userRepository.existsById(2L)).thenReturn(true);
             doNothing().when(securityUtils).checkAccessPermissionForUser(2L);
-            when(borrowItemRepository.findByUserIdAndReturnedFalse(2L))
-                    .thenReturn(List.of(overdueItem));
+            when(borrowItemRepository.summarizeActiveByUserId(2L))
+                    .thenReturn(new ActiveBorrowSummary(2L, 2L, LocalDate.now().minusDays(1))); // overdue
 
             boolean result = borrowItemService.existsOverdueItemsByUserId(2L);
 
@@ -397,19 +551,10 @@ class BorrowItemServiceImplTest {
         @Test
         @DisplayName("should return false if no overdue items exist")
         void existsOverdueItems_false() {
-            BorrowItem notOverdueItem = BorrowItem.builder()
-                    .id(12L)
-                    .user(regularUser)
-                    .book(book)
-                    .borrowDate(LocalDate.now().minusDays(5))
-                    .dueDate(LocalDate.now().plusDays(2)) // not overdue
-                    .returned(false)
-                    .build();
-
             when(userRepository.existsById(2L)).thenReturn(true);
             doNothing().when(securityUtils).checkAccessPermissionForUser(2L);
-            when(borrowItemRepository.findByUserIdAndReturnedFalse(2L))
-                    .thenReturn(List.of(notOverdueItem));
+            when(borrowItemRepository.summarizeActiveByUserId(2L))
+                    .thenReturn(new ActiveBorrowSummary(2L, 1L, LocalDate.now().plusDays(2))); // not overdue
 
             boolean result = borrowItemService.existsOverdueItemsByUserId(2L);
 
@@ -1,27 +1,40 @@
 package com.getir.aau.librarymanagementsystem.unit.service;
 
+import com.getir.aau.librarymanagementsystem.cache.BookQueryCache;
+import com.getir.aau.librarymanagementsystem.cache.BorrowEligibilityCache;
+import com.getir.aau.librarymanagementsystem.concurrency.InventoryLedger;
 import com.getir.aau.librarymanagementsystem.exception.ResourceAlreadyExistsException;
 import com.getir.aau.librarymanagementsystem.exception.ResourceNotFoundException;
 import com.getir.aau.librarymanagementsystem.model.dto.request.BorrowItemRequestDto;
 import com.getir.aau.librarymanagementsystem.model.dto.request.BorrowRecordRequestDto;
+import com.getir.aau.librarymanagementsystem.model.dto.request.BulkBorrowRequestDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.BorrowRecordPageResponseDto;
 import com.getir.aau.librarymanagementsystem.model.dto.response.BorrowRecordResponseDto;
+import com.getir.aau.librarymanagementsystem.model.dto.response.BulkBorrowResponseDto;
 import com.getir.aau.librarymanagementsystem.model.entity.*;
 import com.getir.aau.librarymanagementsystem.model.mapper.BorrowMapper;
 import com.getir.aau.librarymanagementsystem.repository.*;
+import com.getir.aau.librarymanagementsystem.search.BookSearchIndex;
+import com.getir.aau.librarymanagementsystem.search.SuggestionIndex;
 import com.getir.aau.librarymanagementsystem.security.SecurityUtils;
 import com.getir.aau.librarymanagementsystem.service.impl.BorrowRecordServiceImpl;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.access.AccessDeniedException;
 
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -35,6 +48,11 @@ class BorrowRecordServiceImplTest {
     @Mock BookRepository bookRepository;
     @Mock BorrowMapper borrowMapper;
     @Mock SecurityUtils securityUtils;
+    @Mock BookSearchIndex bookSearchIndex;
+    @Mock SuggestionIndex suggestionIndex;
+    @Mock BookQueryCache bookQueryCache;
+    @Mock InventoryLedger inventoryLedger;
+    @Spy BorrowEligibilityCache borrowEligibilityCache = new BorrowEligibilityCache(false, 100);
     @InjectMocks BorrowRecordServiceImpl borrowRecordService;
 
     private User user;
@@ -53,7 +71,11 @@ class BorrowRecordServiceImplTest {
                 .available(true)
                 .title("Test Book")
                 .numberOfCopies(1)
+                .author(Author.builder().id(1L).name("Test Author").build())
                 .build();
+
+        lenient().when(borrowItemRepository.summarizeActiveByUserId(anyLong()))
+                .thenAnswer(invocation -> ActiveBorrowSummary.none(invocation.getArgument(0)));
     }
 
     @Nested
@@ -66,19 +88,40 @@ class BorrowRecordServiceImplTest {
             BorrowRecordResponseDto expectedResponse = mock(BorrowRecordResponseDto.class);
 
             when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
-            when(bookRepository.findById(book.getId())).thenReturn(Optional.of(book));
+            when(bookRepository.decrementCopies(book.getId(), 1)).thenReturn(1);
+            when(bookRepository.findAllById(Set.of(book.getId()))).thenReturn(List.of(book));
             when(borrowMapper.toRecordDto(any())).thenReturn(expectedResponse);
 
             BorrowRecordResponseDto response = borrowRecordService.borrowBooks(recordRequestDto);
 
             assertNotNull(response);
             verify(userRepository).findById(user.getId());
-            verify(bookRepository).findById(book.getId());
-            verify(bookRepository).saveAll(anyList());
+            verify(bookRepository).decrementCopies(book.getId(), 1);
+            verify(bookRepository).findAllById(Set.of(book.getId()));
+            verify(bookRepository, never()).save(any());
             verify(borrowRecordRepository).save(any());
-            verify(borrowItemRepository).saveAll(anyList());
+            verify(borrowEligibilityCache).recordBorrow(user.getId(), 1, LocalDate.now().plusDays(14));
+        }
+
+        @Test
+        @DisplayName("Should take the copies from the ledger and leave the items unsettled when it is enabled")
+        void shouldBorrowThroughLedger() {
+            BorrowRecordRequestDto recordRequestDto = new BorrowRecordRequestDto(user.getId(),
+                    List.of(new BorrowItemRequestDto(book.getId()), new BorrowItemRequestDto(book.getId())));
 
-            assertFalse(book.isAvailable());
+            when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
+            when(inventoryLedger.isEnabled()).thenReturn(true);
+            when(inventoryLedger.tryReserve(book.getId(), 2)).thenReturn(true);
+            when(bookRepository.findAllById(Set.of(book.getId()))).thenReturn(List.of(book));
+            when(borrowMapper.toRecordDto(any())).thenReturn(mock(BorrowRecordResponseDto.class));
+
+            borrowRecordService.borrowBooks(recordRequestDto);
+
+            ArgumentCaptor<BorrowRecord> saved = ArgumentCaptor.forClass(BorrowRecord.class);
+            verify(borrowRecordRepository).save(saved.capture());
+            assertEquals(2, saved.getValue().getItems().size());
+            assertTrue(saved.getValue().getItems().stream().noneMatch(BorrowItem::isCopiesSettled));
+            verify(bookRepository, never()).decrementCopies(any(), anyInt());
         }
 
         @Test
@@ -102,13 +145,15 @@ class BorrowRecordServiceImplTest {
             BorrowRecordRequestDto recordRequestDto = new BorrowRecordRequestDto(user.getId(), List.of(itemDto));
 
             when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
-            when(bookRepository.findById(anyLong())).thenReturn(Optional.empty());
+            when(bookRepository.decrementCopies(book.getId(), 1)).thenReturn(0);
+            when(bookRepository.existsById(book.getId())).thenReturn(false);
 
             assertThrows(ResourceNotFoundException.class,
                     () -> borrowRecordService.borrowBooks(recordRequestDto));
 
             verify(userRepository).findById(user.getId());
-            verify(bookRepository).findById(book.getId());
+            verify(bookRepository).existsById(book.getId());
+            verify(borrowRecordRepository, never()).save(any());
         }
 
         @Test
@@ -124,13 +169,46 @@ class BorrowRecordServiceImplTest {
             BorrowRecordRequestDto recordRequestDto = new BorrowRecordRequestDto(user.getId(), List.of(itemDto));
 
             when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
-            when(bookRepository.findById(book.getId())).thenReturn(Optional.of(book));
+            when(bookRepository.decrementCopies(book.getId(), 1)).thenReturn(0);
+            when(bookRepository.existsById(book.getId())).thenReturn(true);
 
             assertThrows(ResourceAlreadyExistsException.class,
                     () -> borrowRecordService.borrowBooks(recordRequestDto));
 
             verify(userRepository).findById(user.getId());
-            verify(bookRepository).findById(book.getId());
+            verify(bookRepository).decrementCopies(book.getId(), 1);
+            verify(borrowRecordRepository, never()).save(any());
+        }
+    }
+
+    @Nested
+    class BorrowBooksInBulkTests {
+        @Test
+        @DisplayName("Should borrow for eligible users from state loaded once and reject the rest")
+        void shouldBorrowForEligibleUsersOnly() {
+            User overdueUser = User.builder().id(2L).role(user.getRole()).build();
+            BulkBorrowRequestDto request = new BulkBorrowRequestDto(List.of(
+                    new BorrowRecordRequestDto(user.getId(), List.of(new BorrowItemRequestDto(book.getId()))),
+                    new BorrowRecordRequestDto(overdueUser.getId(), List.of(new BorrowItemRequestDto(book.getId()))),
+                    new BorrowRecordRequestDto(3L, List.of(new BorrowItemRequestDto(book.getId())))));
+
+            when(userRepository.findAllById(Set.of(1L, 2L, 3L))).thenReturn(List.of(user, overdueUser));
+            when(borrowItemRepository.summarizeActiveByUserIds(Set.of(1L, 2L, 3L)))
+                    .thenReturn(List.of(new ActiveBorrowSummary(2L, 1L, LocalDate.now().minusDays(1))));
+            when(bookRepository.findAllForUpdate(Set.of(book.getId()))).thenReturn(List.of(book));
+            when(borrowMapper.toRecordDto(any())).thenReturn(new BorrowRecordResponseDto(
+                    10L, user.getId(), "Test User", LocalDate.now(), LocalDate.now().plusDays(14), List.of()));
+
+            BulkBorrowResponseDto response = borrowRecordService.borrowBooksInBulk(request);
+
+            assertEquals(1, response.borrowed());
+            assertEquals(2, response.rejected());
+            assertTrue(response.results().get(1).error().contains("overdue"));
+            assertTrue(response.results().get(2).error().contains("User not found"));
+            verify(bookRepository).decrementCopies(book.getId(), 1);
+            verify(borrowRecordRepository).saveAll(argThat(records -> records.iterator().hasNext()));
+            verify(borrowItemRepository, never()).summarizeActiveByUserId(any());
+            verify(borrowEligibilityCache).recordBorrow(eq(1L), eq(1), any(LocalDate.class));
         }
     }
 
@@ -170,82 +248,98 @@ class BorrowRecordServiceImplTest {
         @Test
         @DisplayName("Should not throw when user has some books but under limit")
         void shouldNotThrowWhenUserHasSomeBooksButUnderLimit() {
-            List<BorrowItem> twoActiveItems = List.of(
-                    BorrowItem.builder().dueDate(LocalDate.now().plusDays(5)).build(),
-                    BorrowItem.builder().dueDate(LocalDate.now().plusDays(3)).build()
-            );
-
             BorrowItemRequestDto itemDto = new BorrowItemRequestDto(book.getId());
             BorrowRecordRequestDto recordRequestDto = new BorrowRecordRequestDto(user.getId(), List.of(itemDto));
 
             when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
-            when(borrowItemRepository.findByUserIdAndReturnedFalse(user.getId())).thenReturn(twoActiveItems);
-            when(bookRepository.findById(book.getId())).thenReturn(Optional.of(book));
+            when(borrowItemRepository.summarizeActiveByUserId(user.getId()))
+                    .thenReturn(new ActiveBorrowSummary(user.getId(), 2L, LocalDate.now().plusDays(3)));
+            when(bookRepository.decrementCopies(book.getId(), 1)).thenReturn(1);
+            when(bookRepository.findAllById(Set.of(book.getId()))).thenReturn(List.of(book));
             when(borrowMapper.toRecordDto(any())).thenReturn(mock(BorrowRecordResponseDto.class));
 
             assertDoesNotThrow(() -> borrowRecordService.borrowBooks(recordRequestDto));
 
             verify(userRepository).findById(user.getId());
-            verify(borrowItemRepository).findByUserIdAndReturnedFalse(user.getId());
+            verify(borrowItemRepository).summarizeActiveByUserId(user.getId());
         }
 
         @Test
         @DisplayName("Should throw when user has exactly maximum number of books")
         void shouldThrowWhenUserHasMaximumBooks() {
-            List<BorrowItem> fiveActiveItems = List.of(
-                    mock(BorrowItem.class), mock(BorrowItem.class),
-                    mock(BorrowItem.class), mock(BorrowItem.class),
-                    mock(BorrowItem.class)
+            when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
+            when(borrowItemRepository.summarizeActiveByUserId(user.getId()))
+                    .thenReturn(new ActiveBorrowSummary(user.getId(), 5L, LocalDate.now().minusDays(2)));
+
+            IllegalStateException exception = assertThrows(
+                    IllegalStateException.class,
+                    () -> borrowRecordService.checkBorrowEligibility(user.getId())
             );
 
+            assertEquals("You have reached the maximum borrowing limit.", exception.getMessage());
+        }
+
+        @Test
+        @DisplayName("Should throw when user has an overdue item")
+        void shouldThrowWhenUserHasOverdueItem() {
             when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
-            when(borrowItemRepository.findByUserIdAndReturnedFalse(user.getId())).thenReturn(fiveActiveItems);
+            when(borrowItemRepository.summarizeActiveByUserId(user.getId()))
+                    .thenReturn(new ActiveBorrowSummary(user.getId(), 1L, LocalDate.now().minusDays(1)));
 
             IllegalStateException exception = assertThrows(
                     IllegalStateException.class,
                     () -> borrowRecordService.checkBorrowEligibility(user.getId())
             );
 
-            assertEquals("You have reached the maximum borrowing limit.", exception.getMessage());
+            assertEquals("You cannot borrow books until overdue items are returned.", exception.getMessage());
         }
     }
 
         @Nested
     class GetActiveRecordsByUserTests {
         @Test
-        @DisplayName("Should return active records for user")
+        @DisplayName("Should return the page of active records for user with their items")
         void shouldReturnActiveRecordsForUser() {
-            BorrowItem activeItem = BorrowItem.builder()
-                    .returned(false)
-                    .build();
-
-            BorrowItem returnedItem = BorrowItem.builder()
-                    .returned(true)
-                    .build();
-
             BorrowRecord activeRecord = BorrowRecord.builder()
                     .id(1L)
                     .user(user)
-                    .items(List.of(activeItem, returnedItem))
+                    .items(List.of(BorrowItem.builder().returned(false).build(), BorrowItem.builder().returned(true).build()))
                     .build();
+            Pageable pageable = PageRequest.of(0, 10);
+            BorrowRecordResponseDto recordDto = mock(BorrowRecordResponseDto.class);
+
+            when(securityUtils.getCurrentUserId()).thenReturn(user.getId());
+            when(securityUtils.hasRole("LIBRARIAN")).thenReturn(false);
+            when(userRepository.existsById(user.getId())).thenReturn(true);
+            when(borrowRecordRepository.findActiveByUserId(user.getId(), pageable))
+                    .thenReturn(new PageImpl<>(List.of(activeRecord), pageable, 11));
+            when(borrowMapper.toRecordDto(activeRecord)).thenReturn(recordDto);
+
+            BorrowRecordPageResponseDto result = borrowRecordService.getActiveRecordsByUser(user.getId(), pageable);
 
-            List<BorrowRecord> records = List.of(activeRecord);
+            assertEquals(List.of(recordDto), result.items());
+            assertEquals(11, result.totalItems());
+            assertEquals(2, result.totalPages());
+            verify(borrowRecordRepository).fetchItemsWithBooks(List.of(activeRecord));
+            verify(borrowRecordRepository, never()).findByUserId(anyLong(), any(Pageable.class));
+        }
 
-            @SuppressWarnings("unchecked")
-            Page<BorrowRecord> mockPage = (Page<BorrowRecord>) mock(Page.class);
-            when(mockPage.getContent()).thenReturn(records);
+        @Test
+        @DisplayName("Should return every active record for user unpaged")
+        void shouldReturnAllActiveRecordsUnpaged() {
+            BorrowRecord activeRecord = BorrowRecord.builder().id(1L).user(user).build();
+            BorrowRecordResponseDto recordDto = mock(BorrowRecordResponseDto.class);
 
-            when(securityUtils.getCurrentUser()).thenReturn(user);
+            when(securityUtils.getCurrentUserId()).thenReturn(user.getId());
             when(securityUtils.hasRole("LIBRARIAN")).thenReturn(false);
             when(userRepository.existsById(user.getId())).thenReturn(true);
-            when(borrowRecordRepository.findByUserId(eq(user.getId()), any(Pageable.class))).thenReturn(mockPage);
-            when(borrowMapper.toRecordDtoList(anyList())).thenReturn(List.of(mock(BorrowRecordResponseDto.class)));
+            when(borrowRecordRepository.findActiveByUserId(user.getId(), Pageable.unpaged()))
+                    .thenReturn(new PageImpl<>(List.of(activeRecord)));
+            when(borrowMapper.toRecordDto(activeRecord)).thenReturn(recordDto);
 
             List<BorrowRecordResponseDto> result = borrowRecordService.getActiveRecordsByUser(user.getId());
 
-            assertNotNull(result);
-            assertFalse(result.isEmpty());
-            verify(borrowMapper).toRecordDtoList(anyList());
+            assertEquals(List.of(recordDto), result);
         }
 
         @Test
@@ -253,13 +347,13 @@ class BorrowRecordServiceImplTest {
         void shouldThrowWhenUnauthorizedAccess() {
             User otherUser = User.builder().id(2L).build();
 
-            when(securityUtils.getCurrentUser()).thenReturn(user);
+            when(securityUtils.getCurrentUserId()).thenReturn(user.getId());
             when(securityUtils.hasRole("LIBRARIAN")).thenReturn(false);
 
             assertThrows(AccessDeniedException.class,
-                    () -> borrowRecordService.getActiveRecordsByUser(otherUser.getId()));
+                    () -> borrowRecordService.getActiveRecordsByUser(otherUser.getId(), PageRequest.of(0, 10)));
 
-            verify(securityUtils).getCurrentUser();
+            verify(securityUtils).getCurrentUserId();
             verify(securityUtils).hasRole("LIBRARIAN");
         }
 
@@ -268,44 +362,31 @@ class BorrowRecordServiceImplTest {
         void shouldThrowWhenUserDoesNotExist() {
             Long nonExistentUserId = 999L;
 
-            when(securityUtils.getCurrentUser()).thenReturn(user);
+            when(securityUtils.getCurrentUserId()).thenReturn(user.getId());
             when(securityUtils.hasRole("LIBRARIAN")).thenReturn(true);
             when(userRepository.existsById(nonExistentUserId)).thenReturn(false);
 
             assertThrows(ResourceNotFoundException.class,
-                    () -> borrowRecordService.getActiveRecordsByUser(nonExistentUserId));
+                    () -> borrowRecordService.getActiveRecordsByUser(nonExistentUserId, PageRequest.of(0, 10)));
 
             verify(userRepository).existsById(nonExistentUserId);
         }
 
         @Test
-        @DisplayName("Should return empty list when user has no active records")
-        void shouldReturnEmptyListWhenNoActiveRecords() {
-            BorrowItem returnedItem = BorrowItem.builder()
-                    .returned(true)
-                    .build();
+        @DisplayName("Should return empty page when user has no active records")
+        void shouldReturnEmptyPageWhenNoActiveRecords() {
+            Pageable pageable = PageRequest.of(0, 10);
 
-            BorrowRecord inactiveRecord = BorrowRecord.builder()
-                    .id(1L)
-                    .user(user)
-                    .items(List.of(returnedItem))
-                    .build();
-
-            List<BorrowRecord> records = List.of(inactiveRecord);
-
-            @SuppressWarnings("unchecked")
-            Page<BorrowRecord> mockPage = (Page<BorrowRecord>) mock(Page.class);
-            when(mockPage.getContent()).thenReturn(records);
-
-            when(securityUtils.getCurrentUser()).thenReturn(user);
+            when(securityUtils.getCurrentUserId()).thenReturn(user.getId());
             when(securityUtils.hasRole("LIBRARIAN")).thenReturn(false);
             when(userRepository.existsById(user.getId())).thenReturn(true);
-            when(borrowRecordRepository.findByUserId(eq(user.getId()), any(Pageable.class))).thenReturn(mockPage);
-            when(borrowMapper.toRecordDtoList(eq(List.of()))).thenReturn(List.of());
+            when(borrowRecordRepository.findActiveByUserId(user.getId(), pageable)).thenReturn(Page.empty(pageable));
 
-            List<BorrowRecordResponseDto> result = borrowRecordService.getActiveRecordsByUser(user.getId());
+            BorrowRecordPageResponseDto result = borrowRecordService.getActiveRecordsByUser(user.getId(), pageable);
 
-            assertTrue(result.isEmpty());
+            assertTrue(result.items().isEmpty());
+            assertEquals(0, result.totalItems());
+            verify(borrowRecordRepository, never()).fetchItemsWithBooks(any());
         }
     }
 
@@ -323,14 +404,14 @@ class BorrowRecordServiceImplTest {
 
             when(borrowRecordRepository.findById(1L)).thenReturn(Optional.of(record));
             when(securityUtils.hasRole("LIBRARIAN")).thenReturn(false);
-            when(securityUtils.getCurrentUser()).thenReturn(currentUser);
+            when(securityUtils.getCurrentUserId()).thenReturn(currentUser.getId());
 
             assertThrows(AccessDeniedException.class,
                     () -> borrowRecordService.getById(1L));
 
             verify(borrowRecordRepository).findById(1L);
             verify(securityUtils).hasRole("LIBRARIAN");
-            verify(securityUtils).getCurrentUser();
+            verify(securityUtils).getCurrentUserId();
         }
 
         @Test
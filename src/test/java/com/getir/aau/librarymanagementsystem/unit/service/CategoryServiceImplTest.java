@@ -1,5 +1,6 @@
 package com.getir.aau.librarymanagementsystem.unit.service;
 
+import com.getir.aau.librarymanagementsystem.cache.BookQueryCache;
 import com.getir.aau.librarymanagementsystem.exception.ResourceAlreadyExistsException;
 import com.getir.aau.librarymanagementsystem.exception.ResourceNotFoundException;
 import com.getir.aau.librarymanagementsystem.model.dto.request.CategoryRequestDto;
@@ -7,6 +8,7 @@ import com.getir.aau.librarymanagementsystem.model.dto.response.CategoryResponse
 import com.getir.aau.librarymanagementsystem.model.entity.Category;
 import com.getir.aau.librarymanagementsystem.model.mapper.CategoryMapper;
 import com.getir.aau.librarymanagementsystem.repository.CategoryRepository;
+import com.getir.aau.librarymanagementsystem.search.BookSearchIndex;
 import com.getir.aau.librarymanagementsystem.service.impl.CategoryServiceImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -36,6 +38,12 @@ class CategoryServiceImplTest {
     @Mock
     private CategoryMapper categoryMapper;
 
+    @Mock
+    private BookSearchIndex bookSearchIndex;
+
+    @Mock
+    private BookQueryCache bookQueryCache;
+
     @InjectMocks
     private CategoryServiceImpl categoryService;
 
@@ -101,6 +109,8 @@ class CategoryServiceImplTest {
 
             assertThat(result).isNotNull();
             assertThat(result.name()).isEqualTo("History");
+            verify(bookSearchIndex).rebuild();
+            verify(bookQueryCache).evictAll();
         }
 
         @Test
@@ -1,5 +1,6 @@
 package com.getir.aau.librarymanagementsystem.unit.service;
 
+import com.getir.aau.librarymanagementsystem.cache.UserDetailsCache;
 import com.getir.aau.librarymanagementsystem.exception.ResourceAlreadyExistsException;
 import com.getir.aau.librarymanagementsystem.exception.ResourceNotFoundException;
 import com.getir.aau.librarymanagementsystem.model.dto.request.UserUpdateRequestDto;
@@ -11,15 +12,18 @@ import com.getir.aau.librarymanagementsystem.model.mapper.UserMapper;
 import com.getir.aau.librarymanagementsystem.repository.RoleRepository;
 import com.getir.aau.librarymanagementsystem.repository.UserRepository;
 import com.getir.aau.librarymanagementsystem.security.auth.dto.RegisterRequestDto;
+import com.getir.aau.librarymanagementsystem.security.token.TokenService;
 import com.getir.aau.librarymanagementsystem.service.impl.UserServiceImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.Collections;
 import java.util.List;
@@ -38,6 +42,8 @@ class UserServiceImplTest {
     @Mock private UserRepository userRepository;
     @Mock private RoleRepository roleRepository;
     @Mock private UserMapper userMapper;
+    @Mock private TokenService tokenService;
+    @Mock private UserDetailsCache userDetailsCache;
 
     @InjectMocks
     private UserServiceImpl userService;
@@ -259,6 +265,24 @@ class UserServiceImplTest {
             assertThat(result.phoneNumber()).isEqualTo(updateDto.phoneNumber());
         }
 
+        @Test
+        @DisplayName("Should revoke the tokens of a user before its email changes")
+        void shouldRevokeTokensOnEmailChange() {
+            given(userRepository.findById(1L)).willReturn(Optional.of(user));
+            given(userRepository.existsByEmail(updateDto.email())).willReturn(false);
+            doAnswer(invocation -> {
+                ReflectionTestUtils.setField(user, "email", updateDto.email());
+                return null;
+            }).when(userMapper).updateUserFromDto(updateDto, user);
+
+            userService.update(1L, updateDto);
+
+            InOrder inOrder = inOrder(tokenService, userDetailsCache, userMapper);
+            inOrder.verify(tokenService).revokeAllUserTokens(user);
+            inOrder.verify(userDetailsCache).evict("mail@example.com");
+            inOrder.verify(userMapper).updateUserFromDto(updateDto, user);
+        }
+
         @Test
         @DisplayName("Should throw when updating to an existing email")
         void shouldThrowWhenEmailTaken() {
@@ -310,6 +334,8 @@ class UserServiceImplTest {
             // Then
             assertThat(result).isNotNull();
             assertThat(result.role()).isEqualTo("ROLE_LIBRARIAN");
+            verify(tokenService).revokeAllUserTokens(userWithNewRole);
+            verify(userDetailsCache).evict("mail@example.com");
         }
 
         @Test
@@ -338,19 +364,20 @@ class UserServiceImplTest {
         @Test
         @DisplayName("Should delete user")
         void shouldDeleteUser() {
-            given(userRepository.existsById(1L)).willReturn(true);
-            doNothing().when(userRepository).deleteById(1L);
+            given(userRepository.findById(1L)).willReturn(Optional.of(user));
 
             userService.delete(1L);
 
-            verify(userRepository).deleteById(1L);
+            verify(userRepository).delete(user);
+            verify(tokenService).revokeAllUserTokens(user);
+            verify(userDetailsCache).evict(user.getEmail());
         }
 
         @Test
         @DisplayName("Should throw if user not found on delete")
         void shouldThrowWhenUserNotFoundOnDelete() {
             Long nonExistingId = 999L;
-            given(userRepository.existsById(nonExistingId )).willReturn(false);
+            given(userRepository.findById(nonExistingId)).willReturn(Optional.empty());
 
             ResourceNotFoundException exception = assertThrows(
                     ResourceNotFoundException.class,
@@ -358,7 +385,8 @@ class UserServiceImplTest {
             );
 
             assertThat(exception.getMessage()).contains(nonExistingId.toString());
-            verify(userRepository, never()).deleteById(any());
+            verify(userRepository, never()).delete(any());
+            verifyNoInteractions(tokenService, userDetailsCache);
         }
     }
 }
\ No newline at end of file